@@ -0,0 +1,131 @@
+package microfinance.benchmarks;
+
+import javax.sql.DataSource;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.math.RoundingMode;
+import java.util.Date;
+import java.util.List;
+
+/**
+ * Method handles onto the application classes.
+ *
+ * <p>The application lives in the default package, which a named package cannot import, and
+ * JMH only accepts benchmarks in a named package. Every call therefore goes through a handle
+ * looked up once with {@link MethodHandles#privateLookupIn} and adapted to {@code Object}
+ * receivers. The handles are {@code static final}, so the JIT treats them as constants and
+ * inlines the target; calling through them costs the same as a direct call.
+ */
+final class App {
+    static final MethodHandle NEW_CLIENT;          // (int, String, String, String, double) -> Client
+    static final MethodHandle NEW_LOAN;            // (int, int, long, double, int, String, Date, long, String) -> Loan
+    static final MethodHandle LOAN_ID;             // (Loan) -> int
+    static final MethodHandle MONTHLY_PAYMENT;     // (Loan) -> long
+    static final MethodHandle OUTSTANDING_BALANCE; // (Loan) -> long
+    static final MethodHandle TOTAL_INTEREST;      // (Loan) -> long
+
+    static final MethodHandle MONEY_ROUND;         // (double, RoundingMode) -> long
+    static final MethodHandle MONEY_PARSE;         // (String) -> long
+    static final MethodHandle MONEY_FORMAT;        // (long) -> String
+
+    static final MethodHandle PRINT_LOAN_TABLE;    // (List<Loan>) -> void
+    static final MethodHandle PRINT_CLIENT_TABLE;  // (List<Client>) -> void
+
+    static final MethodHandle NEW_CONNECTION_POOL; // (url, user, password, min, max, borrowMs, idleMs, statementCache) -> ConnectionPool
+    static final MethodHandle POOL_START;          // (ConnectionPool) -> void
+    static final MethodHandle POOL_SHUTDOWN;       // (ConnectionPool) -> void
+    static final MethodHandle NEW_CLIENT_REPOSITORY;  // (DataSource) -> JdbcClientRepository
+    static final MethodHandle NEW_LOAN_REPOSITORY;    // (DataSource) -> JdbcLoanRepository
+    static final MethodHandle NEW_PAYMENT_REPOSITORY; // (DataSource) -> JdbcPaymentRepository
+    static final MethodHandle CLIENT_ADD;          // (ClientRepository, String, String, String, double) -> Client
+    static final MethodHandle CLIENT_FIND_ALL;     // (ClientRepository) -> List<Client>
+    static final MethodHandle LOAN_ADD;            // (LoanRepository, int, long, double, int, String, Date) -> Loan
+    static final MethodHandle LOAN_FIND_ALL;       // (LoanRepository) -> List<Loan>
+    static final MethodHandle LOAN_FIND_PAGE;      // (LoanRepository, int, int) -> List<Loan>
+    static final MethodHandle LOAN_FIND_BY_ID;     // (LoanRepository, int) -> Loan
+    static final MethodHandle LOAN_UPDATE_STATUS;  // (LoanRepository, int, String) -> boolean
+    static final MethodHandle POST_PAYMENT;        // (PaymentRepository, int, long, Date) -> PaymentPosting
+
+    static {
+        try {
+            Class<?> client = Class.forName("Client");
+            Class<?> loan = Class.forName("Loan");
+            Class<?> money = Class.forName("Money");
+            Class<?> main = Class.forName("MicrofinanceManagement");
+            Class<?> pool = Class.forName("ConnectionPool");
+            Class<?> clientRepository = Class.forName("ClientRepository");
+            Class<?> loanRepository = Class.forName("LoanRepository");
+            Class<?> paymentRepository = Class.forName("PaymentRepository");
+
+            NEW_CLIENT = generic(lookup(client).findConstructor(client,
+                    MethodType.methodType(void.class, int.class, String.class, String.class, String.class, double.class)));
+            NEW_LOAN = generic(lookup(loan).findConstructor(loan, MethodType.methodType(void.class,
+                    int.class, int.class, long.class, double.class, int.class, String.class, Date.class, long.class, String.class)));
+            LOAN_ID = generic(lookup(loan).findVirtual(loan, "getLoanId", MethodType.methodType(int.class)));
+            MONTHLY_PAYMENT = generic(lookup(loan).findVirtual(loan, "calculateMonthlyPaymentCents", MethodType.methodType(long.class)));
+            OUTSTANDING_BALANCE = generic(lookup(loan).findVirtual(loan, "calculateOutstandingBalanceCents", MethodType.methodType(long.class)));
+            TOTAL_INTEREST = generic(lookup(loan).findVirtual(loan, "calculateTotalInterestCents", MethodType.methodType(long.class)));
+
+            MONEY_ROUND = lookup(money).findStatic(money, "round", MethodType.methodType(long.class, double.class, RoundingMode.class));
+            MONEY_PARSE = lookup(money).findStatic(money, "parse", MethodType.methodType(long.class, String.class));
+            MONEY_FORMAT = lookup(money).findStatic(money, "format", MethodType.methodType(String.class, long.class));
+
+            PRINT_LOAN_TABLE = lookup(main).findStatic(main, "printLoanTable", MethodType.methodType(void.class, List.class));
+            PRINT_CLIENT_TABLE = lookup(main).findStatic(main, "printClientTable", MethodType.methodType(void.class, List.class));
+
+            NEW_CONNECTION_POOL = generic(lookup(pool).findConstructor(pool, MethodType.methodType(void.class,
+                    String.class, String.class, String.class, int.class, int.class, long.class, long.class, int.class)));
+            POOL_START = generic(lookup(pool).findVirtual(pool, "start", MethodType.methodType(void.class)));
+            POOL_SHUTDOWN = generic(lookup(pool).findVirtual(pool, "shutdown", MethodType.methodType(void.class)));
+            NEW_CLIENT_REPOSITORY = repositoryConstructor("JdbcClientRepository");
+            NEW_LOAN_REPOSITORY = repositoryConstructor("JdbcLoanRepository");
+            NEW_PAYMENT_REPOSITORY = repositoryConstructor("JdbcPaymentRepository");
+            CLIENT_ADD = generic(lookup(clientRepository).findVirtual(clientRepository, "add",
+                    MethodType.methodType(client, String.class, String.class, String.class, double.class)));
+            CLIENT_FIND_ALL = generic(lookup(clientRepository).findVirtual(clientRepository, "findAll", MethodType.methodType(List.class)));
+            LOAN_ADD = generic(lookup(loanRepository).findVirtual(loanRepository, "add",
+                    MethodType.methodType(loan, int.class, long.class, double.class, int.class, String.class, Date.class)));
+            LOAN_FIND_ALL = generic(lookup(loanRepository).findVirtual(loanRepository, "findAll", MethodType.methodType(List.class)));
+            LOAN_FIND_PAGE = generic(lookup(loanRepository).findVirtual(loanRepository, "findPage",
+                    MethodType.methodType(List.class, int.class, int.class)));
+            LOAN_FIND_BY_ID = generic(lookup(loanRepository).findVirtual(loanRepository, "findById", MethodType.methodType(loan, int.class)));
+            LOAN_UPDATE_STATUS = generic(lookup(loanRepository).findVirtual(loanRepository, "updateStatus",
+                    MethodType.methodType(boolean.class, int.class, String.class)));
+            POST_PAYMENT = generic(lookup(paymentRepository).findVirtual(paymentRepository, "postPayment",
+                    MethodType.methodType(Class.forName("PaymentPosting"), int.class, long.class, Date.class)));
+        } catch (ReflectiveOperationException e) {
+            throw new ExceptionInInitializerError(e);
+        }
+    }
+
+    private App() {
+    }
+
+    private static MethodHandles.Lookup lookup(Class<?> target) throws IllegalAccessException {
+        return MethodHandles.privateLookupIn(target, MethodHandles.lookup());
+    }
+
+    private static MethodHandle repositoryConstructor(String className) throws ReflectiveOperationException {
+        Class<?> repository = Class.forName(className);
+        return generic(lookup(repository).findConstructor(repository, MethodType.methodType(void.class, DataSource.class)));
+    }
+
+    // Replaces application types in the signature with Object so call sites here can use invokeExact
+    private static MethodHandle generic(MethodHandle handle) {
+        MethodType type = handle.type();
+        for (int i = 0; i < type.parameterCount(); i++) {
+            if (isApplicationType(type.parameterType(i))) {
+                type = type.changeParameterType(i, Object.class);
+            }
+        }
+        if (isApplicationType(type.returnType())) {
+            type = type.changeReturnType(Object.class);
+        }
+        return handle.asType(type);
+    }
+
+    private static boolean isApplicationType(Class<?> type) {
+        return !type.isPrimitive() && type.getPackageName().isEmpty();
+    }
+}
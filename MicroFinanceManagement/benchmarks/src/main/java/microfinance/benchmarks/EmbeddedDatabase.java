@@ -0,0 +1,120 @@
+package microfinance.benchmarks;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.Date;
+import java.util.SplittableRandom;
+
+/**
+ * In-memory H2 database in MariaDB mode, pooled by the application's own ConnectionPool and
+ * seeded with the application's schema. Row mapping and the payment transaction then run
+ * through the real Jdbc*Repository code without a database server.
+ */
+final class EmbeddedDatabase implements AutoCloseable {
+    private static final String[] SCHEMA = {
+            "CREATE TABLE IF NOT EXISTS clients (" +
+                    "id INTEGER PRIMARY KEY AUTO_INCREMENT, " +
+                    "name VARCHAR(255) NOT NULL, " +
+                    "phone VARCHAR(20) NOT NULL, " +
+                    "address VARCHAR(255) NOT NULL, " +
+                    "credit_score DOUBLE DEFAULT 75.0)",
+            "CREATE TABLE IF NOT EXISTS loans (" +
+                    "loan_id INTEGER PRIMARY KEY AUTO_INCREMENT, " +
+                    "client_id INTEGER NOT NULL, " +
+                    "amount DECIMAL(15,2) NOT NULL, " +
+                    "interest_rate DOUBLE NOT NULL, " +
+                    "duration_months INTEGER NOT NULL, " +
+                    "status VARCHAR(20) NOT NULL, " +
+                    "issue_date DATE NOT NULL, " +
+                    "paid_amount DECIMAL(15,2) DEFAULT 0.00, " +
+                    "FOREIGN KEY (client_id) REFERENCES clients(id) ON DELETE RESTRICT)",
+            "CREATE TABLE IF NOT EXISTS payments (" +
+                    "payment_id INTEGER PRIMARY KEY AUTO_INCREMENT, " +
+                    "loan_id INTEGER NOT NULL, " +
+                    "amount DECIMAL(15,2) NOT NULL, " +
+                    "payment_date DATE NOT NULL, " +
+                    "FOREIGN KEY (loan_id) REFERENCES loans(loan_id) ON DELETE RESTRICT)",
+            "CREATE TABLE IF NOT EXISTS loan_portfolio (" +
+                    "status VARCHAR(20) PRIMARY KEY, " +
+                    "num_loans BIGINT NOT NULL DEFAULT 0, " +
+                    "total_amount DECIMAL(15,2) NOT NULL DEFAULT 0.00, " +
+                    "total_paid DECIMAL(15,2) NOT NULL DEFAULT 0.00, " +
+                    "total_outstanding DECIMAL(15,2) NOT NULL DEFAULT 0.00)",
+            "CREATE TABLE IF NOT EXISTS loan_events (" +
+                    "event_id BIGINT PRIMARY KEY AUTO_INCREMENT, " +
+                    "loan_id INTEGER NOT NULL, " +
+                    "event_type VARCHAR(20) NOT NULL, " +
+                    "recorded_at DATETIME NOT NULL, " +
+                    "client_id INTEGER, " +
+                    "amount DECIMAL(15,2), " +
+                    "interest_rate DOUBLE, " +
+                    "duration_months INTEGER, " +
+                    "status VARCHAR(20), " +
+                    "event_date DATE, " +
+                    "paid_amount DECIMAL(15,2), " +
+                    "INDEX idx_loan_events_loan (loan_id, event_id))",
+            "CREATE TABLE IF NOT EXISTS loan_snapshots (" +
+                    "loan_id INTEGER PRIMARY KEY, " +
+                    "event_id BIGINT NOT NULL, " +
+                    "client_id INTEGER NOT NULL, " +
+                    "amount DECIMAL(15,2) NOT NULL, " +
+                    "interest_rate DOUBLE NOT NULL, " +
+                    "duration_months INTEGER NOT NULL, " +
+                    "status VARCHAR(20) NOT NULL, " +
+                    "issue_date DATE NOT NULL, " +
+                    "paid_amount DECIMAL(15,2) NOT NULL)"
+    };
+    private static final String[] STATUSES = {"PENDING", "APPROVED", "APPROVED", "APPROVED", "REJECTED", "PAID"};
+
+    private final Object pool;
+    final Object clients;
+    final Object loans;
+    final Object payments;
+
+    EmbeddedDatabase(String name) throws Throwable {
+        String url = "jdbc:h2:mem:" + name + ";MODE=MariaDB;DB_CLOSE_DELAY=-1;DATABASE_TO_LOWER=TRUE";
+        pool = (Object) App.NEW_CONNECTION_POOL.invokeExact(url, "sa", "", 1, 4, 5_000L, 60_000L, 32);
+        App.POOL_START.invokeExact(pool);
+        DataSource dataSource = (DataSource) pool;
+        try (Connection conn = dataSource.getConnection(); Statement stmt = conn.createStatement()) {
+            for (String ddl : SCHEMA) {
+                stmt.execute(ddl);
+            }
+        }
+        clients = (Object) App.NEW_CLIENT_REPOSITORY.invokeExact(dataSource);
+        loans = (Object) App.NEW_LOAN_REPOSITORY.invokeExact(dataSource);
+        payments = (Object) App.NEW_PAYMENT_REPOSITORY.invokeExact(dataSource);
+    }
+
+    // Inserts clientCount clients and loanCount loans spread across them, through the repositories
+    void seed(int clientCount, int loanCount, long seed) throws Throwable {
+        SplittableRandom random = new SplittableRandom(seed);
+        Date issued = new Date();
+        for (int i = 1; i <= clientCount; i++) {
+            Object client = (Object) App.CLIENT_ADD.invokeExact(clients, "Client " + i,
+                    String.format("09%09d", i), i + " Benchmark Street", 50.0 + random.nextInt(51));
+        }
+        for (int i = 0; i < loanCount; i++) {
+            Object loan = (Object) App.LOAN_ADD.invokeExact(loans, 1 + random.nextInt(clientCount),
+                    100_000L * (1 + random.nextInt(500)), 5.0 + random.nextInt(25), 6 * (1 + random.nextInt(8)),
+                    STATUSES[random.nextInt(STATUSES.length)], issued);
+        }
+    }
+
+    @Override
+    public void close() throws Exception {
+        // DB_CLOSE_DELAY=-1 keeps the database past its last connection, so drop it explicitly
+        try (Connection conn = ((DataSource) pool).getConnection(); Statement stmt = conn.createStatement()) {
+            stmt.execute("SHUTDOWN");
+        }
+        try {
+            App.POOL_SHUTDOWN.invokeExact(pool);
+        } catch (Exception | Error e) {
+            throw e;
+        } catch (Throwable t) {
+            throw new IllegalStateException(t);
+        }
+    }
+}
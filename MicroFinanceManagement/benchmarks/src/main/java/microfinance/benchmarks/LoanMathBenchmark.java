@@ -0,0 +1,113 @@
+package microfinance.benchmarks;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.Date;
+import java.util.SplittableRandom;
+
+/**
+ * Loan installment, interest and outstanding-balance math over a fixed set of loans with mixed
+ * rates, terms and payment progress. The legacy variants are the pre-centavo double formulas,
+ * kept here as the baseline the long-centavo code is measured against.
+ */
+@State(Scope.Thread)
+public class LoanMathBenchmark {
+    private static final int LOANS = 1024;
+
+    private final Object[] loans = new Object[LOANS];
+    private final double[] amount = new double[LOANS];
+    private final double[] rate = new double[LOANS];
+    private final int[] months = new int[LOANS];
+    private final double[] paid = new double[LOANS];
+
+    @Setup
+    public void setUp() throws Throwable {
+        SplittableRandom random = new SplittableRandom(42);
+        Date issued = new Date();
+        for (int i = 0; i < LOANS; i++) {
+            long amountCents = 100_000L * (1 + random.nextInt(500));
+            // One loan in sixteen is interest-free to keep the zero-rate branch warm
+            double interestRate = random.nextInt(16) == 0 ? 0.0 : 5.0 + random.nextInt(2_500) / 100.0;
+            int durationMonths = 6 * (1 + random.nextInt(8));
+            long paidCents = (long) (amountCents * random.nextDouble());
+            loans[i] = (Object) App.NEW_LOAN.invokeExact(i + 1, 1 + (i % 100), amountCents, interestRate,
+                    durationMonths, "APPROVED", issued, paidCents, "Client");
+            amount[i] = amountCents / 100.0;
+            rate[i] = interestRate;
+            months[i] = durationMonths;
+            paid[i] = paidCents / 100.0;
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(LOANS)
+    public long monthlyPayment() throws Throwable {
+        long sum = 0;
+        for (Object loan : loans) {
+            sum += (long) App.MONTHLY_PAYMENT.invokeExact(loan);
+        }
+        return sum;
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(LOANS)
+    public long totalInterest() throws Throwable {
+        long sum = 0;
+        for (Object loan : loans) {
+            sum += (long) App.TOTAL_INTEREST.invokeExact(loan);
+        }
+        return sum;
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(LOANS)
+    public long outstandingBalance() throws Throwable {
+        long sum = 0;
+        for (Object loan : loans) {
+            sum += (long) App.OUTSTANDING_BALANCE.invokeExact(loan);
+        }
+        return sum;
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(LOANS)
+    public double legacyMonthlyPayment() {
+        double sum = 0;
+        for (int i = 0; i < LOANS; i++) {
+            sum += legacyMonthly(amount[i], rate[i], months[i]);
+        }
+        return sum;
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(LOANS)
+    public double legacyOutstandingBalance() {
+        double sum = 0;
+        for (int i = 0; i < LOANS; i++) {
+            sum += legacyOutstanding(amount[i], rate[i], months[i], paid[i]);
+        }
+        return sum;
+    }
+
+    private static double legacyMonthly(double amount, double rate, int months) {
+        double monthlyRate = rate / 100 / 12;
+        if (monthlyRate == 0) {
+            return amount / months;
+        }
+        return amount * (monthlyRate * Math.pow(1 + monthlyRate, months)) / (Math.pow(1 + monthlyRate, months) - 1);
+    }
+
+    private static double legacyOutstanding(double amount, double rate, int months, double paid) {
+        double monthlyRate = rate / 100 / 12;
+        if (monthlyRate == 0) {
+            return amount - paid;
+        }
+        int paymentsMade = (int) Math.floor(paid / legacyMonthly(amount, rate, months));
+        return amount * ((Math.pow(1 + monthlyRate, months) - Math.pow(1 + monthlyRate, paymentsMade))
+                / (Math.pow(1 + monthlyRate, months) - 1));
+    }
+}
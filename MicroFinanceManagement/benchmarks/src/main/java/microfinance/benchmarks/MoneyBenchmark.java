@@ -0,0 +1,95 @@
+package microfinance.benchmarks;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.math.RoundingMode;
+import java.util.SplittableRandom;
+
+/**
+ * Money primitives against the plain double code they replaced: rounding an exact installment
+ * to centavos, parsing user input, and formatting for the tables.
+ */
+@State(Scope.Thread)
+public class MoneyBenchmark {
+    private static final int VALUES = 1024;
+
+    private final double[] exactCents = new double[VALUES];
+    private final long[] cents = new long[VALUES];
+    private final double[] units = new double[VALUES];
+    private final String[] text = new String[VALUES];
+
+    @Setup
+    public void setUp() {
+        SplittableRandom random = new SplittableRandom(7);
+        for (int i = 0; i < VALUES; i++) {
+            exactCents[i] = random.nextDouble() * 50_000_000.0;
+            cents[i] = random.nextLong(50_000_000L);
+            units[i] = cents[i] / 100.0;
+            text[i] = (cents[i] / 100) + "." + String.format("%02d", cents[i] % 100);
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(VALUES)
+    public long roundHalfUp() throws Throwable {
+        long sum = 0;
+        for (double value : exactCents) {
+            sum += (long) App.MONEY_ROUND.invokeExact(value, RoundingMode.HALF_UP);
+        }
+        return sum;
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(VALUES)
+    public double legacyUnrounded() {
+        double sum = 0;
+        for (double value : exactCents) {
+            sum += value / 100.0;
+        }
+        return sum;
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(VALUES)
+    public long parse() throws Throwable {
+        long sum = 0;
+        for (String value : text) {
+            sum += (long) App.MONEY_PARSE.invokeExact(value);
+        }
+        return sum;
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(VALUES)
+    public double legacyParse() {
+        double sum = 0;
+        for (String value : text) {
+            sum += Double.parseDouble(value);
+        }
+        return sum;
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(VALUES)
+    public int format() throws Throwable {
+        int length = 0;
+        for (long value : cents) {
+            length += ((String) App.MONEY_FORMAT.invokeExact(value)).length();
+        }
+        return length;
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(VALUES)
+    public int legacyFormat() {
+        int length = 0;
+        for (double value : units) {
+            length += String.format("%.2f", value).length();
+        }
+        return length;
+    }
+}
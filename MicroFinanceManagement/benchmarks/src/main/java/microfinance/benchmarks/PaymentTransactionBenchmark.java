@@ -0,0 +1,42 @@
+package microfinance.benchmarks;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+import java.util.Date;
+
+/**
+ * One payment through JdbcPaymentRepository.postPayment against an embedded H2 database:
+ * lock the loan row, check the payment against it, insert the payment, update the paid amount
+ * and the portfolio totals, commit.
+ * Each call pays one centavo on a loan large enough never to be settled during a run.
+ */
+@State(Scope.Benchmark)
+public class PaymentTransactionBenchmark {
+    private EmbeddedDatabase database;
+    private int loanId;
+    private Date paymentDate;
+
+    @Setup(Level.Trial)
+    public void setUp() throws Throwable {
+        database = new EmbeddedDatabase("payments");
+        database.seed(10, 100, 13);
+        Object loan = (Object) App.LOAN_ADD.invokeExact(database.loans, 1, 999_999_999_999L, 12.0, 48, "APPROVED", new Date());
+        loanId = (int) App.LOAN_ID.invokeExact(loan);
+        paymentDate = new Date();
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws Exception {
+        database.close();
+    }
+
+    @Benchmark
+    public Object recordPayment() throws Throwable {
+        return (Object) App.POST_PAYMENT.invokeExact(database.payments, loanId, 1L, paymentDate);
+    }
+}
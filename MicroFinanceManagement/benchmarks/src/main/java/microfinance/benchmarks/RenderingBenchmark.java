@@ -0,0 +1,57 @@
+package microfinance.benchmarks;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+
+/**
+ * Console table rendering with System.out pointed at a null sink, so the score is the cost of
+ * formatting and writing rows, not of a terminal.
+ */
+@State(Scope.Benchmark)
+public class RenderingBenchmark {
+    @Param({"50", "1000"})
+    public int rows;
+
+    private final List<Object> loans = new ArrayList<>();
+    private final List<Object> clients = new ArrayList<>();
+    private PrintStream console;
+
+    @Setup(Level.Trial)
+    public void setUp() throws Throwable {
+        Date issued = new Date();
+        for (int i = 1; i <= rows; i++) {
+            clients.add((Object) App.NEW_CLIENT.invokeExact(i, "Client " + i, String.format("09%09d", i),
+                    i + " Benchmark Street", 50.0 + i % 51));
+            loans.add((Object) App.NEW_LOAN.invokeExact(i, i, 100_000L * i, 12.5, 12, "APPROVED", issued,
+                    10_000L * i, "Client " + i));
+        }
+        console = System.out;
+        System.setOut(new PrintStream(OutputStream.nullOutputStream()));
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        System.setOut(console);
+    }
+
+    @Benchmark
+    public void printLoanTable() throws Throwable {
+        App.PRINT_LOAN_TABLE.invokeExact((List) loans);
+    }
+
+    @Benchmark
+    public void printClientTable() throws Throwable {
+        App.PRINT_CLIENT_TABLE.invokeExact((List) clients);
+    }
+}
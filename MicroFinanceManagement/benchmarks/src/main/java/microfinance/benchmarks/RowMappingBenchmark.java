@@ -0,0 +1,54 @@
+package microfinance.benchmarks;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+import java.util.List;
+
+/**
+ * Result-set-to-entity mapping through the JDBC repositories against an embedded H2 database:
+ * a full loan listing (join with clients), one keyset page, and the client listing.
+ * Scores are per call, so divide by the row count for a per-row cost.
+ */
+@State(Scope.Benchmark)
+public class RowMappingBenchmark {
+    @Param({"1000", "10000"})
+    public int loans;
+
+    private EmbeddedDatabase database;
+
+    @Setup(Level.Trial)
+    public void setUp() throws Throwable {
+        database = new EmbeddedDatabase("rowmapping" + loans);
+        database.seed(Math.max(1, loans / 10), loans, 11);
+        // An empty or short listing would make every score meaningless
+        if (findAllLoans().size() != loans || findAllClients().size() != Math.max(1, loans / 10)) {
+            throw new IllegalStateException("Embedded database was not seeded as expected");
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws Exception {
+        database.close();
+    }
+
+    @Benchmark
+    public List<?> findAllLoans() throws Throwable {
+        return (List<?>) App.LOAN_FIND_ALL.invokeExact(database.loans);
+    }
+
+    @Benchmark
+    public List<?> findLoanPage() throws Throwable {
+        return (List<?>) App.LOAN_FIND_PAGE.invokeExact(database.loans, loans / 2, 50);
+    }
+
+    @Benchmark
+    public List<?> findAllClients() throws Throwable {
+        return (List<?>) App.CLIENT_FIND_ALL.invokeExact(database.clients);
+    }
+}
@@ -0,0 +1,208 @@
+// Description: Amortization engine for fixed-rate, equal-installment loans.
+// The compound factor (1 + r)^n and the powers (1 + r)^k for k = 0..n are computed
+// once per (rate, term) product and shared by every loan with those terms, so
+// monthly payment, total interest and outstanding balance are O(1) lookups
+// instead of three or four Math.pow calls per loan. Amounts are centavos (see Money):
+// the installment is rounded HALF_UP, interest and remaining balances HALF_EVEN.
+
+import java.math.RoundingMode;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.ZoneId;
+import java.util.Date;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.concurrent.ConcurrentHashMap;
+
+final class AmortizationTerms {
+    private final double interestRate; // annual, percent
+    private final int durationMonths;
+    private final double monthlyRate;
+    private final double growth; // (1 + monthlyRate)^durationMonths
+    private final double rateTimesGrowth;
+    private final double growthMinusOne;
+    private volatile double[] powers; // (1 + monthlyRate)^k for k = 0..durationMonths, built on first balance query
+
+    AmortizationTerms(double interestRate, int durationMonths) {
+        this.interestRate = interestRate;
+        this.durationMonths = durationMonths;
+        this.monthlyRate = interestRate / 100 / 12;
+        this.growth = Math.pow(1 + monthlyRate, durationMonths);
+        this.rateTimesGrowth = monthlyRate * growth;
+        this.growthMinusOne = growth - 1;
+    }
+
+    // Getters
+    public double getInterestRate() { return interestRate; }
+    public int getDurationMonths() { return durationMonths; }
+    public double getMonthlyRate() { return monthlyRate; }
+
+    public long monthlyPayment(long amountCents) {
+        if (monthlyRate == 0) {
+            return Money.divideCeiling(amountCents, durationMonths); // No interest case
+        }
+        return Money.round(amountCents * rateTimesGrowth / growthMinusOne, RoundingMode.HALF_UP);
+    }
+
+    public long totalPayable(long amountCents) {
+        if (monthlyRate == 0) {
+            return amountCents;
+        }
+        return monthlyPayment(amountCents) * durationMonths;
+    }
+
+    public long totalInterest(long amountCents) {
+        return totalPayable(amountCents) - amountCents;
+    }
+
+    // Remaining principal after the number of whole installments that paidCents covers
+    public long outstandingBalance(long amountCents, long paidCents) {
+        long installment = monthlyPayment(amountCents);
+        if (monthlyRate == 0 || installment <= 0) {
+            return amountCents - paidCents;
+        }
+        long k = Math.floorDiv(paidCents, installment);
+        if (k >= durationMonths) {
+            return 0;
+        }
+        return Money.round(amountCents * ((growth - power((int) Math.max(k, 0))) / growthMinusOne), RoundingMode.HALF_EVEN);
+    }
+
+    private double power(int k) {
+        double[] table = powers;
+        if (table == null) {
+            table = new double[durationMonths + 1];
+            for (int i = 0; i <= durationMonths; i++) {
+                table[i] = Math.pow(1 + monthlyRate, i);
+            }
+            powers = table;
+        }
+        return table[k];
+    }
+}
+
+final class AmortizationEngine {
+    // Distinct (rate, term) products are few in a real book; the bound only guards against pathological input
+    private static final int MAX_CACHED_TERMS = 4096;
+    private static final ConcurrentHashMap<TermsKey, AmortizationTerms> TERMS = new ConcurrentHashMap<>();
+
+    private AmortizationEngine() {
+    }
+
+    static final class TermsKey {
+        final long rateBits;
+        final int months;
+
+        TermsKey(double rate, int months) {
+            this.rateBits = Double.doubleToLongBits(rate);
+            this.months = months;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            return o instanceof TermsKey && ((TermsKey) o).rateBits == rateBits && ((TermsKey) o).months == months;
+        }
+
+        @Override
+        public int hashCode() {
+            return Long.hashCode(rateBits) * 31 + months;
+        }
+    }
+
+    static AmortizationTerms terms(double interestRate, int durationMonths) {
+        TermsKey key = new TermsKey(interestRate, durationMonths);
+        AmortizationTerms terms = TERMS.get(key);
+        if (terms == null) {
+            if (TERMS.size() >= MAX_CACHED_TERMS) {
+                TERMS.clear();
+            }
+            terms = TERMS.computeIfAbsent(key, k -> new AmortizationTerms(interestRate, durationMonths));
+        }
+        return terms;
+    }
+
+    static AmortizationSchedule schedule(Loan loan) {
+        return new AmortizationSchedule(loan.getAmountCents(), terms(loan.getInterestRate(), loan.getDurationMonths()),
+                loan.getIssueDate(), loan.getPaidCents());
+    }
+}
+
+class Installment {
+    private final int period;
+    private final LocalDate dueDate;
+    private final long payment;
+    private final long principal;
+    private final long interest;
+    private final long balance;
+    private final String status; // "PAID", "PARTIAL" or "DUE", from the loan's paid amount
+
+    Installment(int period, LocalDate dueDate, long payment, long principal, long interest, long balance, String status) {
+        this.period = period;
+        this.dueDate = dueDate;
+        this.payment = payment;
+        this.principal = principal;
+        this.interest = interest;
+        this.balance = balance;
+        this.status = status;
+    }
+
+    // Getters
+    public int getPeriod() { return period; }
+    public LocalDate getDueDate() { return dueDate; }
+    public long getPayment() { return payment; }
+    public long getPrincipal() { return principal; }
+    public long getInterest() { return interest; }
+    public long getBalance() { return balance; }
+    public String getStatus() { return status; }
+}
+
+// Installments are produced one at a time while iterating; nothing is materialised up front.
+class AmortizationSchedule implements Iterable<Installment> {
+    private final long amount;
+    private final AmortizationTerms terms;
+    private final LocalDate firstDueBase;
+    private final long paidAmount;
+
+    AmortizationSchedule(long amount, AmortizationTerms terms, Date issueDate, long paidAmount) {
+        this.amount = amount;
+        this.terms = terms;
+        // java.sql.Date does not support toInstant(), so go through the millisecond value
+        this.firstDueBase = Instant.ofEpochMilli(issueDate.getTime()).atZone(ZoneId.systemDefault()).toLocalDate();
+        this.paidAmount = paidAmount;
+    }
+
+    public int getPeriods() { return terms.getDurationMonths(); }
+    public long getMonthlyPayment() { return terms.monthlyPayment(amount); }
+
+    @Override
+    public Iterator<Installment> iterator() {
+        return new Iterator<>() {
+            private final long payment = terms.monthlyPayment(amount);
+            private int period;
+            private long balance = amount;
+            private long paidSoFar;
+
+            @Override
+            public boolean hasNext() {
+                return period < terms.getDurationMonths();
+            }
+
+            @Override
+            public Installment next() {
+                if (!hasNext()) {
+                    throw new NoSuchElementException();
+                }
+                period++;
+                long interest = Money.round(balance * terms.getMonthlyRate(), RoundingMode.HALF_EVEN);
+                // The last installment clears whatever rounding left on the balance
+                long principal = period == terms.getDurationMonths() ? balance : Math.min(balance, payment - interest);
+                long due = principal + interest;
+                balance -= principal;
+                long before = paidSoFar;
+                paidSoFar += due;
+                String status = paidAmount >= paidSoFar ? "PAID" : paidAmount > before ? "PARTIAL" : "DUE";
+                return new Installment(period, firstDueBase.plusMonths(period), due, principal, interest, balance, status);
+            }
+        };
+    }
+}
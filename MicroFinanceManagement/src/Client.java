@@ -0,0 +1,28 @@
+// Description: A borrower: contact details and the credit score loan decisions are based on.
+
+class Client {
+    private final int id;
+    private final String name;
+    private final String phone;
+    private final String address;
+    private final double creditScore; // 0.0 to 100.0
+
+    Client(int id, String name, String phone, String address, double creditScore) {
+        this.id = id;
+        this.name = name;
+        this.phone = phone;
+        this.address = address;
+        this.creditScore = creditScore;
+    }
+
+    // public Getters
+    public int getId() { return id; }
+    public String getName() { return name; }
+    public String getPhone() { return phone; }
+    public String getAddress() { return address; }
+    public double getCreditScore() { return creditScore; }
+
+    static boolean isValidCreditScore(double creditScore) {
+        return creditScore >= 0 && creditScore <= 100;
+    }
+}
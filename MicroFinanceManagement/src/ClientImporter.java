@@ -0,0 +1,152 @@
+// Description: Bulk client onboarding from a CSV file (name,phone,address,credit_score).
+// The file is streamed line by line, validated with the same rules as addClient,
+// and written in chunks of multi-row INSERTs, one commit per chunk. Rejected rows
+// go to a side file together with the reason so they can be fixed and re-imported.
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+
+class BulkLoadStats {
+    private final long rowsRead;
+    private final long rowsLoaded;
+    private final long rowsRejected;
+    private final long elapsedNanos;
+
+    BulkLoadStats(long rowsRead, long rowsLoaded, long rowsRejected, long elapsedNanos) {
+        this.rowsRead = rowsRead;
+        this.rowsLoaded = rowsLoaded;
+        this.rowsRejected = rowsRejected;
+        this.elapsedNanos = elapsedNanos;
+    }
+
+    // Getters
+    public long getRowsRead() { return rowsRead; }
+    public long getRowsLoaded() { return rowsLoaded; }
+    public long getRowsRejected() { return rowsRejected; }
+    public long getElapsedNanos() { return elapsedNanos; }
+
+    public double getRowsPerSecond() {
+        return elapsedNanos == 0 ? 0.0 : rowsRead * 1_000_000_000.0 / elapsedNanos;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("read=%d, loaded=%d, rejected=%d, elapsed=%.2fs, throughput=%.0f rows/sec",
+                rowsRead, rowsLoaded, rowsRejected, elapsedNanos / 1_000_000_000.0, getRowsPerSecond());
+    }
+}
+
+class ClientImporter {
+    static final int DEFAULT_CHUNK_SIZE = 1000;
+    // MariaDB allows 65535 placeholders per statement and each client row binds 4
+    static final int MAX_CHUNK_SIZE = 65535 / 4;
+    private static final int MAX_NAME_LENGTH = 255;
+    private static final int MAX_PHONE_LENGTH = 20;
+    private static final int MAX_ADDRESS_LENGTH = 255;
+
+    private final ClientRepository repository;
+    private final int chunkSize;
+
+    ClientImporter(ClientRepository repository, int chunkSize) {
+        if (chunkSize <= 0 || chunkSize > MAX_CHUNK_SIZE) {
+            throw new IllegalArgumentException("Chunk size must be between 1 and " + MAX_CHUNK_SIZE);
+        }
+        this.repository = repository;
+        this.chunkSize = chunkSize;
+    }
+
+    BulkLoadStats importFile(Path csvFile, Path rejectsFile) throws IOException {
+        long start = System.nanoTime();
+        long read = 0;
+        long loaded = 0;
+        long rejected = 0;
+        List<Client> chunk = new ArrayList<>(chunkSize);
+        List<Long> chunkLineNumbers = new ArrayList<>(chunkSize);
+        List<String> chunkLines = new ArrayList<>(chunkSize);
+
+        try (BufferedReader in = Files.newBufferedReader(csvFile, StandardCharsets.UTF_8);
+             BufferedWriter rejects = Files.newBufferedWriter(rejectsFile, StandardCharsets.UTF_8)) {
+            Csv.writeRejectHeader(rejects);
+            String line;
+            long lineNumber = 0;
+            while ((line = in.readLine()) != null) {
+                lineNumber++;
+                if (line.isBlank() || (lineNumber == 1 && line.toLowerCase().startsWith("name"))) {
+                    continue; // blank line or header
+                }
+                read++;
+                List<String> fields = Csv.parseLine(line);
+                String reason = validate(fields);
+                if (reason != null) {
+                    Csv.writeReject(rejects, lineNumber, reason, line);
+                    rejected++;
+                    continue;
+                }
+                chunk.add(new Client(0, fields.get(0).trim(), fields.get(1).trim(), fields.get(2).trim(),
+                        Double.parseDouble(fields.get(3).trim())));
+                chunkLineNumbers.add(lineNumber);
+                chunkLines.add(line);
+                if (chunk.size() == chunkSize) {
+                    int written = flush(chunk, chunkLineNumbers, chunkLines, rejects);
+                    loaded += written;
+                    rejected += chunk.size() - written;
+                    chunk.clear();
+                    chunkLineNumbers.clear();
+                    chunkLines.clear();
+                }
+            }
+            if (!chunk.isEmpty()) {
+                int written = flush(chunk, chunkLineNumbers, chunkLines, rejects);
+                loaded += written;
+                rejected += chunk.size() - written;
+            }
+        }
+        return new BulkLoadStats(read, loaded, rejected, System.nanoTime() - start);
+    }
+
+    // Returns null for a valid row, otherwise why it was rejected.
+    private static String validate(List<String> fields) {
+        if (fields.size() != 4) {
+            return "expected 4 fields (name,phone,address,credit_score) but found " + fields.size();
+        }
+        String name = fields.get(0).trim();
+        String phone = fields.get(1).trim();
+        String address = fields.get(2).trim();
+        if (name.isEmpty() || phone.isEmpty() || address.isEmpty()) {
+            return "name, phone and address are required";
+        }
+        if (name.length() > MAX_NAME_LENGTH || phone.length() > MAX_PHONE_LENGTH || address.length() > MAX_ADDRESS_LENGTH) {
+            return "field too long (name/address max 255, phone max 20)";
+        }
+        double creditScore;
+        try {
+            creditScore = Double.parseDouble(fields.get(3).trim());
+        } catch (NumberFormatException e) {
+            return "invalid credit score format";
+        }
+        if (!Client.isValidCreditScore(creditScore)) {
+            return "invalid credit score, must be between 0 and 100";
+        }
+        return null;
+    }
+
+    // Writes one chunk in its own transaction; if the database refuses it, every row is reported as rejected.
+    private int flush(List<Client> chunk, List<Long> lineNumbers, List<String> lines, BufferedWriter rejects) throws IOException {
+        try {
+            repository.addAll(chunk);
+            return chunk.size();
+        } catch (SQLException e) {
+            for (int i = 0; i < lines.size(); i++) {
+                Csv.writeReject(rejects, lineNumbers.get(i), "database error: " + e.getMessage(), lines.get(i));
+            }
+            return 0;
+        }
+    }
+}
@@ -0,0 +1,228 @@
+// Description: Runs the console workflows from a command script instead of the menus.
+// Each non-blank line is one CSV command (lines starting with # are comments):
+//   add-client,name,phone,address,credit_score
+//   apply-loan,client_id,amount,interest_rate,duration_months
+//   approve,loan_id            reject,loan_id
+//   pay,loan_id,amount[,yyyy-MM-dd]
+//   find-client,client_id      find-loan,loan_id
+//   client-loans,client_id     payment-history,loan_id
+//   loan-history,loan_id
+//   report,portfolio|collection|detailed
+// Every command prints one line, "ok <command> key=value ..." or "error line N: reason",
+// so a script's output can be diffed or parsed. A refused command does not stop the script.
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.sql.SQLException;
+import java.time.LocalDate;
+import java.time.format.DateTimeParseException;
+import java.util.Date;
+import java.util.List;
+
+class CommandScriptStats {
+    private final long commands;
+    private final long succeeded;
+    private final long failed;
+    private final long elapsedNanos;
+
+    CommandScriptStats(long commands, long succeeded, long failed, long elapsedNanos) {
+        this.commands = commands;
+        this.succeeded = succeeded;
+        this.failed = failed;
+        this.elapsedNanos = elapsedNanos;
+    }
+
+    // Getters
+    public long getCommands() { return commands; }
+    public long getSucceeded() { return succeeded; }
+    public long getFailed() { return failed; }
+    public long getElapsedNanos() { return elapsedNanos; }
+
+    @Override
+    public String toString() {
+        return String.format("%d commands, %d ok, %d failed in %.1f ms",
+                commands, succeeded, failed, elapsedNanos / 1e6);
+    }
+}
+
+class CommandScript {
+    private final Operations operations;
+    private final PrintStream out;
+
+    CommandScript(Operations operations, PrintStream out) {
+        this.operations = operations;
+        this.out = out;
+    }
+
+    CommandScriptStats run(BufferedReader script) throws IOException {
+        long start = System.nanoTime();
+        long lineNumber = 0;
+        long commands = 0;
+        long failed = 0;
+        String line;
+        while ((line = script.readLine()) != null) {
+            lineNumber++;
+            String trimmed = line.trim();
+            if (trimmed.isEmpty() || trimmed.startsWith("#")) {
+                continue;
+            }
+            commands++;
+            try {
+                out.println(execute(Csv.parseLine(trimmed)));
+            } catch (OperationRejected | IllegalArgumentException e) {
+                out.println("error line " + lineNumber + ": " + e.getMessage());
+                failed++;
+            } catch (SQLException e) {
+                out.println("error line " + lineNumber + ": database error: " + e.getMessage());
+                failed++;
+            }
+        }
+        return new CommandScriptStats(commands, commands - failed, failed, System.nanoTime() - start);
+    }
+
+    private String execute(List<String> fields) throws SQLException, OperationRejected {
+        String command = fields.get(0).trim().toLowerCase();
+        switch (command) {
+            case "add-client": {
+                expectFields(fields, 5, "add-client,name,phone,address,credit_score");
+                Client client = operations.addClient(fields.get(1).trim(), fields.get(2).trim(), fields.get(3).trim(),
+                        parseDouble(fields.get(4), "credit_score"));
+                return "ok add-client client=" + client.getId();
+            }
+            case "apply-loan": {
+                expectFields(fields, 5, "apply-loan,client_id,amount,interest_rate,duration_months");
+                Loan loan = operations.applyForLoan(parseInt(fields.get(1), "client_id"), parseMoney(fields.get(2)),
+                        parseDouble(fields.get(3), "interest_rate"), parseInt(fields.get(4), "duration_months"));
+                return "ok apply-loan loan=" + loan.getLoanId() + " client=" + loan.getClientId() + " status=" + loan.getStatus();
+            }
+            case "approve":
+            case "reject": {
+                expectFields(fields, 2, command + ",loan_id");
+                Loan loan = operations.decideLoan(parseInt(fields.get(1), "loan_id"), command.equals("approve"));
+                return "ok " + command + " loan=" + loan.getLoanId() + " status=" + loan.getStatus();
+            }
+            case "pay": {
+                if (fields.size() != 3 && fields.size() != 4) {
+                    throw new IllegalArgumentException("expected pay,loan_id,amount[,yyyy-MM-dd]");
+                }
+                Date paymentDate = fields.size() == 4 && !fields.get(3).isBlank() ? parseDate(fields.get(3)) : new Date();
+                Loan loan = operations.pay(parseInt(fields.get(1), "loan_id"), parseMoney(fields.get(2)), paymentDate);
+                return "ok pay loan=" + loan.getLoanId() + " paid=" + Money.format(loan.getPaidCents())
+                        + " outstanding=" + Money.format(loan.calculateOutstandingBalanceCents()) + " status=" + loan.getStatus();
+            }
+            case "find-client": {
+                expectFields(fields, 2, "find-client,client_id");
+                Client client = operations.findClient(parseInt(fields.get(1), "client_id"));
+                return "ok find-client client=" + client.getId() + " name=" + quote(client.getName())
+                        + " credit_score=" + client.getCreditScore();
+            }
+            case "find-loan": {
+                expectFields(fields, 2, "find-loan,loan_id");
+                Loan loan = operations.findLoan(parseInt(fields.get(1), "loan_id"));
+                return "ok find-loan loan=" + loan.getLoanId() + " client=" + loan.getClientId()
+                        + " amount=" + Money.format(loan.getAmountCents()) + " paid=" + Money.format(loan.getPaidCents())
+                        + " status=" + loan.getStatus();
+            }
+            case "client-loans": {
+                expectFields(fields, 2, "client-loans,client_id");
+                List<Loan> loans = operations.clientLoans(parseInt(fields.get(1), "client_id"));
+                long outstanding = 0;
+                for (Loan loan : loans) {
+                    if (loan.getStatus().equals("APPROVED")) {
+                        outstanding += loan.calculateOutstandingBalanceCents();
+                    }
+                }
+                return "ok client-loans client=" + fields.get(1).trim() + " loans=" + loans.size()
+                        + " outstanding=" + Money.format(outstanding);
+            }
+            case "payment-history": {
+                expectFields(fields, 2, "payment-history,loan_id");
+                List<Payment> payments = operations.paymentHistory(parseInt(fields.get(1), "loan_id"));
+                long total = 0;
+                for (Payment payment : payments) {
+                    total += payment.getAmountCents();
+                }
+                return "ok payment-history loan=" + fields.get(1).trim() + " payments=" + payments.size()
+                        + " total=" + Money.format(total);
+            }
+            case "loan-history": {
+                expectFields(fields, 2, "loan-history,loan_id");
+                LoanHistory history = operations.loanHistory(parseInt(fields.get(1), "loan_id"));
+                Loan loan = history.current();
+                return "ok loan-history loan=" + history.getLoanId() + " events=" + history.getEntries().size()
+                        + (loan == null ? " status=DELETED" : " status=" + loan.getStatus()
+                        + " paid=" + Money.format(loan.getPaidCents()));
+            }
+            case "report":
+                expectFields(fields, 2, "report,portfolio|collection|detailed");
+                return report(fields.get(1).trim().toLowerCase());
+            default:
+                throw new IllegalArgumentException("unknown command '" + command + "'");
+        }
+    }
+
+    private String report(String name) throws SQLException {
+        switch (name) {
+            case "portfolio": {
+                PortfolioTotals totals = operations.portfolio().combined("APPROVED", "PAID");
+                return "ok report portfolio loans=" + totals.getNumLoans()
+                        + " amount=" + Money.format(totals.getTotalAmountCents())
+                        + " paid=" + Money.format(totals.getTotalPaidCents())
+                        + " outstanding=" + Money.format(totals.getTotalOutstandingCents());
+            }
+            case "collection": {
+                long[] totals = operations.collectionTotals();
+                return "ok report collection payments=" + totals[0] + " amount=" + Money.format(totals[1]);
+            }
+            case "detailed": {
+                long[] totals = operations.clientLoanTotals();
+                return "ok report detailed clients=" + totals[0] + " loans=" + totals[1];
+            }
+            default:
+                throw new IllegalArgumentException("unknown report '" + name + "', expected portfolio, collection or detailed");
+        }
+    }
+
+    private static void expectFields(List<String> fields, int count, String usage) {
+        if (fields.size() != count) {
+            throw new IllegalArgumentException("expected " + usage);
+        }
+    }
+
+    private static int parseInt(String text, String field) {
+        try {
+            return Integer.parseInt(text.trim());
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("invalid " + field + " format");
+        }
+    }
+
+    private static double parseDouble(String text, String field) {
+        try {
+            return Double.parseDouble(text.trim());
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("invalid " + field + " format");
+        }
+    }
+
+    private static long parseMoney(String text) {
+        try {
+            return Money.parse(text);
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("invalid amount format");
+        }
+    }
+
+    private static Date parseDate(String text) {
+        try {
+            return java.sql.Date.valueOf(LocalDate.parse(text.trim()));
+        } catch (DateTimeParseException e) {
+            throw new IllegalArgumentException("invalid payment_date, expected yyyy-MM-dd");
+        }
+    }
+
+    private static String quote(String value) {
+        return "\"" + value.replace("\"", "\"\"") + "\"";
+    }
+}
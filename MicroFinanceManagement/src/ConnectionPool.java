@@ -0,0 +1,495 @@
+// Description: Bounded JDBC connection pool used by MicrofinanceManagement.
+// Connections are opened once and reused, so a teller operation no longer pays
+// for a TCP and authentication handshake with MariaDB on every query.
+
+import javax.sql.DataSource;
+import java.io.PrintWriter;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.SQLFeatureNotSupportedException;
+import java.sql.SQLTransientConnectionException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Properties;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.logging.Logger;
+
+class PoolStats {
+    private final int active;
+    private final int idle;
+    private final int waiting;
+    private final long borrowed;
+    private final long created;
+    private final long evicted;
+    private final long timeouts;
+    private final double avgWaitMillis;
+    private final double maxWaitMillis;
+    private final long statementHits;
+    private final long statementMisses;
+    private final long statementEvictions;
+
+    PoolStats(int active, int idle, int waiting, long borrowed, long created, long evicted, long timeouts,
+              double avgWaitMillis, double maxWaitMillis, long statementHits, long statementMisses,
+              long statementEvictions) {
+        this.active = active;
+        this.idle = idle;
+        this.waiting = waiting;
+        this.borrowed = borrowed;
+        this.created = created;
+        this.evicted = evicted;
+        this.timeouts = timeouts;
+        this.avgWaitMillis = avgWaitMillis;
+        this.maxWaitMillis = maxWaitMillis;
+        this.statementHits = statementHits;
+        this.statementMisses = statementMisses;
+        this.statementEvictions = statementEvictions;
+    }
+
+    // Getters
+    public int getActive() { return active; }
+    public int getIdle() { return idle; }
+    public int getWaiting() { return waiting; }
+    public long getBorrowed() { return borrowed; }
+    public long getCreated() { return created; }
+    public long getEvicted() { return evicted; }
+    public long getTimeouts() { return timeouts; }
+    public double getAvgWaitMillis() { return avgWaitMillis; }
+    public double getMaxWaitMillis() { return maxWaitMillis; }
+    public long getStatementHits() { return statementHits; }
+    public long getStatementMisses() { return statementMisses; }
+    public long getStatementEvictions() { return statementEvictions; }
+
+    public double getStatementHitRatio() {
+        long lookups = statementHits + statementMisses;
+        return lookups == 0 ? 0.0 : statementHits / (double) lookups;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("active=%d, idle=%d, waiting=%d, borrowed=%d, created=%d, evicted=%d, timeouts=%d, " +
+                        "avgWait=%.3fms, maxWait=%.3fms, stmtCache hits=%d misses=%d evictions=%d (%.1f%%)",
+                active, idle, waiting, borrowed, created, evicted, timeouts, avgWaitMillis, maxWaitMillis,
+                statementHits, statementMisses, statementEvictions, getStatementHitRatio() * 100);
+    }
+}
+
+class ConnectionPool implements DataSource {
+    private final String url;
+    private final Properties connectionProperties = new Properties();
+    private final int minSize;
+    private final int maxSize;
+    private final long borrowTimeoutMillis;
+    private final long idleTimeoutMillis;
+    private final long validationBypassMillis; // skip the ping when the connection was used this recently
+    private final int validationTimeoutSeconds;
+    private final int statementCacheSize; // per connection, 0 disables caching
+
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition available = lock.newCondition();
+    private final ArrayDeque<PooledEntry> idle = new ArrayDeque<>(); // LIFO keeps the warmest connections in use
+    private int total; // idle + active + being opened, guarded by lock
+    private int waiting;
+    private boolean closed;
+
+    private final AtomicLong borrowed = new AtomicLong();
+    private final AtomicLong created = new AtomicLong();
+    private final AtomicLong evicted = new AtomicLong();
+    private final AtomicLong timeouts = new AtomicLong();
+    private final AtomicLong totalWaitNanos = new AtomicLong();
+    private final AtomicLong maxWaitNanos = new AtomicLong();
+    private final StatementCacheCounters statementCounters = new StatementCacheCounters();
+
+    private ScheduledExecutorService evictor;
+
+    ConnectionPool(String url, String user, String password, int minSize, int maxSize,
+                   long borrowTimeoutMillis, long idleTimeoutMillis, int statementCacheSize) {
+        if (minSize < 0 || maxSize <= 0 || minSize > maxSize) {
+            throw new IllegalArgumentException("Invalid pool size: min=" + minSize + ", max=" + maxSize);
+        }
+        this.url = url;
+        connectionProperties.setProperty("user", user);
+        connectionProperties.setProperty("password", password);
+        StatementCache.addServerPrepareProperties(url, connectionProperties);
+        this.minSize = minSize;
+        this.maxSize = maxSize;
+        this.borrowTimeoutMillis = borrowTimeoutMillis;
+        this.idleTimeoutMillis = idleTimeoutMillis;
+        this.validationBypassMillis = 500;
+        this.validationTimeoutSeconds = 2;
+        this.statementCacheSize = statementCacheSize;
+    }
+
+    // Opens the minimum number of connections and starts the idle evictor.
+    public void start() throws SQLException {
+        fillToMinimum();
+        long period = Math.max(1000, idleTimeoutMillis / 2);
+        evictor = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "connection-pool-evictor");
+            t.setDaemon(true);
+            return t;
+        });
+        evictor.scheduleWithFixedDelay(this::evictIdle, period, period, TimeUnit.MILLISECONDS);
+    }
+
+    @Override
+    public Connection getConnection() throws SQLException {
+        long start = System.nanoTime();
+        long deadline = start + TimeUnit.MILLISECONDS.toNanos(borrowTimeoutMillis);
+        while (true) {
+            PooledEntry entry = null;
+            boolean create = false;
+            lock.lock();
+            try {
+                while (true) {
+                    if (closed) {
+                        throw new SQLException("Connection pool is closed");
+                    }
+                    entry = idle.pollFirst();
+                    if (entry != null) {
+                        break;
+                    }
+                    if (total < maxSize) {
+                        total++;
+                        create = true;
+                        break;
+                    }
+                    long remaining = deadline - System.nanoTime();
+                    if (remaining <= 0) {
+                        timeouts.incrementAndGet();
+                        throw new SQLTransientConnectionException("Timed out after " + borrowTimeoutMillis +
+                                "ms waiting for a database connection (pool size " + maxSize + ")");
+                    }
+                    waiting++;
+                    try {
+                        available.awaitNanos(remaining);
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                        throw new SQLException("Interrupted while waiting for a database connection", e);
+                    } finally {
+                        waiting--;
+                    }
+                }
+            } finally {
+                lock.unlock();
+            }
+
+            if (create) {
+                try {
+                    entry = new PooledEntry(openPhysical());
+                } catch (SQLException e) {
+                    releaseSlot();
+                    throw e;
+                }
+            } else if (!isUsable(entry)) {
+                destroy(entry);
+                continue;
+            }
+
+            recordWait(System.nanoTime() - start);
+            borrowed.incrementAndGet();
+            return entry.lease();
+        }
+    }
+
+    @Override
+    public Connection getConnection(String username, String password) throws SQLException {
+        throw new SQLFeatureNotSupportedException("Pool is bound to a single set of credentials");
+    }
+
+    public PoolStats getStats() {
+        lock.lock();
+        try {
+            long count = borrowed.get();
+            double avgWait = count == 0 ? 0.0 : totalWaitNanos.get() / (double) count / 1_000_000.0;
+            return new PoolStats(total - idle.size(), idle.size(), waiting, count, created.get(), evicted.get(),
+                    timeouts.get(), avgWait, maxWaitNanos.get() / 1_000_000.0, statementCounters.hits.get(),
+                    statementCounters.misses.get(), statementCounters.evictions.get());
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public void shutdown() {
+        List<PooledEntry> toClose;
+        lock.lock();
+        try {
+            closed = true;
+            toClose = new ArrayList<>(idle);
+            total -= idle.size();
+            idle.clear();
+            available.signalAll();
+        } finally {
+            lock.unlock();
+        }
+        if (evictor != null) {
+            evictor.shutdownNow();
+        }
+        for (PooledEntry entry : toClose) {
+            closeQuietly(entry.physical);
+        }
+    }
+
+    private Connection openPhysical() throws SQLException {
+        Connection conn = DriverManager.getConnection(url, connectionProperties);
+        created.incrementAndGet();
+        return conn;
+    }
+
+    private void fillToMinimum() throws SQLException {
+        while (true) {
+            lock.lock();
+            try {
+                if (closed || total >= minSize) {
+                    return;
+                }
+                total++;
+            } finally {
+                lock.unlock();
+            }
+            PooledEntry entry;
+            try {
+                entry = new PooledEntry(openPhysical());
+            } catch (SQLException e) {
+                releaseSlot();
+                throw e;
+            }
+            giveBack(entry);
+        }
+    }
+
+    private boolean isUsable(PooledEntry entry) {
+        if (System.currentTimeMillis() - entry.lastUsed < validationBypassMillis) {
+            return true;
+        }
+        try {
+            return entry.physical.isValid(validationTimeoutSeconds);
+        } catch (SQLException e) {
+            return false;
+        }
+    }
+
+    private void evictIdle() {
+        List<PooledEntry> expired = new ArrayList<>();
+        lock.lock();
+        try {
+            long now = System.currentTimeMillis();
+            Iterator<PooledEntry> it = idle.descendingIterator(); // oldest entries sit at the tail
+            while (it.hasNext() && total - expired.size() > minSize) {
+                PooledEntry entry = it.next();
+                if (now - entry.lastUsed >= idleTimeoutMillis) {
+                    it.remove();
+                    expired.add(entry);
+                }
+            }
+            total -= expired.size();
+        } finally {
+            lock.unlock();
+        }
+        for (PooledEntry entry : expired) {
+            closeQuietly(entry.physical);
+            evicted.incrementAndGet();
+        }
+        try {
+            fillToMinimum();
+        } catch (SQLException e) {
+            System.err.println("Connection pool refill failed: " + e.getMessage());
+        }
+    }
+
+    private void giveBack(PooledEntry entry) {
+        entry.lastUsed = System.currentTimeMillis();
+        lock.lock();
+        try {
+            if (closed) {
+                total--;
+            } else {
+                idle.addFirst(entry);
+                available.signal();
+                return;
+            }
+        } finally {
+            lock.unlock();
+        }
+        closeQuietly(entry.physical);
+    }
+
+    private void destroy(PooledEntry entry) {
+        closeQuietly(entry.physical);
+        releaseSlot();
+    }
+
+    private void releaseSlot() {
+        lock.lock();
+        try {
+            total--;
+            available.signal();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void recordWait(long nanos) {
+        totalWaitNanos.addAndGet(nanos);
+        long max;
+        while (nanos > (max = maxWaitNanos.get())) {
+            if (maxWaitNanos.compareAndSet(max, nanos)) {
+                break;
+            }
+        }
+    }
+
+    private static void closeQuietly(Connection conn) {
+        try {
+            conn.close();
+        } catch (SQLException ignored) {
+            // connection is being discarded anyway
+        }
+    }
+
+    // A physical connection owned by the pool; each borrow hands out a fresh proxy
+    // whose close() returns the physical connection instead of closing it.
+    private final class PooledEntry {
+        private final Connection physical;
+        private final StatementCache statements = new StatementCache(statementCacheSize, statementCounters);
+        private volatile long lastUsed = System.currentTimeMillis();
+
+        PooledEntry(Connection physical) {
+            this.physical = physical;
+        }
+
+        Connection lease() {
+            return (Connection) Proxy.newProxyInstance(Connection.class.getClassLoader(),
+                    new Class<?>[]{Connection.class}, new LeaseHandler(this));
+        }
+    }
+
+    private final class LeaseHandler implements InvocationHandler {
+        private final PooledEntry entry;
+        private boolean released;
+        private boolean broken;
+
+        LeaseHandler(PooledEntry entry) {
+            this.entry = entry;
+        }
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            switch (method.getName()) {
+                case "close":
+                    release();
+                    return null;
+                case "isClosed":
+                    return released || entry.physical.isClosed();
+                case "prepareStatement":
+                    if (!released && isCacheable(method)) {
+                        return prepareCached((Connection) proxy, args);
+                    }
+                    break;
+                case "unwrap":
+                    if (((Class<?>) args[0]).isInstance(proxy)) {
+                        return proxy;
+                    }
+                    break;
+                case "equals":
+                    return proxy == args[0];
+                case "hashCode":
+                    return System.identityHashCode(proxy);
+                case "toString":
+                    return "Pooled[" + entry.physical + "]";
+                default:
+                    break;
+            }
+            if (released) {
+                throw new SQLException("Connection has already been returned to the pool");
+            }
+            try {
+                return method.invoke(entry.physical, args);
+            } catch (InvocationTargetException e) {
+                Throwable cause = e.getCause();
+                if (cause instanceof SQLException) {
+                    checkBroken((SQLException) cause);
+                }
+                throw cause;
+            }
+        }
+
+        // prepareStatement(sql) and prepareStatement(sql, autoGeneratedKeys)
+        private boolean isCacheable(Method method) {
+            Class<?>[] params = method.getParameterTypes();
+            return params.length == 1 || (params.length == 2 && params[1] == int.class);
+        }
+
+        private PreparedStatement prepareCached(Connection proxy, Object[] args) throws SQLException {
+            String sql = (String) args[0];
+            try {
+                if (args.length == 1) {
+                    return entry.statements.prepare(proxy, sql, () -> entry.physical.prepareStatement(sql));
+                }
+                int keys = (Integer) args[1];
+                return entry.statements.prepare(proxy, sql + "#keys=" + keys,
+                        () -> entry.physical.prepareStatement(sql, keys));
+            } catch (SQLException e) {
+                checkBroken(e);
+                throw e;
+            }
+        }
+
+        private void checkBroken(SQLException e) {
+            String state = e.getSQLState();
+            // SQLState class 08 means the link itself is gone; never hand it out again
+            if (state != null && state.startsWith("08")) {
+                broken = true;
+            }
+        }
+
+        private void release() {
+            if (released) {
+                return;
+            }
+            released = true;
+            entry.statements.releaseAll();
+            try {
+                if (!broken && !entry.physical.getAutoCommit()) {
+                    entry.physical.rollback();
+                    entry.physical.setAutoCommit(true);
+                }
+            } catch (SQLException e) {
+                broken = true;
+            }
+            if (broken) {
+                destroy(entry);
+            } else {
+                giveBack(entry);
+            }
+        }
+    }
+
+    // Unused DataSource plumbing
+    @Override public PrintWriter getLogWriter() { return null; }
+    @Override public void setLogWriter(PrintWriter out) { }
+    @Override public void setLoginTimeout(int seconds) { }
+    @Override public int getLoginTimeout() { return 0; }
+    @Override public Logger getParentLogger() throws SQLFeatureNotSupportedException {
+        throw new SQLFeatureNotSupportedException();
+    }
+    @Override public <T> T unwrap(Class<T> iface) throws SQLException {
+        if (iface.isInstance(this)) {
+            return iface.cast(this);
+        }
+        throw new SQLException("Not a wrapper for " + iface.getName());
+    }
+    @Override public boolean isWrapperFor(Class<?> iface) { return iface.isInstance(this); }
+}
@@ -0,0 +1,72 @@
+// Description: Minimal RFC 4180 style CSV helpers for the bulk import/export tools.
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+final class Csv {
+    private Csv() {
+    }
+
+    // Splits one line into fields; double quotes may wrap a field and "" escapes a quote inside it.
+    static List<String> parseLine(String line) {
+        List<String> fields = new ArrayList<>();
+        StringBuilder field = new StringBuilder();
+        boolean quoted = false;
+        for (int i = 0; i < line.length(); i++) {
+            char c = line.charAt(i);
+            if (quoted) {
+                if (c == '"') {
+                    if (i + 1 < line.length() && line.charAt(i + 1) == '"') {
+                        field.append('"');
+                        i++;
+                    } else {
+                        quoted = false;
+                    }
+                } else {
+                    field.append(c);
+                }
+            } else if (c == '"') {
+                quoted = true;
+            } else if (c == ',') {
+                fields.add(field.toString());
+                field.setLength(0);
+            } else {
+                field.append(c);
+            }
+        }
+        fields.add(field.toString());
+        return fields;
+    }
+
+    static Path rejectsFileFor(Path inputFile) {
+        return inputFile.resolveSibling(inputFile.getFileName() + ".rejected.csv");
+    }
+
+    // Rejected-row side files share one layout: source line number, reason, original row.
+    static void writeRejectHeader(BufferedWriter rejects) throws IOException {
+        rejects.write("line,reason,row");
+        rejects.newLine();
+    }
+
+    static void writeReject(BufferedWriter rejects, long lineNumber, String reason, String row) throws IOException {
+        rejects.write(Long.toString(lineNumber));
+        rejects.write(',');
+        rejects.write(escape(reason));
+        rejects.write(',');
+        rejects.write(escape(row));
+        rejects.newLine();
+    }
+
+    static String escape(String field) {
+        if (field == null) {
+            return "";
+        }
+        if (field.indexOf(',') < 0 && field.indexOf('"') < 0 && field.indexOf('\n') < 0 && field.indexOf('\r') < 0) {
+            return field;
+        }
+        return '"' + field.replace("\"", "\"\"") + '"';
+    }
+}
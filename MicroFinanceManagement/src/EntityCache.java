@@ -0,0 +1,403 @@
+// Description: Bounded read-through cache for Client and Loan rows.
+// The approve/edit/delete/payment workflows look the same ids up several times in a
+// row; the caching repositories below answer repeat findById calls from memory and
+// drop an entry whenever a write goes through the repository that owns that row.
+// Entries also expire after a TTL so changes made by another process are picked up.
+
+import java.sql.SQLException;
+import java.util.Date;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Predicate;
+import java.util.function.UnaryOperator;
+
+class CacheStats {
+    private final int size;
+    private final long hits;
+    private final long misses;
+    private final long evictions;
+    private final long expirations;
+    private final long invalidations;
+
+    CacheStats(int size, long hits, long misses, long evictions, long expirations, long invalidations) {
+        this.size = size;
+        this.hits = hits;
+        this.misses = misses;
+        this.evictions = evictions;
+        this.expirations = expirations;
+        this.invalidations = invalidations;
+    }
+
+    // Getters
+    public int getSize() { return size; }
+    public long getHits() { return hits; }
+    public long getMisses() { return misses; }
+    public long getEvictions() { return evictions; }
+    public long getExpirations() { return expirations; }
+    public long getInvalidations() { return invalidations; }
+
+    public double getHitRatio() {
+        long lookups = hits + misses;
+        return lookups == 0 ? 0.0 : hits / (double) lookups;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("size=%d, hits=%d, misses=%d, hitRatio=%.1f%%, evictions=%d, expired=%d, invalidated=%d",
+                size, hits, misses, getHitRatio() * 100, evictions, expirations, invalidations);
+    }
+}
+
+class EntityCache<V> {
+    interface Loader<V> {
+        V load(int id) throws SQLException;
+    }
+
+    private static final class Entry<V> {
+        final V value;
+        final long expiresAt;
+
+        Entry(V value, long expiresAt) {
+            this.value = value;
+            this.expiresAt = expiresAt;
+        }
+    }
+
+    private final int maxSize;
+    private final long ttlNanos;
+    // Entities are mutable (Loan has setters), so callers only ever see private copies
+    private final UnaryOperator<V> copier;
+    private final LinkedHashMap<Integer, Entry<V>> entries;
+    // Bumped by every invalidation; a load that raced with one is not stored, so a value read
+    // before a write can never be cached after that write's invalidation
+    private long generation;
+    private long hits;
+    private long misses;
+    private long evictions;
+    private long expirations;
+    private long invalidations;
+
+    EntityCache(int maxSize, long ttlMillis, UnaryOperator<V> copier) {
+        if (maxSize <= 0 || ttlMillis <= 0) {
+            throw new IllegalArgumentException("Cache size and TTL must be positive");
+        }
+        this.maxSize = maxSize;
+        this.ttlNanos = ttlMillis * 1_000_000L;
+        this.copier = copier;
+        this.entries = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Integer, Entry<V>> eldest) {
+                if (size() <= EntityCache.this.maxSize) {
+                    return false;
+                }
+                evictions++;
+                return true;
+            }
+        };
+    }
+
+    V get(int id, Loader<V> loader) throws SQLException {
+        long loadGeneration;
+        synchronized (this) {
+            Entry<V> entry = entries.get(id);
+            if (entry != null) {
+                if (System.nanoTime() - entry.expiresAt < 0) {
+                    hits++;
+                    return copier.apply(entry.value);
+                }
+                entries.remove(id);
+                expirations++;
+            }
+            misses++;
+            loadGeneration = generation;
+        }
+        // Load outside the lock so one slow query does not stall every other lookup
+        V loaded = loader.load(id);
+        if (loaded == null) {
+            return null;
+        }
+        V cached = copier.apply(loaded);
+        synchronized (this) {
+            if (generation == loadGeneration) {
+                entries.put(id, new Entry<>(cached, System.nanoTime() + ttlNanos));
+            }
+        }
+        return loaded;
+    }
+
+    synchronized void invalidate(int id) {
+        generation++;
+        if (entries.remove(id) != null) {
+            invalidations++;
+        }
+    }
+
+    synchronized void invalidateIf(Predicate<V> stale) {
+        generation++;
+        Iterator<Entry<V>> it = entries.values().iterator();
+        while (it.hasNext()) {
+            if (stale.test(it.next().value)) {
+                it.remove();
+                invalidations++;
+            }
+        }
+    }
+
+    synchronized CacheStats getStats() {
+        return new CacheStats(entries.size(), hits, misses, evictions, expirations, invalidations);
+    }
+}
+
+class CachingClientRepository implements ClientRepository {
+    private final ClientRepository delegate;
+    private final EntityCache<Client> clients;
+    private final EntityCache<Loan> loans;
+
+    CachingClientRepository(ClientRepository delegate, EntityCache<Client> clients, EntityCache<Loan> loans) {
+        this.delegate = delegate;
+        this.clients = clients;
+        this.loans = loans;
+    }
+
+    @Override
+    public Client add(String name, String phone, String address, double creditScore) throws SQLException {
+        return delegate.add(name, phone, address, creditScore);
+    }
+
+    @Override
+    public void addAll(List<Client> batch) throws SQLException {
+        delegate.addAll(batch);
+    }
+
+    @Override
+    public Client findById(int id) throws SQLException {
+        return clients.get(id, delegate::findById);
+    }
+
+    @Override
+    public List<Client> findAll() throws SQLException {
+        return delegate.findAll();
+    }
+
+    @Override
+    public List<Client> findPage(int afterId, int limit) throws SQLException {
+        return delegate.findPage(afterId, limit);
+    }
+
+    @Override
+    public List<Client> findPageBefore(int beforeId, int limit) throws SQLException {
+        return delegate.findPageBefore(beforeId, limit);
+    }
+
+    @Override
+    public void streamAll(RowHandler<Client> handler) throws SQLException {
+        delegate.streamAll(handler);
+    }
+
+    @Override
+    public boolean update(Client client) throws SQLException {
+        try {
+            return delegate.update(client);
+        } finally {
+            clients.invalidate(client.getId());
+            // Cached loans carry the client's name for display
+            loans.invalidateIf(loan -> loan.getClientId() == client.getId());
+        }
+    }
+
+    @Override
+    public boolean delete(int id) throws SQLException {
+        try {
+            return delegate.delete(id);
+        } finally {
+            clients.invalidate(id);
+        }
+    }
+
+    @Override
+    public boolean isEmpty() throws SQLException {
+        return delegate.isEmpty();
+    }
+}
+
+class CachingLoanRepository implements LoanRepository {
+    private final LoanRepository delegate;
+    private final EntityCache<Loan> loans;
+
+    CachingLoanRepository(LoanRepository delegate, EntityCache<Loan> loans) {
+        this.delegate = delegate;
+        this.loans = loans;
+    }
+
+    static Loan copy(Loan loan) {
+        return new Loan(loan.getLoanId(), loan.getClientId(), loan.getAmountCents(), loan.getInterestRate(),
+                loan.getDurationMonths(), loan.getStatus(), new Date(loan.getIssueDate().getTime()),
+                loan.getPaidCents(), loan.getClientName());
+    }
+
+    @Override
+    public Loan add(int clientId, long amountCents, double interestRate, int durationMonths, String status, Date issueDate) throws SQLException {
+        return delegate.add(clientId, amountCents, interestRate, durationMonths, status, issueDate);
+    }
+
+    @Override
+    public Loan addPending(int clientId, long amountCents, double interestRate, int durationMonths, Date issueDate) throws SQLException {
+        return delegate.addPending(clientId, amountCents, interestRate, durationMonths, issueDate);
+    }
+
+    @Override
+    public Loan findById(int loanId) throws SQLException {
+        return loans.get(loanId, delegate::findById);
+    }
+
+    @Override
+    public List<Loan> findAll() throws SQLException {
+        return delegate.findAll();
+    }
+
+    @Override
+    public List<Loan> findPage(int afterLoanId, int limit) throws SQLException {
+        return delegate.findPage(afterLoanId, limit);
+    }
+
+    @Override
+    public List<Loan> findPageBefore(int beforeLoanId, int limit) throws SQLException {
+        return delegate.findPageBefore(beforeLoanId, limit);
+    }
+
+    @Override
+    public void streamAll(RowHandler<Loan> handler) throws SQLException {
+        delegate.streamAll(handler);
+    }
+
+    @Override
+    public List<Loan> findByClientId(int clientId) throws SQLException {
+        return delegate.findByClientId(clientId);
+    }
+
+    @Override
+    public boolean update(int loanId, long amountCents, double interestRate, int durationMonths, String status) throws SQLException {
+        try {
+            return delegate.update(loanId, amountCents, interestRate, durationMonths, status);
+        } finally {
+            loans.invalidate(loanId);
+        }
+    }
+
+    @Override
+    public boolean updateStatus(int loanId, String status) throws SQLException {
+        try {
+            return delegate.updateStatus(loanId, status);
+        } finally {
+            loans.invalidate(loanId);
+        }
+    }
+
+    @Override
+    public boolean decide(int loanId, String status) throws SQLException {
+        try {
+            return delegate.decide(loanId, status);
+        } finally {
+            loans.invalidate(loanId);
+        }
+    }
+
+    @Override
+    public boolean delete(int loanId) throws SQLException {
+        try {
+            return delegate.delete(loanId);
+        } finally {
+            loans.invalidate(loanId);
+        }
+    }
+
+    @Override
+    public boolean hasLoans(int clientId) throws SQLException {
+        return delegate.hasLoans(clientId);
+    }
+
+    @Override
+    public boolean hasPendingLoans(int clientId) throws SQLException {
+        return delegate.hasPendingLoans(clientId);
+    }
+
+    @Override
+    public LoanTotals totalsByStatus(String... statuses) throws SQLException {
+        return delegate.totalsByStatus(statuses);
+    }
+
+    @Override
+    public void forEachClientLoan(ClientLoanHandler handler) throws SQLException {
+        delegate.forEachClientLoan(handler);
+    }
+
+    @Override
+    public void forEachClientLoan(int fromClientId, int toClientId, ClientLoanHandler handler) throws SQLException {
+        delegate.forEachClientLoan(fromClientId, toClientId, handler);
+    }
+}
+
+// Payments change the loan row (paid amount, PAID status), so posting one drops that loan from the cache.
+class CachingPaymentRepository implements PaymentRepository {
+    private final PaymentRepository delegate;
+    private final EntityCache<Loan> loans;
+
+    CachingPaymentRepository(PaymentRepository delegate, EntityCache<Loan> loans) {
+        this.delegate = delegate;
+        this.loans = loans;
+    }
+
+    @Override
+    public PaymentPosting postPayment(int loanId, long amountCents, Date paymentDate) throws SQLException {
+        try {
+            return delegate.postPayment(loanId, amountCents, paymentDate);
+        } finally {
+            loans.invalidate(loanId);
+        }
+    }
+
+    @Override
+    public PaymentBatchResult postBatch(Map<Integer, List<PaymentRequest>> paymentsByLoan) throws SQLException {
+        try {
+            return delegate.postBatch(paymentsByLoan);
+        } finally {
+            loans.invalidateIf(loan -> paymentsByLoan.containsKey(loan.getLoanId()));
+        }
+    }
+
+    @Override
+    public PaymentBatchResult postJournalBatch(Map<Integer, List<PaymentRequest>> paymentsByLoan, long throughSequence) throws SQLException {
+        try {
+            return delegate.postJournalBatch(paymentsByLoan, throughSequence);
+        } finally {
+            loans.invalidateIf(loan -> paymentsByLoan.containsKey(loan.getLoanId()));
+        }
+    }
+
+    @Override
+    public long appliedJournalSequence() throws SQLException {
+        return delegate.appliedJournalSequence();
+    }
+
+    @Override
+    public List<Payment> findByLoanId(int loanId) throws SQLException {
+        return delegate.findByLoanId(loanId);
+    }
+
+    @Override
+    public List<Payment> findAll() throws SQLException {
+        return delegate.findAll();
+    }
+
+    @Override
+    public void streamAll(RowHandler<Payment> handler) throws SQLException {
+        delegate.streamAll(handler);
+    }
+
+    @Override
+    public boolean hasPayments(int loanId) throws SQLException {
+        return delegate.hasPayments(loanId);
+    }
+}
@@ -0,0 +1,695 @@
+// Description: Server mode. Exposes the teller operations (clients, loans, payments) and the report
+// totals as a small HTTP/JSON API on the JDK's built-in server, so many tellers can work against
+// one running system at once. Every exchange runs on its own virtual thread: a request waiting
+// for a database connection or a query parks cheaply instead of holding a platform thread, so
+// thousands of open sessions cost little more than the pool connections they are waiting for.
+// Requests go through Operations, so the same rules, messages and metrics apply as at the console.
+//
+//   GET  /health                         GET  /metrics (text)
+//   POST /clients                        {"name","phone","address","credit_score"}
+//   GET  /clients/{id}                   GET  /clients/{id}/loans
+//   POST /loans                          {"client_id","amount","interest_rate","duration_months"}
+//   GET  /loans/{id}                     POST /loans/{id}/approve, POST /loans/{id}/reject
+//   POST /loans/{id}/payments            {"amount"[,"payment_date":"yyyy-MM-dd"]}
+//   GET  /loans/{id}/payments            GET  /loans/{id}/history
+//   GET  /reports/portfolio              GET  /reports/collection      GET  /reports/detailed
+//
+// Amounts are decimal text or numbers ("1500.50"), dates yyyy-MM-dd. Errors come back as
+// {"error": "..."}: 400 malformed request, 404 unknown client/loan or path, 405 wrong method (with Allow),
+// 422 refused by a business rule, 503 (with Retry-After) a retryable database state such as no
+// connection free in time or a loan waiting on its journaled payments, 500 database or internal error.
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.sql.SQLException;
+import java.sql.SQLTransientException;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.ZoneId;
+import java.time.format.DateTimeParseException;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+// Builds one JSON document in a StringBuilder; fields and elements get their commas automatically
+final class JsonText {
+    private static final ZoneId ZONE = ZoneId.systemDefault();
+
+    private final StringBuilder text = new StringBuilder(256);
+    private boolean first = true;
+
+    JsonText beginObject() {
+        separate();
+        text.append('{');
+        first = true;
+        return this;
+    }
+
+    JsonText endObject() {
+        text.append('}');
+        first = false;
+        return this;
+    }
+
+    JsonText beginArray(String name) {
+        name(name);
+        text.append('[');
+        first = true;
+        return this;
+    }
+
+    JsonText endArray() {
+        text.append(']');
+        first = false;
+        return this;
+    }
+
+    JsonText field(String name, String value) {
+        name(name);
+        if (value == null) {
+            text.append("null");
+        } else {
+            appendString(text, value);
+        }
+        return this;
+    }
+
+    JsonText field(String name, long value) {
+        name(name);
+        text.append(value);
+        return this;
+    }
+
+    // NaN and infinities are not valid JSON and go out as null
+    JsonText field(String name, double value) {
+        name(name);
+        if (Double.isNaN(value) || Double.isInfinite(value)) {
+            text.append("null");
+        } else {
+            text.append(value);
+        }
+        return this;
+    }
+
+    // Plain decimal text, like the exports: "1234.50"
+    JsonText money(String name, long cents) {
+        name(name);
+        Money.appendTo(text.append('"'), cents).append('"');
+        return this;
+    }
+
+    // yyyy-MM-dd in the default time zone; getTime because java.sql.Date does not support toInstant
+    JsonText date(String name, Date date) {
+        if (date == null) {
+            return field(name, (String) null);
+        }
+        name(name);
+        text.append('"').append(LocalDate.ofInstant(Instant.ofEpochMilli(date.getTime()), ZONE)).append('"');
+        return this;
+    }
+
+    @Override
+    public String toString() {
+        return text.toString();
+    }
+
+    private void name(String name) {
+        separate();
+        appendString(text, name);
+        text.append(':');
+    }
+
+    private void separate() {
+        if (!first) {
+            text.append(',');
+        }
+        first = false;
+    }
+
+    static void appendString(StringBuilder text, String value) {
+        text.append('"');
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            switch (c) {
+                case '"': text.append("\\\""); break;
+                case '\\': text.append("\\\\"); break;
+                case '\n': text.append("\\n"); break;
+                case '\r': text.append("\\r"); break;
+                case '\t': text.append("\\t"); break;
+                default:
+                    if (c < 0x20) {
+                        text.append("\\u00");
+                        text.append(Character.forDigit(c >> 4, 16)).append(Character.forDigit(c & 0xf, 16));
+                    } else {
+                        text.append(c);
+                    }
+            }
+        }
+        text.append('"');
+    }
+}
+
+// A request body: one flat JSON object of strings, numbers, booleans and nulls. Numbers are kept as
+// their source text, so an amount never goes through double. Anything else is IllegalArgumentException.
+final class JsonRequest {
+    private final Map<String, String> values = new HashMap<>();
+    private final String source;
+    private int pos;
+
+    private JsonRequest(String source) {
+        this.source = source;
+    }
+
+    static JsonRequest parse(String source) {
+        JsonRequest request = new JsonRequest(source);
+        request.parseObject();
+        return request;
+    }
+
+    String text(String name) {
+        String value = values.get(name);
+        if (value == null || value.isBlank()) {
+            throw new IllegalArgumentException(name + " is required");
+        }
+        return value;
+    }
+
+    int integer(String name) {
+        try {
+            return Integer.parseInt(text(name).trim());
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("invalid " + name + " format");
+        }
+    }
+
+    double decimal(String name) {
+        try {
+            double value = Double.parseDouble(text(name).trim());
+            if (Double.isNaN(value) || Double.isInfinite(value)) {
+                throw new NumberFormatException();
+            }
+            return value;
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("invalid " + name + " format");
+        }
+    }
+
+    long money(String name) {
+        try {
+            return Money.parse(text(name));
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("invalid " + name + " format");
+        }
+    }
+
+    Date optionalDate(String name) {
+        String value = values.get(name);
+        if (value == null || value.isBlank()) {
+            return null;
+        }
+        try {
+            return java.sql.Date.valueOf(LocalDate.parse(value.trim()));
+        } catch (DateTimeParseException e) {
+            throw new IllegalArgumentException("invalid " + name + ", expected yyyy-MM-dd");
+        }
+    }
+
+    private void parseObject() {
+        expect('{');
+        skipSpace();
+        if (peek() == '}') {
+            pos++;
+        } else {
+            while (true) {
+                skipSpace();
+                String name = parseString();
+                expect(':');
+                values.put(name, parseValue());
+                skipSpace();
+                char c = next();
+                if (c == '}') {
+                    break;
+                }
+                if (c != ',') {
+                    throw malformed();
+                }
+            }
+        }
+        skipSpace();
+        if (pos != source.length()) {
+            throw malformed();
+        }
+    }
+
+    private String parseValue() {
+        skipSpace();
+        char c = peek();
+        if (c == '"') {
+            return parseString();
+        }
+        int start = pos;
+        while (pos < source.length() && "+-.0123456789eEtrufalsn".indexOf(source.charAt(pos)) >= 0) {
+            pos++;
+        }
+        String token = source.substring(start, pos);
+        switch (token) {
+            case "null": return null;
+            case "true":
+            case "false": return token;
+            default:
+                if (token.isEmpty() || !Character.isDigit(token.charAt(token.length() - 1))) {
+                    throw new IllegalArgumentException("request body must be a flat JSON object");
+                }
+                return token;
+        }
+    }
+
+    private String parseString() {
+        expect('"');
+        StringBuilder value = new StringBuilder();
+        while (true) {
+            char c = next();
+            if (c == '"') {
+                return value.toString();
+            }
+            if (c != '\\') {
+                value.append(c);
+                continue;
+            }
+            char escaped = next();
+            switch (escaped) {
+                case '"': case '\\': case '/': value.append(escaped); break;
+                case 'b': value.append('\b'); break;
+                case 'f': value.append('\f'); break;
+                case 'n': value.append('\n'); break;
+                case 'r': value.append('\r'); break;
+                case 't': value.append('\t'); break;
+                case 'u':
+                    if (pos + 4 > source.length()) {
+                        throw malformed();
+                    }
+                    try {
+                        value.append((char) Integer.parseInt(source.substring(pos, pos + 4), 16));
+                    } catch (NumberFormatException e) {
+                        throw malformed();
+                    }
+                    pos += 4;
+                    break;
+                default:
+                    throw malformed();
+            }
+        }
+    }
+
+    private void expect(char expected) {
+        skipSpace();
+        if (next() != expected) {
+            throw malformed();
+        }
+    }
+
+    private char next() {
+        if (pos >= source.length()) {
+            throw malformed();
+        }
+        return source.charAt(pos++);
+    }
+
+    private char peek() {
+        if (pos >= source.length()) {
+            throw malformed();
+        }
+        return source.charAt(pos);
+    }
+
+    private void skipSpace() {
+        while (pos < source.length() && Character.isWhitespace(source.charAt(pos))) {
+            pos++;
+        }
+    }
+
+    private IllegalArgumentException malformed() {
+        return new IllegalArgumentException("malformed JSON at offset " + pos);
+    }
+}
+
+// A request that cannot be served as asked; carries the HTTP status to answer with
+class ApiError extends Exception {
+    private static final long serialVersionUID = 1L;
+
+    private final int status;
+    private final String allow; // methods the resource supports, sent in the Allow header of a 405
+
+    ApiError(int status, String message) {
+        this(status, message, null);
+    }
+
+    ApiError(int status, String message, String allow) {
+        super(message, null, false, false);
+        this.status = status;
+        this.allow = allow;
+    }
+
+    public int getStatus() { return status; }
+    public String getAllow() { return allow; }
+}
+
+final class HttpApi implements HttpHandler {
+    static final int DEFAULT_PORT = 8080;
+    static final String DEFAULT_HOST = "127.0.0.1";
+    static final int DEFAULT_BACKLOG = 1024;
+    private static final int MAX_BODY_BYTES = 64 * 1024;
+    private static final int STOP_DRAIN_SECONDS = 5;
+
+    private final Operations operations;
+    private final OperationTimer requestTimer = Metrics.timer("http.request");
+    private final AtomicInteger inFlight = new AtomicInteger();
+    private final CountDownLatch stopped = new CountDownLatch(1);
+    private HttpServer server;
+    private ExecutorService threads;
+
+    HttpApi(Operations operations) {
+        this.operations = operations;
+        Metrics.gauge("http.inFlight", inFlight::get);
+    }
+
+    // Binds and starts accepting; backlog is the queue of connections not yet accepted
+    InetSocketAddress start(String host, int port, int backlog) throws IOException {
+        threads = Executors.newThreadPerTaskExecutor(Thread.ofVirtual().name("http-", 1).factory());
+        server = HttpServer.create(new InetSocketAddress(host, port), backlog);
+        server.createContext("/", this);
+        server.setExecutor(threads);
+        server.start();
+        return server.getAddress();
+    }
+
+    // Stops accepting, gives open exchanges a few seconds to finish and releases awaitStop
+    synchronized void stop() {
+        if (server == null || stopped.getCount() == 0) {
+            return;
+        }
+        server.stop(STOP_DRAIN_SECONDS);
+        threads.shutdown();
+        try {
+            threads.awaitTermination(STOP_DRAIN_SECONDS, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        stopped.countDown();
+    }
+
+    // Waits for stop(), at most the timeout when it is positive; true once stopped
+    boolean awaitStop(long timeout, TimeUnit unit) throws InterruptedException {
+        if (timeout <= 0) {
+            stopped.await();
+            return true;
+        }
+        return stopped.await(timeout, unit);
+    }
+
+    @Override
+    public void handle(HttpExchange exchange) {
+        inFlight.incrementAndGet();
+        long started = requestTimer.start();
+        try {
+            String body;
+            int status;
+            try {
+                body = route(exchange.getRequestMethod(), exchange.getRequestURI().getPath().split("/"), exchange);
+                status = creates(exchange.getRequestMethod(), exchange.getRequestURI().getPath()) ? 201 : 200;
+            } catch (ApiError e) {
+                status = e.getStatus();
+                if (e.getAllow() != null) {
+                    exchange.getResponseHeaders().set("Allow", e.getAllow());
+                }
+                body = error(e.getMessage());
+            } catch (EntityNotFound e) {
+                status = 404;
+                body = error(e.getMessage());
+            } catch (OperationRejected e) {
+                status = 422;
+                body = error(e.getMessage());
+            } catch (IllegalArgumentException e) {
+                status = 400;
+                body = error(e.getMessage());
+            } catch (SQLTransientException e) {
+                status = 503;
+                exchange.getResponseHeaders().set("Retry-After", "1");
+                body = error("server busy, try again");
+            } catch (SQLException e) {
+                requestTimer.failed();
+                System.err.println("Database error serving " + exchange.getRequestURI() + ": " + e.getMessage());
+                status = 500;
+                body = error("database error");
+            } catch (RuntimeException e) {
+                // A bug or broken data (e.g. an inconsistent loan history) still gets an answer
+                requestTimer.failed();
+                System.err.println("Unexpected error serving " + exchange.getRequestURI() + ": " + e);
+                status = 500;
+                body = error("internal error");
+            }
+            // Everything is a JSON object except the /metrics text
+            if (body.startsWith("{")) {
+                exchange.getResponseHeaders().set("Content-Type", "application/json; charset=utf-8");
+            } else {
+                exchange.getResponseHeaders().set("Content-Type", "text/plain; charset=utf-8");
+            }
+            byte[] bytes = body.getBytes(StandardCharsets.UTF_8);
+            exchange.sendResponseHeaders(status, bytes.length);
+            try (OutputStream out = exchange.getResponseBody()) {
+                out.write(bytes);
+            }
+        } catch (IOException e) {
+            // The client went away; nothing left to answer
+            requestTimer.failed();
+        } finally {
+            exchange.close();
+            requestTimer.stop(started);
+            inFlight.decrementAndGet();
+        }
+    }
+
+    // path is the request path split on '/', so "/loans/7/payments" is {"", "loans", "7", "payments"}
+    private String route(String method, String[] path, HttpExchange exchange)
+            throws ApiError, IOException, SQLException, OperationRejected {
+        String resource = path.length > 1 ? path[1] : "";
+        switch (resource) {
+            case "health":
+                if (path.length == 2) {
+                    requireMethod(method, "GET");
+                    return new JsonText().beginObject().field("status", "ok").endObject().toString();
+                }
+                break;
+            case "metrics":
+                if (path.length == 2) {
+                    requireMethod(method, "GET");
+                    ByteArrayOutputStream text = new ByteArrayOutputStream();
+                    try (PrintStream out = new PrintStream(text, false, StandardCharsets.UTF_8)) {
+                        Metrics.print(out);
+                    }
+                    return text.toString(StandardCharsets.UTF_8);
+                }
+                break;
+            case "clients":
+                return clients(method, path, exchange);
+            case "loans":
+                return loans(method, path, exchange);
+            case "reports":
+                if (path.length == 3) {
+                    requireMethod(method, "GET");
+                    return report(path[2]);
+                }
+                break;
+            default:
+                break;
+        }
+        throw new ApiError(404, "no such resource");
+    }
+
+    private String clients(String method, String[] path, HttpExchange exchange)
+            throws ApiError, IOException, SQLException, OperationRejected {
+        if (path.length == 2) {
+            requireMethod(method, "POST");
+            JsonRequest request = body(exchange);
+            Client client = operations.addClient(request.text("name"), request.text("phone"),
+                    request.text("address"), request.decimal("credit_score"));
+            return client(new JsonText(), client).toString();
+        }
+        int clientId = id(path[2]);
+        if (path.length == 3) {
+            requireMethod(method, "GET");
+            return client(new JsonText(), operations.findClient(clientId)).toString();
+        }
+        if (path.length == 4 && path[3].equals("loans")) {
+            requireMethod(method, "GET");
+            List<Loan> loans = operations.clientLoans(clientId);
+            JsonText json = new JsonText().beginObject().field("client_id", clientId).beginArray("loans");
+            for (Loan loan : loans) {
+                loan(json, loan);
+            }
+            return json.endArray().endObject().toString();
+        }
+        throw new ApiError(404, "no such resource");
+    }
+
+    private String loans(String method, String[] path, HttpExchange exchange)
+            throws ApiError, IOException, SQLException, OperationRejected {
+        if (path.length == 2) {
+            requireMethod(method, "POST");
+            JsonRequest request = body(exchange);
+            Loan loan = operations.applyForLoan(request.integer("client_id"), request.money("amount"),
+                    request.decimal("interest_rate"), request.integer("duration_months"));
+            return loan(new JsonText(), loan).toString();
+        }
+        int loanId = id(path[2]);
+        if (path.length == 3) {
+            requireMethod(method, "GET");
+            return loan(new JsonText(), operations.findLoan(loanId)).toString();
+        }
+        if (path.length == 4) {
+            switch (path[3]) {
+                case "approve":
+                case "reject":
+                    requireMethod(method, "POST");
+                    return loan(new JsonText(), operations.decideLoan(loanId, path[3].equals("approve"))).toString();
+                case "payments":
+                    if (method.equals("POST")) {
+                        JsonRequest request = body(exchange);
+                        Date paymentDate = request.optionalDate("payment_date");
+                        Loan loan = operations.pay(loanId, request.money("amount"),
+                                paymentDate != null ? paymentDate : new Date());
+                        return loan(new JsonText(), loan).toString();
+                    }
+                    requireMethod(method, "GET");
+                    List<Payment> payments = operations.paymentHistory(loanId);
+                    JsonText json = new JsonText().beginObject().field("loan_id", loanId).beginArray("payments");
+                    for (Payment payment : payments) {
+                        json.beginObject().field("payment_id", payment.getPaymentId())
+                                .money("amount", payment.getAmountCents())
+                                .date("payment_date", payment.getPaymentDate()).endObject();
+                    }
+                    return json.endArray().endObject().toString();
+                case "history":
+                    requireMethod(method, "GET");
+                    return history(operations.loanHistory(loanId));
+                default:
+                    break;
+            }
+        }
+        throw new ApiError(404, "no such resource");
+    }
+
+    // Each ledger event with the loan's status and paid amount after it (null once deleted)
+    private static String history(LoanHistory history) {
+        JsonText json = new JsonText().beginObject().field("loan_id", history.getLoanId()).beginArray("events");
+        for (LoanHistoryEntry entry : history.getEntries()) {
+            LoanEvent event = entry.getEvent();
+            json.beginObject().field("event_id", event.getEventId()).field("type", event.getType().name())
+                    .date("recorded_at", event.getRecordedAt());
+            switch (event.getType()) {
+                case ORIGINATED:
+                case AMENDED:
+                    json.money("amount", event.getAmountCents()).field("interest_rate", event.getInterestRate())
+                            .field("duration_months", event.getDurationMonths());
+                    break;
+                case PAYMENT:
+                    json.money("amount", event.getAmountCents()).date("payment_date", event.getEventDate());
+                    break;
+                default:
+                    break;
+            }
+            Loan loan = entry.getState();
+            json.field("status", loan == null ? null : loan.getStatus());
+            if (loan != null) {
+                json.money("paid", loan.getPaidCents());
+            }
+            json.endObject();
+        }
+        return json.endArray().endObject().toString();
+    }
+
+    private String report(String name) throws ApiError, SQLException {
+        switch (name) {
+            case "portfolio": {
+                PortfolioSnapshot snapshot = operations.portfolio();
+                JsonText json = new JsonText().beginObject().beginArray("by_status");
+                for (PortfolioTotals totals : snapshot.getByStatus()) {
+                    json.beginObject().field("status", totals.getStatus()).field("loans", totals.getNumLoans())
+                            .money("principal", totals.getTotalAmountCents()).money("paid", totals.getTotalPaidCents())
+                            .money("outstanding", totals.getTotalOutstandingCents()).endObject();
+                }
+                return json.endArray().endObject().toString();
+            }
+            case "collection": {
+                long[] totals = operations.collectionTotals();
+                return new JsonText().beginObject().field("payments", totals[0]).money("amount", totals[1])
+                        .endObject().toString();
+            }
+            case "detailed": {
+                long[] totals = operations.clientLoanTotals();
+                return new JsonText().beginObject().field("clients", totals[0]).field("loans", totals[1])
+                        .endObject().toString();
+            }
+            default:
+                throw new ApiError(404, "unknown report '" + name + "', expected portfolio, collection or detailed");
+        }
+    }
+
+    private static JsonText client(JsonText json, Client client) {
+        return json.beginObject().field("client_id", client.getId()).field("name", client.getName())
+                .field("phone", client.getPhone()).field("address", client.getAddress())
+                .field("credit_score", client.getCreditScore()).endObject();
+    }
+
+    private static JsonText loan(JsonText json, Loan loan) {
+        return json.beginObject().field("loan_id", loan.getLoanId()).field("client_id", loan.getClientId())
+                .money("amount", loan.getAmountCents()).field("interest_rate", loan.getInterestRate())
+                .field("duration_months", loan.getDurationMonths()).field("status", loan.getStatus())
+                .date("issue_date", loan.getIssueDate()).money("paid_amount", loan.getPaidCents())
+                .money("outstanding_balance", loan.calculateOutstandingBalanceCents()).endObject();
+    }
+
+    private static String error(String message) {
+        return new JsonText().beginObject().field("error", message).endObject().toString();
+    }
+
+    private static JsonRequest body(HttpExchange exchange) throws ApiError, IOException {
+        byte[] bytes = exchange.getRequestBody().readNBytes(MAX_BODY_BYTES + 1);
+        if (bytes.length > MAX_BODY_BYTES) {
+            throw new ApiError(413, "request body larger than " + MAX_BODY_BYTES + " bytes");
+        }
+        return JsonRequest.parse(new String(bytes, StandardCharsets.UTF_8));
+    }
+
+    // POST /clients, /loans and /loans/{id}/payments write a new row; approve and reject change one
+    private static boolean creates(String method, String path) {
+        return method.equals("POST") && !path.endsWith("/approve") && !path.endsWith("/reject");
+    }
+
+    private static int id(String text) throws ApiError {
+        try {
+            return Integer.parseInt(text);
+        } catch (NumberFormatException e) {
+            throw new ApiError(404, "no such resource");
+        }
+    }
+
+    private static void requireMethod(String method, String allowed) throws ApiError {
+        if (!method.equals(allowed)) {
+            throw new ApiError(405, "use " + allowed, allowed);
+        }
+    }
+}
@@ -0,0 +1,762 @@
+// Description: Concurrent in-memory storage engine for clients, loans and payments.
+// Used for simulation runs and for exercising business logic without MariaDB.
+// Rows live in hash indexes keyed by id, with secondary indexes for loans by
+// client_id and payments by loan_id. The ON DELETE RESTRICT foreign keys and the
+// payment-plus-balance transaction are enforced by doing the check and the write
+// inside ConcurrentHashMap.compute on the parent row, which serializes them with
+// any concurrent change to that same parent. Portfolio totals are adjusted and the
+// loan's ledger events appended inside the same callback, before the new row is installed.
+
+import java.sql.SQLException;
+import java.sql.SQLIntegrityConstraintViolationException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Date;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListSet;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+class InMemoryStorage {
+    private final ConcurrentHashMap<Integer, Client> clients = new ConcurrentHashMap<>();
+    private final ConcurrentHashMap<Integer, LoanRow> loans = new ConcurrentHashMap<>();
+    private final ConcurrentHashMap<Integer, Payment> payments = new ConcurrentHashMap<>();
+    private final ConcurrentHashMap<Integer, Set<Integer>> loansByClient = new ConcurrentHashMap<>();
+    private final ConcurrentHashMap<Integer, List<Payment>> paymentsByLoan = new ConcurrentHashMap<>();
+    private final AtomicInteger nextClientId = new AtomicInteger(1);
+    private final AtomicInteger nextLoanId = new AtomicInteger(1);
+    private final AtomicInteger nextPaymentId = new AtomicInteger(1);
+    private final AtomicLong appliedJournalSequence = new AtomicLong();
+    // Ledger events per loan, appended under the loan's bin so each list is in event order; kept after a delete
+    private final ConcurrentHashMap<Integer, List<LoanEvent>> eventsByLoan = new ConcurrentHashMap<>();
+    private final ConcurrentHashMap<Integer, LoanSnapshot> snapshots = new ConcurrentHashMap<>();
+    private final AtomicLong nextEventId = new AtomicLong(1);
+    // Loan writers hold the read lock around their compute() and serialize on the tally's monitor;
+    // reconcile takes the write lock so no loan row can change halfway through its scan.
+    private final ReentrantReadWriteLock portfolioLock = new ReentrantReadWriteLock();
+    private final PortfolioTally portfolio = new PortfolioTally();
+
+    private final ClientRepository clientRepository = new Clients();
+    private final LoanRepository loanRepository = new Loans();
+    private final PaymentRepository paymentRepository = new Payments();
+    private final PortfolioRepository portfolioRepository = new Portfolio();
+    private final LoanEventRepository loanEventRepository = new LoanEvents();
+    private final SyntheticDataSink dataSink = new Loader();
+
+    public ClientRepository clientRepository() { return clientRepository; }
+    public LoanRepository loanRepository() { return loanRepository; }
+    public PaymentRepository paymentRepository() { return paymentRepository; }
+    public PortfolioRepository portfolioRepository() { return portfolioRepository; }
+    public LoanEventRepository loanEventRepository() { return loanEventRepository; }
+    public SyntheticDataSink dataSink() { return dataSink; }
+
+    // Immutable copy of a loans row; every change installs a new instance so readers never see a torn row.
+    private static final class LoanRow {
+        final int loanId;
+        final int clientId;
+        final long amountCents;
+        final double interestRate;
+        final int durationMonths;
+        final String status;
+        final long issueDate;
+        final long paidCents;
+
+        LoanRow(int loanId, int clientId, long amountCents, double interestRate, int durationMonths,
+                String status, long issueDate, long paidCents) {
+            this.loanId = loanId;
+            this.clientId = clientId;
+            this.amountCents = amountCents;
+            this.interestRate = interestRate;
+            this.durationMonths = durationMonths;
+            this.status = status;
+            this.issueDate = issueDate;
+            this.paidCents = paidCents;
+        }
+
+        LoanRow withTerms(long amountCents, double interestRate, int durationMonths, String status) {
+            return new LoanRow(loanId, clientId, amountCents, interestRate, durationMonths, status, issueDate, paidCents);
+        }
+
+        LoanRow withPaidCents(long paidCents, String status) {
+            return new LoanRow(loanId, clientId, amountCents, interestRate, durationMonths, status, issueDate, paidCents);
+        }
+
+        Loan asLoan() {
+            return new Loan(loanId, clientId, amountCents, interestRate, durationMonths, status, new Date(issueDate), paidCents, null);
+        }
+    }
+
+    // Thrown from inside compute() callbacks, which cannot throw SQLException directly.
+    private static final class ConstraintViolation extends RuntimeException {
+        private static final long serialVersionUID = 1L;
+
+        ConstraintViolation(String message) {
+            super(message, null, false, false);
+        }
+    }
+
+    private Loan toLoan(LoanRow row) {
+        Client owner = clients.get(row.clientId);
+        return new Loan(row.loanId, row.clientId, row.amountCents, row.interestRate, row.durationMonths,
+                row.status, new Date(row.issueDate), row.paidCents, owner == null ? null : owner.getName());
+    }
+
+    // Called from inside the compute() that replaces the row; null stands for "no row" on either side.
+    private LoanRow adjustPortfolio(LoanRow before, LoanRow after) {
+        synchronized (portfolio) {
+            if (before != null) {
+                portfolio.remove(before.asLoan());
+            }
+            if (after != null) {
+                portfolio.add(after.asLoan());
+            }
+        }
+        return after;
+    }
+
+    // Called from inside the compute() that changes the loan, or for a loan no other thread can see yet
+    private void recordEvents(int loanId, List<LoanEvent> events) {
+        List<LoanEvent> history = eventsByLoan.computeIfAbsent(loanId, k -> new ArrayList<>());
+        synchronized (history) {
+            for (LoanEvent event : events) {
+                history.add(event.withId(nextEventId.getAndIncrement()));
+            }
+        }
+    }
+
+    private List<LoanEvent> eventsAfter(int loanId, long afterEventId) {
+        List<LoanEvent> tail = new ArrayList<>();
+        List<LoanEvent> history = eventsByLoan.get(loanId);
+        if (history != null) {
+            synchronized (history) {
+                for (LoanEvent event : history) {
+                    if (event.getEventId() > afterEventId) {
+                        tail.add(event);
+                    }
+                }
+            }
+        }
+        return tail;
+    }
+
+    private List<Payment> paymentsByLoan(int loanId) {
+        return paymentsByLoan.computeIfAbsent(loanId, k -> new CopyOnWriteArrayList<>());
+    }
+
+    private static boolean noRows(Collection<?> rows) {
+        return rows == null || rows.isEmpty();
+    }
+
+    // Ids come from a sequence, so walking the id range visits rows in primary-key order without
+    // sorting the table; deleted ids are simply skipped. Pages stop as soon as limit rows are found.
+    private static <V> List<V> scanAfter(Map<Integer, V> table, AtomicInteger sequence, int afterId, int limit) {
+        List<V> page = new ArrayList<>(limit);
+        int end = sequence.get();
+        for (int id = Math.max(afterId, 0) + 1; id < end && page.size() < limit; id++) {
+            V row = table.get(id);
+            if (row != null) {
+                page.add(row);
+            }
+        }
+        return page;
+    }
+
+    private static <V> List<V> scanBefore(Map<Integer, V> table, AtomicInteger sequence, int beforeId, int limit) {
+        List<V> page = new ArrayList<>(limit);
+        for (int id = Math.min(beforeId, sequence.get()) - 1; id > 0 && page.size() < limit; id--) {
+            V row = table.get(id);
+            if (row != null) {
+                page.add(row);
+            }
+        }
+        Collections.reverse(page);
+        return page;
+    }
+
+    private static <V> void scanAll(Map<Integer, V> table, AtomicInteger sequence, RowHandler<V> handler) throws SQLException {
+        int end = sequence.get();
+        for (int id = 1; id < end; id++) {
+            V row = table.get(id);
+            if (row != null) {
+                handler.accept(row);
+            }
+        }
+    }
+
+    private List<Loan> toLoans(List<LoanRow> rows) {
+        List<Loan> loanList = new ArrayList<>(rows.size());
+        for (LoanRow row : rows) {
+            loanList.add(toLoan(row));
+        }
+        return loanList;
+    }
+
+    private class Clients implements ClientRepository {
+        @Override
+        public Client add(String name, String phone, String address, double creditScore) {
+            Client client = new Client(nextClientId.getAndIncrement(), name, phone, address, creditScore);
+            clients.put(client.getId(), client);
+            return client;
+        }
+
+        @Override
+        public void addAll(List<Client> batch) {
+            for (Client client : batch) {
+                add(client.getName(), client.getPhone(), client.getAddress(), client.getCreditScore());
+            }
+        }
+
+        @Override
+        public Client findById(int id) {
+            return clients.get(id);
+        }
+
+        @Override
+        public List<Client> findAll() {
+            List<Client> all = new ArrayList<>(clients.values());
+            all.sort(Comparator.comparingInt(Client::getId));
+            return all;
+        }
+
+        @Override
+        public List<Client> findPage(int afterId, int limit) {
+            return scanAfter(clients, nextClientId, afterId, limit);
+        }
+
+        @Override
+        public List<Client> findPageBefore(int beforeId, int limit) {
+            return scanBefore(clients, nextClientId, beforeId, limit);
+        }
+
+        @Override
+        public void streamAll(RowHandler<Client> handler) throws SQLException {
+            scanAll(clients, nextClientId, handler);
+        }
+
+        @Override
+        public boolean update(Client client) {
+            return clients.computeIfPresent(client.getId(), (id, old) -> client) != null;
+        }
+
+        @Override
+        public boolean delete(int id) throws SQLException {
+            boolean[] removed = {false};
+            try {
+                clients.computeIfPresent(id, (key, old) -> {
+                    if (!noRows(loansByClient.get(key))) {
+                        throw new ConstraintViolation("Cannot delete or update a parent row: " +
+                                "a foreign key constraint fails (loans.client_id references client " + key + ")");
+                    }
+                    removed[0] = true;
+                    return null;
+                });
+            } catch (ConstraintViolation e) {
+                throw new SQLIntegrityConstraintViolationException(e.getMessage(), "23000");
+            }
+            if (removed[0]) {
+                loansByClient.remove(id);
+            }
+            return removed[0];
+        }
+
+        @Override
+        public boolean isEmpty() {
+            return clients.isEmpty();
+        }
+    }
+
+    private class Loans implements LoanRepository {
+        @Override
+        public Loan add(int clientId, long amountCents, double interestRate, int durationMonths, String status, Date issueDate) throws SQLException {
+            return insert(clientId, amountCents, interestRate, durationMonths, status, issueDate, false);
+        }
+
+        @Override
+        public Loan addPending(int clientId, long amountCents, double interestRate, int durationMonths, Date issueDate) throws SQLException {
+            return insert(clientId, amountCents, interestRate, durationMonths, "PENDING", issueDate, true);
+        }
+
+        // Returns null, writing nothing, when onlyIfNoPending and the client already has a PENDING loan
+        private Loan insert(int clientId, long amountCents, double interestRate, int durationMonths, String status,
+                            Date issueDate, boolean onlyIfNoPending) throws SQLException {
+            portfolioLock.readLock().lock();
+            try {
+                LoanRow[] added = new LoanRow[1];
+                // Holding the client's bin while indexing the loan keeps a concurrent delete from orphaning it,
+                // and queues applications for the same client behind each other's pending check
+                Client owner = clients.computeIfPresent(clientId, (key, client) -> {
+                    if (onlyIfNoPending && hasPendingLoans(key)) {
+                        return client;
+                    }
+                    LoanRow row = new LoanRow(nextLoanId.getAndIncrement(), clientId, amountCents, interestRate,
+                            durationMonths, status, issueDate.getTime(), 0);
+                    loans.put(row.loanId, adjustPortfolio(null, row));
+                    loansByClient.computeIfAbsent(key, k -> new ConcurrentSkipListSet<>()).add(row.loanId);
+                    recordEvents(row.loanId, List.of(LoanEvent.originated(row.asLoan())));
+                    added[0] = row;
+                    return client;
+                });
+                if (owner == null) {
+                    throw new SQLIntegrityConstraintViolationException("Cannot add or update a child row: " +
+                            "a foreign key constraint fails (client " + clientId + " does not exist)", "23000");
+                }
+                return added[0] == null ? null : toLoan(added[0]);
+            } finally {
+                portfolioLock.readLock().unlock();
+            }
+        }
+
+        @Override
+        public Loan findById(int loanId) {
+            LoanRow row = loans.get(loanId);
+            return row == null ? null : toLoan(row);
+        }
+
+        @Override
+        public List<Loan> findAll() {
+            List<LoanRow> rows = new ArrayList<>(loans.values());
+            rows.sort(Comparator.comparingInt(r -> r.loanId));
+            List<Loan> all = new ArrayList<>(rows.size());
+            for (LoanRow row : rows) {
+                all.add(toLoan(row));
+            }
+            return all;
+        }
+
+        @Override
+        public List<Loan> findPage(int afterLoanId, int limit) {
+            return toLoans(scanAfter(loans, nextLoanId, afterLoanId, limit));
+        }
+
+        @Override
+        public List<Loan> findPageBefore(int beforeLoanId, int limit) {
+            return toLoans(scanBefore(loans, nextLoanId, beforeLoanId, limit));
+        }
+
+        @Override
+        public void streamAll(RowHandler<Loan> handler) throws SQLException {
+            scanAll(loans, nextLoanId, row -> handler.accept(toLoan(row)));
+        }
+
+        @Override
+        public List<Loan> findByClientId(int clientId) {
+            List<Loan> owned = new ArrayList<>();
+            Set<Integer> ids = loansByClient.get(clientId);
+            if (ids != null) {
+                for (int loanId : ids) {
+                    LoanRow row = loans.get(loanId);
+                    if (row != null) {
+                        owned.add(toLoan(row));
+                    }
+                }
+            }
+            return owned;
+        }
+
+        @Override
+        public boolean update(int loanId, long amountCents, double interestRate, int durationMonths, String status) {
+            portfolioLock.readLock().lock();
+            try {
+                return loans.computeIfPresent(loanId, (id, row) -> {
+                    recordEvents(id, List.of(LoanEvent.amended(id, amountCents, interestRate, durationMonths, status)));
+                    return adjustPortfolio(row, row.withTerms(amountCents, interestRate, durationMonths, status));
+                }) != null;
+            } finally {
+                portfolioLock.readLock().unlock();
+            }
+        }
+
+        @Override
+        public boolean updateStatus(int loanId, String status) {
+            portfolioLock.readLock().lock();
+            try {
+                return loans.computeIfPresent(loanId, (id, row) -> {
+                    if (!row.status.equals(status)) {
+                        recordEvents(id, List.of(LoanEvent.statusChanged(id, status)));
+                    }
+                    return adjustPortfolio(row, row.withTerms(row.amountCents, row.interestRate, row.durationMonths, status));
+                }) != null;
+            } finally {
+                portfolioLock.readLock().unlock();
+            }
+        }
+
+        @Override
+        public boolean decide(int loanId, String status) {
+            portfolioLock.readLock().lock();
+            try {
+                boolean[] decided = {false};
+                loans.computeIfPresent(loanId, (id, row) -> {
+                    if (!row.status.equals("PENDING")) {
+                        return row;
+                    }
+                    decided[0] = true;
+                    recordEvents(id, List.of(LoanEvent.statusChanged(id, status)));
+                    return adjustPortfolio(row, row.withTerms(row.amountCents, row.interestRate, row.durationMonths, status));
+                });
+                return decided[0];
+            } finally {
+                portfolioLock.readLock().unlock();
+            }
+        }
+
+        @Override
+        public boolean delete(int loanId) throws SQLException {
+            portfolioLock.readLock().lock();
+            try {
+                boolean[] removed = {false};
+                try {
+                    loans.computeIfPresent(loanId, (key, row) -> {
+                        if (!noRows(paymentsByLoan.get(key))) {
+                            throw new ConstraintViolation("Cannot delete or update a parent row: " +
+                                    "a foreign key constraint fails (payments.loan_id references loan " + key + ")");
+                        }
+                        Set<Integer> owned = loansByClient.get(row.clientId);
+                        if (owned != null) {
+                            owned.remove(key);
+                        }
+                        removed[0] = true;
+                        recordEvents(key, List.of(LoanEvent.deleted(key)));
+                        return adjustPortfolio(row, null);
+                    });
+                } catch (ConstraintViolation e) {
+                    throw new SQLIntegrityConstraintViolationException(e.getMessage(), "23000");
+                }
+                if (removed[0]) {
+                    paymentsByLoan.remove(loanId);
+                }
+                return removed[0];
+            } finally {
+                portfolioLock.readLock().unlock();
+            }
+        }
+
+        @Override
+        public boolean hasLoans(int clientId) {
+            return !noRows(loansByClient.get(clientId));
+        }
+
+        @Override
+        public boolean hasPendingLoans(int clientId) {
+            Set<Integer> ids = loansByClient.get(clientId);
+            if (ids != null) {
+                for (int loanId : ids) {
+                    LoanRow row = loans.get(loanId);
+                    if (row != null && row.status.equals("PENDING")) {
+                        return true;
+                    }
+                }
+            }
+            return false;
+        }
+
+        @Override
+        public LoanTotals totalsByStatus(String... statuses) {
+            List<String> wanted = List.of(statuses);
+            int count = 0;
+            long amount = 0;
+            long paid = 0;
+            for (LoanRow row : loans.values()) {
+                if (wanted.contains(row.status)) {
+                    count++;
+                    amount += row.amountCents;
+                    paid += row.paidCents;
+                }
+            }
+            return new LoanTotals(count, amount, paid);
+        }
+
+        @Override
+        public void forEachClientLoan(ClientLoanHandler handler) throws SQLException {
+            forEachClientLoan(1, Integer.MAX_VALUE, handler);
+        }
+
+        @Override
+        public void forEachClientLoan(int fromClientId, int toClientId, ClientLoanHandler handler) throws SQLException {
+            int end = Math.min(toClientId, nextClientId.get());
+            for (int id = Math.max(fromClientId, 1); id < end; id++) {
+                Client client = clients.get(id);
+                if (client == null) {
+                    continue;
+                }
+                boolean any = false;
+                Set<Integer> ids = loansByClient.get(client.getId());
+                if (ids != null) {
+                    for (int loanId : ids) {
+                        LoanRow row = loans.get(loanId);
+                        if (row != null) {
+                            any = true;
+                            handler.accept(client, new Loan(row.loanId, row.clientId, row.amountCents, row.interestRate,
+                                    row.durationMonths, row.status, new Date(row.issueDate), row.paidCents, client.getName()));
+                        }
+                    }
+                }
+                if (!any) {
+                    handler.accept(client, null);
+                }
+            }
+        }
+    }
+
+    private class Payments implements PaymentRepository {
+        @Override
+        public PaymentPosting postPayment(int loanId, long amountCents, Date paymentDate) {
+            portfolioLock.readLock().lock();
+            try {
+                PaymentPosting[] posting = new PaymentPosting[1];
+                // Check, payment row, balance and status change all happen under the loan's bin
+                loans.computeIfPresent(loanId, (key, row) -> {
+                    Loan loan = toLoan(row);
+                    String reason = PaymentRules.rejectionReason(loan, amountCents);
+                    if (reason != null) {
+                        posting[0] = PaymentPosting.rejected(loan, reason);
+                        return row;
+                    }
+                    boolean settles = PaymentRules.settles(loan, amountCents);
+                    if (settles) {
+                        loan.setStatus("PAID");
+                    }
+                    loan.setPaidCents(loan.getPaidCents() + amountCents);
+                    Payment payment = new Payment(nextPaymentId.getAndIncrement(), key, amountCents, paymentDate);
+                    payments.put(payment.getPaymentId(), payment);
+                    paymentsByLoan(key).add(payment);
+                    recordEvents(key, LoanEvent.payments(key,
+                            List.of(new PaymentRequest(0, null, key, amountCents, paymentDate)), settles));
+                    posting[0] = PaymentPosting.accepted(payment, loan);
+                    return adjustPortfolio(row, row.withPaidCents(loan.getPaidCents(), loan.getStatus()));
+                });
+                return posting[0] != null ? posting[0]
+                        : PaymentPosting.rejected(null, PaymentRules.rejectionReason(null, amountCents));
+            } finally {
+                portfolioLock.readLock().unlock();
+            }
+        }
+
+        // Each loan is applied atomically under its own bin; there is no cross-loan rollback
+        // here because nothing can fail once a loan's payments have been validated.
+        @Override
+        public PaymentBatchResult postBatch(Map<Integer, List<PaymentRequest>> paymentsByLoan) {
+            portfolioLock.readLock().lock();
+            try {
+                PaymentBatchResult result = new PaymentBatchResult();
+                for (Map.Entry<Integer, List<PaymentRequest>> entry : paymentsByLoan.entrySet()) {
+                    boolean[] found = {false};
+                    loans.computeIfPresent(entry.getKey(), (key, row) -> {
+                        found[0] = true;
+                        Loan loan = toLoan(row);
+                        boolean wasPaid = loan.getStatus().equals("PAID");
+                        List<PaymentRequest> accepted = PaymentRules.applyInOrder(loan, entry.getValue(), result);
+                        if (accepted.isEmpty()) {
+                            return row;
+                        }
+                        List<Payment> history = paymentsByLoan(key);
+                        for (PaymentRequest request : accepted) {
+                            Payment payment = new Payment(nextPaymentId.getAndIncrement(), key, request.getAmountCents(),
+                                    request.getPaymentDate());
+                            payments.put(payment.getPaymentId(), payment);
+                            history.add(payment);
+                        }
+                        recordEvents(key, LoanEvent.payments(key, accepted, !wasPaid && loan.getStatus().equals("PAID")));
+                        return adjustPortfolio(row, row.withPaidCents(loan.getPaidCents(), loan.getStatus()));
+                    });
+                    if (!found[0]) {
+                        PaymentRules.applyInOrder(null, entry.getValue(), result);
+                    }
+                }
+                return result;
+            } finally {
+                portfolioLock.readLock().unlock();
+            }
+        }
+
+        // Nothing here outlives the process, so the checkpoint only has to agree with this run's batches
+        @Override
+        public PaymentBatchResult postJournalBatch(Map<Integer, List<PaymentRequest>> paymentsByLoan, long throughSequence) {
+            PaymentBatchResult result = postBatch(paymentsByLoan);
+            appliedJournalSequence.accumulateAndGet(throughSequence, Math::max);
+            return result;
+        }
+
+        @Override
+        public long appliedJournalSequence() {
+            return appliedJournalSequence.get();
+        }
+
+        @Override
+        public List<Payment> findByLoanId(int loanId) {
+            List<Payment> history = paymentsByLoan.get(loanId);
+            if (history == null) {
+                return new ArrayList<>();
+            }
+            List<Payment> sorted = new ArrayList<>(history);
+            sorted.sort(Comparator.comparing(Payment::getPaymentDate));
+            return sorted;
+        }
+
+        @Override
+        public List<Payment> findAll() {
+            List<Payment> all = new ArrayList<>(payments.values());
+            all.sort(Comparator.comparingInt(Payment::getPaymentId));
+            return all;
+        }
+
+        @Override
+        public void streamAll(RowHandler<Payment> handler) throws SQLException {
+            scanAll(payments, nextPaymentId, handler);
+        }
+
+        @Override
+        public boolean hasPayments(int loanId) {
+            return !noRows(paymentsByLoan.get(loanId));
+        }
+    }
+
+    // Installs generated rows with their own client and loan ids; chunks may be loaded concurrently.
+    // The ids are taken from the sequences up front, so adds made during the load never reuse them.
+    private class Loader implements SyntheticDataSink {
+        private int lastClientId;
+        private int lastLoanId;
+
+        @Override
+        public void begin(int clientCount, int loanCount) {
+            lastClientId = nextClientId.getAndAdd(clientCount) - 1;
+            lastLoanId = nextLoanId.getAndAdd(loanCount) - 1;
+        }
+
+        @Override
+        public int lastClientId() {
+            return lastClientId;
+        }
+
+        @Override
+        public int lastLoanId() {
+            return lastLoanId;
+        }
+
+        @Override
+        public boolean ordered() {
+            return false;
+        }
+
+        @Override
+        public void write(SyntheticChunk chunk) {
+            portfolioLock.readLock().lock();
+            try {
+                for (Client client : chunk.getClients()) {
+                    clients.put(client.getId(), client);
+                }
+                for (Loan loan : chunk.getLoans()) {
+                    LoanRow row = new LoanRow(loan.getLoanId(), loan.getClientId(), loan.getAmountCents(), loan.getInterestRate(),
+                            loan.getDurationMonths(), loan.getStatus(), loan.getIssueDate().getTime(), loan.getPaidCents());
+                    loans.put(row.loanId, adjustPortfolio(null, row));
+                    loansByClient.computeIfAbsent(row.clientId, k -> new ConcurrentSkipListSet<>()).add(row.loanId);
+                    recordEvents(row.loanId, List.of(LoanEvent.originated(row.asLoan())));
+                }
+                // Payments arrive grouped by loan, so each loan's history is appended in one copy
+                List<Payment> generated = chunk.getPayments();
+                for (int from = 0; from < generated.size(); ) {
+                    int loanId = generated.get(from).getLoanId();
+                    int to = from;
+                    List<Payment> history = new ArrayList<>();
+                    while (to < generated.size() && generated.get(to).getLoanId() == loanId) {
+                        Payment source = generated.get(to++);
+                        Payment payment = new Payment(nextPaymentId.getAndIncrement(), loanId, source.getAmountCents(),
+                                source.getPaymentDate());
+                        payments.put(payment.getPaymentId(), payment);
+                        history.add(payment);
+                    }
+                    paymentsByLoan(loanId).addAll(history);
+                    from = to;
+                }
+            } finally {
+                portfolioLock.readLock().unlock();
+            }
+        }
+    }
+
+    // Loan ids come from a sequence, so walking the id range visits the ledger in loan id order
+    private class LoanEvents implements LoanEventRepository {
+        @Override
+        public List<LoanEvent> findEvents(int loanId, long afterEventId) {
+            return eventsAfter(loanId, afterEventId);
+        }
+
+        @Override
+        public LoanSnapshot findSnapshot(int loanId) {
+            LoanSnapshot snapshot = snapshots.get(loanId);
+            return snapshot == null ? null : new LoanSnapshot(LoanLedger.copy(snapshot.getLoan()), snapshot.getEventId());
+        }
+
+        @Override
+        public void saveSnapshots(List<LoanSnapshot> saved) {
+            for (LoanSnapshot snapshot : saved) {
+                snapshots.put(snapshot.getLoanId(), new LoanSnapshot(LoanLedger.copy(snapshot.getLoan()), snapshot.getEventId()));
+            }
+        }
+
+        @Override
+        public void streamSnapshots(RowHandler<LoanSnapshot> handler) throws SQLException {
+            scanAll(snapshots, nextLoanId, snapshot ->
+                    handler.accept(new LoanSnapshot(LoanLedger.copy(snapshot.getLoan()), snapshot.getEventId())));
+        }
+
+        @Override
+        public void streamTails(RowHandler<LoanEvent> handler) throws SQLException {
+            int end = nextLoanId.get();
+            for (int loanId = 1; loanId < end; loanId++) {
+                for (LoanEvent event : eventsAfter(loanId, snapshotEventId(loanId))) {
+                    handler.accept(event);
+                }
+            }
+        }
+
+        @Override
+        public List<Integer> findLongTails(int minEvents) {
+            List<Integer> loanIds = new ArrayList<>();
+            int end = nextLoanId.get();
+            for (int loanId = 1; loanId < end; loanId++) {
+                if (eventsAfter(loanId, snapshotEventId(loanId)).size() >= minEvents) {
+                    loanIds.add(loanId);
+                }
+            }
+            return loanIds;
+        }
+
+        private long snapshotEventId(int loanId) {
+            LoanSnapshot snapshot = snapshots.get(loanId);
+            return snapshot == null ? 0 : snapshot.getEventId();
+        }
+    }
+
+    private class Portfolio implements PortfolioRepository {
+        @Override
+        public PortfolioSnapshot current() {
+            synchronized (portfolio) {
+                return portfolio.toSnapshot();
+            }
+        }
+
+        @Override
+        public PortfolioReconciliation reconcile() {
+            portfolioLock.writeLock().lock();
+            try {
+                PortfolioSnapshot maintained = portfolio.toSnapshot();
+                PortfolioTally recomputed = new PortfolioTally();
+                for (LoanRow row : loans.values()) {
+                    recomputed.add(row.asLoan());
+                }
+                portfolio.replaceWith(recomputed);
+                return new PortfolioReconciliation(maintained, recomputed.toSnapshot());
+            } finally {
+                portfolioLock.writeLock().unlock();
+            }
+        }
+    }
+}
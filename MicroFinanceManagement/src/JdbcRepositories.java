@@ -0,0 +1,1197 @@
+// Description: MariaDB-backed repositories. Same SQL the console used to inline,
+// now running on connections borrowed from the shared DataSource. Money columns are
+// DECIMAL(15,2) and cross the JDBC boundary as BigDecimal, converted to centavos by Money.
+
+import javax.sql.DataSource;
+import java.math.BigDecimal;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.sql.Timestamp;
+import java.sql.Types;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+// Listings page by key (WHERE id > ? ... LIMIT ?) instead of OFFSET, and full scans run on
+// forward-only cursors so rows reach the console while the server is still sending them.
+final class JdbcCursors {
+    // MariaDB Connector/J streams the result set in chunks of this many rows when a fetch size is set
+    static final int STREAM_FETCH_SIZE = 500;
+
+    private JdbcCursors() {
+    }
+
+    static PreparedStatement openStream(Connection conn, String sql) throws SQLException {
+        PreparedStatement pstmt = conn.prepareStatement(sql, ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY);
+        pstmt.setFetchSize(STREAM_FETCH_SIZE);
+        return pstmt;
+    }
+}
+
+final class JdbcTransactions {
+    interface Work<T> {
+        T run(Connection conn) throws SQLException;
+    }
+
+    private JdbcTransactions() {
+    }
+
+    static <T> T inTransaction(DataSource dataSource, Work<T> work) throws SQLException {
+        try (Connection conn = dataSource.getConnection()) {
+            conn.setAutoCommit(false);
+            try {
+                T result = work.run(conn);
+                conn.commit();
+                return result;
+            } catch (SQLException e) {
+                conn.rollback();
+                throw e;
+            } finally {
+                conn.setAutoCommit(true);
+            }
+        }
+    }
+}
+
+class JdbcClientRepository implements ClientRepository {
+    private final DataSource dataSource;
+
+    JdbcClientRepository(DataSource dataSource) {
+        this.dataSource = dataSource;
+    }
+
+    @Override
+    public Client add(String name, String phone, String address, double creditScore) throws SQLException {
+        try (Connection conn = dataSource.getConnection();
+             PreparedStatement pstmt = conn.prepareStatement(
+                     "INSERT INTO clients (name, phone, address, credit_score) VALUES (?, ?, ?, ?)",
+                     Statement.RETURN_GENERATED_KEYS)) {
+            pstmt.setString(1, name);
+            pstmt.setString(2, phone);
+            pstmt.setString(3, address);
+            pstmt.setDouble(4, creditScore);
+            pstmt.executeUpdate();
+            try (ResultSet rs = pstmt.getGeneratedKeys()) {
+                if (!rs.next()) {
+                    throw new SQLException("No client ID generated");
+                }
+                return new Client(rs.getInt(1), name, phone, address, creditScore);
+            }
+        }
+    }
+
+    @Override
+    public void addAll(List<Client> clients) throws SQLException {
+        if (clients.isEmpty()) {
+            return;
+        }
+        // One multi-row INSERT per chunk: a single statement in auto-commit mode is one round trip and one commit
+        try (Connection conn = dataSource.getConnection();
+             PreparedStatement pstmt = conn.prepareStatement(multiRowInsert(clients.size()))) {
+            int index = 1;
+            for (Client client : clients) {
+                pstmt.setString(index++, client.getName());
+                pstmt.setString(index++, client.getPhone());
+                pstmt.setString(index++, client.getAddress());
+                pstmt.setDouble(index++, client.getCreditScore());
+            }
+            pstmt.executeUpdate();
+        }
+    }
+
+    private static String multiRowInsert(int rows) {
+        StringBuilder sql = new StringBuilder(64 + rows * 15);
+        sql.append("INSERT INTO clients (name, phone, address, credit_score) VALUES ");
+        for (int i = 0; i < rows; i++) {
+            sql.append(i == 0 ? "(?, ?, ?, ?)" : ", (?, ?, ?, ?)");
+        }
+        return sql.toString();
+    }
+
+    @Override
+    public Client findById(int id) throws SQLException {
+        try (Connection conn = dataSource.getConnection();
+             PreparedStatement pstmt = conn.prepareStatement("SELECT * FROM clients WHERE id = ?")) {
+            pstmt.setInt(1, id);
+            try (ResultSet rs = pstmt.executeQuery()) {
+                return rs.next() ? mapClient(rs) : null;
+            }
+        }
+    }
+
+    @Override
+    public List<Client> findAll() throws SQLException {
+        List<Client> clients = new ArrayList<>();
+        try (Connection conn = dataSource.getConnection();
+             Statement stmt = conn.createStatement();
+             ResultSet rs = stmt.executeQuery("SELECT * FROM clients")) {
+            while (rs.next()) {
+                clients.add(mapClient(rs));
+            }
+        }
+        return clients;
+    }
+
+    @Override
+    public List<Client> findPage(int afterId, int limit) throws SQLException {
+        return findKeyset("SELECT * FROM clients WHERE id > ? ORDER BY id LIMIT ?", afterId, limit);
+    }
+
+    @Override
+    public List<Client> findPageBefore(int beforeId, int limit) throws SQLException {
+        List<Client> clients = findKeyset("SELECT * FROM clients WHERE id < ? ORDER BY id DESC LIMIT ?", beforeId, limit);
+        Collections.reverse(clients);
+        return clients;
+    }
+
+    private List<Client> findKeyset(String sql, int keyId, int limit) throws SQLException {
+        List<Client> clients = new ArrayList<>(limit);
+        try (Connection conn = dataSource.getConnection();
+             PreparedStatement pstmt = conn.prepareStatement(sql)) {
+            pstmt.setInt(1, keyId);
+            pstmt.setInt(2, limit);
+            try (ResultSet rs = pstmt.executeQuery()) {
+                while (rs.next()) {
+                    clients.add(mapClient(rs));
+                }
+            }
+        }
+        return clients;
+    }
+
+    @Override
+    public void streamAll(RowHandler<Client> handler) throws SQLException {
+        try (Connection conn = dataSource.getConnection();
+             PreparedStatement pstmt = JdbcCursors.openStream(conn, "SELECT * FROM clients ORDER BY id");
+             ResultSet rs = pstmt.executeQuery()) {
+            while (rs.next()) {
+                handler.accept(mapClient(rs));
+            }
+        }
+    }
+
+    @Override
+    public boolean update(Client client) throws SQLException {
+        try (Connection conn = dataSource.getConnection();
+             PreparedStatement pstmt = conn.prepareStatement(
+                     "UPDATE clients SET name = ?, phone = ?, address = ?, credit_score = ? WHERE id = ?")) {
+            pstmt.setString(1, client.getName());
+            pstmt.setString(2, client.getPhone());
+            pstmt.setString(3, client.getAddress());
+            pstmt.setDouble(4, client.getCreditScore());
+            pstmt.setInt(5, client.getId());
+            return pstmt.executeUpdate() > 0;
+        }
+    }
+
+    @Override
+    public boolean delete(int id) throws SQLException {
+        try (Connection conn = dataSource.getConnection();
+             PreparedStatement pstmt = conn.prepareStatement("DELETE FROM clients WHERE id = ?")) {
+            pstmt.setInt(1, id);
+            return pstmt.executeUpdate() > 0;
+        }
+    }
+
+    @Override
+    public boolean isEmpty() throws SQLException {
+        try (Connection conn = dataSource.getConnection();
+             Statement stmt = conn.createStatement();
+             ResultSet rs = stmt.executeQuery("SELECT COUNT(*) FROM clients")) {
+            return !rs.next() || rs.getInt(1) == 0;
+        }
+    }
+
+    static Client mapClient(ResultSet rs) throws SQLException {
+        return new Client(rs.getInt("id"), rs.getString("name"),
+                rs.getString("phone"), rs.getString("address"),
+                rs.getDouble("credit_score"));
+    }
+}
+
+class JdbcLoanRepository implements LoanRepository {
+    private static final String LOAN_SELECT =
+            "SELECT l.loan_id, l.client_id, l.amount, l.interest_rate, l.duration_months, " +
+                    "l.status, l.issue_date, l.paid_amount, c.name AS client_name " +
+                    "FROM loans l JOIN clients c ON l.client_id = c.id";
+
+    private final DataSource dataSource;
+
+    JdbcLoanRepository(DataSource dataSource) {
+        this.dataSource = dataSource;
+    }
+
+    @Override
+    public Loan add(int clientId, long amountCents, double interestRate, int durationMonths, String status, Date issueDate) throws SQLException {
+        int loanId = JdbcTransactions.inTransaction(dataSource,
+                conn -> insert(conn, clientId, amountCents, interestRate, durationMonths, status, issueDate));
+        return findById(loanId);
+    }
+
+    // The client row lock queues applications for one client; the pending check then sees every earlier one
+    @Override
+    public Loan addPending(int clientId, long amountCents, double interestRate, int durationMonths, Date issueDate) throws SQLException {
+        Integer loanId = JdbcTransactions.inTransaction(dataSource, conn -> {
+            try (PreparedStatement lock = conn.prepareStatement("SELECT id FROM clients WHERE id = ? FOR UPDATE");
+                 PreparedStatement pending = conn.prepareStatement(
+                         "SELECT COUNT(*) FROM loans WHERE client_id = ? AND status = 'PENDING'")) {
+                lock.setInt(1, clientId);
+                lock.executeQuery().close(); // only the lock is wanted; a missing client fails the insert's foreign key
+                pending.setInt(1, clientId);
+                try (ResultSet rs = pending.executeQuery()) {
+                    if (rs.next() && rs.getLong(1) > 0) {
+                        return null;
+                    }
+                }
+            }
+            return insert(conn, clientId, amountCents, interestRate, durationMonths, "PENDING", issueDate);
+        });
+        return loanId == null ? null : findById(loanId);
+    }
+
+    private static int insert(Connection conn, int clientId, long amountCents, double interestRate, int durationMonths,
+                              String status, Date issueDate) throws SQLException {
+        try (PreparedStatement pstmt = conn.prepareStatement(
+                "INSERT INTO loans (client_id, amount, interest_rate, duration_months, status, issue_date, paid_amount) " +
+                        "VALUES (?, ?, ?, ?, ?, ?, ?)", Statement.RETURN_GENERATED_KEYS)) {
+            pstmt.setInt(1, clientId);
+            pstmt.setBigDecimal(2, Money.toDecimal(amountCents));
+            pstmt.setDouble(3, interestRate);
+            pstmt.setInt(4, durationMonths);
+            pstmt.setString(5, status);
+            pstmt.setDate(6, new java.sql.Date(issueDate.getTime()));
+            pstmt.setBigDecimal(7, Money.toDecimal(0));
+            pstmt.executeUpdate();
+            try (ResultSet rs = pstmt.getGeneratedKeys()) {
+                if (!rs.next()) {
+                    throw new SQLException("No loan ID generated");
+                }
+                int id = rs.getInt(1);
+                Loan loan = new Loan(id, clientId, amountCents, interestRate, durationMonths, status, issueDate, 0, null);
+                PortfolioTally delta = new PortfolioTally();
+                delta.add(loan);
+                JdbcLoanEventRepository.append(conn, List.of(LoanEvent.originated(loan)));
+                JdbcPortfolioRepository.apply(conn, delta);
+                return id;
+            }
+        }
+    }
+
+    @Override
+    public Loan findById(int loanId) throws SQLException {
+        try (Connection conn = dataSource.getConnection();
+             PreparedStatement pstmt = conn.prepareStatement(LOAN_SELECT + " WHERE l.loan_id = ?")) {
+            pstmt.setInt(1, loanId);
+            try (ResultSet rs = pstmt.executeQuery()) {
+                return rs.next() ? mapLoan(rs) : null;
+            }
+        }
+    }
+
+    @Override
+    public List<Loan> findAll() throws SQLException {
+        List<Loan> loans = new ArrayList<>();
+        try (Connection conn = dataSource.getConnection();
+             Statement stmt = conn.createStatement();
+             ResultSet rs = stmt.executeQuery(LOAN_SELECT)) {
+            while (rs.next()) {
+                loans.add(mapLoan(rs));
+            }
+        }
+        return loans;
+    }
+
+    @Override
+    public List<Loan> findPage(int afterLoanId, int limit) throws SQLException {
+        return findKeyset(LOAN_SELECT + " WHERE l.loan_id > ? ORDER BY l.loan_id LIMIT ?", afterLoanId, limit);
+    }
+
+    @Override
+    public List<Loan> findPageBefore(int beforeLoanId, int limit) throws SQLException {
+        List<Loan> loans = findKeyset(LOAN_SELECT + " WHERE l.loan_id < ? ORDER BY l.loan_id DESC LIMIT ?", beforeLoanId, limit);
+        Collections.reverse(loans);
+        return loans;
+    }
+
+    private List<Loan> findKeyset(String sql, int keyId, int limit) throws SQLException {
+        List<Loan> loans = new ArrayList<>(limit);
+        try (Connection conn = dataSource.getConnection();
+             PreparedStatement pstmt = conn.prepareStatement(sql)) {
+            pstmt.setInt(1, keyId);
+            pstmt.setInt(2, limit);
+            try (ResultSet rs = pstmt.executeQuery()) {
+                while (rs.next()) {
+                    loans.add(mapLoan(rs));
+                }
+            }
+        }
+        return loans;
+    }
+
+    @Override
+    public void streamAll(RowHandler<Loan> handler) throws SQLException {
+        try (Connection conn = dataSource.getConnection();
+             PreparedStatement pstmt = JdbcCursors.openStream(conn, LOAN_SELECT + " ORDER BY l.loan_id");
+             ResultSet rs = pstmt.executeQuery()) {
+            while (rs.next()) {
+                handler.accept(mapLoan(rs));
+            }
+        }
+    }
+
+    @Override
+    public List<Loan> findByClientId(int clientId) throws SQLException {
+        List<Loan> loans = new ArrayList<>();
+        try (Connection conn = dataSource.getConnection();
+             PreparedStatement pstmt = conn.prepareStatement(LOAN_SELECT + " WHERE l.client_id = ?")) {
+            pstmt.setInt(1, clientId);
+            try (ResultSet rs = pstmt.executeQuery()) {
+                while (rs.next()) {
+                    loans.add(mapLoan(rs));
+                }
+            }
+        }
+        return loans;
+    }
+
+    @Override
+    public boolean update(int loanId, long amountCents, double interestRate, int durationMonths, String status) throws SQLException {
+        return JdbcTransactions.inTransaction(dataSource, conn -> {
+            Loan old = lockLoan(conn, loanId);
+            if (old == null) {
+                return false;
+            }
+            try (PreparedStatement pstmt = conn.prepareStatement(
+                    "UPDATE loans SET amount = ?, interest_rate = ?, duration_months = ?, status = ? WHERE loan_id = ?")) {
+                pstmt.setBigDecimal(1, Money.toDecimal(amountCents));
+                pstmt.setDouble(2, interestRate);
+                pstmt.setInt(3, durationMonths);
+                pstmt.setString(4, status);
+                pstmt.setInt(5, loanId);
+                pstmt.executeUpdate();
+            }
+            PortfolioTally delta = new PortfolioTally();
+            delta.remove(old);
+            delta.add(new Loan(loanId, old.getClientId(), amountCents, interestRate, durationMonths, status,
+                    old.getIssueDate(), old.getPaidCents(), null));
+            JdbcLoanEventRepository.append(conn, List.of(LoanEvent.amended(loanId, amountCents, interestRate, durationMonths, status)));
+            JdbcPortfolioRepository.apply(conn, delta);
+            return true;
+        });
+    }
+
+    @Override
+    public boolean updateStatus(int loanId, String status) throws SQLException {
+        return JdbcTransactions.inTransaction(dataSource, conn -> {
+            Loan old = lockLoan(conn, loanId);
+            if (old == null) {
+                return false;
+            }
+            writeStatus(conn, old, status);
+            return true;
+        });
+    }
+
+    @Override
+    public boolean decide(int loanId, String status) throws SQLException {
+        return JdbcTransactions.inTransaction(dataSource, conn -> {
+            Loan old = lockLoan(conn, loanId);
+            if (old == null || !old.getStatus().equals("PENDING")) {
+                return false;
+            }
+            writeStatus(conn, old, status);
+            return true;
+        });
+    }
+
+    // old is the loan as locked by lockLoan
+    private static void writeStatus(Connection conn, Loan old, String status) throws SQLException {
+        int loanId = old.getLoanId();
+        try (PreparedStatement pstmt = conn.prepareStatement("UPDATE loans SET status = ? WHERE loan_id = ?")) {
+            pstmt.setString(1, status);
+            pstmt.setInt(2, loanId);
+            pstmt.executeUpdate();
+        }
+        boolean changed = !old.getStatus().equals(status);
+        PortfolioTally delta = new PortfolioTally();
+        delta.remove(old);
+        old.setStatus(status);
+        delta.add(old);
+        if (changed) {
+            JdbcLoanEventRepository.append(conn, List.of(LoanEvent.statusChanged(loanId, status)));
+        }
+        JdbcPortfolioRepository.apply(conn, delta);
+    }
+
+    @Override
+    public boolean delete(int loanId) throws SQLException {
+        return JdbcTransactions.inTransaction(dataSource, conn -> {
+            Loan old = lockLoan(conn, loanId);
+            if (old == null) {
+                return false;
+            }
+            try (PreparedStatement pstmt = conn.prepareStatement("DELETE FROM loans WHERE loan_id = ?")) {
+                pstmt.setInt(1, loanId);
+                pstmt.executeUpdate();
+            }
+            PortfolioTally delta = new PortfolioTally();
+            delta.remove(old);
+            JdbcLoanEventRepository.append(conn, List.of(LoanEvent.deleted(loanId)));
+            JdbcPortfolioRepository.apply(conn, delta);
+            return true;
+        });
+    }
+
+    @Override
+    public boolean hasLoans(int clientId) throws SQLException {
+        return countWhere("SELECT COUNT(*) FROM loans WHERE client_id = ?", clientId) > 0;
+    }
+
+    @Override
+    public boolean hasPendingLoans(int clientId) throws SQLException {
+        return countWhere("SELECT COUNT(*) FROM loans WHERE client_id = ? AND status = 'PENDING'", clientId) > 0;
+    }
+
+    @Override
+    public LoanTotals totalsByStatus(String... statuses) throws SQLException {
+        String placeholders = String.join(", ", Collections.nCopies(statuses.length, "?"));
+        try (Connection conn = dataSource.getConnection();
+             PreparedStatement pstmt = conn.prepareStatement(
+                     "SELECT SUM(amount) as total_amount, SUM(paid_amount) as total_paid, " +
+                             "COUNT(*) as num_loans FROM loans WHERE status IN (" + placeholders + ")")) {
+            for (int i = 0; i < statuses.length; i++) {
+                pstmt.setString(i + 1, statuses[i]);
+            }
+            try (ResultSet rs = pstmt.executeQuery()) {
+                if (!rs.next()) {
+                    return new LoanTotals(0, 0, 0);
+                }
+                return new LoanTotals(rs.getInt("num_loans"),
+                        Money.fromDecimal(rs.getBigDecimal("total_amount")), Money.fromDecimal(rs.getBigDecimal("total_paid")));
+            }
+        }
+    }
+
+    private static final String CLIENT_LOAN_SELECT =
+            "SELECT c.id, c.name, c.phone, c.address, c.credit_score, " +
+                    "l.loan_id, l.amount, l.interest_rate, l.duration_months, l.status, l.issue_date, l.paid_amount " +
+                    "FROM clients c LEFT JOIN loans l ON c.id = l.client_id";
+
+    @Override
+    public void forEachClientLoan(ClientLoanHandler handler) throws SQLException {
+        try (Connection conn = dataSource.getConnection();
+             PreparedStatement pstmt = JdbcCursors.openStream(conn, CLIENT_LOAN_SELECT + " ORDER BY c.id, l.loan_id");
+             ResultSet rs = pstmt.executeQuery()) {
+            mapClientLoans(rs, handler);
+        }
+    }
+
+    @Override
+    public void forEachClientLoan(int fromClientId, int toClientId, ClientLoanHandler handler) throws SQLException {
+        try (Connection conn = dataSource.getConnection();
+             PreparedStatement pstmt = JdbcCursors.openStream(conn,
+                     CLIENT_LOAN_SELECT + " WHERE c.id >= ? AND c.id < ? ORDER BY c.id, l.loan_id")) {
+            pstmt.setInt(1, fromClientId);
+            pstmt.setInt(2, toClientId);
+            try (ResultSet rs = pstmt.executeQuery()) {
+                mapClientLoans(rs, handler);
+            }
+        }
+    }
+
+    private static void mapClientLoans(ResultSet rs, ClientLoanHandler handler) throws SQLException {
+        Client client = null;
+        while (rs.next()) {
+            int clientId = rs.getInt("id");
+            if (client == null || client.getId() != clientId) {
+                client = JdbcClientRepository.mapClient(rs);
+            }
+            int loanId = rs.getInt("loan_id");
+            Loan loan = null;
+            if (!rs.wasNull()) {
+                loan = new Loan(loanId, clientId,
+                        Money.fromDecimal(rs.getBigDecimal("amount")), rs.getDouble("interest_rate"),
+                        rs.getInt("duration_months"), rs.getString("status"),
+                        rs.getDate("issue_date"), Money.fromDecimal(rs.getBigDecimal("paid_amount")),
+                        client.getName());
+            }
+            handler.accept(client, loan);
+        }
+    }
+
+    private int countWhere(String sql, int id) throws SQLException {
+        try (Connection conn = dataSource.getConnection();
+             PreparedStatement pstmt = conn.prepareStatement(sql)) {
+            pstmt.setInt(1, id);
+            try (ResultSet rs = pstmt.executeQuery()) {
+                return rs.next() ? rs.getInt(1) : 0;
+            }
+        }
+    }
+
+    // Columns of the loans row alone (no client name) for reads that lock or scan the table
+    static final String LOAN_ROW_COLUMNS =
+            "loan_id, client_id, amount, interest_rate, duration_months, status, issue_date, paid_amount";
+
+    static Loan lockLoan(Connection conn, int loanId) throws SQLException {
+        try (PreparedStatement pstmt = conn.prepareStatement(
+                "SELECT " + LOAN_ROW_COLUMNS + " FROM loans WHERE loan_id = ? FOR UPDATE")) {
+            pstmt.setInt(1, loanId);
+            try (ResultSet rs = pstmt.executeQuery()) {
+                return rs.next() ? mapLoanRow(rs) : null;
+            }
+        }
+    }
+
+    static Loan mapLoanRow(ResultSet rs) throws SQLException {
+        return new Loan(rs.getInt("loan_id"), rs.getInt("client_id"),
+                Money.fromDecimal(rs.getBigDecimal("amount")), rs.getDouble("interest_rate"),
+                rs.getInt("duration_months"), rs.getString("status"),
+                rs.getDate("issue_date"), Money.fromDecimal(rs.getBigDecimal("paid_amount")), null);
+    }
+
+    static Loan mapLoan(ResultSet rs) throws SQLException {
+        return new Loan(rs.getInt("loan_id"), rs.getInt("client_id"),
+                Money.fromDecimal(rs.getBigDecimal("amount")), rs.getDouble("interest_rate"),
+                rs.getInt("duration_months"), rs.getString("status"),
+                rs.getDate("issue_date"), Money.fromDecimal(rs.getBigDecimal("paid_amount")),
+                rs.getString("client_name"));
+    }
+}
+
+class JdbcPaymentRepository implements PaymentRepository {
+    private static final int LOCK_CHUNK_SIZE = 1000;
+
+    private final DataSource dataSource;
+
+    JdbcPaymentRepository(DataSource dataSource) {
+        this.dataSource = dataSource;
+    }
+
+    @Override
+    public PaymentPosting postPayment(int loanId, long amountCents, Date paymentDate) throws SQLException {
+        try (Connection conn = dataSource.getConnection()) {
+            conn.setAutoCommit(false);
+            try (PreparedStatement pstmtPayment = conn.prepareStatement(
+                    "INSERT INTO payments (loan_id, amount, payment_date) VALUES (?, ?, ?)",
+                    Statement.RETURN_GENERATED_KEYS);
+                 PreparedStatement pstmtLoan = conn.prepareStatement(
+                         "UPDATE loans SET paid_amount = ?, status = ? WHERE loan_id = ?")) {
+                // Checked against the locked row, so no other payment can move the balance in between
+                Loan loan = JdbcLoanRepository.lockLoan(conn, loanId);
+                String reason = PaymentRules.rejectionReason(loan, amountCents);
+                if (reason != null) {
+                    conn.rollback();
+                    return PaymentPosting.rejected(loan, reason);
+                }
+                pstmtPayment.setInt(1, loanId);
+                pstmtPayment.setBigDecimal(2, Money.toDecimal(amountCents));
+                pstmtPayment.setDate(3, new java.sql.Date(paymentDate.getTime()));
+                pstmtPayment.executeUpdate();
+
+                int paymentId;
+                try (ResultSet rs = pstmtPayment.getGeneratedKeys()) {
+                    paymentId = rs.next() ? rs.getInt(1) : -1;
+                }
+
+                PortfolioTally delta = new PortfolioTally();
+                delta.remove(loan);
+                boolean settles = PaymentRules.settles(loan, amountCents);
+                if (settles) {
+                    loan.setStatus("PAID");
+                }
+                loan.setPaidCents(loan.getPaidCents() + amountCents);
+                delta.add(loan);
+
+                // Absolute value is safe: the row is locked FOR UPDATE until commit
+                pstmtLoan.setBigDecimal(1, Money.toDecimal(loan.getPaidCents()));
+                pstmtLoan.setString(2, loan.getStatus());
+                pstmtLoan.setInt(3, loanId);
+                pstmtLoan.executeUpdate();
+                JdbcLoanEventRepository.append(conn, LoanEvent.payments(loanId,
+                        List.of(new PaymentRequest(0, null, loanId, amountCents, paymentDate)), settles));
+                JdbcPortfolioRepository.apply(conn, delta);
+
+                conn.commit();
+                return PaymentPosting.accepted(new Payment(paymentId, loanId, amountCents, paymentDate), loan);
+            } catch (SQLException e) {
+                conn.rollback();
+                throw e;
+            } finally {
+                conn.setAutoCommit(true);
+            }
+        }
+    }
+
+    @Override
+    public PaymentBatchResult postBatch(Map<Integer, List<PaymentRequest>> paymentsByLoan) throws SQLException {
+        if (paymentsByLoan.isEmpty()) {
+            return new PaymentBatchResult();
+        }
+        return post(paymentsByLoan, -1);
+    }
+
+    @Override
+    public PaymentBatchResult postJournalBatch(Map<Integer, List<PaymentRequest>> paymentsByLoan, long throughSequence) throws SQLException {
+        return post(paymentsByLoan, throughSequence);
+    }
+
+    @Override
+    public long appliedJournalSequence() throws SQLException {
+        try (Connection conn = dataSource.getConnection();
+             PreparedStatement pstmt = conn.prepareStatement("SELECT applied_sequence FROM payment_journal WHERE id = 1");
+             ResultSet rs = pstmt.executeQuery()) {
+            return rs.next() ? rs.getLong(1) : 0;
+        }
+    }
+
+    // journalSequence < 0 leaves the journal checkpoint alone
+    private PaymentBatchResult post(Map<Integer, List<PaymentRequest>> paymentsByLoan, long journalSequence) throws SQLException {
+        PaymentBatchResult result = new PaymentBatchResult();
+        try (Connection conn = dataSource.getConnection()) {
+            conn.setAutoCommit(false);
+            try (PreparedStatement insert = conn.prepareStatement(
+                    "INSERT INTO payments (loan_id, amount, payment_date) VALUES (?, ?, ?)");
+                 PreparedStatement update = conn.prepareStatement(
+                         "UPDATE loans SET paid_amount = ?, status = ? WHERE loan_id = ?")) {
+                try {
+                    Map<Integer, Loan> locked = lockLoans(conn, paymentsByLoan.keySet());
+                    PortfolioTally delta = new PortfolioTally();
+                    List<LoanEvent> events = new ArrayList<>();
+                    for (Map.Entry<Integer, List<PaymentRequest>> entry : paymentsByLoan.entrySet()) {
+                        Loan loan = locked.get(entry.getKey());
+                        boolean wasPaid = loan != null && loan.getStatus().equals("PAID");
+                        if (loan != null) {
+                            delta.remove(loan); // contribution before this batch's payments
+                        }
+                        List<PaymentRequest> accepted = PaymentRules.applyInOrder(loan, entry.getValue(), result);
+                        if (loan != null) {
+                            delta.add(loan);
+                        }
+                        if (accepted.isEmpty()) {
+                            continue;
+                        }
+                        for (PaymentRequest request : accepted) {
+                            insert.setInt(1, request.getLoanId());
+                            insert.setBigDecimal(2, Money.toDecimal(request.getAmountCents()));
+                            insert.setDate(3, new java.sql.Date(request.getPaymentDate().getTime()));
+                            insert.addBatch();
+                        }
+                        events.addAll(LoanEvent.payments(loan.getLoanId(), accepted, !wasPaid && loan.getStatus().equals("PAID")));
+                        // Absolute value is safe: the row is locked FOR UPDATE until commit
+                        update.setBigDecimal(1, Money.toDecimal(loan.getPaidCents()));
+                        update.setString(2, loan.getStatus());
+                        update.setInt(3, loan.getLoanId());
+                        update.addBatch();
+                    }
+                    insert.executeBatch();
+                    update.executeBatch();
+                    JdbcLoanEventRepository.append(conn, events);
+                    JdbcPortfolioRepository.apply(conn, delta);
+                    if (journalSequence >= 0) {
+                        saveJournalCheckpoint(conn, journalSequence);
+                    }
+                    conn.commit();
+                    return result;
+                } catch (SQLException e) {
+                    // Pooled statements are cached: rows queued for this batch must not run with the next one
+                    clearBatch(insert, e);
+                    clearBatch(update, e);
+                    throw e;
+                }
+            } catch (SQLException e) {
+                conn.rollback();
+                throw e;
+            } finally {
+                conn.setAutoCommit(true);
+            }
+        }
+    }
+
+    private static void clearBatch(PreparedStatement pstmt, SQLException failure) {
+        try {
+            pstmt.clearBatch();
+        } catch (SQLException e) {
+            failure.addSuppressed(e);
+        }
+    }
+
+    private static void saveJournalCheckpoint(Connection conn, long appliedSequence) throws SQLException {
+        try (PreparedStatement pstmt = conn.prepareStatement(
+                "INSERT INTO payment_journal (id, applied_sequence) VALUES (1, ?) " +
+                        "ON DUPLICATE KEY UPDATE applied_sequence = VALUES(applied_sequence)")) {
+            pstmt.setLong(1, appliedSequence);
+            pstmt.executeUpdate();
+        }
+    }
+
+    // Locks the batch's loans in ascending id order so concurrent batches cannot deadlock each other.
+    private static Map<Integer, Loan> lockLoans(Connection conn, Collection<Integer> loanIds) throws SQLException {
+        List<Integer> ids = new ArrayList<>(loanIds);
+        Collections.sort(ids);
+        Map<Integer, Loan> locked = new HashMap<>(ids.size() * 2);
+        for (int from = 0; from < ids.size(); from += LOCK_CHUNK_SIZE) {
+            List<Integer> chunk = ids.subList(from, Math.min(ids.size(), from + LOCK_CHUNK_SIZE));
+            String placeholders = String.join(", ", Collections.nCopies(chunk.size(), "?"));
+            try (PreparedStatement pstmt = conn.prepareStatement(
+                    "SELECT " + JdbcLoanRepository.LOAN_ROW_COLUMNS + " " +
+                            "FROM loans WHERE loan_id IN (" + placeholders + ") ORDER BY loan_id FOR UPDATE")) {
+                for (int i = 0; i < chunk.size(); i++) {
+                    pstmt.setInt(i + 1, chunk.get(i));
+                }
+                try (ResultSet rs = pstmt.executeQuery()) {
+                    while (rs.next()) {
+                        Loan loan = JdbcLoanRepository.mapLoanRow(rs);
+                        locked.put(loan.getLoanId(), loan);
+                    }
+                }
+            }
+        }
+        return locked;
+    }
+
+    @Override
+    public List<Payment> findByLoanId(int loanId) throws SQLException {
+        List<Payment> payments = new ArrayList<>();
+        try (Connection conn = dataSource.getConnection();
+             PreparedStatement pstmt = conn.prepareStatement("SELECT * FROM payments WHERE loan_id = ? ORDER BY payment_date")) {
+            pstmt.setInt(1, loanId);
+            try (ResultSet rs = pstmt.executeQuery()) {
+                while (rs.next()) {
+                    payments.add(mapPayment(rs));
+                }
+            }
+        }
+        return payments;
+    }
+
+    @Override
+    public List<Payment> findAll() throws SQLException {
+        List<Payment> payments = new ArrayList<>();
+        try (Connection conn = dataSource.getConnection();
+             Statement stmt = conn.createStatement();
+             ResultSet rs = stmt.executeQuery(
+                     "SELECT p.payment_id, p.loan_id, p.amount, p.payment_date, c.name AS client_name, l.status " +
+                             "FROM payments p JOIN loans l ON p.loan_id = l.loan_id JOIN clients c ON l.client_id = c.id")) {
+            while (rs.next()) {
+                payments.add(mapPayment(rs));
+            }
+        }
+        return payments;
+    }
+
+    @Override
+    public void streamAll(RowHandler<Payment> handler) throws SQLException {
+        try (Connection conn = dataSource.getConnection();
+             PreparedStatement pstmt = JdbcCursors.openStream(conn,
+                     "SELECT payment_id, loan_id, amount, payment_date FROM payments ORDER BY payment_id");
+             ResultSet rs = pstmt.executeQuery()) {
+            while (rs.next()) {
+                handler.accept(mapPayment(rs));
+            }
+        }
+    }
+
+    @Override
+    public boolean hasPayments(int loanId) throws SQLException {
+        try (Connection conn = dataSource.getConnection();
+             PreparedStatement pstmt = conn.prepareStatement("SELECT COUNT(*) FROM payments WHERE loan_id = ?")) {
+            pstmt.setInt(1, loanId);
+            try (ResultSet rs = pstmt.executeQuery()) {
+                return rs.next() && rs.getInt(1) > 0;
+            }
+        }
+    }
+
+    static Payment mapPayment(ResultSet rs) throws SQLException {
+        return new Payment(rs.getInt("payment_id"), rs.getInt("loan_id"),
+                Money.fromDecimal(rs.getBigDecimal("amount")), rs.getDate("payment_date"));
+    }
+}
+
+class JdbcPortfolioRepository implements PortfolioRepository {
+    private final DataSource dataSource;
+
+    JdbcPortfolioRepository(DataSource dataSource) {
+        this.dataSource = dataSource;
+    }
+
+    // Adds a write's per-status change to loan_portfolio on the writer's own connection and transaction.
+    static void apply(Connection conn, PortfolioTally delta) throws SQLException {
+        Map<String, PortfolioTotals> changes = delta.changes();
+        if (changes.isEmpty()) {
+            return;
+        }
+        try (PreparedStatement pstmt = conn.prepareStatement(
+                "INSERT INTO loan_portfolio (status, num_loans, total_amount, total_paid, total_outstanding) " +
+                        "VALUES (?, ?, ?, ?, ?) ON DUPLICATE KEY UPDATE " +
+                        "num_loans = num_loans + VALUES(num_loans), " +
+                        "total_amount = total_amount + VALUES(total_amount), " +
+                        "total_paid = total_paid + VALUES(total_paid), " +
+                        "total_outstanding = total_outstanding + VALUES(total_outstanding)")) {
+            for (PortfolioTotals change : changes.values()) {
+                pstmt.setString(1, change.getStatus());
+                pstmt.setLong(2, change.getNumLoans());
+                pstmt.setBigDecimal(3, Money.toDecimal(change.getTotalAmountCents()));
+                pstmt.setBigDecimal(4, Money.toDecimal(change.getTotalPaidCents()));
+                pstmt.setBigDecimal(5, Money.toDecimal(change.getTotalOutstandingCents()));
+                pstmt.addBatch();
+            }
+            pstmt.executeBatch();
+        }
+    }
+
+    @Override
+    public PortfolioSnapshot current() throws SQLException {
+        try (Connection conn = dataSource.getConnection()) {
+            return read(conn, "");
+        }
+    }
+
+    @Override
+    public PortfolioReconciliation reconcile() throws SQLException {
+        return JdbcTransactions.inTransaction(dataSource, conn -> {
+            // Locking the aggregate rows first holds back every loan writer (they all end by updating
+            // them), so the scan below and the totals being replaced describe the same state.
+            PortfolioSnapshot maintained = read(conn, " FOR UPDATE");
+            PortfolioTally recomputed = new PortfolioTally();
+            try (PreparedStatement pstmt = JdbcCursors.openStream(conn,
+                    "SELECT " + JdbcLoanRepository.LOAN_ROW_COLUMNS + " FROM loans");
+                 ResultSet rs = pstmt.executeQuery()) {
+                while (rs.next()) {
+                    recomputed.add(JdbcLoanRepository.mapLoanRow(rs));
+                }
+            }
+            try (Statement stmt = conn.createStatement()) {
+                stmt.executeUpdate("DELETE FROM loan_portfolio");
+            }
+            apply(conn, recomputed);
+            return new PortfolioReconciliation(maintained, recomputed.toSnapshot());
+        });
+    }
+
+    private static PortfolioSnapshot read(Connection conn, String lockClause) throws SQLException {
+        Map<String, PortfolioTotals> byStatus = new HashMap<>();
+        try (Statement stmt = conn.createStatement();
+             ResultSet rs = stmt.executeQuery(
+                     "SELECT status, num_loans, total_amount, total_paid, total_outstanding FROM loan_portfolio" + lockClause)) {
+            while (rs.next()) {
+                byStatus.put(rs.getString("status"), new PortfolioTotals(rs.getString("status"), rs.getLong("num_loans"),
+                        Money.fromDecimal(rs.getBigDecimal("total_amount")), Money.fromDecimal(rs.getBigDecimal("total_paid")),
+                        Money.fromDecimal(rs.getBigDecimal("total_outstanding"))));
+            }
+        }
+        return new PortfolioSnapshot(byStatus);
+    }
+}
+
+// loan_events is append-only: rows are inserted by the loan and payment writes through append and
+// never updated. loan_snapshots holds one row per loan, replaced whenever a newer one is saved.
+class JdbcLoanEventRepository implements LoanEventRepository {
+    private static final String EVENT_COLUMNS = "event_id, loan_id, event_type, recorded_at, client_id, amount, " +
+            "interest_rate, duration_months, status, event_date, paid_amount";
+    private static final String SNAPSHOT_COLUMNS = "event_id, " + JdbcLoanRepository.LOAN_ROW_COLUMNS;
+    // Events past each loan's snapshot; a loan without a snapshot contributes all of its events
+    private static final String TAIL_FROM = "FROM loan_events e LEFT JOIN loan_snapshots s ON s.loan_id = e.loan_id " +
+            "WHERE e.event_id > COALESCE(s.event_id, 0)";
+
+    private final DataSource dataSource;
+
+    JdbcLoanEventRepository(DataSource dataSource) {
+        this.dataSource = dataSource;
+    }
+
+    // Called inside the transaction that makes the change the events record, before the
+    // loan_portfolio upsert: every writer locks those few rows, so they stay last before commit
+    static void append(Connection conn, List<LoanEvent> events) throws SQLException {
+        if (events.isEmpty()) {
+            return;
+        }
+        try (PreparedStatement pstmt = conn.prepareStatement(
+                "INSERT INTO loan_events (loan_id, event_type, recorded_at, client_id, amount, interest_rate, " +
+                        "duration_months, status, event_date, paid_amount) VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?, ?)")) {
+            for (LoanEvent event : events) {
+                LoanEventType type = event.getType();
+                boolean originated = type == LoanEventType.ORIGINATED;
+                boolean terms = originated || type == LoanEventType.AMENDED;
+                pstmt.setInt(1, event.getLoanId());
+                pstmt.setString(2, type.name());
+                pstmt.setTimestamp(3, new Timestamp(event.getRecordedAt().getTime()));
+                setOrNull(pstmt, 4, originated, Types.INTEGER, event.getClientId());
+                setOrNull(pstmt, 5, terms || type == LoanEventType.PAYMENT, Types.DECIMAL,
+                        Money.toDecimal(event.getAmountCents()));
+                setOrNull(pstmt, 6, terms, Types.DOUBLE, event.getInterestRate());
+                setOrNull(pstmt, 7, terms, Types.INTEGER, event.getDurationMonths());
+                pstmt.setString(8, event.getStatus());
+                setOrNull(pstmt, 9, event.getEventDate() != null, Types.DATE,
+                        event.getEventDate() == null ? null : new java.sql.Date(event.getEventDate().getTime()));
+                setOrNull(pstmt, 10, originated, Types.DECIMAL, Money.toDecimal(event.getPaidCents()));
+                pstmt.addBatch();
+            }
+            pstmt.executeBatch();
+        }
+    }
+
+    private static void setOrNull(PreparedStatement pstmt, int index, boolean present, int sqlType, Object value) throws SQLException {
+        if (present) {
+            pstmt.setObject(index, value, sqlType);
+        } else {
+            pstmt.setNull(index, sqlType);
+        }
+    }
+
+    @Override
+    public List<LoanEvent> findEvents(int loanId, long afterEventId) throws SQLException {
+        List<LoanEvent> events = new ArrayList<>();
+        try (Connection conn = dataSource.getConnection();
+             PreparedStatement pstmt = conn.prepareStatement("SELECT " + EVENT_COLUMNS + " FROM loan_events " +
+                     "WHERE loan_id = ? AND event_id > ? ORDER BY event_id")) {
+            pstmt.setInt(1, loanId);
+            pstmt.setLong(2, afterEventId);
+            try (ResultSet rs = pstmt.executeQuery()) {
+                while (rs.next()) {
+                    events.add(mapEvent(rs));
+                }
+            }
+        }
+        return events;
+    }
+
+    @Override
+    public LoanSnapshot findSnapshot(int loanId) throws SQLException {
+        try (Connection conn = dataSource.getConnection();
+             PreparedStatement pstmt = conn.prepareStatement(
+                     "SELECT " + SNAPSHOT_COLUMNS + " FROM loan_snapshots WHERE loan_id = ?")) {
+            pstmt.setInt(1, loanId);
+            try (ResultSet rs = pstmt.executeQuery()) {
+                return rs.next() ? mapSnapshot(rs) : null;
+            }
+        }
+    }
+
+    // Two rebuilds racing on one loan may save an older snapshot over a newer one; that only
+    // lengthens the next tail, since every snapshot is the exact fold up to its own event
+    @Override
+    public void saveSnapshots(List<LoanSnapshot> snapshots) throws SQLException {
+        JdbcTransactions.inTransaction(dataSource, conn -> {
+            try (PreparedStatement pstmt = conn.prepareStatement(
+                    "INSERT INTO loan_snapshots (" + SNAPSHOT_COLUMNS + ") VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?) " +
+                            "ON DUPLICATE KEY UPDATE event_id = VALUES(event_id), client_id = VALUES(client_id), " +
+                            "amount = VALUES(amount), interest_rate = VALUES(interest_rate), " +
+                            "duration_months = VALUES(duration_months), status = VALUES(status), " +
+                            "issue_date = VALUES(issue_date), paid_amount = VALUES(paid_amount)")) {
+                for (LoanSnapshot snapshot : snapshots) {
+                    Loan loan = snapshot.getLoan();
+                    pstmt.setLong(1, snapshot.getEventId());
+                    pstmt.setInt(2, loan.getLoanId());
+                    pstmt.setInt(3, loan.getClientId());
+                    pstmt.setBigDecimal(4, Money.toDecimal(loan.getAmountCents()));
+                    pstmt.setDouble(5, loan.getInterestRate());
+                    pstmt.setInt(6, loan.getDurationMonths());
+                    pstmt.setString(7, loan.getStatus());
+                    pstmt.setDate(8, new java.sql.Date(loan.getIssueDate().getTime()));
+                    pstmt.setBigDecimal(9, Money.toDecimal(loan.getPaidCents()));
+                    pstmt.addBatch();
+                }
+                pstmt.executeBatch();
+            }
+            return null;
+        });
+    }
+
+    @Override
+    public void streamSnapshots(RowHandler<LoanSnapshot> handler) throws SQLException {
+        try (Connection conn = dataSource.getConnection();
+             PreparedStatement pstmt = JdbcCursors.openStream(conn,
+                     "SELECT " + SNAPSHOT_COLUMNS + " FROM loan_snapshots ORDER BY loan_id");
+             ResultSet rs = pstmt.executeQuery()) {
+            while (rs.next()) {
+                handler.accept(mapSnapshot(rs));
+            }
+        }
+    }
+
+    @Override
+    public void streamTails(RowHandler<LoanEvent> handler) throws SQLException {
+        String columns = "e." + EVENT_COLUMNS.replace(", ", ", e.");
+        try (Connection conn = dataSource.getConnection();
+             PreparedStatement pstmt = JdbcCursors.openStream(conn,
+                     "SELECT " + columns + " " + TAIL_FROM + " ORDER BY e.loan_id, e.event_id");
+             ResultSet rs = pstmt.executeQuery()) {
+            while (rs.next()) {
+                handler.accept(mapEvent(rs));
+            }
+        }
+    }
+
+    @Override
+    public List<Integer> findLongTails(int minEvents) throws SQLException {
+        List<Integer> loanIds = new ArrayList<>();
+        try (Connection conn = dataSource.getConnection();
+             PreparedStatement pstmt = conn.prepareStatement(
+                     "SELECT e.loan_id " + TAIL_FROM + " GROUP BY e.loan_id HAVING COUNT(*) >= ?")) {
+            pstmt.setInt(1, minEvents);
+            try (ResultSet rs = pstmt.executeQuery()) {
+                while (rs.next()) {
+                    loanIds.add(rs.getInt(1));
+                }
+            }
+        }
+        return loanIds;
+    }
+
+    private static LoanEvent mapEvent(ResultSet rs) throws SQLException {
+        BigDecimal amount = rs.getBigDecimal("amount");
+        BigDecimal paid = rs.getBigDecimal("paid_amount");
+        return new LoanEvent(rs.getLong("event_id"), rs.getInt("loan_id"), LoanEventType.valueOf(rs.getString("event_type")),
+                rs.getTimestamp("recorded_at"), rs.getInt("client_id"), amount == null ? 0 : Money.fromDecimal(amount),
+                rs.getDouble("interest_rate"), rs.getInt("duration_months"), rs.getString("status"),
+                rs.getDate("event_date"), paid == null ? 0 : Money.fromDecimal(paid));
+    }
+
+    private static LoanSnapshot mapSnapshot(ResultSet rs) throws SQLException {
+        return new LoanSnapshot(JdbcLoanRepository.mapLoanRow(rs), rs.getLong("event_id"));
+    }
+}
+
+// Bulk loader for the synthetic data generator. Each chunk is one transaction of multi-row
+// INSERTs with the generated client and loan ids, which begin reserves by moving AUTO_INCREMENT
+// past them, so the application can keep adding clients and loans while the load runs. Payments
+// take AUTO_INCREMENT ids like any other insert. Chunks are written concurrently, each on its own
+// pooled connection, with each loan's ORIGINATED event in the same chunk. The loan_portfolio totals are not touched here: reconcile them once the
+// load has finished.
+class JdbcDataSink implements SyntheticDataSink {
+    // Rows per INSERT statement; full statements share one SQL text and so one cached prepared statement
+    private static final int ROWS_PER_STATEMENT = 500;
+
+    private interface RowBinder<T> {
+        void bind(PreparedStatement pstmt, int index, T row) throws SQLException;
+    }
+
+    private final DataSource dataSource;
+    private int lastClientId;
+    private int lastLoanId;
+
+    JdbcDataSink(DataSource dataSource) {
+        this.dataSource = dataSource;
+    }
+
+    @Override
+    public void begin(int clientCount, int loanCount) throws SQLException {
+        lastClientId = reserve("clients", "id", clientCount);
+        lastLoanId = reserve("loans", "loan_id", loanCount);
+    }
+
+    @Override
+    public int lastClientId() {
+        return lastClientId;
+    }
+
+    @Override
+    public int lastLoanId() {
+        return lastLoanId;
+    }
+
+    // Moves AUTO_INCREMENT past the count ids after the table's highest and returns that highest id.
+    // An insert that drew an id in the range just before the ALTER may not have committed yet, so the
+    // range is then read with FOR UPDATE, which waits for it; if any row shows up, reserve again above it.
+    private int reserve(String table, String idColumn, int count) throws SQLException {
+        while (true) {
+            int last;
+            long end;
+            try (Connection conn = dataSource.getConnection();
+                 Statement stmt = conn.createStatement()) {
+                try (ResultSet rs = stmt.executeQuery("SELECT COALESCE(MAX(" + idColumn + "), 0) FROM " + table)) {
+                    rs.next();
+                    last = rs.getInt(1);
+                }
+                end = (long) last + count;
+                stmt.execute("ALTER TABLE " + table + " AUTO_INCREMENT = " + (end + 1));
+            }
+            boolean taken = JdbcTransactions.inTransaction(dataSource, conn -> {
+                try (PreparedStatement pstmt = conn.prepareStatement(
+                        "SELECT " + idColumn + " FROM " + table + " WHERE " + idColumn + " > ? AND " + idColumn + " <= ? FOR UPDATE")) {
+                    pstmt.setInt(1, last);
+                    pstmt.setLong(2, end);
+                    try (ResultSet rs = pstmt.executeQuery()) {
+                        return rs.next();
+                    }
+                }
+            });
+            if (!taken) {
+                return last;
+            }
+        }
+    }
+
+    @Override
+    public boolean ordered() {
+        return false;
+    }
+
+    @Override
+    public void write(SyntheticChunk chunk) throws SQLException {
+        JdbcTransactions.inTransaction(dataSource, conn -> {
+            insert(conn, "INSERT INTO clients (id, name, phone, address, credit_score) VALUES ", 5, chunk.getClients(),
+                    (pstmt, index, client) -> {
+                        pstmt.setInt(index, client.getId());
+                        pstmt.setString(index + 1, client.getName());
+                        pstmt.setString(index + 2, client.getPhone());
+                        pstmt.setString(index + 3, client.getAddress());
+                        pstmt.setDouble(index + 4, client.getCreditScore());
+                    });
+            insert(conn, "INSERT INTO loans (loan_id, client_id, amount, interest_rate, duration_months, status, issue_date, paid_amount) VALUES ",
+                    8, chunk.getLoans(), (pstmt, index, loan) -> {
+                        pstmt.setInt(index, loan.getLoanId());
+                        pstmt.setInt(index + 1, loan.getClientId());
+                        pstmt.setBigDecimal(index + 2, Money.toDecimal(loan.getAmountCents()));
+                        pstmt.setDouble(index + 3, loan.getInterestRate());
+                        pstmt.setInt(index + 4, loan.getDurationMonths());
+                        pstmt.setString(index + 5, loan.getStatus());
+                        pstmt.setDate(index + 6, new java.sql.Date(loan.getIssueDate().getTime()));
+                        pstmt.setBigDecimal(index + 7, Money.toDecimal(loan.getPaidCents()));
+                    });
+            List<LoanEvent> originations = new ArrayList<>(chunk.getLoans().size());
+            for (Loan loan : chunk.getLoans()) {
+                originations.add(LoanEvent.originated(loan));
+            }
+            JdbcLoanEventRepository.append(conn, originations);
+            insert(conn, "INSERT INTO payments (loan_id, amount, payment_date) VALUES ", 3, chunk.getPayments(),
+                    (pstmt, index, payment) -> {
+                        pstmt.setInt(index, payment.getLoanId());
+                        pstmt.setBigDecimal(index + 1, Money.toDecimal(payment.getAmountCents()));
+                        pstmt.setDate(index + 2, new java.sql.Date(payment.getPaymentDate().getTime()));
+                    });
+            return null;
+        });
+    }
+
+    private static <T> void insert(Connection conn, String prefix, int columns, List<T> rows, RowBinder<T> binder) throws SQLException {
+        for (int from = 0; from < rows.size(); from += ROWS_PER_STATEMENT) {
+            int count = Math.min(ROWS_PER_STATEMENT, rows.size() - from);
+            try (PreparedStatement pstmt = conn.prepareStatement(multiRowInsert(prefix, columns, count))) {
+                for (int i = 0; i < count; i++) {
+                    binder.bind(pstmt, i * columns + 1, rows.get(from + i));
+                }
+                pstmt.executeUpdate();
+            }
+        }
+    }
+
+    private static String multiRowInsert(String prefix, int columns, int rows) {
+        String row = "(?" + ", ?".repeat(columns - 1) + ")";
+        StringBuilder sql = new StringBuilder(prefix.length() + rows * (row.length() + 2));
+        sql.append(prefix);
+        for (int i = 0; i < rows; i++) {
+            sql.append(i == 0 ? row : ", " + row);
+        }
+        return sql.toString();
+    }
+}
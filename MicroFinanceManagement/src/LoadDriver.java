@@ -0,0 +1,403 @@
+// Description: Multi-threaded load driver for capacity planning. Worker threads pick operations
+// from a weighted mix (find-client:30,pay:15,...) and run them through Operations, the same code
+// path as the command script mode, against whatever storage engine is configured. Each worker
+// records the latency of every call in its own LatencyHistogram; the histograms are merged at the
+// end into per-operation throughput and p50/p95/p99/max latency. Calls started during the warmup
+// are run but not recorded. Business-rule refusals (a client with a pending loan, a loan already
+// paid off) are normal under a random workload and are counted separately from errors.
+
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+// Weighted operation mix, parsed from "name:weight,name:weight,..."
+class LoadMix {
+    static final String DEFAULT = "find-client:30,find-loan:25,client-loans:15,payment-history:5,"
+            + "pay:12,apply-loan:6,approve:5,add-client:1,report-portfolio:1";
+
+    private final int[] operations; // indexes into LoadDriver.OPERATIONS
+    private final int[] cumulativeWeights;
+
+    private LoadMix(int[] operations, int[] cumulativeWeights) {
+        this.operations = operations;
+        this.cumulativeWeights = cumulativeWeights;
+    }
+
+    static LoadMix parse(String spec) {
+        List<String> entries = Csv.parseLine(spec);
+        int[] operations = new int[entries.size()];
+        int[] cumulative = new int[entries.size()];
+        int total = 0;
+        for (int i = 0; i < entries.size(); i++) {
+            String[] parts = entries.get(i).trim().split(":");
+            if (parts.length != 2) {
+                throw new IllegalArgumentException("mix entry '" + entries.get(i).trim() + "' must be name:weight");
+            }
+            operations[i] = LoadDriver.operationIndex(parts[0].trim());
+            int weight;
+            try {
+                weight = Integer.parseInt(parts[1].trim());
+            } catch (NumberFormatException e) {
+                throw new IllegalArgumentException("invalid weight for " + parts[0].trim());
+            }
+            if (weight < 0) {
+                throw new IllegalArgumentException("weight for " + parts[0].trim() + " must not be negative");
+            }
+            total += weight;
+            cumulative[i] = total;
+        }
+        if (total == 0) {
+            throw new IllegalArgumentException("mix must have at least one positive weight");
+        }
+        return new LoadMix(operations, cumulative);
+    }
+
+    int pick(SplittableRandom random) {
+        int ticket = random.nextInt(cumulativeWeights[cumulativeWeights.length - 1]);
+        int i = 0;
+        while (cumulativeWeights[i] <= ticket) {
+            i++;
+        }
+        return operations[i];
+    }
+}
+
+class LoadDriverSettings {
+    private int threads = 4;
+    private int seconds = 30;
+    private int warmupSeconds = 5;
+    private long seed = 42;
+    private String mix = LoadMix.DEFAULT;
+    private int clients; // synthetic data loaded before the run, none by default
+    private int loans;
+
+    // Parses key=value arguments: threads, seconds, warmup, seed, mix, clients, loans
+    static LoadDriverSettings parse(List<String> args) {
+        LoadDriverSettings settings = new LoadDriverSettings();
+        for (String arg : args) {
+            int eq = arg.indexOf('=');
+            if (eq <= 0) {
+                throw new IllegalArgumentException("expected key=value but found '" + arg + "'");
+            }
+            String key = arg.substring(0, eq).trim();
+            String value = arg.substring(eq + 1).trim();
+            try {
+                switch (key) {
+                    case "threads": settings.threads = Integer.parseInt(value); break;
+                    case "seconds": settings.seconds = Integer.parseInt(value); break;
+                    case "warmup": settings.warmupSeconds = Integer.parseInt(value); break;
+                    case "seed": settings.seed = Long.parseLong(value); break;
+                    case "mix": settings.mix = value; break;
+                    case "clients": settings.clients = Integer.parseInt(value); break;
+                    case "loans": settings.loans = Integer.parseInt(value); break;
+                    default: throw new IllegalArgumentException("unknown setting '" + key + "'");
+                }
+            } catch (NumberFormatException e) {
+                throw new IllegalArgumentException("invalid number for " + key);
+            }
+        }
+        if (settings.threads <= 0 || settings.seconds <= 0 || settings.warmupSeconds < 0) {
+            throw new IllegalArgumentException("threads and seconds must be positive, warmup must not be negative");
+        }
+        if (settings.clients < 0 || settings.loans < 0) {
+            throw new IllegalArgumentException("clients and loans must not be negative");
+        }
+        return settings;
+    }
+
+    // Getters
+    public int getThreads() { return threads; }
+    public int getSeconds() { return seconds; }
+    public int getWarmupSeconds() { return warmupSeconds; }
+    public long getSeed() { return seed; }
+    public String getMix() { return mix; }
+    public int getClients() { return clients; }
+    public int getLoans() { return loans; }
+}
+
+class LoadOperationStats {
+    private final String operation;
+    private final LatencyHistogram latency;
+    private final long rejected;
+    private final long errors;
+
+    LoadOperationStats(String operation, LatencyHistogram latency, long rejected, long errors) {
+        this.operation = operation;
+        this.latency = latency;
+        this.rejected = rejected;
+        this.errors = errors;
+    }
+
+    // Getters
+    public String getOperation() { return operation; }
+    public LatencyHistogram getLatency() { return latency; }
+    public long getCalls() { return latency.getCount(); }
+    public long getSucceeded() { return latency.getCount() - rejected - errors; }
+    public long getRejected() { return rejected; }
+    public long getErrors() { return errors; }
+}
+
+class LoadDriverResult {
+    private final List<LoadOperationStats> operations;
+    private final LoadOperationStats total;
+    private final int threads;
+    private final long measuredNanos;
+    private final String firstError;
+
+    LoadDriverResult(List<LoadOperationStats> operations, LoadOperationStats total, int threads, long measuredNanos, String firstError) {
+        this.operations = operations;
+        this.total = total;
+        this.threads = threads;
+        this.measuredNanos = measuredNanos;
+        this.firstError = firstError;
+    }
+
+    // Getters
+    public List<LoadOperationStats> getOperations() { return operations; }
+    public LoadOperationStats getTotal() { return total; }
+    public int getThreads() { return threads; }
+    public long getMeasuredNanos() { return measuredNanos; }
+    public String getFirstError() { return firstError; } // null when no call failed
+
+    public double opsPerSecond(LoadOperationStats stats) {
+        return stats.getCalls() / (measuredNanos / 1e9);
+    }
+}
+
+class LoadDriver {
+    static final String[] OPERATIONS = {"find-client", "find-loan", "client-loans", "payment-history", "pay",
+            "apply-loan", "approve", "add-client", "report-portfolio", "report-collection", "report-detailed"};
+    private static final int FIND_CLIENT = 0;
+    private static final int FIND_LOAN = 1;
+    private static final int CLIENT_LOANS = 2;
+    private static final int PAYMENT_HISTORY = 3;
+    private static final int PAY = 4;
+    private static final int APPLY_LOAN = 5;
+    private static final int APPROVE = 6;
+    private static final int ADD_CLIENT = 7;
+    private static final int REPORT_PORTFOLIO = 8;
+    private static final int REPORT_COLLECTION = 9;
+    private static final int REPORT_DETAILED = 10;
+
+    private final Operations operations;
+    private final LoanRepository loans;
+    private final ClientRepository clients;
+    private final AtomicInteger maxClientId = new AtomicInteger();
+    private final AtomicInteger maxLoanId = new AtomicInteger();
+    private final ConcurrentLinkedQueue<Integer> pendingLoans = new ConcurrentLinkedQueue<>();
+    private int[] approvedLoans = new int[0]; // payment targets, collected once before the run
+    private volatile String firstError;
+
+    LoadDriver(Operations operations, ClientRepository clients, LoanRepository loans) {
+        this.operations = operations;
+        this.clients = clients;
+        this.loans = loans;
+    }
+
+    static int operationIndex(String name) {
+        for (int i = 0; i < OPERATIONS.length; i++) {
+            if (OPERATIONS[i].equals(name)) {
+                return i;
+            }
+        }
+        throw new IllegalArgumentException("unknown operation '" + name + "', expected one of " + String.join(", ", OPERATIONS));
+    }
+
+    LoadDriverResult run(LoadDriverSettings settings) throws SQLException, InterruptedException {
+        LoadMix mix = LoadMix.parse(settings.getMix());
+        prepare();
+
+        int threads = settings.getThreads();
+        SplittableRandom root = new SplittableRandom(settings.getSeed());
+        long start = System.nanoTime();
+        long measureFrom = start + settings.getWarmupSeconds() * 1_000_000_000L;
+        long end = measureFrom + settings.getSeconds() * 1_000_000_000L;
+        ExecutorService workers = Executors.newFixedThreadPool(threads);
+        List<Future<Worker>> running = new ArrayList<>(threads);
+        try {
+            for (int t = 0; t < threads; t++) {
+                Worker worker = new Worker(root.split(), mix, measureFrom, end);
+                running.add(workers.submit(worker, worker));
+            }
+            List<Worker> finished = new ArrayList<>(threads);
+            for (Future<Worker> future : running) {
+                finished.add(future.get());
+            }
+            return merge(finished, threads, end - measureFrom);
+        } catch (ExecutionException e) {
+            throw new IllegalStateException("Load worker failed", e.getCause());
+        } finally {
+            workers.shutdownNow();
+        }
+    }
+
+    // Reads the id ranges and the loans the workload can pay and decide on
+    private void prepare() throws SQLException {
+        List<Client> lastClient = clients.findPageBefore(Integer.MAX_VALUE, 1);
+        maxClientId.set(lastClient.isEmpty() ? 0 : lastClient.get(0).getId());
+        int[][] approved = {new int[1024]};
+        int[] approvedCount = {0};
+        loans.streamAll(loan -> {
+            maxLoanId.accumulateAndGet(loan.getLoanId(), Math::max);
+            if (loan.getStatus().equals("APPROVED")) {
+                if (approvedCount[0] == approved[0].length) {
+                    approved[0] = Arrays.copyOf(approved[0], approved[0].length * 2);
+                }
+                approved[0][approvedCount[0]++] = loan.getLoanId();
+            } else if (loan.getStatus().equals("PENDING")) {
+                pendingLoans.add(loan.getLoanId());
+            }
+        });
+        approvedLoans = Arrays.copyOf(approved[0], approvedCount[0]);
+    }
+
+    private LoadDriverResult merge(List<Worker> workers, int threads, long measuredNanos) {
+        List<LoadOperationStats> stats = new ArrayList<>();
+        LatencyHistogram all = new LatencyHistogram();
+        long allRejected = 0;
+        long allErrors = 0;
+        for (int op = 0; op < OPERATIONS.length; op++) {
+            LatencyHistogram latency = new LatencyHistogram();
+            long rejected = 0;
+            long errors = 0;
+            for (Worker worker : workers) {
+                latency.add(worker.latency[op]);
+                rejected += worker.rejected[op];
+                errors += worker.errors[op];
+            }
+            if (latency.getCount() > 0) {
+                stats.add(new LoadOperationStats(OPERATIONS[op], latency, rejected, errors));
+                all.add(latency);
+                allRejected += rejected;
+                allErrors += errors;
+            }
+        }
+        return new LoadDriverResult(stats, new LoadOperationStats("total", all, allRejected, allErrors),
+                threads, measuredNanos, firstError);
+    }
+
+    private void execute(int operation, SplittableRandom random) throws SQLException, OperationRejected {
+        switch (operation) {
+            case FIND_CLIENT:
+                operations.findClient(randomId(random, maxClientId));
+                break;
+            case FIND_LOAN:
+                operations.findLoan(randomId(random, maxLoanId));
+                break;
+            case CLIENT_LOANS:
+                operations.clientLoans(randomId(random, maxClientId));
+                break;
+            case PAYMENT_HISTORY:
+                operations.paymentHistory(randomId(random, maxLoanId));
+                break;
+            case PAY: {
+                // A teller looks the loan up and takes one installment, or whatever is left of the balance
+                if (approvedLoans.length == 0) {
+                    throw new OperationRejected("no approved loans to pay");
+                }
+                Loan loan = operations.findLoan(approvedLoans[random.nextInt(approvedLoans.length)]);
+                long installment = Math.min(loan.calculateMonthlyPaymentCents(), loan.calculateOutstandingBalanceCents());
+                operations.pay(loan.getLoanId(), installment, new Date());
+                break;
+            }
+            case APPLY_LOAN: {
+                long amountCents = Money.ofUnits(5_000 + 500L * random.nextInt(91));
+                double rate = 12 + random.nextInt(25);
+                int months = 3 + random.nextInt(34);
+                Loan loan = operations.applyForLoan(randomId(random, maxClientId), amountCents, rate, months);
+                maxLoanId.accumulateAndGet(loan.getLoanId(), Math::max);
+                pendingLoans.add(loan.getLoanId());
+                break;
+            }
+            case APPROVE: {
+                Integer loanId = pendingLoans.poll();
+                if (loanId == null) {
+                    throw new OperationRejected("no pending loans to decide");
+                }
+                operations.decideLoan(loanId, true);
+                break;
+            }
+            case ADD_CLIENT: {
+                double creditScore = 40 + random.nextInt(61);
+                Client client = operations.addClient("Load Client", "09000000000", "Load Test", creditScore);
+                maxClientId.accumulateAndGet(client.getId(), Math::max);
+                break;
+            }
+            case REPORT_PORTFOLIO:
+                operations.portfolio();
+                break;
+            case REPORT_COLLECTION:
+                operations.collectionTotals();
+                break;
+            case REPORT_DETAILED:
+                operations.clientLoanTotals();
+                break;
+            default:
+                throw new IllegalStateException("Unknown operation " + operation);
+        }
+    }
+
+    private static int randomId(SplittableRandom random, AtomicInteger maxId) {
+        int max = maxId.get();
+        return max <= 0 ? 1 : 1 + random.nextInt(max);
+    }
+
+    private final class Worker implements Runnable {
+        private final SplittableRandom random;
+        private final LoadMix mix;
+        private final long measureFrom;
+        private final long end;
+        final LatencyHistogram[] latency = new LatencyHistogram[OPERATIONS.length];
+        final long[] rejected = new long[OPERATIONS.length];
+        final long[] errors = new long[OPERATIONS.length];
+
+        Worker(SplittableRandom random, LoadMix mix, long measureFrom, long end) {
+            this.random = random;
+            this.mix = mix;
+            this.measureFrom = measureFrom;
+            this.end = end;
+            for (int i = 0; i < latency.length; i++) {
+                latency[i] = new LatencyHistogram();
+            }
+        }
+
+        @Override
+        public void run() {
+            long now = System.nanoTime();
+            while (now < end && !Thread.currentThread().isInterrupted()) {
+                int operation = mix.pick(random);
+                boolean refused = false;
+                boolean failed = false;
+                try {
+                    execute(operation, random);
+                } catch (OperationRejected e) {
+                    refused = true;
+                } catch (SQLException | RuntimeException e) {
+                    failed = true;
+                    if (firstError == null) {
+                        firstError = OPERATIONS[operation] + ": " + e;
+                    }
+                }
+                long finished = System.nanoTime();
+                if (now >= measureFrom) {
+                    latency[operation].record(finished - now);
+                    if (refused) {
+                        rejected[operation]++;
+                    } else if (failed) {
+                        errors[operation]++;
+                    }
+                }
+                now = finished;
+            }
+        }
+    }
+}
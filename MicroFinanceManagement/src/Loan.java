@@ -0,0 +1,65 @@
+// Description: A loan as stored, with its amortization figures (see AmortizationEngine).
+
+import java.util.Date;
+
+class Loan {
+    private final int loanId;
+    private final int clientId;
+    private final long amountCents; // money is in centavos, see Money
+    private final double interestRate;
+    private final int durationMonths;
+    private String status; // "PENDING", "APPROVED", "REJECT", "PAID"
+    private final Date issueDate;
+    private long paidCents;
+    private final String clientName; // Added to store client name for display
+    private AmortizationTerms terms; // shared per (rate, term), looked up on first calculation
+
+    Loan(int loanId, int clientId, long amountCents, double interestRate, int durationMonths, String status, Date issueDate, long paidCents, String clientName) {
+        this.loanId = loanId;
+        this.clientId = clientId;
+        this.amountCents = amountCents;
+        this.interestRate = interestRate;
+        this.durationMonths = durationMonths;
+        this.status = status;
+        this.issueDate = issueDate;
+        this.paidCents = paidCents;
+        this.clientName = clientName;
+    }
+
+    // Getters
+    public int getLoanId() { return loanId; }
+    public int getClientId() { return clientId; }
+    public long getAmountCents() { return amountCents; }
+    public double getInterestRate() { return interestRate; }
+    public int getDurationMonths() { return durationMonths; }
+    public String getStatus() { return status; }
+    public Date getIssueDate() { return issueDate; }
+    public long getPaidCents() { return paidCents; }
+    public String getClientName() { return clientName; }
+    public void setStatus(String status) { this.status = status; }
+    public void setPaidCents(long paidCents) { this.paidCents = paidCents; }
+
+    // Loan Calculations (see AmortizationEngine)
+    private AmortizationTerms terms() {
+        if (terms == null) {
+            terms = AmortizationEngine.terms(interestRate, durationMonths);
+        }
+        return terms;
+    }
+
+    public long calculateMonthlyPaymentCents() {
+        return terms().monthlyPayment(amountCents);
+    }
+
+    public long calculateTotalInterestCents() {
+        return terms().totalInterest(amountCents);
+    }
+
+    public long calculateOutstandingBalanceCents() {
+        return terms().outstandingBalance(amountCents, paidCents);
+    }
+
+    public long calculateTotalPayableCents() {
+        return terms().totalPayable(amountCents);
+    }
+}
@@ -0,0 +1,264 @@
+// Description: Columnar, in-memory copy of the loans table for portfolio analytics.
+// Each column is a primitive array indexed by row, so a pass over the whole book
+// reads a few contiguous arrays instead of chasing one Loan object (plus its Date
+// and client name) per row. Monthly payment, total interest and outstanding balance
+// are derived once when a row is loaded or changed; the kernels below are plain
+// loops over those arrays that the JIT can unroll and vectorize.
+
+import java.sql.SQLException;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.util.Arrays;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+// Not thread-safe: load, refresh and the kernels run on the thread that owns the book.
+// Change notifications (loanChanged) may arrive from any thread.
+class LoanBook implements LoanChangeListener {
+    static final byte PENDING = 0;
+    static final byte APPROVED = 1;
+    static final byte REJECT = 2;
+    static final byte PAID = 3;
+    static final byte OTHER = 4;
+    static final byte DELETED = 5;
+    private static final String[] STATUS_NAMES = {"PENDING", "APPROVED", "REJECT", "PAID", "OTHER", "DELETED"};
+    static final int ALL_LIVE = (1 << PENDING) | (1 << APPROVED) | (1 << REJECT) | (1 << PAID) | (1 << OTHER);
+    private static final int REFRESH_PAGE_SIZE = 1000;
+    private static final int INITIAL_CAPACITY = 1024;
+
+    private int size;
+    private int[] loanIds = new int[INITIAL_CAPACITY];
+    private int[] clientIds = new int[INITIAL_CAPACITY];
+    private long[] amounts = new long[INITIAL_CAPACITY]; // centavos, like every money column below
+    private double[] rates = new double[INITIAL_CAPACITY];
+    private int[] durations = new int[INITIAL_CAPACITY];
+    private byte[] statuses = new byte[INITIAL_CAPACITY];
+    private int[] issueEpochDays = new int[INITIAL_CAPACITY];
+    private long[] paidAmounts = new long[INITIAL_CAPACITY];
+    // Derived columns, recomputed whenever their row changes
+    private long[] monthlyPayments = new long[INITIAL_CAPACITY];
+    private long[] totalInterest = new long[INITIAL_CAPACITY];
+    private long[] outstanding = new long[INITIAL_CAPACITY];
+    // Index into distinctTerms, so whole-book passes can swap in other terms per (rate, term) product
+    private int[] termsIds = new int[INITIAL_CAPACITY];
+    private final List<AmortizationTerms> distinctTerms = new ArrayList<>();
+    private final Map<AmortizationEngine.TermsKey, Integer> termsIndex = new HashMap<>();
+
+    private final Set<Integer> changed = ConcurrentHashMap.newKeySet();
+
+    static int mask(byte... statusCodes) {
+        int mask = 0;
+        for (byte code : statusCodes) {
+            mask |= 1 << code;
+        }
+        return mask;
+    }
+
+    static byte statusCode(String status) {
+        for (byte code = PENDING; code <= PAID; code++) {
+            if (STATUS_NAMES[code].equals(status)) {
+                return code;
+            }
+        }
+        return OTHER;
+    }
+
+    static String statusName(byte code) {
+        return STATUS_NAMES[code];
+    }
+
+    public int size() { return size; }
+
+    @Override
+    public void loanChanged(int loanId) {
+        changed.add(loanId);
+    }
+
+    // Replaces the book's contents with the whole loans table, in loan id order.
+    void load(LoanRepository repository) throws SQLException {
+        size = 0;
+        changed.clear();
+        distinctTerms.clear();
+        termsIndex.clear();
+        repository.streamAll(this::append);
+    }
+
+    // The same contents folded from the loan ledger's snapshots and tails instead of read from the loans table
+    LedgerRebuild load(LoanLedger ledger) throws SQLException {
+        size = 0;
+        changed.clear();
+        distinctTerms.clear();
+        termsIndex.clear();
+        return ledger.rebuildBook(this::append);
+    }
+
+    // Brings the book up to date: re-reads the loans reported as changed and appends loans
+    // created since the last load. Returns how many rows were touched.
+    int refresh(LoanRepository repository) throws SQLException {
+        int touched = 0;
+        Integer[] pending = changed.toArray(new Integer[0]);
+        int lastLoanId = size == 0 ? 0 : loanIds[size - 1];
+        for (Integer loanId : pending) {
+            changed.remove(loanId);
+            if (loanId > lastLoanId) {
+                continue; // picked up by the append pass below
+            }
+            int row = Arrays.binarySearch(loanIds, 0, size, loanId);
+            if (row < 0) {
+                continue;
+            }
+            Loan loan = repository.findById(loanId);
+            if (loan == null) {
+                statuses[row] = DELETED;
+                outstanding[row] = 0;
+            } else {
+                set(row, loan);
+            }
+            touched++;
+        }
+        List<Loan> page;
+        while (!(page = repository.findPage(lastLoanId, REFRESH_PAGE_SIZE)).isEmpty()) {
+            for (Loan loan : page) {
+                append(loan);
+                touched++;
+            }
+            lastLoanId = page.get(page.size() - 1).getLoanId();
+        }
+        return touched;
+    }
+
+    private void append(Loan loan) {
+        if (size == loanIds.length) {
+            grow();
+        }
+        set(size++, loan);
+    }
+
+    private void set(int row, Loan loan) {
+        loanIds[row] = loan.getLoanId();
+        clientIds[row] = loan.getClientId();
+        amounts[row] = loan.getAmountCents();
+        rates[row] = loan.getInterestRate();
+        durations[row] = loan.getDurationMonths();
+        statuses[row] = statusCode(loan.getStatus());
+        issueEpochDays[row] = toEpochDay(loan.getIssueDate());
+        paidAmounts[row] = loan.getPaidCents();
+        monthlyPayments[row] = loan.calculateMonthlyPaymentCents();
+        totalInterest[row] = loan.calculateTotalInterestCents();
+        outstanding[row] = loan.calculateOutstandingBalanceCents();
+        termsIds[row] = termsId(loan.getInterestRate(), loan.getDurationMonths());
+    }
+
+    private int termsId(double interestRate, int durationMonths) {
+        return termsIndex.computeIfAbsent(new AmortizationEngine.TermsKey(interestRate, durationMonths), key -> {
+            distinctTerms.add(AmortizationEngine.terms(interestRate, durationMonths));
+            return distinctTerms.size() - 1;
+        });
+    }
+
+    private static int toEpochDay(Date date) {
+        // java.sql.Date does not support toInstant(), so go through the millisecond value
+        return (int) Instant.ofEpochMilli(date.getTime()).atZone(ZoneId.systemDefault()).toLocalDate().toEpochDay();
+    }
+
+    private void grow() {
+        int capacity = loanIds.length * 2;
+        loanIds = Arrays.copyOf(loanIds, capacity);
+        clientIds = Arrays.copyOf(clientIds, capacity);
+        amounts = Arrays.copyOf(amounts, capacity);
+        rates = Arrays.copyOf(rates, capacity);
+        durations = Arrays.copyOf(durations, capacity);
+        statuses = Arrays.copyOf(statuses, capacity);
+        issueEpochDays = Arrays.copyOf(issueEpochDays, capacity);
+        paidAmounts = Arrays.copyOf(paidAmounts, capacity);
+        monthlyPayments = Arrays.copyOf(monthlyPayments, capacity);
+        totalInterest = Arrays.copyOf(totalInterest, capacity);
+        outstanding = Arrays.copyOf(outstanding, capacity);
+        termsIds = Arrays.copyOf(termsIds, capacity);
+    }
+
+    // Kernels. statusMask has bit (1 << code) set for every status to include.
+    // The mask test is turned into a 0/1 multiplier so the loops have no data-dependent branch.
+
+    long count(int statusMask) {
+        long count = 0;
+        for (int i = 0; i < size; i++) {
+            count += (statusMask >>> statuses[i]) & 1;
+        }
+        return count;
+    }
+
+    long sumAmount(int statusMask) {
+        return maskedSum(amounts, statusMask);
+    }
+
+    long sumPaid(int statusMask) {
+        return maskedSum(paidAmounts, statusMask);
+    }
+
+    long sumOutstanding(int statusMask) {
+        return maskedSum(outstanding, statusMask);
+    }
+
+    long sumTotalInterest(int statusMask) {
+        return maskedSum(totalInterest, statusMask);
+    }
+
+    long sumMonthlyPayment(int statusMask) {
+        return maskedSum(monthlyPayments, statusMask);
+    }
+
+    private long maskedSum(long[] column, int statusMask) {
+        long sum = 0;
+        for (int i = 0; i < size; i++) {
+            sum += column[i] * ((statusMask >>> statuses[i]) & 1);
+        }
+        return sum;
+    }
+
+    // Row positions whose status is in the mask, for callers that need more than a sum
+    int[] select(int statusMask) {
+        int[] rows = new int[size];
+        int n = 0;
+        for (int i = 0; i < size; i++) {
+            rows[n] = i;
+            n += (statusMask >>> statuses[i]) & 1;
+        }
+        return Arrays.copyOf(rows, n);
+    }
+
+    // Recomputes the outstanding balance of every row into out from the base columns,
+    // without the derived column; used to check the derived values and for what-if rates.
+    void computeOutstanding(double[] ratesPercent, long[] out) {
+        for (int i = 0; i < size; i++) {
+            out[i] = outstandingBalance(amounts[i], ratesPercent[i], durations[i], paidAmounts[i]);
+        }
+    }
+
+    // Same arithmetic as Loan.calculateOutstandingBalance, on primitives
+    static long outstandingBalance(long amount, double ratePercent, int months, long paid) {
+        return AmortizationEngine.terms(ratePercent, months).outstandingBalance(amount, paid);
+    }
+
+    // Column accessors for kernels outside this class
+    int loanIdAt(int row) { return loanIds[row]; }
+    int clientIdAt(int row) { return clientIds[row]; }
+    long amountAt(int row) { return amounts[row]; }
+    double rateAt(int row) { return rates[row]; }
+    int durationAt(int row) { return durations[row]; }
+    byte statusAt(int row) { return statuses[row]; }
+    int issueEpochDayAt(int row) { return issueEpochDays[row]; }
+    long paidAt(int row) { return paidAmounts[row]; }
+    long outstandingAt(int row) { return outstanding[row]; }
+    long monthlyPaymentAt(int row) { return monthlyPayments[row]; }
+    long totalInterestAt(int row) { return totalInterest[row]; }
+    int termsIdAt(int row) { return termsIds[row]; }
+    int distinctTermsCount() { return distinctTerms.size(); }
+    AmortizationTerms termsAt(int termsId) { return distinctTerms.get(termsId); }
+    double[] ratesColumn() { return Arrays.copyOf(rates, size); }
+}
@@ -0,0 +1,221 @@
+// Description: Tells interested components which loans were written.
+// The loan and payment repositories are wrapped so every successful write publishes
+// the loan id it touched; derived views such as the columnar LoanBook use this to
+// refresh only the rows that changed instead of reloading the loans table.
+
+import java.sql.SQLException;
+import java.util.Date;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+interface LoanChangeListener {
+    void loanChanged(int loanId);
+}
+
+class LoanChangeFeed {
+    private final List<LoanChangeListener> listeners = new CopyOnWriteArrayList<>();
+
+    void subscribe(LoanChangeListener listener) {
+        listeners.add(listener);
+    }
+
+    void unsubscribe(LoanChangeListener listener) {
+        listeners.remove(listener);
+    }
+
+    void publish(int loanId) {
+        for (LoanChangeListener listener : listeners) {
+            listener.loanChanged(loanId);
+        }
+    }
+
+    LoanRepository track(LoanRepository loans) {
+        return new ChangeTrackingLoanRepository(loans, this);
+    }
+
+    PaymentRepository track(PaymentRepository payments) {
+        return new ChangeTrackingPaymentRepository(payments, this);
+    }
+}
+
+class ChangeTrackingLoanRepository implements LoanRepository {
+    private final LoanRepository delegate;
+    private final LoanChangeFeed feed;
+
+    ChangeTrackingLoanRepository(LoanRepository delegate, LoanChangeFeed feed) {
+        this.delegate = delegate;
+        this.feed = feed;
+    }
+
+    @Override
+    public Loan add(int clientId, long amountCents, double interestRate, int durationMonths, String status, Date issueDate) throws SQLException {
+        Loan loan = delegate.add(clientId, amountCents, interestRate, durationMonths, status, issueDate);
+        if (loan != null) {
+            feed.publish(loan.getLoanId());
+        }
+        return loan;
+    }
+
+    @Override
+    public Loan addPending(int clientId, long amountCents, double interestRate, int durationMonths, Date issueDate) throws SQLException {
+        Loan loan = delegate.addPending(clientId, amountCents, interestRate, durationMonths, issueDate);
+        if (loan != null) {
+            feed.publish(loan.getLoanId());
+        }
+        return loan;
+    }
+
+    @Override
+    public Loan findById(int loanId) throws SQLException {
+        return delegate.findById(loanId);
+    }
+
+    @Override
+    public List<Loan> findAll() throws SQLException {
+        return delegate.findAll();
+    }
+
+    @Override
+    public List<Loan> findPage(int afterLoanId, int limit) throws SQLException {
+        return delegate.findPage(afterLoanId, limit);
+    }
+
+    @Override
+    public List<Loan> findPageBefore(int beforeLoanId, int limit) throws SQLException {
+        return delegate.findPageBefore(beforeLoanId, limit);
+    }
+
+    @Override
+    public void streamAll(RowHandler<Loan> handler) throws SQLException {
+        delegate.streamAll(handler);
+    }
+
+    @Override
+    public List<Loan> findByClientId(int clientId) throws SQLException {
+        return delegate.findByClientId(clientId);
+    }
+
+    @Override
+    public boolean update(int loanId, long amountCents, double interestRate, int durationMonths, String status) throws SQLException {
+        boolean updated = delegate.update(loanId, amountCents, interestRate, durationMonths, status);
+        if (updated) {
+            feed.publish(loanId);
+        }
+        return updated;
+    }
+
+    @Override
+    public boolean updateStatus(int loanId, String status) throws SQLException {
+        boolean updated = delegate.updateStatus(loanId, status);
+        if (updated) {
+            feed.publish(loanId);
+        }
+        return updated;
+    }
+
+    @Override
+    public boolean decide(int loanId, String status) throws SQLException {
+        boolean decided = delegate.decide(loanId, status);
+        if (decided) {
+            feed.publish(loanId);
+        }
+        return decided;
+    }
+
+    @Override
+    public boolean delete(int loanId) throws SQLException {
+        boolean deleted = delegate.delete(loanId);
+        if (deleted) {
+            feed.publish(loanId);
+        }
+        return deleted;
+    }
+
+    @Override
+    public boolean hasLoans(int clientId) throws SQLException {
+        return delegate.hasLoans(clientId);
+    }
+
+    @Override
+    public boolean hasPendingLoans(int clientId) throws SQLException {
+        return delegate.hasPendingLoans(clientId);
+    }
+
+    @Override
+    public LoanTotals totalsByStatus(String... statuses) throws SQLException {
+        return delegate.totalsByStatus(statuses);
+    }
+
+    @Override
+    public void forEachClientLoan(ClientLoanHandler handler) throws SQLException {
+        delegate.forEachClientLoan(handler);
+    }
+
+    @Override
+    public void forEachClientLoan(int fromClientId, int toClientId, ClientLoanHandler handler) throws SQLException {
+        delegate.forEachClientLoan(fromClientId, toClientId, handler);
+    }
+}
+
+class ChangeTrackingPaymentRepository implements PaymentRepository {
+    private final PaymentRepository delegate;
+    private final LoanChangeFeed feed;
+
+    ChangeTrackingPaymentRepository(PaymentRepository delegate, LoanChangeFeed feed) {
+        this.delegate = delegate;
+        this.feed = feed;
+    }
+
+    @Override
+    public PaymentPosting postPayment(int loanId, long amountCents, Date paymentDate) throws SQLException {
+        PaymentPosting posting = delegate.postPayment(loanId, amountCents, paymentDate);
+        if (posting.isAccepted()) {
+            feed.publish(loanId);
+        }
+        return posting;
+    }
+
+    @Override
+    public PaymentBatchResult postBatch(Map<Integer, List<PaymentRequest>> paymentsByLoan) throws SQLException {
+        PaymentBatchResult result = delegate.postBatch(paymentsByLoan);
+        for (int loanId : paymentsByLoan.keySet()) {
+            feed.publish(loanId);
+        }
+        return result;
+    }
+
+    @Override
+    public PaymentBatchResult postJournalBatch(Map<Integer, List<PaymentRequest>> paymentsByLoan, long throughSequence) throws SQLException {
+        PaymentBatchResult result = delegate.postJournalBatch(paymentsByLoan, throughSequence);
+        for (int loanId : paymentsByLoan.keySet()) {
+            feed.publish(loanId);
+        }
+        return result;
+    }
+
+    @Override
+    public long appliedJournalSequence() throws SQLException {
+        return delegate.appliedJournalSequence();
+    }
+
+    @Override
+    public List<Payment> findByLoanId(int loanId) throws SQLException {
+        return delegate.findByLoanId(loanId);
+    }
+
+    @Override
+    public List<Payment> findAll() throws SQLException {
+        return delegate.findAll();
+    }
+
+    @Override
+    public void streamAll(RowHandler<Payment> handler) throws SQLException {
+        delegate.streamAll(handler);
+    }
+
+    @Override
+    public boolean hasPayments(int loanId) throws SQLException {
+        return delegate.hasPayments(loanId);
+    }
+}
@@ -0,0 +1,450 @@
+// Description: Event-sourced loan history. Every loan and payment write also appends immutable
+// events (origination, approval, rejection, payment, status change, amendment, deletion) in the
+// same transaction, so a loan's state at any point is the fold of its events and the loans table
+// is just the current fold kept for the queries. Folding from the first event gets slower as a
+// loan collects payments, so the ledger keeps one snapshot per loan: the folded state and the
+// last event in it. Rebuilding a loan reads its snapshot and the events after it, and a tail that
+// has grown to -Dmfms.ledger.snapshotEvery events is folded into a fresh snapshot on the way. The
+// whole book is rebuilt the same way in two ordered scans, snapshots and tails, merged by loan id.
+// Loans that predate the ledger, or were bulk generated, start with an ORIGINATED event that
+// carries the status and paid amount they had when the ledger took them over.
+
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+enum LoanEventType {
+    ORIGINATED, APPROVED, REJECTED, PAYMENT, STATUS_CHANGED, AMENDED, DELETED
+}
+
+// One fact about a loan. Which fields are set depends on the type:
+//   ORIGINATED      client, principal, rate, term, status, issue date, paid amount (0 for a new loan)
+//   AMENDED         principal, rate, term, status
+//   PAYMENT         amount paid, payment date
+//   APPROVED, REJECTED, STATUS_CHANGED   the new status
+class LoanEvent {
+    private final long eventId; // 0 until stored; ascending in the order a loan's events happened
+    private final int loanId;
+    private final LoanEventType type;
+    private final Date recordedAt;
+    private final int clientId;
+    private final long amountCents;
+    private final double interestRate;
+    private final int durationMonths;
+    private final String status;
+    private final Date eventDate;
+    private final long paidCents;
+
+    LoanEvent(long eventId, int loanId, LoanEventType type, Date recordedAt, int clientId, long amountCents,
+              double interestRate, int durationMonths, String status, Date eventDate, long paidCents) {
+        this.eventId = eventId;
+        this.loanId = loanId;
+        this.type = type;
+        this.recordedAt = recordedAt;
+        this.clientId = clientId;
+        this.amountCents = amountCents;
+        this.interestRate = interestRate;
+        this.durationMonths = durationMonths;
+        this.status = status;
+        this.eventDate = eventDate;
+        this.paidCents = paidCents;
+    }
+
+    static LoanEvent originated(Loan loan) {
+        return new LoanEvent(0, loan.getLoanId(), LoanEventType.ORIGINATED, new Date(), loan.getClientId(),
+                loan.getAmountCents(), loan.getInterestRate(), loan.getDurationMonths(), loan.getStatus(),
+                loan.getIssueDate(), loan.getPaidCents());
+    }
+
+    static LoanEvent amended(int loanId, long amountCents, double interestRate, int durationMonths, String status) {
+        return new LoanEvent(0, loanId, LoanEventType.AMENDED, new Date(), 0, amountCents, interestRate,
+                durationMonths, status, null, 0);
+    }
+
+    // APPROVED and REJECT are the loan officer's decision; anything else is a plain status change
+    static LoanEvent statusChanged(int loanId, String status) {
+        LoanEventType type = status.equals("APPROVED") ? LoanEventType.APPROVED
+                : status.equals("REJECT") ? LoanEventType.REJECTED : LoanEventType.STATUS_CHANGED;
+        return new LoanEvent(0, loanId, type, new Date(), 0, 0, 0, 0, status, null, 0);
+    }
+
+    static LoanEvent payment(int loanId, long amountCents, Date paymentDate) {
+        return new LoanEvent(0, loanId, LoanEventType.PAYMENT, new Date(), 0, amountCents, 0, 0, null, paymentDate, 0);
+    }
+
+    static LoanEvent deleted(int loanId) {
+        return new LoanEvent(0, loanId, LoanEventType.DELETED, new Date(), 0, 0, 0, 0, null, null, 0);
+    }
+
+    // The events for payments accepted against one loan, followed by its PAID transition if they settled it
+    static List<LoanEvent> payments(int loanId, List<PaymentRequest> accepted, boolean settled) {
+        List<LoanEvent> events = new ArrayList<>(accepted.size() + 1);
+        for (PaymentRequest request : accepted) {
+            events.add(payment(loanId, request.getAmountCents(), request.getPaymentDate()));
+        }
+        if (settled) {
+            events.add(statusChanged(loanId, "PAID"));
+        }
+        return events;
+    }
+
+    LoanEvent withId(long eventId) {
+        return new LoanEvent(eventId, loanId, type, recordedAt, clientId, amountCents, interestRate,
+                durationMonths, status, eventDate, paidCents);
+    }
+
+    // Getters
+    public long getEventId() { return eventId; }
+    public int getLoanId() { return loanId; }
+    public LoanEventType getType() { return type; }
+    public Date getRecordedAt() { return recordedAt; }
+    public int getClientId() { return clientId; }
+    public long getAmountCents() { return amountCents; }
+    public double getInterestRate() { return interestRate; }
+    public int getDurationMonths() { return durationMonths; }
+    public String getStatus() { return status; }
+    public Date getEventDate() { return eventDate; }
+    public long getPaidCents() { return paidCents; }
+}
+
+// A loan folded through eventId; the next rebuild only needs the events after it
+class LoanSnapshot {
+    private final Loan loan;
+    private final long eventId;
+
+    LoanSnapshot(Loan loan, long eventId) {
+        this.loan = loan;
+        this.eventId = eventId;
+    }
+
+    // Getters
+    public Loan getLoan() { return loan; }
+    public int getLoanId() { return loan.getLoanId(); }
+    public long getEventId() { return eventId; }
+}
+
+// One loan rebuilt from its snapshot and the events after it
+class LoanReplay {
+    private final Loan loan; // null once the loan was deleted
+    private final long snapshotEventId; // 0 when there was no snapshot and every event was folded
+    private final int tailEvents;
+
+    LoanReplay(Loan loan, long snapshotEventId, int tailEvents) {
+        this.loan = loan;
+        this.snapshotEventId = snapshotEventId;
+        this.tailEvents = tailEvents;
+    }
+
+    // Getters
+    public Loan getLoan() { return loan; }
+    public long getSnapshotEventId() { return snapshotEventId; }
+    public int getTailEvents() { return tailEvents; }
+}
+
+// One event and the loan as it stood right after it (null after a deletion)
+class LoanHistoryEntry {
+    private final LoanEvent event;
+    private final Loan state;
+
+    LoanHistoryEntry(LoanEvent event, Loan state) {
+        this.event = event;
+        this.state = state;
+    }
+
+    // Getters
+    public LoanEvent getEvent() { return event; }
+    public Loan getState() { return state; }
+}
+
+class LoanHistory {
+    private final int loanId;
+    private final List<LoanHistoryEntry> entries;
+
+    LoanHistory(int loanId, List<LoanHistoryEntry> entries) {
+        this.loanId = loanId;
+        this.entries = entries;
+    }
+
+    boolean isEmpty() {
+        return entries.isEmpty();
+    }
+
+    // The loan after the last event, null if it was deleted or has no events
+    Loan current() {
+        return entries.isEmpty() ? null : entries.get(entries.size() - 1).getState();
+    }
+
+    // Getters
+    public int getLoanId() { return loanId; }
+    public List<LoanHistoryEntry> getEntries() { return entries; }
+}
+
+class LedgerRebuild {
+    private final long loans;
+    private final long fromSnapshots;
+    private final long eventsReplayed;
+    private final int snapshotsWritten;
+    private final long elapsedNanos;
+
+    LedgerRebuild(long loans, long fromSnapshots, long eventsReplayed, int snapshotsWritten, long elapsedNanos) {
+        this.loans = loans;
+        this.fromSnapshots = fromSnapshots;
+        this.eventsReplayed = eventsReplayed;
+        this.snapshotsWritten = snapshotsWritten;
+        this.elapsedNanos = elapsedNanos;
+    }
+
+    // Getters
+    public long getLoans() { return loans; }
+    public long getFromSnapshots() { return fromSnapshots; }
+    public long getEventsReplayed() { return eventsReplayed; }
+    public int getSnapshotsWritten() { return snapshotsWritten; }
+    public long getElapsedNanos() { return elapsedNanos; }
+
+    @Override
+    public String toString() {
+        return String.format("%d loans from %d snapshots and %d events in %.1f ms, %d new snapshots",
+                loans, fromSnapshots, eventsReplayed, elapsedNanos / 1e6, snapshotsWritten);
+    }
+}
+
+// The rebuilt book compared with the loans table, loan by loan
+class LedgerCheck {
+    private final LedgerRebuild rebuild;
+    private final long compared;
+    private final List<String> mismatches;
+
+    LedgerCheck(LedgerRebuild rebuild, long compared, List<String> mismatches) {
+        this.rebuild = rebuild;
+        this.compared = compared;
+        this.mismatches = mismatches;
+    }
+
+    // Getters
+    public LedgerRebuild getRebuild() { return rebuild; }
+    public long getCompared() { return compared; }
+    public List<String> getMismatches() { return mismatches; }
+}
+
+class LoanLedger {
+    private final LoanEventRepository events;
+    private final int snapshotEvery;
+    private final AtomicLong snapshotsWritten = new AtomicLong();
+
+    LoanLedger(LoanEventRepository events, int snapshotEvery) {
+        if (snapshotEvery <= 0) {
+            throw new IllegalArgumentException("snapshotEvery must be positive");
+        }
+        this.events = events;
+        this.snapshotEvery = snapshotEvery;
+    }
+
+    // Applies one event; returns the loan as it stands afterwards, null once deleted.
+    // Changes the given loan in place where the event allows it.
+    static Loan apply(Loan loan, LoanEvent event) {
+        switch (event.getType()) {
+            case ORIGINATED:
+                return new Loan(event.getLoanId(), event.getClientId(), event.getAmountCents(), event.getInterestRate(),
+                        event.getDurationMonths(), event.getStatus(), new Date(event.getEventDate().getTime()),
+                        event.getPaidCents(), null);
+            case DELETED:
+                return null;
+            default:
+                break;
+        }
+        if (loan == null) {
+            throw new IllegalStateException("loan " + event.getLoanId() + ": " + event.getType() + " event "
+                    + event.getEventId() + " without an origination before it");
+        }
+        switch (event.getType()) {
+            case AMENDED:
+                return new Loan(loan.getLoanId(), loan.getClientId(), event.getAmountCents(), event.getInterestRate(),
+                        event.getDurationMonths(), event.getStatus(), loan.getIssueDate(), loan.getPaidCents(), null);
+            case PAYMENT:
+                loan.setPaidCents(loan.getPaidCents() + event.getAmountCents());
+                return loan;
+            default:
+                loan.setStatus(event.getStatus());
+                return loan;
+        }
+    }
+
+    static Loan copy(Loan loan) {
+        return loan == null ? null : new Loan(loan.getLoanId(), loan.getClientId(), loan.getAmountCents(),
+                loan.getInterestRate(), loan.getDurationMonths(), loan.getStatus(),
+                new Date(loan.getIssueDate().getTime()), loan.getPaidCents(), null);
+    }
+
+    // Snapshot + tail. Returns null for a loan the ledger has never seen.
+    LoanReplay replay(int loanId) throws SQLException {
+        LoanSnapshot snapshot = events.findSnapshot(loanId);
+        long after = snapshot != null ? snapshot.getEventId() : 0;
+        List<LoanEvent> tail = events.findEvents(loanId, after);
+        if (snapshot == null && tail.isEmpty()) {
+            return null;
+        }
+        Loan loan = snapshot != null ? copy(snapshot.getLoan()) : null;
+        for (LoanEvent event : tail) {
+            loan = apply(loan, event);
+        }
+        if (loan != null && tail.size() >= snapshotEvery) {
+            saveSnapshots(List.of(new LoanSnapshot(copy(loan), tail.get(tail.size() - 1).getEventId())));
+        }
+        return new LoanReplay(loan, after, tail.size());
+    }
+
+    // Folds the full history rather than starting at the snapshot, to show how the loan got here
+    LoanHistory history(int loanId) throws SQLException {
+        List<LoanEvent> all = events.findEvents(loanId, 0);
+        List<LoanHistoryEntry> entries = new ArrayList<>(all.size());
+        Loan loan = null;
+        for (LoanEvent event : all) {
+            loan = apply(loan, event);
+            entries.add(new LoanHistoryEntry(event, copy(loan)));
+        }
+        return new LoanHistory(loanId, entries);
+    }
+
+    // Hands every live loan to the handler in loan id order, each folded from its snapshot and tail.
+    // Loans whose tail has reached snapshotEvery events get a new snapshot once the scans are done.
+    LedgerRebuild rebuildBook(RowHandler<Loan> handler) throws SQLException {
+        long started = System.nanoTime();
+        List<LoanSnapshot> snapshots = new ArrayList<>();
+        events.streamSnapshots(snapshots::add);
+        BookFold fold = new BookFold(snapshots, handler);
+        events.streamTails(fold::accept);
+        fold.finish();
+        saveSnapshots(fold.due);
+        return new LedgerRebuild(fold.loans, fold.fromSnapshots, fold.eventsReplayed, fold.due.size(),
+                System.nanoTime() - started);
+    }
+
+    // Snapshots every loan whose tail has reached snapshotEvery events; returns how many
+    int compact() throws SQLException {
+        int written = 0;
+        for (int loanId : events.findLongTails(snapshotEvery)) {
+            LoanReplay replay = replay(loanId);
+            if (replay != null && replay.getLoan() != null) {
+                written++;
+            }
+        }
+        return written;
+    }
+
+    // Rebuilds the book and compares it with the loans table. Writes made while it runs can
+    // show up as mismatches, so run it when the system is quiet.
+    LedgerCheck check(LoanRepository loans) throws SQLException {
+        Map<Integer, Loan> rebuilt = new HashMap<>();
+        LedgerRebuild rebuild = rebuildBook(loan -> rebuilt.put(loan.getLoanId(), loan));
+        List<String> mismatches = new ArrayList<>();
+        long[] compared = {0};
+        loans.streamAll(row -> {
+            compared[0]++;
+            Loan folded = rebuilt.remove(row.getLoanId());
+            String difference = folded == null ? "missing from the ledger" : difference(folded, row);
+            if (difference != null) {
+                mismatches.add("loan " + row.getLoanId() + ": " + difference);
+            }
+        });
+        for (int loanId : rebuilt.keySet()) {
+            mismatches.add("loan " + loanId + ": in the ledger but not in the loans table");
+        }
+        return new LedgerCheck(rebuild, compared[0], mismatches);
+    }
+
+    private static String difference(Loan folded, Loan row) {
+        if (folded.getPaidCents() != row.getPaidCents()) {
+            return "ledger paid " + Money.format(folded.getPaidCents()) + ", table " + Money.format(row.getPaidCents());
+        }
+        if (!folded.getStatus().equals(row.getStatus())) {
+            return "ledger status " + folded.getStatus() + ", table " + row.getStatus();
+        }
+        if (folded.getAmountCents() != row.getAmountCents() || folded.getInterestRate() != row.getInterestRate()
+                || folded.getDurationMonths() != row.getDurationMonths() || folded.getClientId() != row.getClientId()) {
+            return "ledger terms differ from the table";
+        }
+        return null;
+    }
+
+    private void saveSnapshots(List<LoanSnapshot> snapshots) throws SQLException {
+        if (!snapshots.isEmpty()) {
+            events.saveSnapshots(snapshots);
+            snapshotsWritten.addAndGet(snapshots.size());
+        }
+    }
+
+    long getSnapshotsWritten() {
+        return snapshotsWritten.get();
+    }
+
+    int getSnapshotEvery() {
+        return snapshotEvery;
+    }
+
+    // Merges the snapshot list with the tail stream, both in loan id order
+    private final class BookFold {
+        private final List<LoanSnapshot> snapshots;
+        private final RowHandler<Loan> handler;
+        private final List<LoanSnapshot> due = new ArrayList<>();
+        private int nextSnapshot;
+        private int loanId = -1; // loan whose tail is being folded, -1 before the first event
+        private Loan loan;
+        private int tail;
+        private long lastEventId;
+        private long loans;
+        private long fromSnapshots;
+        private long eventsReplayed;
+
+        BookFold(List<LoanSnapshot> snapshots, RowHandler<Loan> handler) {
+            this.snapshots = snapshots;
+            this.handler = handler;
+        }
+
+        void accept(LoanEvent event) throws SQLException {
+            if (event.getLoanId() != loanId) {
+                finishLoan();
+                emitSnapshotsBefore(event.getLoanId());
+                loanId = event.getLoanId();
+                loan = null;
+                tail = 0;
+                if (nextSnapshot < snapshots.size() && snapshots.get(nextSnapshot).getLoanId() == loanId) {
+                    loan = copy(snapshots.get(nextSnapshot++).getLoan());
+                    fromSnapshots++;
+                }
+            }
+            loan = apply(loan, event);
+            tail++;
+            lastEventId = event.getEventId();
+            eventsReplayed++;
+        }
+
+        void finish() throws SQLException {
+            finishLoan();
+            emitSnapshotsBefore(Integer.MAX_VALUE);
+        }
+
+        private void finishLoan() throws SQLException {
+            if (loanId < 0 || loan == null) {
+                return;
+            }
+            if (tail >= snapshotEvery) {
+                due.add(new LoanSnapshot(copy(loan), lastEventId));
+            }
+            loans++;
+            handler.accept(loan);
+        }
+
+        // Loans with a snapshot and no events after it
+        private void emitSnapshotsBefore(int nextLoanId) throws SQLException {
+            while (nextSnapshot < snapshots.size() && snapshots.get(nextSnapshot).getLoanId() < nextLoanId) {
+                loans++;
+                fromSnapshots++;
+                handler.accept(copy(snapshots.get(nextSnapshot++).getLoan()));
+            }
+        }
+    }
+}
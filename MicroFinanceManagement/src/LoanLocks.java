@@ -0,0 +1,108 @@
+// Description: Striped in-process locks for payment posting. postPayment already serializes
+// payments to one loan on the database row lock, but a teller blocked there is holding a pool
+// connection while it waits. Taking the loan's stripe first queues same-loan payments inside
+// the JVM, so at most one connection per stripe is waiting on a row and the pool stays free for
+// everyone else; payments to loans on different stripes never wait for each other.
+
+import java.sql.SQLException;
+import java.util.Date;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantLock;
+
+final class LoanLocks {
+    private final ReentrantLock[] stripes;
+    private final int mask;
+    private final AtomicLong acquired = new AtomicLong();
+    private final AtomicLong contended = new AtomicLong();
+
+    // stripes is rounded up to a power of two
+    LoanLocks(int stripes) {
+        if (stripes <= 0) {
+            throw new IllegalArgumentException("stripes must be positive");
+        }
+        int size = Integer.highestOneBit(stripes);
+        if (size < stripes) {
+            size <<= 1;
+        }
+        this.stripes = new ReentrantLock[size];
+        for (int i = 0; i < size; i++) {
+            this.stripes[i] = new ReentrantLock();
+        }
+        this.mask = size - 1;
+    }
+
+    // ReentrantLock rather than synchronized, so a virtual thread waiting here unmounts
+    ReentrantLock lock(int loanId) {
+        ReentrantLock lock = stripes[(loanId * 0x9E3779B9) >>> 16 & mask];
+        acquired.incrementAndGet();
+        if (!lock.tryLock()) {
+            contended.incrementAndGet();
+            lock.lock();
+        }
+        return lock;
+    }
+
+    // Getters
+    public int getStripes() { return stripes.length; }
+    public long getAcquired() { return acquired.get(); }
+    public long getContended() { return contended.get(); }
+}
+
+class LockingPaymentRepository implements PaymentRepository {
+    private final PaymentRepository delegate;
+    private final LoanLocks locks;
+
+    LockingPaymentRepository(PaymentRepository delegate, LoanLocks locks) {
+        this.delegate = delegate;
+        this.locks = locks;
+    }
+
+    @Override
+    public PaymentPosting postPayment(int loanId, long amountCents, Date paymentDate) throws SQLException {
+        ReentrantLock lock = locks.lock(loanId);
+        try {
+            return delegate.postPayment(loanId, amountCents, paymentDate);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    // A batch spans many loans and already locks its rows in id order; taking stripes as well
+    // would only serialize it against every single payment
+    @Override
+    public PaymentBatchResult postBatch(Map<Integer, List<PaymentRequest>> paymentsByLoan) throws SQLException {
+        return delegate.postBatch(paymentsByLoan);
+    }
+
+    @Override
+    public PaymentBatchResult postJournalBatch(Map<Integer, List<PaymentRequest>> paymentsByLoan, long throughSequence) throws SQLException {
+        return delegate.postJournalBatch(paymentsByLoan, throughSequence);
+    }
+
+    @Override
+    public long appliedJournalSequence() throws SQLException {
+        return delegate.appliedJournalSequence();
+    }
+
+    @Override
+    public List<Payment> findByLoanId(int loanId) throws SQLException {
+        return delegate.findByLoanId(loanId);
+    }
+
+    @Override
+    public List<Payment> findAll() throws SQLException {
+        return delegate.findAll();
+    }
+
+    @Override
+    public void streamAll(RowHandler<Payment> handler) throws SQLException {
+        delegate.streamAll(handler);
+    }
+
+    @Override
+    public boolean hasPayments(int loanId) throws SQLException {
+        return delegate.hasPayments(loanId);
+    }
+}
@@ -0,0 +1,382 @@
+// Description: Operation-level metrics. Timers hold a lock-free log-linear latency histogram
+// (the same buckets as LatencyHistogram) plus an error count; they are created on first use
+// under names like "workflow.processPayment" or "sql SELECT ... FROM loans WHERE loan_id = ?".
+// Gauges read pool and cache state when the metrics are shown. Everything is reachable three
+// ways: the "Show Metrics" main menu item, a periodic text dump to System.err
+// (-Dmfms.metrics.dumpSeconds=60) and JMX MBeans under the "microfinance" domain.
+// -Dmfms.metrics=false turns timing off; a disabled timer costs one static final branch.
+
+import javax.management.Attribute;
+import javax.management.AttributeList;
+import javax.management.AttributeNotFoundException;
+import javax.management.DynamicMBean;
+import javax.management.JMException;
+import javax.management.MBeanAttributeInfo;
+import javax.management.MBeanInfo;
+import javax.management.ObjectName;
+import java.io.PrintStream;
+import java.lang.management.ManagementFactory;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.DoubleSupplier;
+
+// Log-linear latency histogram: 32 sub-buckets per power of two, so any recorded value is
+// reported within about 3% of its true value while the whole range fits in under 2k counters.
+// Not thread-safe; AtomicLatencyHistogram is the concurrent variant and snapshots into this one.
+class LatencyHistogram {
+    private static final int SUB_BUCKET_BITS = 5;
+    private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+    static final int BUCKETS = SUB_BUCKETS * (64 - SUB_BUCKET_BITS);
+
+    private final long[] counts;
+    private long count;
+    private long sumNanos;
+    private long maxNanos;
+
+    LatencyHistogram() {
+        this.counts = new long[BUCKETS];
+    }
+
+    LatencyHistogram(long[] counts, long count, long sumNanos, long maxNanos) {
+        this.counts = counts;
+        this.count = count;
+        this.sumNanos = sumNanos;
+        this.maxNanos = maxNanos;
+    }
+
+    void record(long nanos) {
+        long value = Math.max(0, nanos);
+        counts[bucketOf(value)]++;
+        count++;
+        sumNanos += value;
+        maxNanos = Math.max(maxNanos, value);
+    }
+
+    void add(LatencyHistogram other) {
+        for (int i = 0; i < BUCKETS; i++) {
+            counts[i] += other.counts[i];
+        }
+        count += other.count;
+        sumNanos += other.sumNanos;
+        maxNanos = Math.max(maxNanos, other.maxNanos);
+    }
+
+    // Getters
+    public long getCount() { return count; }
+    public long getMaxNanos() { return maxNanos; }
+
+    public double getMeanNanos() {
+        return count == 0 ? 0 : sumNanos / (double) count;
+    }
+
+    // Smallest bucket upper bound at or above the given fraction of the recorded values, e.g. percentile(0.99)
+    public long percentile(double fraction) {
+        if (count == 0) {
+            return 0;
+        }
+        long rank = Math.max(1, (long) Math.ceil(fraction * count));
+        long seen = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            seen += counts[i];
+            if (seen >= rank) {
+                return Math.min(upperBound(i), maxNanos);
+            }
+        }
+        return maxNanos;
+    }
+
+    static int bucketOf(long value) {
+        if (value < SUB_BUCKETS) {
+            return (int) value;
+        }
+        int exponent = 63 - Long.numberOfLeadingZeros(value);
+        int shift = exponent - SUB_BUCKET_BITS;
+        int subBucket = (int) (value >>> shift) - SUB_BUCKETS;
+        return SUB_BUCKETS * (shift + 1) + subBucket;
+    }
+
+    private static long upperBound(int bucket) {
+        if (bucket < SUB_BUCKETS) {
+            return bucket;
+        }
+        int shift = bucket / SUB_BUCKETS - 1;
+        long subBucket = bucket % SUB_BUCKETS;
+        return ((SUB_BUCKETS + subBucket + 1) << shift) - 1;
+    }
+}
+
+// Concurrent LatencyHistogram: recording is a few atomic adds and never blocks.
+// A snapshot taken while other threads record may be off by the calls in flight.
+class AtomicLatencyHistogram {
+    private final AtomicLongArray counts = new AtomicLongArray(LatencyHistogram.BUCKETS);
+    private final LongAdder count = new LongAdder();
+    private final LongAdder sumNanos = new LongAdder();
+    private final AtomicLong maxNanos = new AtomicLong();
+
+    void record(long nanos) {
+        long value = Math.max(0, nanos);
+        counts.incrementAndGet(LatencyHistogram.bucketOf(value));
+        count.increment();
+        sumNanos.add(value);
+        if (value > maxNanos.get()) {
+            maxNanos.accumulateAndGet(value, Math::max);
+        }
+    }
+
+    LatencyHistogram snapshot() {
+        long[] copy = new long[LatencyHistogram.BUCKETS];
+        for (int i = 0; i < copy.length; i++) {
+            copy[i] = counts.get(i);
+        }
+        return new LatencyHistogram(copy, count.sum(), sumNanos.sum(), maxNanos.get());
+    }
+}
+
+class OperationTimer {
+    private final String name;
+    private final AtomicLatencyHistogram latency = new AtomicLatencyHistogram();
+    private final LongAdder errors = new LongAdder();
+
+    OperationTimer(String name) {
+        this.name = name;
+    }
+
+    // Usage: long start = timer.start(); try { ... } finally { timer.stop(start); }
+    long start() {
+        return Metrics.ENABLED ? System.nanoTime() : 0;
+    }
+
+    void stop(long start) {
+        if (Metrics.ENABLED) {
+            latency.record(System.nanoTime() - start);
+        }
+    }
+
+    // Counts a failed call; the call is still timed by stop()
+    void failed() {
+        if (Metrics.ENABLED) {
+            errors.increment();
+        }
+    }
+
+    // Getters
+    public String getName() { return name; }
+    public long getErrors() { return errors.sum(); }
+    public LatencyHistogram getLatency() { return latency.snapshot(); }
+}
+
+final class Metrics {
+    static final boolean ENABLED = !"false".equalsIgnoreCase(System.getProperty("mfms.metrics", "true"));
+    private static final String DUMP_SECONDS_PROPERTY = "mfms.metrics.dumpSeconds";
+    private static final String JMX_DOMAIN = "microfinance";
+
+    private static final ConcurrentHashMap<String, OperationTimer> timers = new ConcurrentHashMap<>();
+    private static final ConcurrentHashMap<String, DoubleSupplier> gauges = new ConcurrentHashMap<>();
+    private static ScheduledExecutorService dumper;
+
+    private Metrics() {
+    }
+
+    static OperationTimer timer(String name) {
+        OperationTimer timer = timers.get(name);
+        if (timer != null) {
+            return timer;
+        }
+        OperationTimer created = new OperationTimer(name);
+        timer = timers.putIfAbsent(name, created);
+        if (timer != null) {
+            return timer;
+        }
+        register("Timer", name, new TimerMBean(created));
+        return created;
+    }
+
+    // Timer for one SQL statement, named by its text with whitespace collapsed
+    static OperationTimer sqlTimer(String sql) {
+        return timer("sql " + sql.trim().replaceAll("\\s+", " "));
+    }
+
+    static void gauge(String name, DoubleSupplier value) {
+        if (gauges.put(name, value) == null) {
+            register("Gauge", name, new GaugeMBean(value));
+        }
+    }
+
+    // Prints the report to System.err every N seconds when -Dmfms.metrics.dumpSeconds is set
+    static synchronized void startPeriodicDump() {
+        int seconds = Integer.getInteger(DUMP_SECONDS_PROPERTY, 0);
+        if (!ENABLED || seconds <= 0 || dumper != null) {
+            return;
+        }
+        dumper = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "metrics-dump");
+            t.setDaemon(true);
+            return t;
+        });
+        dumper.scheduleAtFixedRate(() -> print(System.err), seconds, seconds, TimeUnit.SECONDS);
+    }
+
+    static synchronized void stopPeriodicDump() {
+        if (dumper != null) {
+            dumper.shutdownNow();
+            dumper = null;
+        }
+    }
+
+    static void print(PrintStream out) {
+        String border = "+--------------------------------------------------------------+----------+--------+-----------+-----------+-----------+-----------+-----------+";
+        out.println(border);
+        out.printf("| %-60s | %-8s | %-6s | %-9s | %-9s | %-9s | %-9s | %-9s |%n",
+                "timer (latency in microseconds)", "calls", "errors", "mean", "p50", "p95", "p99", "max");
+        out.println(border);
+        int printed = 0;
+        for (OperationTimer timer : new TreeMap<>(timers).values()) {
+            LatencyHistogram latency = timer.getLatency();
+            if (latency.getCount() == 0) {
+                continue;
+            }
+            printed++;
+            out.printf("| %-60s | %-8d | %-6d | %-9.1f | %-9.1f | %-9.1f | %-9.1f | %-9.1f |%n",
+                    abbreviate(timer.getName(), 60), latency.getCount(), timer.getErrors(),
+                    latency.getMeanNanos() / 1e3, latency.percentile(0.50) / 1e3, latency.percentile(0.95) / 1e3,
+                    latency.percentile(0.99) / 1e3, latency.getMaxNanos() / 1e3);
+        }
+        if (printed == 0) {
+            out.printf("| %-60s | %-8s | %-6s | %-9s | %-9s | %-9s | %-9s | %-9s |%n",
+                    ENABLED ? "(nothing timed yet)" : "(timing is off, -Dmfms.metrics=false)", "", "", "", "", "", "", "");
+        }
+        out.println(border);
+
+        if (!gauges.isEmpty()) {
+            out.println("+--------------------------------------------------------------+----------------+");
+            out.printf("| %-60s | %-14s |%n", "gauge", "value");
+            out.println("+--------------------------------------------------------------+----------------+");
+            for (Map.Entry<String, DoubleSupplier> gauge : new TreeMap<>(gauges).entrySet()) {
+                out.printf("| %-60s | %-14s |%n", gauge.getKey(), formatGauge(gauge.getValue().getAsDouble()));
+            }
+            out.println("+--------------------------------------------------------------+----------------+");
+        }
+    }
+
+    private static String formatGauge(double value) {
+        return value == Math.rint(value) && Math.abs(value) < 1e15 ? Long.toString((long) value) : String.format("%.3f", value);
+    }
+
+    private static String abbreviate(String text, int width) {
+        return text.length() <= width ? text : text.substring(0, width - 3) + "...";
+    }
+
+    private static void register(String type, String name, DynamicMBean bean) {
+        if (!ENABLED) {
+            return;
+        }
+        try {
+            ObjectName objectName = new ObjectName(JMX_DOMAIN + ":type=" + type + ",name=" + ObjectName.quote(name));
+            ManagementFactory.getPlatformMBeanServer().registerMBean(bean, objectName);
+        } catch (JMException e) {
+            System.err.println("Error registering metric " + name + " with JMX: " + e.getMessage());
+        }
+    }
+
+    // Read-only DynamicMBean over a fixed set of attributes; avoids a public MBean interface per metric type
+    private abstract static class ReadOnlyMBean implements DynamicMBean {
+        private final MBeanInfo info;
+
+        ReadOnlyMBean(String description, String[] attributes, String type) {
+            MBeanAttributeInfo[] infos = new MBeanAttributeInfo[attributes.length];
+            for (int i = 0; i < attributes.length; i++) {
+                infos[i] = new MBeanAttributeInfo(attributes[i], type, attributes[i], true, false, false);
+            }
+            this.info = new MBeanInfo(getClass().getName(), description, infos, null, null, null);
+        }
+
+        abstract Object value(String attribute) throws AttributeNotFoundException;
+
+        @Override
+        public Object getAttribute(String attribute) throws AttributeNotFoundException {
+            return value(attribute);
+        }
+
+        @Override
+        public AttributeList getAttributes(String[] attributes) {
+            AttributeList list = new AttributeList();
+            for (String attribute : attributes) {
+                try {
+                    list.add(new Attribute(attribute, value(attribute)));
+                } catch (AttributeNotFoundException ignored) {
+                    // unknown names are left out, as the DynamicMBean contract allows
+                }
+            }
+            return list;
+        }
+
+        @Override
+        public void setAttribute(Attribute attribute) throws AttributeNotFoundException {
+            throw new AttributeNotFoundException(attribute.getName() + " is read-only");
+        }
+
+        @Override
+        public AttributeList setAttributes(AttributeList attributes) {
+            return new AttributeList();
+        }
+
+        @Override
+        public Object invoke(String actionName, Object[] params, String[] signature) {
+            throw new UnsupportedOperationException(actionName);
+        }
+
+        @Override
+        public MBeanInfo getMBeanInfo() {
+            return info;
+        }
+    }
+
+    private static final class TimerMBean extends ReadOnlyMBean {
+        private static final String[] ATTRIBUTES = {"Count", "Errors", "MeanMicros", "P50Micros", "P95Micros", "P99Micros", "MaxMicros"};
+        private final OperationTimer timer;
+
+        TimerMBean(OperationTimer timer) {
+            super("Latency of " + timer.getName(), ATTRIBUTES, "java.lang.Double");
+            this.timer = timer;
+        }
+
+        @Override
+        Object value(String attribute) throws AttributeNotFoundException {
+            LatencyHistogram latency = timer.getLatency();
+            switch (attribute) {
+                case "Count": return (double) latency.getCount();
+                case "Errors": return (double) timer.getErrors();
+                case "MeanMicros": return latency.getMeanNanos() / 1e3;
+                case "P50Micros": return latency.percentile(0.50) / 1e3;
+                case "P95Micros": return latency.percentile(0.95) / 1e3;
+                case "P99Micros": return latency.percentile(0.99) / 1e3;
+                case "MaxMicros": return latency.getMaxNanos() / 1e3;
+                default: throw new AttributeNotFoundException(attribute);
+            }
+        }
+    }
+
+    private static final class GaugeMBean extends ReadOnlyMBean {
+        private final DoubleSupplier gauge;
+
+        GaugeMBean(DoubleSupplier gauge) {
+            super("Gauge", new String[]{"Value"}, "java.lang.Double");
+            this.gauge = gauge;
+        }
+
+        @Override
+        Object value(String attribute) throws AttributeNotFoundException {
+            if (!attribute.equals("Value")) {
+                throw new AttributeNotFoundException(attribute);
+            }
+            return gauge.getAsDouble();
+        }
+    }
+}
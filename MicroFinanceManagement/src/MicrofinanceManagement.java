@@ -5,148 +5,127 @@
 // Features: Client Management, Loan Management, Payment Processing, Reporting
 // Note: Ensure MariaDB JDBC Driver is in the classpath.    
 
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.PrintStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
 import java.sql.*;
-import java.text.SimpleDateFormat;
+import java.time.LocalDate;
+import java.time.format.DateTimeParseException;
 import java.util.*;
 import java.util.Date;
-
-class Client {
-    private final int id;
-    private final String name;
-    private final String phone;
-    private final String address;
-    private final double creditScore; // 0.0 to 100.0
-
-    Client(int id, String name, String phone, String address, double creditScore) {
-        this.id = id;
-        this.name = name;
-        this.phone = phone;
-        this.address = address;
-        this.creditScore = creditScore;
-    }
-
-    // public Getters
-    public int getId() { return id; }
-    public String getName() { return name; }
-    public String getPhone() { return phone; }
-    public String getAddress() { return address; }
-    public double getCreditScore() { return creditScore; }
-}
-
-class Loan {
-    private final int loanId;
-    private final int clientId;
-    private final double amount;
-    private final double interestRate;
-    private final int durationMonths;
-    private String status; // "PENDING", "APPROVED", "REJECT", "PAID"
-    private final Date issueDate;
-    private double paidAmount;
-    private final String clientName; // Added to store client name for display
-
-    Loan(int loanId, int clientId, double amount, double interestRate, int durationMonths, String status, Date issueDate, double paidAmount, String clientName) {
-        this.loanId = loanId;
-        this.clientId = clientId;
-        this.amount = amount;
-        this.interestRate = interestRate;
-        this.durationMonths = durationMonths;
-        this.status = status;
-        this.issueDate = issueDate;
-        this.paidAmount = paidAmount;
-        this.clientName = clientName;
-    }
-
-    // Getters
-    public int getLoanId() { return loanId; }
-    public int getClientId() { return clientId; }
-    public double getAmount() { return amount; }
-    public double getInterestRate() { return interestRate; }
-    public int getDurationMonths() { return durationMonths; }
-    public String getStatus() { return status; }
-    public Date getIssueDate() { return issueDate; }
-    public double getPaidAmount() { return paidAmount; }
-    public String getClientName() { return clientName; }
-    public void setStatus(String status) { this.status = status; }
-    public void setPaidAmount(double paidAmount) { this.paidAmount = paidAmount; }
-
-    // Loan Calculations
-    public double calculateMonthlyPayment() {
-        double monthlyRate = interestRate / 100 / 12;
-        if (monthlyRate == 0) {
-            return amount / durationMonths; // No interest case
-        }
-        return amount * (monthlyRate * Math.pow(1 + monthlyRate, durationMonths)) /
-                (Math.pow(1 + monthlyRate, durationMonths) - 1);
-    }
-
-    public double calculateTotalInterest() {
-        double monthlyPayment = calculateMonthlyPayment();
-        return (monthlyPayment * durationMonths) - amount;
-    }
-
-    public double calculateOutstandingBalance() {
-        double monthlyPayment = calculateMonthlyPayment();
-        double monthlyRate = interestRate / 100 / 12;
-        if (monthlyRate == 0) {
-            return amount - paidAmount;
-        }
-        double paymentsMade = paidAmount / monthlyPayment;
-        int k = (int) Math.floor(paymentsMade);
-        return amount * ((Math.pow(1 + monthlyRate, durationMonths) - Math.pow(1 + monthlyRate, k)) /
-                (Math.pow(1 + monthlyRate, durationMonths) - 1));
-    }
-
-    public double calculateTotalPayable() {
-        return amount + calculateTotalInterest();
-    }
-}
-
-class Payment {
-    private int paymentId;
-    private int loanId;
-    private double amount;
-    private Date paymentDate;
-
-    Payment(int paymentId, int loanId, double amount, Date paymentDate) {
-        this.paymentId = paymentId;
-        this.loanId = loanId;
-        this.amount = amount;
-        this.paymentDate = paymentDate;
-    }
-
-    // Getters
-    public int getPaymentId() { return paymentId; }
-    public int getLoanId() { return loanId; }
-    public double getAmount() { return amount; }
-    public Date getPaymentDate() { return paymentDate; }
-}
+import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+import java.util.function.ToIntFunction;
 
 public class MicrofinanceManagement {
     private static final Scanner scanner = new Scanner(System.in);
-    private static final SimpleDateFormat dateFormat = new SimpleDateFormat("yyyy-MM-dd");
     private static final String DB_URL = "jdbc:mariadb://localhost:3306/YourDBName";
     private static final String DB_USER = "YourUsername";
     private static final String DB_PASSWORD = "YourPassword";
-    private static final double MIN_CREDIT_SCORE_FOR_LOAN = 50.0;
-    private static final double MIN_CREDIT_SCORE_FOR_APPROVAL = 70.0;
+    private static final int POOL_MIN_SIZE = 2;
+    private static final int POOL_MAX_SIZE = 10;
+    private static final long POOL_BORROW_TIMEOUT_MS = 5000;
+    private static final long POOL_IDLE_TIMEOUT_MS = 300000;
+    private static final int STATEMENT_CACHE_SIZE = 64;
+    private static final ConnectionPool dataSource = new ConnectionPool(DB_URL, DB_USER, DB_PASSWORD,
+            POOL_MIN_SIZE, POOL_MAX_SIZE, POOL_BORROW_TIMEOUT_MS, POOL_IDLE_TIMEOUT_MS, STATEMENT_CACHE_SIZE);
+    private static final int PAGE_SIZE = 20;
+    private static final String STORAGE_PROPERTY = "mfms.storage";
+    private static final String STORAGE_JDBC = "jdbc";
+    private static final String STORAGE_MEMORY = "memory";
+    private static final String CACHE_SIZE_PROPERTY = "mfms.cache.size"; // 0 turns the entity cache off
+    private static final String CACHE_TTL_PROPERTY = "mfms.cache.ttlMs";
+    private static final int DEFAULT_CACHE_SIZE = 1000;
+    private static final long DEFAULT_CACHE_TTL_MS = 60000;
+    private static final String REPORT_THREADS_PROPERTY = "mfms.report.threads"; // 1 runs the reports serially
+    private static final String REPORT_JOBS_DIR_PROPERTY = "mfms.reportJobs.dir";
+    private static final String REPORT_JOBS_MAX_PROPERTY = "mfms.reportJobs.maxConcurrent";
+    private static final int DEFAULT_REPORT_JOBS_MAX = 2;
+    private static final int INTERACTIVE_CONNECTIONS = 2; // pool connections report jobs leave to the console
+    private static final long REPORT_JOBS_EXIT_WAIT_MINUTES = 10;
+    private static final String PAYMENT_LOCK_STRIPES_PROPERTY = "mfms.payment.lockStripes";
+    private static final int DEFAULT_PAYMENT_LOCK_STRIPES = 256;
+    private static final String JOURNAL_DIR_PROPERTY = "mfms.journal.dir"; // unset posts each payment in its own transaction
+    private static final String JOURNAL_SEGMENT_MB_PROPERTY = "mfms.journal.segmentMb";
+    private static final int DEFAULT_JOURNAL_SEGMENT_MB = 16;
+    private static final long JOURNAL_EXIT_WAIT_SECONDS = 60;
+    private static final String LEDGER_SNAPSHOT_EVERY_PROPERTY = "mfms.ledger.snapshotEvery";
+    private static final int DEFAULT_LEDGER_SNAPSHOT_EVERY = 64;
+    private static final String LEDGER_SNAPSHOT_MINUTES_PROPERTY = "mfms.ledger.snapshotMinutes"; // 0 turns the sweep off
+    private static final int DEFAULT_LEDGER_SNAPSHOT_MINUTES = 10;
+    private static final String LEDGER_PRELOAD_PROPERTY = "mfms.ledger.preloadBook";
+    private static final String LEDGER_ADOPTION_MIGRATION = "loan-ledger-adoption"; // schema_migrations name
+    private static final ReportJobs reportJobs = new ReportJobs(Paths.get(System.getProperty(REPORT_JOBS_DIR_PROPERTY, "reports")),
+            Math.max(1, Integer.getInteger(REPORT_JOBS_MAX_PROPERTY, DEFAULT_REPORT_JOBS_MAX)));
+
+    private static ClientRepository clientRepository;
+    private static LoanRepository loanRepository;
+    private static PaymentRepository paymentRepository;
+    private static PortfolioRepository portfolioRepository;
+    private static LoanEventRepository loanEventRepository;
+    private static LoanLedger loanLedger;
+    private static ScheduledExecutorService ledgerSnapshots; // periodic LoanLedger.compact, when enabled
+    private static boolean inMemoryStorage;
+    private static EntityCache<Client> clientCache;
+    private static EntityCache<Loan> loanCache;
+    private static LoanLocks paymentLocks; // taken around every single payment, see LoanLocks
+    private static JournaledPaymentRepository journaledPayments; // set when payments go through the journal
+    private static final LoanChangeFeed loanChanges = new LoanChangeFeed();
+    private static LoanBook loanBook; // rebuilt from the ledger at startup, or loaded on first use by the analytics report
+    private static final String DEFAULT_RATE_SHOCKS = "1, 2, 3, -1, 2:12";
+    private static final int DEFAULT_SIMULATION_PATHS = 100_000;
+    private static final long DEFAULT_SIMULATION_SEED = 42;
+    private static final double DEFAULT_DEFAULT_CORRELATION = 0.15;
+    private static final double DEFAULT_LOSS_GIVEN_DEFAULT_PERCENT = 45.0;
+    private static final int DEFAULT_SYNTHETIC_CLIENTS = 10_000;
+    private static final int DEFAULT_SYNTHETIC_LOANS = 50_000;
+    private static final long DEFAULT_SYNTHETIC_SEED = 42;
+    private static SyntheticDataSink storageSink; // bulk loads generated data into the active storage engine
+    // Timed from the last prompt to the end of the workflow, so the time spent typing is left out
+    private static final OperationTimer addClientTimer = Metrics.timer(Operations.ADD_CLIENT);
+    private static final OperationTimer applyForLoanTimer = Metrics.timer(Operations.APPLY_FOR_LOAN);
+    private static final OperationTimer approveRejectLoanTimer = Metrics.timer(Operations.APPROVE_REJECT_LOAN);
+    private static final OperationTimer processPaymentTimer = Metrics.timer(Operations.PROCESS_PAYMENT);
+    private static final OperationTimer loanPortfolioTimer = Metrics.timer(Operations.LOAN_PORTFOLIO);
+    private static final OperationTimer collectionReportTimer = Metrics.timer(Operations.COLLECTION_REPORT);
+    private static final OperationTimer detailedReportTimer = Metrics.timer(Operations.DETAILED_REPORT);
+    private static final OperationTimer portfolioAnalyticsTimer = Metrics.timer("report.portfolioAnalytics");
 
     public static void main(String[] args) {
-        // Initialize database and create tables
-        initializeDatabase();
+        // Choose the storage engine (-Dmfms.storage=memory runs without MariaDB)
+        configureStorage();
 
         // Add sample data (only if tables are empty)
-        try (Connection conn = DriverManager.getConnection(DB_URL, DB_USER, DB_PASSWORD)) {
-            if (isClientTableEmpty(conn)) {
-                addSampleClients(conn);
+        try {
+            if (clientRepository.isEmpty()) {
+                addSampleClients();
             }
         } catch (SQLException e) {
             System.err.println("Database Error: " + e.getMessage());
             return;
         }
 
+        // --script and --load run without the menus (see CommandScript and LoadDriver)
+        if (args.length > 0) {
+            runWithoutMenus(args);
+            shutdown();
+            return;
+        }
+
         System.out.println("**** MICROFINANCE MANAGEMENT SYSTEM ****");
 
         while (true) {
+            printFinishedReportJobs();
             showMainMenu();
             int choice = getIntInput("Enter your choice: ");
             switch (choice) {
@@ -154,8 +133,12 @@ public class MicrofinanceManagement {
                 case 2: manageLoans(); break;
                 case 3: managePayments(); break;
                 case 4: generateReports(); break;
-                case 5:
+                case 5: generateSyntheticData(); break;
+                case 6: showMetrics(); break;
+                case 7: manageReportJobs(); break;
+                case 8:
                     System.out.println("Thank you for using the system!");
+                    shutdown();
                     scanner.close();
                     return;
                 default:
@@ -164,11 +147,530 @@ public class MicrofinanceManagement {
         }
     }
 
+    private static void shutdown() {
+        waitForReportJobs();
+        closePaymentJournal();
+        if (ledgerSnapshots != null) {
+            ledgerSnapshots.shutdownNow();
+        }
+        Metrics.stopPeriodicDump();
+        if (clientCache != null) {
+            System.out.println("Client cache: " + clientCache.getStats());
+            System.out.println("Loan cache: " + loanCache.getStats());
+        }
+        if (!inMemoryStorage) {
+            System.out.println("Connection pool: " + dataSource.getStats());
+            dataSource.shutdown();
+        }
+    }
+
+    private static void runWithoutMenus(String[] args) {
+        Operations operations = new Operations(clientRepository, loanRepository, paymentRepository, portfolioRepository, loanLedger);
+        List<String> settings = Arrays.asList(args).subList(1, args.length);
+        if (args[0].equals("--script") && settings.size() == 1) {
+            runScript(operations, settings.get(0));
+        } else if (args[0].equals("--load")) {
+            runLoad(operations, settings);
+        } else if (args[0].equals("--export") && settings.size() >= 2) {
+            runExport(settings);
+        } else if (args[0].equals("--serve")) {
+            runServer(operations, settings);
+        } else if (args[0].equals("--payment-stress")) {
+            runPaymentStress(operations, settings);
+        } else {
+            System.out.println("Usage: MicrofinanceManagement --script <file|->");
+            System.out.println("       MicrofinanceManagement --load [threads=4] [seconds=30] [warmup=5] [seed=42] "
+                    + "[clients=0] [loans=0] [mix=" + LoadMix.DEFAULT + "]");
+            System.out.println("       MicrofinanceManagement --export <" + String.join("|", ReportExporter.REPORTS)
+                    + "> <file[.csv|.jsonl][.gz]> [format=csv|jsonl] [gzip=true|false]");
+            System.out.println("       MicrofinanceManagement --serve [port=" + HttpApi.DEFAULT_PORT + "] [host="
+                    + HttpApi.DEFAULT_HOST + "] [backlog=" + HttpApi.DEFAULT_BACKLOG + "] [seconds=0]");
+            System.out.println("       MicrofinanceManagement --payment-stress [threads=256] [loans=4] [payments=200] [seed=42] "
+                    + "[allowDatabase=false]");
+            System.out.println("         (creates a test client and loans that are kept: needs -Dmfms.storage=memory "
+                    + "unless allowDatabase=true)");
+        }
+    }
+
+    private static void runPaymentStress(Operations operations, List<String> args) {
+        PaymentStressSettings settings;
+        try {
+            settings = PaymentStressSettings.parse(args);
+        } catch (IllegalArgumentException e) {
+            System.out.println("Invalid stress settings: " + e.getMessage());
+            return;
+        }
+        if (!inMemoryStorage && !settings.isAllowDatabase()) {
+            System.out.println("The payment stress leaves its test client, loans and payments behind. Run it with "
+                    + "-Dmfms.storage=memory, or add allowDatabase=true to write them to the database.");
+            return;
+        }
+        System.out.printf("Posting %d payments from each of %d threads to %d loans...%n",
+                settings.getPayments(), settings.getThreads(), settings.getLoans());
+        try {
+            PaymentStressResult result = new PaymentStress(operations, clientRepository, loanRepository,
+                    paymentRepository, portfolioRepository, journaledPayments).run(settings);
+            System.out.println(result);
+            System.out.println("Payment lock stripes: " + paymentLocks.getStripes() + ", contended acquisitions: "
+                    + paymentLocks.getContended() + " of " + paymentLocks.getAcquired());
+            for (String violation : result.getViolations()) {
+                System.out.println("VIOLATION " + violation);
+            }
+            System.out.println(result.passed() ? "PASS: no lost updates or overpayments"
+                    : "FAIL: " + result.getViolations().size() + " violations, " + result.getErrors() + " errors");
+        } catch (SQLException e) {
+            System.err.println("Error running payment stress: " + e.getMessage());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            System.err.println("Payment stress interrupted.");
+        }
+    }
+
+    // Serves the HTTP API until the process is stopped, or for the given number of seconds
+    private static void runServer(Operations operations, List<String> args) {
+        String host = HttpApi.DEFAULT_HOST;
+        int port = HttpApi.DEFAULT_PORT;
+        int backlog = HttpApi.DEFAULT_BACKLOG;
+        long seconds = 0;
+        try {
+            for (String setting : args) {
+                int eq = setting.indexOf('=');
+                String key = eq < 0 ? setting : setting.substring(0, eq);
+                String value = eq < 0 ? "" : setting.substring(eq + 1);
+                switch (key) {
+                    case "host": host = value; break;
+                    case "port": port = Integer.parseInt(value); break;
+                    case "backlog": backlog = Integer.parseInt(value); break;
+                    case "seconds": seconds = Long.parseLong(value); break;
+                    default: throw new IllegalArgumentException("unknown setting '" + setting + "'");
+                }
+            }
+            if (port < 0 || port > 65535 || backlog <= 0 || seconds < 0) {
+                throw new IllegalArgumentException("port must be 0-65535, backlog positive, seconds not negative");
+            }
+        } catch (IllegalArgumentException e) {
+            System.out.println("Invalid server settings: " + e.getMessage());
+            return;
+        }
+        HttpApi api = new HttpApi(operations);
+        try {
+            InetSocketAddress address = api.start(host, port, backlog);
+            System.out.println("Serving the HTTP API on http://" + address.getHostString() + ":" + address.getPort()
+                    + (seconds > 0 ? " for " + seconds + " s" : " until stopped"));
+        } catch (IOException e) {
+            System.err.println("Error starting the HTTP server: " + e.getMessage());
+            return;
+        }
+        Thread stopHook = new Thread(api::stop, "http-api-shutdown");
+        Runtime.getRuntime().addShutdownHook(stopHook);
+        try {
+            if (!api.awaitStop(seconds, TimeUnit.SECONDS)) {
+                api.stop();
+                Runtime.getRuntime().removeShutdownHook(stopHook);
+            }
+            System.out.println("HTTP API stopped.");
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            api.stop();
+        }
+    }
+
+    // Format and compression follow the file name unless given explicitly
+    private static void runExport(List<String> args) {
+        Path file = Paths.get(args.get(1));
+        ExportFormat format = ExportFormat.ofFile(file);
+        boolean gzip = file.getFileName().toString().toLowerCase().endsWith(".gz");
+        try {
+            for (String setting : args.subList(2, args.size())) {
+                int eq = setting.indexOf('=');
+                String key = eq < 0 ? setting : setting.substring(0, eq);
+                String value = eq < 0 ? "" : setting.substring(eq + 1);
+                switch (key) {
+                    case "format": format = ExportFormat.parse(value); break;
+                    case "gzip": gzip = Boolean.parseBoolean(value); break;
+                    default: throw new IllegalArgumentException("unknown setting '" + setting + "'");
+                }
+            }
+        } catch (IllegalArgumentException e) {
+            System.out.println("Invalid export settings: " + e.getMessage());
+            return;
+        }
+        exportReport(args.get(0), file, format == null ? ExportFormat.CSV : format, gzip);
+    }
+
+    private static ReportExporter newReportExporter() {
+        return new ReportExporter(clientRepository, loanRepository, paymentRepository, portfolioRepository,
+                ExportChannel.DEFAULT_BUFFER_BYTES);
+    }
+
+    private static void exportReport(String report, Path file, ExportFormat format, boolean gzip) {
+        try {
+            ExportStats stats = newReportExporter().export(report, file, format, gzip);
+            System.out.println("Exported " + stats);
+            System.out.println("File written to " + file.toAbsolutePath());
+        } catch (IllegalArgumentException e) {
+            System.out.println("Invalid export: " + e.getMessage());
+        } catch (IOException e) {
+            System.err.println("Error writing export file: " + e.getMessage());
+        } catch (SQLException e) {
+            System.err.println("Error reading report rows: " + e.getMessage());
+        }
+    }
+
+    private static void runScript(Operations operations, String source) {
+        CommandScript script = new CommandScript(operations, System.out);
+        try (BufferedReader reader = source.equals("-")
+                ? new BufferedReader(new InputStreamReader(System.in, StandardCharsets.UTF_8))
+                : Files.newBufferedReader(Paths.get(source), StandardCharsets.UTF_8)) {
+            System.out.println("Script finished: " + script.run(reader));
+        } catch (IOException e) {
+            System.err.println("Error reading script: " + e.getMessage());
+        }
+    }
+
+    private static void runLoad(Operations operations, List<String> args) {
+        LoadDriverSettings settings;
+        try {
+            settings = LoadDriverSettings.parse(args);
+            LoadMix.parse(settings.getMix());
+        } catch (IllegalArgumentException e) {
+            System.out.println("Invalid load settings: " + e.getMessage());
+            return;
+        }
+        try {
+            if (settings.getClients() > 0) {
+                int threads = Runtime.getRuntime().availableProcessors();
+                SyntheticDataStats stats = new SyntheticDataGenerator(settings.getClients(), settings.getLoans(),
+                        settings.getSeed(), LocalDate.now(), inMemoryStorage ? threads : Math.min(threads, POOL_MAX_SIZE))
+                        .generate(storageSink);
+                portfolioRepository.reconcile();
+                System.out.println("Loaded synthetic data: " + stats);
+            }
+            System.out.printf("Running %d threads for %d s after a %d s warmup...%n",
+                    settings.getThreads(), settings.getSeconds(), settings.getWarmupSeconds());
+            LoadDriverResult result = new LoadDriver(operations, clientRepository, loanRepository).run(settings);
+            printLoadResult(result);
+            System.out.println("\nMetrics for the whole run, warmup included:");
+            Metrics.print(System.out);
+        } catch (IOException | SQLException e) {
+            System.err.println("Error preparing load run: " + e.getMessage());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            System.err.println("Load run interrupted.");
+        }
+    }
+
+    private static void printLoadResult(LoadDriverResult result) {
+        String border = "+-------------------+----------+----------+--------+------------+-----------+-----------+-----------+-----------+-----------+";
+        System.out.printf("%nMeasured %.1f s with %d threads (latency in microseconds)%n", result.getMeasuredNanos() / 1e9, result.getThreads());
+        System.out.println(border);
+        System.out.printf("| %-17s | %-8s | %-8s | %-6s | %-10s | %-9s | %-9s | %-9s | %-9s | %-9s |%n",
+                "operation", "ok", "rejected", "errors", "ops/sec", "mean", "p50", "p95", "p99", "max");
+        System.out.println(border);
+        for (LoadOperationStats stats : result.getOperations()) {
+            printLoadRow(result, stats);
+        }
+        System.out.println(border);
+        printLoadRow(result, result.getTotal());
+        System.out.println(border);
+        if (result.getFirstError() != null) {
+            System.out.println("First error: " + result.getFirstError());
+        }
+    }
+
+    private static void printLoadRow(LoadDriverResult result, LoadOperationStats stats) {
+        LatencyHistogram latency = stats.getLatency();
+        System.out.printf("| %-17s | %-8d | %-8d | %-6d | %-10.1f | %-9.1f | %-9.1f | %-9.1f | %-9.1f | %-9.1f |%n",
+                stats.getOperation(), stats.getSucceeded(), stats.getRejected(), stats.getErrors(),
+                result.opsPerSecond(stats), latency.getMeanNanos() / 1e3, latency.percentile(0.50) / 1e3,
+                latency.percentile(0.95) / 1e3, latency.percentile(0.99) / 1e3, latency.getMaxNanos() / 1e3);
+    }
+
+    private static void configureStorage() {
+        if (STORAGE_MEMORY.equalsIgnoreCase(System.getProperty(STORAGE_PROPERTY, STORAGE_JDBC))) {
+            InMemoryStorage storage = new InMemoryStorage();
+            clientRepository = storage.clientRepository();
+            loanRepository = storage.loanRepository();
+            paymentRepository = storage.paymentRepository();
+            portfolioRepository = storage.portfolioRepository();
+            loanEventRepository = storage.loanEventRepository();
+            storageSink = storage.dataSink();
+            inMemoryStorage = true;
+            System.out.println("Using in-memory storage engine (data is not persisted).");
+        } else {
+            // Initialize database and create tables
+            initializeDatabase();
+            clientRepository = new JdbcClientRepository(dataSource);
+            loanRepository = new JdbcLoanRepository(dataSource);
+            paymentRepository = new JdbcPaymentRepository(dataSource);
+            portfolioRepository = new JdbcPortfolioRepository(dataSource);
+            loanEventRepository = new JdbcLoanEventRepository(dataSource);
+            storageSink = new JdbcDataSink(dataSource);
+            seedPortfolioTotals();
+        }
+        enableEntityCache();
+        // Outside the caches: a change is published only once the cached loan has been invalidated, so a
+        // LoanBook refresh reacting to it cannot read the stale copy back
+        loanRepository = loanChanges.track(loanRepository);
+        paymentRepository = loanChanges.track(paymentRepository);
+        paymentLocks = new LoanLocks(Math.max(1, Integer.getInteger(PAYMENT_LOCK_STRIPES_PROPERTY, DEFAULT_PAYMENT_LOCK_STRIPES)));
+        paymentRepository = new LockingPaymentRepository(paymentRepository, paymentLocks);
+        // Outside the stripes: a journaled payment holds no connection, and waiting on the flush under a
+        // stripe would take same-loan payments one per flush
+        openPaymentJournal();
+        openLoanLedger();
+        registerGauges();
+        Metrics.startPeriodicDump();
+    }
+
+    // Rebuilds the analytics loan book from ledger snapshots and tails, and starts the snapshot sweep
+    private static void openLoanLedger() {
+        loanLedger = new LoanLedger(loanEventRepository,
+                Math.max(1, Integer.getInteger(LEDGER_SNAPSHOT_EVERY_PROPERTY, DEFAULT_LEDGER_SNAPSHOT_EVERY)));
+        if (!"false".equalsIgnoreCase(System.getProperty(LEDGER_PRELOAD_PROPERTY, "true"))) {
+            LoanBook book = new LoanBook();
+            loanChanges.subscribe(book); // before the rebuild, so writes made meanwhile are re-read on refresh
+            try {
+                LedgerRebuild rebuild = book.load(loanLedger);
+                loanBook = book;
+                if (rebuild.getLoans() > 0) {
+                    System.out.println("Loan book rebuilt from the ledger: " + rebuild);
+                }
+            } catch (SQLException | IllegalStateException e) {
+                loanChanges.unsubscribe(book);
+                System.err.println("Error rebuilding the loan book from the ledger: " + e.getMessage());
+            }
+        }
+        int minutes = Integer.getInteger(LEDGER_SNAPSHOT_MINUTES_PROPERTY, DEFAULT_LEDGER_SNAPSHOT_MINUTES);
+        if (minutes > 0) {
+            ledgerSnapshots = Executors.newSingleThreadScheduledExecutor(r -> {
+                Thread t = new Thread(r, "ledger-snapshots");
+                t.setDaemon(true);
+                return t;
+            });
+            ledgerSnapshots.scheduleWithFixedDelay(MicrofinanceManagement::compactLedger, minutes, minutes, TimeUnit.MINUTES);
+        }
+    }
+
+    private static void compactLedger() {
+        try {
+            loanLedger.compact();
+        } catch (SQLException | IllegalStateException e) {
+            System.err.println("Error writing ledger snapshots: " + e.getMessage());
+        }
+    }
+
+    // Puts the payment journal in front of the payment and loan repositories when -Dmfms.journal.dir is set
+    private static void openPaymentJournal() {
+        String directory = System.getProperty(JOURNAL_DIR_PROPERTY, "").trim();
+        if (directory.isEmpty()) {
+            return;
+        }
+        if (inMemoryStorage) {
+            System.out.println("The payment journal needs the database storage engine; payments are posted directly.");
+            return;
+        }
+        try {
+            long applied = paymentRepository.appliedJournalSequence();
+            int segmentBytes = Math.max(1, Integer.getInteger(JOURNAL_SEGMENT_MB_PROPERTY, DEFAULT_JOURNAL_SEGMENT_MB)) * 1024 * 1024;
+            PaymentJournal journal = PaymentJournal.open(Paths.get(directory), segmentBytes, applied);
+            JournaledPaymentRepository journaled = new JournaledPaymentRepository(paymentRepository, loanRepository, journal, applied);
+            long replay = journaled.start();
+            journaledPayments = journaled;
+            paymentRepository = journaled;
+            loanRepository = new JournalHoldingLoanRepository(loanRepository, journaled);
+            Metrics.gauge("journal.appended", journal::getAppendedSequence);
+            Metrics.gauge("journal.durable", journal::getDurableSequence);
+            Metrics.gauge("journal.applied", journaled::getAppliedSequence);
+            Metrics.gauge("journal.flushes", journal::getFlushes);
+            Metrics.gauge("journal.applyRejected", journaled::getApplyRejected);
+            System.out.println("Payments go through the journal in " + journal.getDirectory().toAbsolutePath()
+                    + (replay > 0 ? "; replaying " + replay + " payments not yet posted." : "."));
+        } catch (IOException | SQLException e) {
+            System.err.println("Error opening the payment journal, payments are posted directly: " + e.getMessage());
+        }
+    }
+
+    // Pool and cache state for the metrics report and JMX; read each time the metrics are shown
+    private static void registerGauges() {
+        if (!inMemoryStorage) {
+            Metrics.gauge("pool.active", () -> dataSource.getStats().getActive());
+            Metrics.gauge("pool.idle", () -> dataSource.getStats().getIdle());
+            Metrics.gauge("pool.waiting", () -> dataSource.getStats().getWaiting());
+            Metrics.gauge("pool.timeouts", () -> dataSource.getStats().getTimeouts());
+            Metrics.gauge("pool.avgWaitMillis", () -> dataSource.getStats().getAvgWaitMillis());
+            Metrics.gauge("pool.maxWaitMillis", () -> dataSource.getStats().getMaxWaitMillis());
+            Metrics.gauge("pool.statementCache.hitRatio", () -> dataSource.getStats().getStatementHitRatio());
+        }
+        if (clientCache != null) {
+            Metrics.gauge("cache.client.size", () -> clientCache.getStats().getSize());
+            Metrics.gauge("cache.client.hitRatio", () -> clientCache.getStats().getHitRatio());
+            Metrics.gauge("cache.client.evictions", () -> clientCache.getStats().getEvictions());
+            Metrics.gauge("cache.loan.size", () -> loanCache.getStats().getSize());
+            Metrics.gauge("cache.loan.hitRatio", () -> loanCache.getStats().getHitRatio());
+            Metrics.gauge("cache.loan.evictions", () -> loanCache.getStats().getEvictions());
+        }
+        Metrics.gauge("loanBook.rows", () -> loanBook != null ? loanBook.size() : 0);
+        Metrics.gauge("reportJobs.queued", () -> reportJobs.count(ReportJobStatus.QUEUED));
+        Metrics.gauge("reportJobs.running", () -> reportJobs.count(ReportJobStatus.RUNNING));
+        Metrics.gauge("paymentLocks.contended", () -> paymentLocks.getContended());
+        Metrics.gauge("ledger.snapshotsWritten", () -> loanLedger.getSnapshotsWritten());
+    }
+
+    private static void showMetrics() {
+        System.out.println("\n--- Metrics ---");
+        Metrics.print(System.out);
+    }
+
+    private static void manageReportJobs() {
+        while (true) {
+            printFinishedReportJobs();
+            System.out.println("\n***** REPORT JOBS *****");
+            System.out.println("1. Run Client Report in Background");
+            System.out.println("2. Run Loan Portfolio in Background");
+            System.out.println("3. Run Collection Report in Background");
+            System.out.println("4. Run Detailed Client-Loan Report in Background");
+            System.out.println("5. Run Report Export in Background");
+            System.out.println("6. View Jobs");
+            System.out.println("7. Back to Main Menu");
+
+            int choice = getIntInput("Enter your choice: ");
+            switch (choice) {
+                case 1: submitReportJob("client", MicrofinanceManagement::writeClientReport); break;
+                case 2: submitReportJob("portfolio", MicrofinanceManagement::writeLoanPortfolio); break;
+                case 3: submitReportJob("collection", MicrofinanceManagement::writeCollectionReport); break;
+                case 4: submitReportJob("detailed", out -> writeDetailedClientLoanReport(out, reportJobThreads())); break;
+                case 5: exportReportToFile(true); break;
+                case 6: viewReportJobs(); break;
+                case 7: return;
+                default: System.out.println("Invalid choice!");
+            }
+        }
+    }
+
+    private static void submitReportJob(String report, ReportJobTask task) {
+        try {
+            ReportJob job = reportJobs.submit(report, task);
+            System.out.println("Report job " + job.getId() + " submitted; output goes to " + job.getOutput());
+        } catch (IOException e) {
+            System.err.println("Error creating report output file: " + e.getMessage());
+        }
+    }
+
+    // A background detailed report shares the pool with the console and the other jobs: each job
+    // gets an equal part of the connections left after INTERACTIVE_CONNECTIONS are set aside
+    private static int reportJobThreads() {
+        int budget = inMemoryStorage ? reportThreads() : Math.min(reportThreads(), POOL_MAX_SIZE - INTERACTIVE_CONNECTIONS);
+        return Math.max(1, budget / reportJobs.getMaxConcurrent());
+    }
+
+    private static void viewReportJobs() {
+        List<ReportJob> jobs = reportJobs.list();
+        if (jobs.isEmpty()) {
+            System.out.println("No report jobs submitted yet.");
+            return;
+        }
+        String border = "+------+----------------------+----------+------------+-----------+-----------+";
+        System.out.printf("%nUp to %d jobs run at once; output in %s%n", reportJobs.getMaxConcurrent(),
+                reportJobs.getDirectory().toAbsolutePath());
+        System.out.println(border);
+        System.out.printf("| %-4s | %-20s | %-8s | %-10s | %-9s | %-9s |%n", "id", "report", "status", "written", "queued", "running");
+        System.out.println(border);
+        for (ReportJob job : jobs) {
+            System.out.printf("| %-4d | %-20s | %-8s | %-10s | %-9s | %-9s |%n", job.getId(), job.getReport(), job.getStatus(),
+                    formatBytes(job.getBytesWritten()), formatSeconds(job.getQueuedNanos()), formatSeconds(job.getRunNanos()));
+        }
+        System.out.println(border);
+        for (ReportJob job : jobs) {
+            if (job.getStatus() == ReportJobStatus.FAILED) {
+                System.out.println("Job " + job.getId() + " failed: " + job.getError());
+            }
+        }
+    }
+
+    // Shown before the menus, so a finished job is noticed without opening the jobs menu
+    private static void printFinishedReportJobs() {
+        for (ReportJob job : reportJobs.takeFinished()) {
+            if (job.getStatus() == ReportJobStatus.DONE) {
+                System.out.println("\n[Report job " + job.getId() + " (" + job.getReport() + ") finished in "
+                        + formatSeconds(job.getRunNanos()) + ": " + job.getOutput() + "]");
+            } else {
+                System.out.println("\n[Report job " + job.getId() + " (" + job.getReport() + ") failed: " + job.getError() + "]");
+            }
+        }
+    }
+
+    // Lets the applier post what the journal holds before the pool closes; the rest is replayed next start
+    private static void closePaymentJournal() {
+        if (journaledPayments == null) {
+            return;
+        }
+        try {
+            long left = journaledPayments.shutdown(JOURNAL_EXIT_WAIT_SECONDS, TimeUnit.SECONDS);
+            if (left > 0) {
+                System.out.println(left + " journaled payments not yet posted; they will be posted on the next start.");
+            }
+        } catch (IOException e) {
+            System.err.println("Error closing the payment journal: " + e.getMessage());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private static void waitForReportJobs() {
+        long pending = reportJobs.count(ReportJobStatus.QUEUED) + reportJobs.count(ReportJobStatus.RUNNING);
+        if (pending > 0) {
+            System.out.println("Waiting for " + pending + " report job(s) to finish...");
+        }
+        try {
+            if (!reportJobs.shutdown(REPORT_JOBS_EXIT_WAIT_MINUTES, TimeUnit.MINUTES)) {
+                System.err.println("Report jobs still running; their output files are incomplete.");
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        printFinishedReportJobs();
+    }
+
+    private static String formatBytes(long bytes) {
+        return bytes < 1024 * 1024 ? String.format("%.1f KB", bytes / 1024.0) : String.format("%.1f MB", bytes / (1024.0 * 1024));
+    }
+
+    private static String formatSeconds(long nanos) {
+        return String.format("%.1f s", nanos / 1e9);
+    }
+
+    // A database created before loan_portfolio existed starts with empty totals; build them once
+    private static void seedPortfolioTotals() {
+        try {
+            if (portfolioRepository.current().isEmpty()) {
+                portfolioRepository.reconcile();
+            }
+        } catch (SQLException e) {
+            System.err.println("Error initializing portfolio totals: " + e.getMessage());
+        }
+    }
+
+    // Wraps the repositories so repeated findClient/findLoan lookups are served from memory
+    private static void enableEntityCache() {
+        int size = Integer.getInteger(CACHE_SIZE_PROPERTY, DEFAULT_CACHE_SIZE);
+        long ttlMillis = Long.getLong(CACHE_TTL_PROPERTY, DEFAULT_CACHE_TTL_MS);
+        if (size <= 0) {
+            return;
+        }
+        clientCache = new EntityCache<>(size, ttlMillis, client -> client);
+        loanCache = new EntityCache<>(size, ttlMillis, CachingLoanRepository::copy);
+        clientRepository = new CachingClientRepository(clientRepository, clientCache, loanCache);
+        loanRepository = new CachingLoanRepository(loanRepository, loanCache);
+        paymentRepository = new CachingPaymentRepository(paymentRepository, loanCache);
+    }
+
     private static void initializeDatabase() {
         try {
             Class.forName("org.mariadb.jdbc.Driver");
-            try (Connection conn = DriverManager.getConnection(DB_URL, DB_USER, DB_PASSWORD)) {
-                Statement stmt = conn.createStatement();
+            dataSource.start();
+            try (Connection conn = dataSource.getConnection();
+                 Statement stmt = conn.createStatement()) {
                 stmt.execute("CREATE TABLE IF NOT EXISTS clients (" +
                         "id INTEGER PRIMARY KEY AUTO_INCREMENT, " +
                         "name VARCHAR(255) NOT NULL, " +
@@ -178,19 +680,61 @@ public class MicrofinanceManagement {
                 stmt.execute("CREATE TABLE IF NOT EXISTS loans (" +
                         "loan_id INTEGER PRIMARY KEY AUTO_INCREMENT, " +
                         "client_id INTEGER NOT NULL, " +
-                        "amount DOUBLE NOT NULL, " +
+                        "amount DECIMAL(15,2) NOT NULL, " +
                         "interest_rate DOUBLE NOT NULL, " +
                         "duration_months INTEGER NOT NULL, " +
                         "status VARCHAR(20) NOT NULL, " +
                         "issue_date DATE NOT NULL, " +
-                        "paid_amount DOUBLE DEFAULT 0.0, " +
+                        "paid_amount DECIMAL(15,2) DEFAULT 0.00, " +
                         "FOREIGN KEY (client_id) REFERENCES clients(id) ON DELETE RESTRICT)");
                 stmt.execute("CREATE TABLE IF NOT EXISTS payments (" +
                         "payment_id INTEGER PRIMARY KEY AUTO_INCREMENT, " +
                         "loan_id INTEGER NOT NULL, " +
-                        "amount DOUBLE NOT NULL, " +
+                        "amount DECIMAL(15,2) NOT NULL, " +
                         "payment_date DATE NOT NULL, " +
                         "FOREIGN KEY (loan_id) REFERENCES loans(loan_id) ON DELETE RESTRICT)");
+                // Running totals per loan status, maintained by every loan/payment write
+                stmt.execute("CREATE TABLE IF NOT EXISTS loan_portfolio (" +
+                        "status VARCHAR(20) PRIMARY KEY, " +
+                        "num_loans BIGINT NOT NULL DEFAULT 0, " +
+                        "total_amount DECIMAL(15,2) NOT NULL DEFAULT 0.00, " +
+                        "total_paid DECIMAL(15,2) NOT NULL DEFAULT 0.00, " +
+                        "total_outstanding DECIMAL(15,2) NOT NULL DEFAULT 0.00)");
+                // How far the payment journal has been posted, written with each journal batch
+                stmt.execute("CREATE TABLE IF NOT EXISTS payment_journal (" +
+                        "id INTEGER PRIMARY KEY, " +
+                        "applied_sequence BIGINT NOT NULL)");
+                // Append-only loan history (see LoanLedger); no foreign key, so a deleted loan keeps its events
+                stmt.execute("CREATE TABLE IF NOT EXISTS loan_events (" +
+                        "event_id BIGINT PRIMARY KEY AUTO_INCREMENT, " +
+                        "loan_id INTEGER NOT NULL, " +
+                        "event_type VARCHAR(20) NOT NULL, " +
+                        "recorded_at DATETIME NOT NULL, " +
+                        "client_id INTEGER, " +
+                        "amount DECIMAL(15,2), " +
+                        "interest_rate DOUBLE, " +
+                        "duration_months INTEGER, " +
+                        "status VARCHAR(20), " +
+                        "event_date DATE, " +
+                        "paid_amount DECIMAL(15,2), " +
+                        "INDEX idx_loan_events_loan (loan_id, event_id))");
+                // Latest folded state per loan and the last event folded into it
+                stmt.execute("CREATE TABLE IF NOT EXISTS loan_snapshots (" +
+                        "loan_id INTEGER PRIMARY KEY, " +
+                        "event_id BIGINT NOT NULL, " +
+                        "client_id INTEGER NOT NULL, " +
+                        "amount DECIMAL(15,2) NOT NULL, " +
+                        "interest_rate DOUBLE NOT NULL, " +
+                        "duration_months INTEGER NOT NULL, " +
+                        "status VARCHAR(20) NOT NULL, " +
+                        "issue_date DATE NOT NULL, " +
+                        "paid_amount DECIMAL(15,2) NOT NULL)");
+                // One-off data migrations already done, so later startups skip them
+                stmt.execute("CREATE TABLE IF NOT EXISTS schema_migrations (" +
+                        "name VARCHAR(64) PRIMARY KEY, " +
+                        "applied_at DATETIME NOT NULL)");
+                migrateMoneyColumns(conn, stmt);
+                adoptLoansIntoLedger(conn);
             }
         } catch (ClassNotFoundException e) {
             System.err.println("MariaDB JDBC Driver not found: " + e.getMessage());
@@ -199,32 +743,84 @@ public class MicrofinanceManagement {
         }
     }
 
-    private static boolean isClientTableEmpty(Connection conn) throws SQLException {
-        try (Statement stmt = conn.createStatement();
-             ResultSet rs = stmt.executeQuery("SELECT COUNT(*) FROM clients")) {
-            if (rs.next()) {
-                return rs.getInt(1) == 0;
+    // Loans written before the ledger existed get an ORIGINATED event carrying their current status and
+    // paid amount, so every loan can be rebuilt from events. Runs once per database: the schema_migrations
+    // row is written in the same transaction, and later startups only look it up.
+    private static void adoptLoansIntoLedger(Connection conn) throws SQLException {
+        try (PreparedStatement pstmt = conn.prepareStatement("SELECT 1 FROM schema_migrations WHERE name = ?")) {
+            pstmt.setString(1, LEDGER_ADOPTION_MIGRATION);
+            try (ResultSet rs = pstmt.executeQuery()) {
+                if (rs.next()) {
+                    return;
+                }
             }
-            return true;
+        }
+        int adopted;
+        conn.setAutoCommit(false);
+        try (Statement stmt = conn.createStatement();
+             PreparedStatement mark = conn.prepareStatement(
+                     "INSERT INTO schema_migrations (name, applied_at) VALUES (?, CURRENT_TIMESTAMP)")) {
+            adopted = stmt.executeUpdate("INSERT INTO loan_events (loan_id, event_type, recorded_at, client_id, amount, " +
+                    "interest_rate, duration_months, status, event_date, paid_amount) " +
+                    "SELECT l.loan_id, 'ORIGINATED', CURRENT_TIMESTAMP, l.client_id, l.amount, l.interest_rate, " +
+                    "l.duration_months, l.status, l.issue_date, l.paid_amount FROM loans l " +
+                    "WHERE NOT EXISTS (SELECT 1 FROM loan_events e WHERE e.loan_id = l.loan_id) ORDER BY l.loan_id");
+            mark.setString(1, LEDGER_ADOPTION_MIGRATION);
+            mark.executeUpdate();
+            conn.commit();
+        } catch (SQLException e) {
+            conn.rollback();
+            throw e;
+        } finally {
+            conn.setAutoCommit(true);
+        }
+        if (adopted > 0) {
+            System.out.println("Loan ledger: recorded the current state of " + adopted + " existing loans.");
         }
     }
 
-    private static void addSampleClients(Connection conn) throws SQLException {
-        String sql = "INSERT INTO clients (name, phone, address, credit_score) VALUES (?, ?, ?, ?)";
-        try (PreparedStatement pstmt = conn.prepareStatement(sql)) {
-            String[][] sampleClients = {
-                    {"Juan Dela Cruz", "09123456789", "New Manila", "75.0"},
-                    {"Maria Santos", "09234567890", "Quezon City", "65.0"},
-                    {"Sarah Marvy", "092356645458", "Alabang Muntinlupa", "80.0"}
-            };
-            for (String[] client : sampleClients) {
-                pstmt.setString(1, client[0]);
-                pstmt.setString(2, client[1]);
-                pstmt.setString(3, client[2]);
-                pstmt.setDouble(4, Double.parseDouble(client[3]));
-                pstmt.executeUpdate();
+    // Databases created before money moved to centavos still have DOUBLE columns. The stored
+    // amounts are rounded to the centavo in place; the portfolio totals accumulated in floating
+    // point are dropped instead, so startup recomputes them exactly from the loans table.
+    private static void migrateMoneyColumns(Connection conn, Statement stmt) throws SQLException {
+        String[][] moneyColumns = {
+                {"loans", "amount", "DECIMAL(15,2) NOT NULL"},
+                {"loans", "paid_amount", "DECIMAL(15,2) DEFAULT 0.00"},
+                {"payments", "amount", "DECIMAL(15,2) NOT NULL"},
+                {"loan_portfolio", "total_amount", "DECIMAL(15,2) NOT NULL DEFAULT 0.00"},
+                {"loan_portfolio", "total_paid", "DECIMAL(15,2) NOT NULL DEFAULT 0.00"},
+                {"loan_portfolio", "total_outstanding", "DECIMAL(15,2) NOT NULL DEFAULT 0.00"}
+        };
+        boolean portfolioMigrated = false;
+        try (PreparedStatement pstmt = conn.prepareStatement(
+                "SELECT DATA_TYPE FROM information_schema.COLUMNS " +
+                        "WHERE TABLE_SCHEMA = DATABASE() AND TABLE_NAME = ? AND COLUMN_NAME = ?")) {
+            for (String[] column : moneyColumns) {
+                pstmt.setString(1, column[0]);
+                pstmt.setString(2, column[1]);
+                try (ResultSet rs = pstmt.executeQuery()) {
+                    if (!rs.next() || !rs.getString(1).equalsIgnoreCase("double")) {
+                        continue;
+                    }
+                }
+                stmt.execute("ALTER TABLE " + column[0] + " MODIFY " + column[1] + " " + column[2]);
+                portfolioMigrated |= column[0].equals("loan_portfolio");
             }
         }
+        if (portfolioMigrated) {
+            stmt.execute("DELETE FROM loan_portfolio");
+        }
+    }
+
+    private static void addSampleClients() throws SQLException {
+        String[][] sampleClients = {
+                {"Juan Dela Cruz", "09123456789", "New Manila", "75.0"},
+                {"Maria Santos", "09234567890", "Quezon City", "65.0"},
+                {"Sarah Marvy", "092356645458", "Alabang Muntinlupa", "80.0"}
+        };
+        for (String[] client : sampleClients) {
+            clientRepository.add(client[0], client[1], client[2], Double.parseDouble(client[3]));
+        }
     }
 
     private static void showMainMenu() {
@@ -233,7 +829,71 @@ public class MicrofinanceManagement {
         System.out.println("2. Loan Management");
         System.out.println("3. Payment Processing");
         System.out.println("4. Generate Reports");
-        System.out.println("5. Exit the System");
+        System.out.println("5. Generate Synthetic Data");
+        System.out.println("6. Show Metrics");
+        System.out.println("7. Report Jobs");
+        System.out.println("8. Exit the System");
+    }
+
+    private static void generateSyntheticData() {
+        System.out.println("\n--- Generate Synthetic Data ---");
+        int clients;
+        int loans;
+        long seed;
+        LocalDate asOf;
+        try {
+            String input = getStringInput("Enter number of clients [" + DEFAULT_SYNTHETIC_CLIENTS + "]: ").trim();
+            clients = input.isEmpty() ? DEFAULT_SYNTHETIC_CLIENTS : Integer.parseInt(input);
+            input = getStringInput("Enter number of loans [" + DEFAULT_SYNTHETIC_LOANS + "]: ").trim();
+            loans = input.isEmpty() ? DEFAULT_SYNTHETIC_LOANS : Integer.parseInt(input);
+            input = getStringInput("Enter random seed [" + DEFAULT_SYNTHETIC_SEED + "]: ").trim();
+            seed = input.isEmpty() ? DEFAULT_SYNTHETIC_SEED : Long.parseLong(input);
+            input = getStringInput("Enter as-of date (yyyy-MM-dd) [today]: ").trim();
+            asOf = input.isEmpty() ? LocalDate.now() : LocalDate.parse(input);
+        } catch (NumberFormatException e) {
+            System.out.println("Invalid number format!");
+            return;
+        } catch (DateTimeParseException e) {
+            System.out.println("Invalid date format! Use yyyy-MM-dd.");
+            return;
+        }
+
+        System.out.println("1. Load into the " + (inMemoryStorage ? "in-memory storage" : "database"));
+        System.out.println("2. Write CSV files");
+        int target = getIntInput("Enter your choice: ");
+        if (target != 1 && target != 2) {
+            System.out.println("Invalid choice!");
+            return;
+        }
+        // Every pooled connection can carry one chunk; more workers would only queue for connections
+        int threads = Runtime.getRuntime().availableProcessors();
+        if (target == 1 && !inMemoryStorage) {
+            threads = Math.min(threads, POOL_MAX_SIZE);
+        }
+
+        try {
+            SyntheticDataGenerator generator = new SyntheticDataGenerator(clients, loans, seed, asOf, threads);
+            SyntheticDataStats stats;
+            if (target == 1) {
+                stats = generator.generate(storageSink);
+                // The rows bypassed the repositories: rebuild the totals and the loan book from the tables
+                portfolioRepository.reconcile();
+                discardLoanBook();
+            } else {
+                Path directory = Paths.get(getStringInput("Enter output directory: ").trim());
+                try (CsvDataSink sink = new CsvDataSink(directory)) {
+                    stats = generator.generate(sink);
+                }
+                System.out.println("Files written to " + directory.toAbsolutePath());
+            }
+            System.out.println("Generation finished: " + stats);
+        } catch (IllegalArgumentException e) {
+            System.out.println("Invalid settings: " + e.getMessage());
+        } catch (IOException e) {
+            System.err.println("Error writing synthetic data: " + e.getMessage());
+        } catch (SQLException e) {
+            System.err.println("Error loading synthetic data: " + e.getMessage());
+        }
     }
 
     private static void manageClients() {
@@ -244,16 +904,18 @@ public class MicrofinanceManagement {
             System.out.println("3. Search Client");
             System.out.println("4. Edit Client");
             System.out.println("5. Delete Client");
-            System.out.println("6. Back to Main Menu");
+            System.out.println("6. Import Clients from CSV");
+            System.out.println("7. Back to Main Menu");
 
             int choice = getIntInput("Enter your choice: ");
             switch (choice) {
                 case 1: addClient(); break;
-                case 2: viewAllClients(); break;
+                case 2: browseClients(); break;
                 case 3: searchClient(); break;
                 case 4: editClient(); break;
                 case 5: deleteClient(); break;
-                case 6: return;
+                case 6: importClients(); break;
+                case 7: return;
                 default: System.out.println("Invalid choice!");
             }
         }
@@ -265,29 +927,55 @@ public class MicrofinanceManagement {
         String phone = getStringInput("Enter phone number: ");
         String address = getStringInput("Enter address: ");
         double creditScore = getDoubleInput("Enter credit score (0-100): ");
-        if (creditScore < 0 || creditScore > 100) {
+        if (!Client.isValidCreditScore(creditScore)) {
             System.out.println("Invalid credit score! Must be between 0 and 100.");
             return;
         }
 
-        try (Connection conn = DriverManager.getConnection(DB_URL, DB_USER, DB_PASSWORD);
-             PreparedStatement pstmt = conn.prepareStatement(
-                     "INSERT INTO clients (name, phone, address, credit_score) VALUES (?, ?, ?, ?)",
-                     Statement.RETURN_GENERATED_KEYS)) {
-            pstmt.setString(1, name);
-            pstmt.setString(2, phone);
-            pstmt.setString(3, address);
-            pstmt.setDouble(4, creditScore);
-            pstmt.executeUpdate();
-            ResultSet rs = pstmt.getGeneratedKeys();
-            if (rs.next()) {
-                System.out.println("Client added successfully! Client ID: " + rs.getInt(1));
-                Client newClient = new Client(rs.getInt(1), name, phone, address, creditScore);
-                System.out.println("\nNew Client Details:");
-                printClientTable(Collections.singletonList(newClient));
-            }
+        long started = addClientTimer.start();
+        try {
+            Client newClient = clientRepository.add(name, phone, address, creditScore);
+            System.out.println("Client added successfully! Client ID: " + newClient.getId());
+            System.out.println("\nNew Client Details:");
+            printClientTable(Collections.singletonList(newClient));
         } catch (SQLException e) {
+            addClientTimer.failed();
             System.err.println("Error adding client: " + e.getMessage());
+        } finally {
+            addClientTimer.stop(started);
+        }
+    }
+
+    private static void importClients() {
+        System.out.println("\n--- Import Clients from CSV ---");
+        System.out.println("Expected columns: name,phone,address,credit_score (header row optional)");
+        Path csvFile = Paths.get(getStringInput("Enter CSV file path: ").trim());
+        if (!Files.isReadable(csvFile)) {
+            System.out.println("File not found or not readable!");
+            return;
+        }
+        String chunkInput = getStringInput("Enter rows per commit [" + ClientImporter.DEFAULT_CHUNK_SIZE + "]: ").trim();
+        int chunkSize;
+        try {
+            chunkSize = chunkInput.isEmpty() ? ClientImporter.DEFAULT_CHUNK_SIZE : Integer.parseInt(chunkInput);
+            if (chunkSize <= 0 || chunkSize > ClientImporter.MAX_CHUNK_SIZE) {
+                System.out.println("Invalid chunk size! Must be between 1 and " + ClientImporter.MAX_CHUNK_SIZE + ".");
+                return;
+            }
+        } catch (NumberFormatException e) {
+            System.out.println("Invalid chunk size format!");
+            return;
+        }
+
+        Path rejectsFile = Csv.rejectsFileFor(csvFile);
+        try {
+            BulkLoadStats stats = new ClientImporter(clientRepository, chunkSize).importFile(csvFile, rejectsFile);
+            System.out.println("Import finished: " + stats);
+            if (stats.getRowsRejected() > 0) {
+                System.out.println("Rejected rows written to " + rejectsFile);
+            }
+        } catch (IOException e) {
+            System.err.println("Error importing clients: " + e.getMessage());
         }
     }
 
@@ -318,11 +1006,8 @@ public class MicrofinanceManagement {
             return;
         }
 
-        try (Connection conn = DriverManager.getConnection(DB_URL, DB_USER, DB_PASSWORD);
-             PreparedStatement pstmt = conn.prepareStatement("DELETE FROM clients WHERE id = ?")) {
-            pstmt.setInt(1, id);
-            int rowsAffected = pstmt.executeUpdate();
-            if (rowsAffected > 0) {
+        try {
+            if (clientRepository.delete(id)) {
                 System.out.println("Client deleted successfully!");
                 System.out.println("\nUpdated Client List:");
                 viewAllClients();
@@ -335,251 +1020,255 @@ public class MicrofinanceManagement {
     }
 
     private static boolean hasAssociatedLoans(int clientId) {
-        try (Connection conn = DriverManager.getConnection(DB_URL, DB_USER, DB_PASSWORD);
-             PreparedStatement pstmt = conn.prepareStatement("SELECT COUNT(*) FROM loans WHERE client_id = ?")) {
-            pstmt.setInt(1, clientId);
-            ResultSet rs = pstmt.executeQuery();
-            if (rs.next()) {
-                return rs.getInt(1) > 0;
-            }
-            return false;
+        try {
+            return loanRepository.hasLoans(clientId);
         } catch (SQLException e) {
             System.err.println("Error checking associated loans: " + e.getMessage());
             return true; // Assume loans exist to prevent accidental deletion
         }
     }
 
+    private static final int CLIENT_ID_WIDTH = 5;
+    private static final int CLIENT_NAME_WIDTH = 20;
+    private static final int CLIENT_PHONE_WIDTH = 15;
+    private static final int CLIENT_ADDRESS_WIDTH = 20;
+    private static final int CLIENT_CREDIT_SCORE_WIDTH = 12;
+
+    private static final int LOAN_ID_WIDTH = 8;
+    private static final int LOAN_CLIENT_NAME_WIDTH = 20;
+    private static final int LOAN_AMOUNT_WIDTH = 10;
+    private static final int LOAN_RATE_WIDTH = 8;
+    private static final int LOAN_MONTHS_WIDTH = 8;
+    private static final int LOAN_STATUS_WIDTH = 12;
+    private static final int LOAN_ISSUE_DATE_WIDTH = 12;
+    private static final int LOAN_PAID_WIDTH = 10;
+    private static final int LOAN_MONTHLY_WIDTH = 12;
+    private static final int LOAN_BALANCE_WIDTH = 12;
+    private static final int LOAN_TOTAL_PAY_WIDTH = 12;
+
+    private static final int PAYMENT_ID_WIDTH = 12;
+    private static final int PAYMENT_LOAN_ID_WIDTH = 8;
+    private static final int PAYMENT_AMOUNT_WIDTH = 10;
+    private static final int PAYMENT_DATE_WIDTH = 12;
+
+    // priting the output like the Mysql Format
+    private static final TableRenderer<Client> CLIENT_TABLE = new TableRenderer<>(new TableLayout(
+            new String[] {"id", "name", "phone", "address", "credit_score"},
+            new int[] {CLIENT_ID_WIDTH, CLIENT_NAME_WIDTH, CLIENT_PHONE_WIDTH, CLIENT_ADDRESS_WIDTH, CLIENT_CREDIT_SCORE_WIDTH}),
+            MicrofinanceManagement::writeClientRow);
+
+    private static final TableRenderer<Loan> LOAN_TABLE = new TableRenderer<>(new TableLayout(
+            new String[] {"loan_id", "client_name", "amount", "rate", "months", "status", "issue_date", "paid", "monthly", "balance", "total_pay"},
+            new int[] {LOAN_ID_WIDTH, LOAN_CLIENT_NAME_WIDTH, LOAN_AMOUNT_WIDTH, LOAN_RATE_WIDTH, LOAN_MONTHS_WIDTH, LOAN_STATUS_WIDTH,
+                    LOAN_ISSUE_DATE_WIDTH, LOAN_PAID_WIDTH, LOAN_MONTHLY_WIDTH, LOAN_BALANCE_WIDTH, LOAN_TOTAL_PAY_WIDTH}),
+            MicrofinanceManagement::writeLoanRow);
+
+    private static final TableRenderer<Payment> PAYMENT_TABLE = new TableRenderer<>(new TableLayout(
+            new String[] {"payment_id", "loan_id", "amount", "date"},
+            new int[] {PAYMENT_ID_WIDTH, PAYMENT_LOAN_ID_WIDTH, PAYMENT_AMOUNT_WIDTH, PAYMENT_DATE_WIDTH}),
+            MicrofinanceManagement::writePaymentRow);
+
+    private static final TableRenderer<LoanHistoryEntry> LEDGER_TABLE = new TableRenderer<>(new TableLayout(
+            new String[] {"event_id", "event", "recorded", "detail", "status", "paid", "balance"},
+            new int[] {8, 14, 10, 30, 10, 14, 14}),
+            MicrofinanceManagement::writeLedgerRow);
+
+    private static final TableLayout SUMMARY_TABLE = new TableLayout(new String[] {"Metric", "Value"}, new int[] {23, 14});
+
+    private static TableWriter consoleTable;
+
+    // One buffered writer for the console, rebuilt if System.out has been redirected since it was made
+    private static TableWriter console() {
+        if (consoleTable == null || consoleTable.getSink() != System.out) {
+            consoleTable = new TableWriter(System.out, TableWriter.DEFAULT_BUFFER_CHARS);
+        }
+        return consoleTable;
+    }
+
     private static void printClientTable(List<Client> clients) {
-        if (clients.isEmpty()) {
-            System.out.println("No clients found.");
+        printTable(CLIENT_TABLE, clients, "No clients found.");
+    }
+
+    private static void printLoanTable(List<Loan> loans) {
+        printTable(LOAN_TABLE, loans, "No loans found.");
+    }
+
+    private static void printPaymentTable(List<Payment> payments) {
+        printTable(PAYMENT_TABLE, payments, "No payments found.");
+    }
+
+    // The console's writer for System.out, a fresh one for any other stream (a report job's file)
+    private static TableWriter tableWriter(PrintStream out) {
+        return out == System.out ? console() : new TableWriter(out, TableWriter.DEFAULT_BUFFER_CHARS);
+    }
+
+    private static <T> void printTable(TableRenderer<T> table, List<T> rows, String emptyMessage) {
+        if (rows.isEmpty()) {
+            System.out.println(emptyMessage);
             return;
         }
+        TableWriter out = console();
+        table.render(out, rows.iterator());
+        out.flush();
+    }
 
-        int idWidth = 5;
-        int nameWidth = 20;
-        int phoneWidth = 15;
-        int addressWidth = 20;
-        int creditScoreWidth = 12;
-
-        System.out.print("+");
-        System.out.print("-".repeat(idWidth + 2));
-        System.out.print("+");
-        System.out.print("-".repeat(nameWidth + 2));
-        System.out.print("+");
-        System.out.print("-".repeat(phoneWidth + 2));
-        System.out.print("+");
-        System.out.print("-".repeat(addressWidth + 2));
-        System.out.print("+");
-        System.out.print("-".repeat(creditScoreWidth + 2));
-        System.out.println("+");
-
-        System.out.printf("| %-" + idWidth + "s | %-" + nameWidth + "s | %-" + phoneWidth + "s | %-" + addressWidth + "s | %-" + creditScoreWidth + "s |%n",
-                "id", "name", "phone", "address", "credit_score");
-        // priting the output like the Mysql Format
-        System.out.print("+");
-        System.out.print("-".repeat(idWidth + 2));
-        System.out.print("+");
-        System.out.print("-".repeat(nameWidth + 2));
-        System.out.print("+");
-        System.out.print("-".repeat(phoneWidth + 2));
-        System.out.print("+");
-        System.out.print("-".repeat(addressWidth + 2));
-        System.out.print("+");
-        System.out.print("-".repeat(creditScoreWidth + 2));
-        System.out.println("+");
-
-        for (Client client : clients) {
-            System.out.printf("| %-" + idWidth + "d | %-" + nameWidth + "s | %-" + phoneWidth + "s | %-" + addressWidth + "s | %-" + creditScoreWidth + ".1f |%n",
-                    client.getId(), client.getName(), client.getPhone(), client.getAddress(), client.getCreditScore());
-        }
-        // printing out like Mysql Database format
-        System.out.print("+");
-        System.out.print("-".repeat(idWidth + 2));
-        System.out.print("+");
-        System.out.print("-".repeat(nameWidth + 2));
-        System.out.print("+");
-        System.out.print("-".repeat(phoneWidth + 2));
-        System.out.print("+");
-        System.out.print("-".repeat(addressWidth + 2));
-        System.out.print("+");
-        System.out.print("-".repeat(creditScoreWidth + 2));
-        System.out.println("+");
+    private static void writeClientRow(TableWriter out, Client client) {
+        out.cell(client.getId()).cell(client.getName()).cell(client.getPhone()).cell(client.getAddress())
+                .cellOneDecimal(client.getCreditScore());
     }
 
-    private static void printLoanTable(List<Loan> loans) {
-        if (loans.isEmpty()) {
-            System.out.println("No loans found.");
-            return;
+    // status, paid and balance are the loan after the event; a deleted loan shows none
+    private static void writeLedgerRow(TableWriter out, LoanHistoryEntry entry) {
+        LoanEvent event = entry.getEvent();
+        Loan loan = entry.getState();
+        out.cell(event.getEventId()).cell(event.getType().name()).cellDate(event.getRecordedAt()).cell(ledgerDetail(event));
+        if (loan == null) {
+            out.cell("-").cell("-").cell("-");
+        } else {
+            long balance = loan.getStatus().equals("APPROVED") ? Math.max(0, loan.calculateTotalPayableCents() - loan.getPaidCents()) : 0;
+            out.cell(loan.getStatus()).cellMoney(loan.getPaidCents()).cellMoney(balance);
         }
+    }
 
-        int loanIdWidth = 8;
-        int clientNameWidth = 20;
-        int amountWidth = 10;
-        int rateWidth = 8;
-        int monthsWidth = 8;
-        int statusWidth = 12;
-        int issueDateWidth = 12;
-        int paidWidth = 10;
-        int monthlyWidth = 12;
-        int balanceWidth = 12;
-        int totalPayWidth = 12;
-
-        System.out.print("+");
-        System.out.print("-".repeat(loanIdWidth + 2));
-        System.out.print("+");
-        System.out.print("-".repeat(clientNameWidth + 2));
-        System.out.print("+");
-        System.out.print("-".repeat(amountWidth + 2));
-        System.out.print("+");
-        System.out.print("-".repeat(rateWidth + 2));
-        System.out.print("+");
-        System.out.print("-".repeat(monthsWidth + 2));
-        System.out.print("+");
-        System.out.print("-".repeat(statusWidth + 2));
-        System.out.print("+");
-        System.out.print("-".repeat(issueDateWidth + 2));
-        System.out.print("+");
-        System.out.print("-".repeat(paidWidth + 2));
-        System.out.print("+");
-        System.out.print("-".repeat(monthlyWidth + 2));
-        System.out.print("+");
-        System.out.print("-".repeat(balanceWidth + 2));
-        System.out.print("+");
-        System.out.print("-".repeat(totalPayWidth + 2));
-        System.out.println("+");
-
-        System.out.printf("| %-" + loanIdWidth + "s | %-" + clientNameWidth + "s | %-" + amountWidth + "s | %-" + rateWidth + "s | %-" + monthsWidth + "s | %-" + statusWidth + "s | %-" + issueDateWidth + "s | %-" + paidWidth + "s | %-" + monthlyWidth + "s | %-" + balanceWidth + "s | %-" + totalPayWidth + "s |%n",
-                "loan_id", "client_name", "amount", "rate", "months", "status", "issue_date", "paid", "monthly", "balance", "total_pay");
-
-        System.out.print("+");
-        System.out.print("-".repeat(loanIdWidth + 2));
-        System.out.print("+");
-        System.out.print("-".repeat(clientNameWidth + 2));
-        System.out.print("+");
-        System.out.print("-".repeat(amountWidth + 2));
-        System.out.print("+");
-        System.out.print("-".repeat(rateWidth + 2));
-        System.out.print("+");
-        System.out.print("-".repeat(monthsWidth + 2));
-        System.out.print("+");
-        System.out.print("-".repeat(statusWidth + 2));
-        System.out.print("+");
-        System.out.print("-".repeat(issueDateWidth + 2));
-        System.out.print("+");
-        System.out.print("-".repeat(paidWidth + 2));
-        System.out.print("+");
-        System.out.print("-".repeat(monthlyWidth + 2));
-        System.out.print("+");
-        System.out.print("-".repeat(balanceWidth + 2));
-        System.out.print("+");
-        System.out.print("-".repeat(totalPayWidth + 2));
-        System.out.println("+");
-
-        for (Loan loan : loans) {
-            System.out.printf("| %-" + loanIdWidth + "d | %-" + clientNameWidth + "s | %-" + amountWidth + ".2f | %-" + rateWidth + ".1f | %-" + monthsWidth + "d | %-" + statusWidth + "s | %-" + issueDateWidth + "s | %-" + paidWidth + ".2f | %-" + monthlyWidth + ".2f | %-" + balanceWidth + ".2f | %-" + totalPayWidth + ".2f |%n",
-                    loan.getLoanId(), loan.getClientName(), loan.getAmount(), loan.getInterestRate(),
-                    loan.getDurationMonths(), loan.getStatus(), dateFormat.format(loan.getIssueDate()),
-                    loan.getPaidAmount(), loan.calculateMonthlyPayment(), loan.calculateOutstandingBalance(),
-                    loan.calculateTotalPayable());
-        }
-
-        System.out.print("+");
-        System.out.print("-".repeat(loanIdWidth + 2));
-        System.out.print("+");
-        System.out.print("-".repeat(clientNameWidth + 2));
-        System.out.print("+");
-        System.out.print("-".repeat(amountWidth + 2));
-        System.out.print("+");
-        System.out.print("-".repeat(rateWidth + 2));
-        System.out.print("+");
-        System.out.print("-".repeat(monthsWidth + 2));
-        System.out.print("+");
-        System.out.print("-".repeat(statusWidth + 2));
-        System.out.print("+");
-        System.out.print("-".repeat(issueDateWidth + 2));
-        System.out.print("+");
-        System.out.print("-".repeat(paidWidth + 2));
-        System.out.print("+");
-        System.out.print("-".repeat(monthlyWidth + 2));
-        System.out.print("+");
-        System.out.print("-".repeat(balanceWidth + 2));
-        System.out.print("+");
-        System.out.print("-".repeat(totalPayWidth + 2));
-        System.out.println("+");
+    private static String ledgerDetail(LoanEvent event) {
+        switch (event.getType()) {
+            case ORIGINATED:
+            case AMENDED:
+                return String.format("%s at %.1f%% for %d mo", Money.format(event.getAmountCents()),
+                        event.getInterestRate(), event.getDurationMonths());
+            case PAYMENT:
+                return String.format("%s on %tF", Money.format(event.getAmountCents()), event.getEventDate());
+            default:
+                return "";
+        }
     }
 
-    private static void printPaymentTable(List<Payment> payments) {
-        if (payments.isEmpty()) {
-            System.out.println("No payments found.");
-            return;
+    private static void writeLoanRow(TableWriter out, Loan loan) {
+        out.cell(loan.getLoanId()).cell(loan.getClientName()).cellMoney(loan.getAmountCents())
+                .cellOneDecimal(loan.getInterestRate()).cell(loan.getDurationMonths()).cell(loan.getStatus())
+                .cellDate(loan.getIssueDate()).cellMoney(loan.getPaidCents()).cellMoney(loan.calculateMonthlyPaymentCents())
+                .cellMoney(loan.calculateOutstandingBalanceCents()).cellMoney(loan.calculateTotalPayableCents());
+    }
+
+    private static void writePaymentRow(TableWriter out, Payment payment) {
+        out.cell(payment.getPaymentId()).cell(payment.getLoanId()).cellMoney(payment.getAmountCents())
+                .cellDate(payment.getPaymentDate());
+    }
+
+    // Renders rows as a cursor delivers them: header on the first row, closing border at the end.
+    // Rows collect in the console writer's buffer and go out in large writes.
+    private static final class StreamingTable<T> implements RowHandler<T> {
+        private final TableRenderer<T> table;
+        private final TableWriter out;
+        private long rows;
+
+        StreamingTable(TableRenderer<T> table, TableWriter out) {
+            this.table = table;
+            this.out = out;
+        }
+
+        @Override
+        public void accept(T item) {
+            if (rows++ == 0) {
+                table.header(out);
+            }
+            table.row(out, item);
+        }
+
+        void finish(String emptyMessage) {
+            if (rows == 0) {
+                out.line(emptyMessage);
+            } else {
+                table.footer(out);
+            }
+            out.flush();
+        }
+
+        // Writes out the rows buffered so far, e.g. before reporting an error mid-stream
+        void flush() {
+            out.flush();
         }
+    }
+
+    // Keyset pagination: each page is fetched relative to the first/last id shown, never with OFFSET.
+    private static <T> void browsePages(String label, PageQuery<T> after, PageQuery<T> before,
+                                        ToIntFunction<T> idOf, Consumer<List<T>> printer) {
+        try {
+            List<T> page = after.fetch(0, PAGE_SIZE);
+            if (page.isEmpty()) {
+                printer.accept(page);
+                return;
+            }
+            int pageNumber = 1;
+            while (true) {
+                System.out.println("\n--- All " + label + " (page " + pageNumber + ") ---");
+                printer.accept(page);
+                String nav = getStringInput("[N]ext page, [P]revious page, [Q]uit: ").trim().toLowerCase();
+                if (nav.equals("n")) {
+                    List<T> next = after.fetch(idOf.applyAsInt(page.get(page.size() - 1)), PAGE_SIZE);
+                    if (next.isEmpty()) {
+                        System.out.println("Already at the last page.");
+                    } else {
+                        page = next;
+                        pageNumber++;
+                    }
+                } else if (nav.equals("p")) {
+                    List<T> previous = before.fetch(idOf.applyAsInt(page.get(0)), PAGE_SIZE);
+                    if (previous.isEmpty()) {
+                        System.out.println("Already at the first page.");
+                    } else {
+                        page = previous;
+                        pageNumber = Math.max(1, pageNumber - 1);
+                    }
+                } else if (nav.equals("q")) {
+                    return;
+                } else {
+                    System.out.println("Invalid choice!");
+                }
+            }
+        } catch (SQLException e) {
+            System.err.println("Error retrieving " + label + ": " + e.getMessage());
+        }
+    }
 
-        int paymentIdWidth = 12;
-        int loanIdWidth = 8;
-        int amountWidth = 10;
-        int dateWidth = 12;
-
-        System.out.print("+");
-        System.out.print("-".repeat(paymentIdWidth + 2));
-        System.out.print("+");
-        System.out.print("-".repeat(loanIdWidth + 2));
-        System.out.print("+");
-        System.out.print("-".repeat(amountWidth + 2));
-        System.out.print("+");
-        System.out.print("-".repeat(dateWidth + 2));
-        System.out.println("+");
-
-        System.out.printf("| %-" + paymentIdWidth + "s | %-" + loanIdWidth + "s | %-" + amountWidth + "s | %-" + dateWidth + "s |%n",
-                "payment_id", "loan_id", "amount", "date");
-
-        System.out.print("+");
-        System.out.print("-".repeat(paymentIdWidth + 2));
-        System.out.print("+");
-        System.out.print("-".repeat(loanIdWidth + 2));
-        System.out.print("+");
-        System.out.print("-".repeat(amountWidth + 2));
-        System.out.print("+");
-        System.out.print("-".repeat(dateWidth + 2));
-        System.out.println("+");
-
-        for (Payment payment : payments) {
-            System.out.printf("| %-" + paymentIdWidth + "d | %-" + loanIdWidth + "d | %-" + amountWidth + ".2f | %-" + dateWidth + "s |%n",
-                    payment.getPaymentId(), payment.getLoanId(), payment.getAmount(),
-                    dateFormat.format(payment.getPaymentDate()));
-        }
-
-        System.out.print("+");
-        System.out.print("-".repeat(paymentIdWidth + 2));
-        System.out.print("+");
-        System.out.print("-".repeat(loanIdWidth + 2));
-        System.out.print("+");
-        System.out.print("-".repeat(amountWidth + 2));
-        System.out.print("+");
-        System.out.print("-".repeat(dateWidth + 2));
-        System.out.println("+");
+    private interface PageQuery<T> {
+        List<T> fetch(int keyId, int limit) throws SQLException;
+    }
+
+    private static void browseClients() {
+        System.out.println("\n1. Page through clients (" + PAGE_SIZE + " per page)");
+        System.out.println("2. Stream all clients");
+        int choice = getIntInput("Enter choice: ");
+        switch (choice) {
+            case 1:
+                browsePages("Clients", clientRepository::findPage, clientRepository::findPageBefore,
+                        Client::getId, MicrofinanceManagement::printClientTable);
+                break;
+            case 2: viewAllClients(); break;
+            default: System.out.println("Invalid choice!");
+        }
     }
 
     private static void viewAllClients() {
-        System.out.println("\n--- All Clients ---");
-        List<Client> clients = new ArrayList<>();
-        try (Connection conn = DriverManager.getConnection(DB_URL, DB_USER, DB_PASSWORD);
-             Statement stmt = conn.createStatement();
-             ResultSet rs = stmt.executeQuery("SELECT * FROM clients")) {
-            while (rs.next()) {
-                clients.add(new Client(
-                        rs.getInt("id"),
-                        rs.getString("name"),
-                        rs.getString("phone"),
-                        rs.getString("address"),
-                        rs.getDouble("credit_score")
-                ));
-            }
-            printClientTable(clients);
+        try {
+            writeAllClients(System.out);
         } catch (SQLException e) {
             System.err.println("Error retrieving clients: " + e.getMessage());
         }
     }
 
+    private static void writeAllClients(PrintStream out) throws SQLException {
+        out.println("\n--- All Clients ---");
+        StreamingTable<Client> table = new StreamingTable<>(CLIENT_TABLE, tableWriter(out));
+        try {
+            clientRepository.streamAll(table);
+            table.finish("No clients found.");
+        } catch (SQLException e) {
+            table.flush();
+            throw e;
+        }
+    }
+
     private static void searchClient() {
         int id = getIntInput("Enter client ID to search: ");
         Client client = findClient(id);
@@ -618,7 +1307,7 @@ public class MicrofinanceManagement {
         double creditScore;
         try {
             creditScore = creditScoreInput.isEmpty() ? client.getCreditScore() : Double.parseDouble(creditScoreInput);
-            if (creditScore < 0 || creditScore > 100) {
+            if (!Client.isValidCreditScore(creditScore)) {
                 System.out.println("Invalid credit score! Must be between 0 and 100.");
                 return;
             }
@@ -627,18 +1316,10 @@ public class MicrofinanceManagement {
             return;
         }
 
-        try (Connection conn = DriverManager.getConnection(DB_URL, DB_USER, DB_PASSWORD);
-             PreparedStatement pstmt = conn.prepareStatement(
-                     "UPDATE clients SET name = ?, phone = ?, address = ?, credit_score = ? WHERE id = ?")) {
-            pstmt.setString(1, name);
-            pstmt.setString(2, phone);
-            pstmt.setString(3, address);
-            pstmt.setDouble(4, creditScore);
-            pstmt.setInt(5, id);
-            int rowsAffected = pstmt.executeUpdate();
-            if (rowsAffected > 0) {
+        Client updatedClient = new Client(id, name, phone, address, creditScore);
+        try {
+            if (clientRepository.update(updatedClient)) {
                 System.out.println("\nClient updated successfully!");
-                Client updatedClient = new Client(id, name, phone, address, creditScore);
                 System.out.println("\nUpdated Client Details:");
                 printClientTable(Collections.singletonList(updatedClient));
             } else {
@@ -658,17 +1339,19 @@ public class MicrofinanceManagement {
             System.out.println("4. View Client Loans");
             System.out.println("5. Edit Loan");
             System.out.println("6. Delete Loan");
-            System.out.println("7. Back to Main Menu");
+            System.out.println("7. Loan History");
+            System.out.println("8. Back to Main Menu");
 
             int choice = getIntInput("Enter your choice: ");
             switch (choice) {
                 case 1: applyForLoan(); break;
                 case 2: approveRejectLoan(); break;
-                case 3: viewAllLoans(); break;
+                case 3: browseLoans(); break;
                 case 4: viewClientLoans(); break;
                 case 5: editLoan(); break;
                 case 6: deleteLoan(); break;
-                case 7: return;
+                case 7: viewLoanHistory(); break;
+                case 8: return;
                 default: System.out.println("Invalid choice!");
             }
         }
@@ -687,18 +1370,18 @@ public class MicrofinanceManagement {
         System.out.println("Client Details:");
         printClientTable(Collections.singletonList(client));
 
-        if (client.getCreditScore() < MIN_CREDIT_SCORE_FOR_LOAN) {
+        if (client.getCreditScore() < Operations.MIN_CREDIT_SCORE_FOR_LOAN) {
             System.out.println("Client credit score is too low to apply for a loan.");
             return;
         }
 
         if (hasPendingLoans(clientId)) {
-            System.out.println("Client has pending loans. Cannot apply for a new loan until resolved.");
+            System.out.println(Operations.PENDING_LOAN_EXISTS);
             return;
         }
 
-        double amount = getDoubleInput("Enter loan amount: ");
-        if (amount <= 0) {
+        long amountCents = getMoneyInput("Enter loan amount: ");
+        if (amountCents <= 0) {
             System.out.println("Invalid loan amount! Must be positive.");
             return;
         }
@@ -713,27 +1396,21 @@ public class MicrofinanceManagement {
             return;
         }
 
-        try (Connection conn = DriverManager.getConnection(DB_URL, DB_USER, DB_PASSWORD);
-             PreparedStatement pstmt = conn.prepareStatement(
-                     "INSERT INTO loans (client_id, amount, interest_rate, duration_months, status, issue_date, paid_amount) " +
-                             "VALUES (?, ?, ?, ?, ?, ?, ?)", Statement.RETURN_GENERATED_KEYS)) {
-            pstmt.setInt(1, clientId);
-            pstmt.setDouble(2, amount);
-            pstmt.setDouble(3, interestRate);
-            pstmt.setInt(4, duration);
-            pstmt.setString(5, "PENDING");
-            pstmt.setString(6, dateFormat.format(new Date()));
-            pstmt.setDouble(7, 0.0);
-            pstmt.executeUpdate();
-            ResultSet rs = pstmt.getGeneratedKeys();
-            if (rs.next()) {
-                System.out.println("Loan application submitted for " + client.getName() + "! Loan ID: " + rs.getInt(1));
-                Loan loan = new Loan(rs.getInt(1), clientId, amount, interestRate, duration, "PENDING", new Date(), 0.0, client.getName());
-                System.out.println("\nLoan Details:");
-                printLoanTable(Collections.singletonList(loan));
+        long started = applyForLoanTimer.start();
+        try {
+            Loan loan = loanRepository.addPending(clientId, amountCents, interestRate, duration, new Date());
+            if (loan == null) {
+                System.out.println(Operations.PENDING_LOAN_EXISTS);
+                return;
             }
+            System.out.println("Loan application submitted for " + client.getName() + "! Loan ID: " + loan.getLoanId());
+            System.out.println("\nLoan Details:");
+            printLoanTable(Collections.singletonList(loan));
         } catch (SQLException e) {
+            applyForLoanTimer.failed();
             System.err.println("Error applying for loan: " + e.getMessage());
+        } finally {
+            applyForLoanTimer.stop(started);
         }
     }
 
@@ -751,11 +1428,11 @@ public class MicrofinanceManagement {
         printLoanTable(Collections.singletonList(loan));
 
         System.out.println("\nEnter new values (press Enter to keep current value):");
-        String amountInput = getStringInput("Enter new loan amount [" + loan.getAmount() + "]: ");
-        double amount;
+        String amountInput = getStringInput("Enter new loan amount [" + Money.format(loan.getAmountCents()) + "]: ");
+        long amountCents;
         try {
-            amount = amountInput.isEmpty() ? loan.getAmount() : Double.parseDouble(amountInput);
-            if (amount <= 0) {
+            amountCents = amountInput.isEmpty() ? loan.getAmountCents() : Money.parse(amountInput);
+            if (amountCents <= 0) {
                 System.out.println("Invalid loan amount! Must be positive.");
                 return;
             }
@@ -809,19 +1486,11 @@ public class MicrofinanceManagement {
                 return;
         }
 
-        try (Connection conn = DriverManager.getConnection(DB_URL, DB_USER, DB_PASSWORD);
-             PreparedStatement pstmt = conn.prepareStatement(
-                     "UPDATE loans SET amount = ?, interest_rate = ?, duration_months = ?, status = ? WHERE loan_id = ?")) {
-            pstmt.setDouble(1, amount);
-            pstmt.setDouble(2, interestRate);
-            pstmt.setInt(3, duration);
-            pstmt.setString(4, status);
-            pstmt.setInt(5, loanId);
-            int rowsAffected = pstmt.executeUpdate();
-            if (rowsAffected > 0) {
+        try {
+            if (loanRepository.update(loanId, amountCents, interestRate, duration, status)) {
                 System.out.println("\nLoan updated successfully!");
-                Loan updatedLoan = new Loan(loan.getLoanId(), loan.getClientId(), amount, interestRate, duration,
-                        status, loan.getIssueDate(), loan.getPaidAmount(), loan.getClientName());
+                Loan updatedLoan = new Loan(loan.getLoanId(), loan.getClientId(), amountCents, interestRate, duration,
+                        status, loan.getIssueDate(), loan.getPaidCents(), loan.getClientName());
                 System.out.println("\nUpdated Loan Details:");
                 printLoanTable(Collections.singletonList(updatedLoan));
             } else {
@@ -859,11 +1528,8 @@ public class MicrofinanceManagement {
             return;
         }
 
-        try (Connection conn = DriverManager.getConnection(DB_URL, DB_USER, DB_PASSWORD);
-             PreparedStatement pstmt = conn.prepareStatement("DELETE FROM loans WHERE loan_id = ?")) {
-            pstmt.setInt(1, loanId);
-            int rowsAffected = pstmt.executeUpdate();
-            if (rowsAffected > 0) {
+        try {
+            if (loanRepository.delete(loanId)) {
                 System.out.println("Loan deleted successfully!");
                 System.out.println("\nUpdated Loan List:");
                 viewAllLoans();
@@ -875,15 +1541,30 @@ public class MicrofinanceManagement {
         }
     }
 
-    private static boolean hasAssociatedPayments(int loanId) {
-        try (Connection conn = DriverManager.getConnection(DB_URL, DB_USER, DB_PASSWORD);
-             PreparedStatement pstmt = conn.prepareStatement("SELECT COUNT(*) FROM payments WHERE loan_id = ?")) {
-            pstmt.setInt(1, loanId);
-            ResultSet rs = pstmt.executeQuery();
-            if (rs.next()) {
-                return rs.getInt(1) > 0;
+    // Every ledger event of the loan with the state after it, then the loan rebuilt from snapshot + tail
+    private static void viewLoanHistory() {
+        System.out.println("\n--- Loan History ---");
+        int loanId = getIntInput("Enter loan ID: ");
+        try {
+            LoanHistory history = loanLedger.history(loanId);
+            if (history.isEmpty()) {
+                System.out.println("Loan not found!");
+                return;
             }
-            return false;
+            printTable(LEDGER_TABLE, history.getEntries(), "No events found.");
+            LoanReplay replay = loanLedger.replay(loanId);
+            Loan rebuilt = replay.getLoan();
+            String from = replay.getSnapshotEventId() > 0 ? "snapshot at event " + replay.getSnapshotEventId() : "the first event";
+            System.out.println("Rebuilt from " + from + " plus " + replay.getTailEvents() + " events: "
+                    + (rebuilt == null ? "deleted" : rebuilt.getStatus() + ", paid " + Money.format(rebuilt.getPaidCents())));
+        } catch (SQLException | IllegalStateException e) {
+            System.err.println("Error reading loan history: " + e.getMessage());
+        }
+    }
+
+    private static boolean hasAssociatedPayments(int loanId) {
+        try {
+            return paymentRepository.hasPayments(loanId);
         } catch (SQLException e) {
             System.err.println("Error checking associated payments: " + e.getMessage());
             return true; // Assume payments exist to prevent accidental deletion
@@ -891,14 +1572,8 @@ public class MicrofinanceManagement {
     }
 
     private static boolean hasPendingLoans(int clientId) {
-        try (Connection conn = DriverManager.getConnection(DB_URL, DB_USER, DB_PASSWORD);
-             PreparedStatement pstmt = conn.prepareStatement("SELECT COUNT(*) FROM loans WHERE client_id = ? AND status = 'PENDING'")) {
-            pstmt.setInt(1, clientId);
-            ResultSet rs = pstmt.executeQuery();
-            if (rs.next()) {
-                return rs.getInt(1) > 0;
-            }
-            return false;
+        try {
+            return loanRepository.hasPendingLoans(clientId);
         } catch (SQLException e) {
             System.err.println("Error checking pending loans: " + e.getMessage());
             return false;
@@ -926,9 +1601,11 @@ public class MicrofinanceManagement {
         System.out.println("Client Details:");
         printClientTable(Collections.singletonList(client));
 
-        if (client.getCreditScore() < MIN_CREDIT_SCORE_FOR_APPROVAL) {
+        if (client.getCreditScore() < Operations.MIN_CREDIT_SCORE_FOR_APPROVAL) {
             System.out.println("Cannot approve: Client credit score is below approval threshold.");
-            updateLoanStatus(loanId, "REJECT");
+            if (!decideLoan(loanId, "REJECT")) {
+                return;
+            }
             System.out.println("Loan automatically rejected.");
             loan.setStatus("REJECT");
             System.out.println("\nUpdated Loan Details:");
@@ -946,48 +1623,56 @@ public class MicrofinanceManagement {
             return;
         }
 
-        updateLoanStatus(loanId, newStatus);
+        if (!decideLoan(loanId, newStatus)) {
+            return;
+        }
         System.out.println("Loan " + (choice == 1 ? "approved" : "rejected") + " successfully for " + loan.getClientName() + "!");
         loan.setStatus(newStatus);
         System.out.println("\nUpdated Loan Details:");
         printLoanTable(Collections.singletonList(loan));
     }
 
-    private static void updateLoanStatus(int loanId, String status) {
-        try (Connection conn = DriverManager.getConnection(DB_URL, DB_USER, DB_PASSWORD);
-             PreparedStatement pstmt = conn.prepareStatement("UPDATE loans SET status = ? WHERE loan_id = ?")) {
-            pstmt.setString(1, status);
-            pstmt.setInt(2, loanId);
-            pstmt.executeUpdate();
+    // Only approveRejectLoan decides loans, so this is where its timer runs. False when nothing was
+    // written: the loan was decided elsewhere since it was shown, or the update failed.
+    private static boolean decideLoan(int loanId, String status) {
+        long started = approveRejectLoanTimer.start();
+        try {
+            if (!loanRepository.decide(loanId, status)) {
+                System.out.println("Loan not found or already processed!");
+                return false;
+            }
+            return true;
         } catch (SQLException e) {
+            approveRejectLoanTimer.failed();
             System.err.println("Error updating loan status: " + e.getMessage());
+            return false;
+        } finally {
+            approveRejectLoanTimer.stop(started);
+        }
+    }
+
+    private static void browseLoans() {
+        System.out.println("\n1. Page through loans (" + PAGE_SIZE + " per page)");
+        System.out.println("2. Stream all loans");
+        int choice = getIntInput("Enter choice: ");
+        switch (choice) {
+            case 1:
+                browsePages("Loans", loanRepository::findPage, loanRepository::findPageBefore,
+                        Loan::getLoanId, MicrofinanceManagement::printLoanTable);
+                break;
+            case 2: viewAllLoans(); break;
+            default: System.out.println("Invalid choice!");
         }
     }
 
     private static void viewAllLoans() {
         System.out.println("\n--- All Loans ---");
-        List<Loan> loans = new ArrayList<>();
-        try (Connection conn = DriverManager.getConnection(DB_URL, DB_USER, DB_PASSWORD);
-             Statement stmt = conn.createStatement();
-             ResultSet rs = stmt.executeQuery(
-                     "SELECT l.loan_id, l.client_id, l.amount, l.interest_rate, l.duration_months, " +
-                             "l.status, l.issue_date, l.paid_amount, c.name AS client_name " +
-                             "FROM loans l JOIN clients c ON l.client_id = c.id")) {
-            while (rs.next()) {
-                loans.add(new Loan(
-                        rs.getInt("loan_id"),
-                        rs.getInt("client_id"),
-                        rs.getDouble("amount"),
-                        rs.getDouble("interest_rate"),
-                        rs.getInt("duration_months"),
-                        rs.getString("status"),
-                        dateFormat.parse(rs.getString("issue_date")),
-                        rs.getDouble("paid_amount"),
-                        rs.getString("client_name")
-                ));
-            }
-            printLoanTable(loans);
-        } catch (SQLException | java.text.ParseException e) {
+        StreamingTable<Loan> table = new StreamingTable<>(LOAN_TABLE, console());
+        try {
+            loanRepository.streamAll(table);
+            table.finish("No loans found.");
+        } catch (SQLException e) {
+            table.flush();
             System.err.println("Error retrieving loans: " + e.getMessage());
         }
     }
@@ -997,13 +1682,17 @@ public class MicrofinanceManagement {
             System.out.println("\n***** PAYMENT PROCESSING *****");
             System.out.println("1. Process Payment");
             System.out.println("2. View Payment History");
-            System.out.println("3. Back to Main Menu");
+            System.out.println("3. Import Payments File");
+            System.out.println("4. View Amortization Schedule");
+            System.out.println("5. Back to Main Menu");
 
             int choice = getIntInput("Enter your choice: ");
             switch (choice) {
                 case 1: processPayment(); break;
                 case 2: viewPaymentHistory(); break;
-                case 3: return;
+                case 3: importPayments(); break;
+                case 4: viewAmortizationSchedule(); break;
+                case 5: return;
                 default: System.out.println("Invalid choice!");
             }
         }
@@ -1027,63 +1716,84 @@ public class MicrofinanceManagement {
         System.out.println("Loan Details:");
         printLoanTable(Collections.singletonList(loan));
 
-        double outstanding = loan.calculateOutstandingBalance();
-        System.out.printf("Current Outstanding Balance: %.2f%n", outstanding);
+        long outstanding = loan.calculateOutstandingBalanceCents();
+        System.out.println("Current Outstanding Balance: " + Money.format(outstanding));
 
-        double amount = getDoubleInput("Enter payment amount: ");
-        if (amount <= 0) {
+        long amountCents = getMoneyInput("Enter payment amount: ");
+        if (amountCents <= 0) {
             System.out.println("Payment amount must be positive!");
             return;
         }
-        if (amount > outstanding) {
+        if (amountCents > outstanding) {
             System.out.println("Payment amount cannot exceed outstanding balance!");
             return;
         }
 
-        try (Connection conn = DriverManager.getConnection(DB_URL, DB_USER, DB_PASSWORD)) {
-            conn.setAutoCommit(false);
-            try {
-                PreparedStatement pstmtPayment = conn.prepareStatement(
-                        "INSERT INTO payments (loan_id, amount, payment_date) VALUES (?, ?, ?)",
-                        Statement.RETURN_GENERATED_KEYS);
-                pstmtPayment.setInt(1, loanId);
-                pstmtPayment.setDouble(2, amount);
-                pstmtPayment.setString(3, dateFormat.format(new Date()));
-                pstmtPayment.executeUpdate();
-
-                ResultSet rs = pstmtPayment.getGeneratedKeys();
-                int paymentId = rs.next() ? rs.getInt(1) : -1;
-
-                PreparedStatement pstmtLoan = conn.prepareStatement(
-                        "UPDATE loans SET paid_amount = paid_amount + ? WHERE loan_id = ?");
-                pstmtLoan.setDouble(1, amount);
-                pstmtLoan.setInt(2, loanId);
-                pstmtLoan.executeUpdate();
-
-                double newPaidAmount = loan.getPaidAmount() + amount;
-                double totalPayable = loan.calculateTotalPayable();
-                if (newPaidAmount >= totalPayable) {
-                    updateLoanStatus(loanId, "PAID");
-                    System.out.println("Congratulations! Loan fully paid for " + loan.getClientName() + "!");
-                    loan.setStatus("PAID");
-                }
+        long started = processPaymentTimer.start();
+        try {
+            // Checked again against the locked loan: another teller may have paid it since it was shown
+            PaymentPosting posting = paymentRepository.postPayment(loanId, amountCents, new Date());
+            if (!posting.isAccepted()) {
+                System.out.println("Payment rejected: " + posting.getRejectionReason() + "!");
+                return;
+            }
+            // Only an APPROVED loan accepts a payment, so PAID now means this payment settled it
+            loan.setStatus(posting.getLoan().getStatus());
+            loan.setPaidCents(posting.getLoan().getPaidCents());
+            if (loan.getStatus().equals("PAID")) {
+                System.out.println("Congratulations! Loan fully paid for " + loan.getClientName() + "!");
+            }
 
-                loan.setPaidAmount(newPaidAmount);
+            if (posting.isJournaled()) {
+                System.out.println("\nPayment recorded as journal entry #" + posting.getJournalSequence()
+                        + "; it appears in the payment history once posted.");
+            } else {
                 System.out.println("\nPayment Details:");
-                printPaymentTable(Collections.singletonList(new Payment(paymentId, loanId, amount, new Date())));
-                System.out.println("\nUpdated Loan Details:");
-                printLoanTable(Collections.singletonList(loan));
-
-                conn.commit();
-                System.out.println("Payment processed successfully for " + loan.getClientName() + "!");
-            } catch (SQLException e) {
-                conn.rollback();
-                System.err.println("Error processing payment: " + e.getMessage());
-            } finally {
-                conn.setAutoCommit(true);
+                printPaymentTable(Collections.singletonList(posting.getPayment()));
             }
+            System.out.println("\nUpdated Loan Details:");
+            printLoanTable(Collections.singletonList(loan));
+            System.out.println("Payment processed successfully for " + loan.getClientName() + "!");
         } catch (SQLException e) {
-            System.err.println("Database Error: " + e.getMessage());
+            processPaymentTimer.failed();
+            System.err.println("Error processing payment: " + e.getMessage());
+        } finally {
+            processPaymentTimer.stop(started);
+        }
+    }
+
+    private static void importPayments() {
+        System.out.println("\n--- Import Payments File ---");
+        System.out.println("Expected columns: loan_id,amount[,payment_date yyyy-MM-dd] (header row optional)");
+        Path paymentsFile = Paths.get(getStringInput("Enter payments file path: ").trim());
+        if (!Files.isReadable(paymentsFile)) {
+            System.out.println("File not found or not readable!");
+            return;
+        }
+        String batchInput = getStringInput("Enter records per transaction [" + PaymentIngestor.DEFAULT_BATCH_SIZE + "]: ").trim();
+        int batchSize;
+        try {
+            batchSize = batchInput.isEmpty() ? PaymentIngestor.DEFAULT_BATCH_SIZE : Integer.parseInt(batchInput);
+            if (batchSize <= 0) {
+                System.out.println("Invalid batch size! Must be positive.");
+                return;
+            }
+        } catch (NumberFormatException e) {
+            System.out.println("Invalid batch size format!");
+            return;
+        }
+
+        Path rejectsFile = Csv.rejectsFileFor(paymentsFile);
+        try {
+            PaymentIngestor ingestor = new PaymentIngestor(paymentRepository, batchSize);
+            BulkLoadStats stats = ingestor.ingestFile(paymentsFile, rejectsFile);
+            System.out.println("Ingestion finished: " + stats);
+            System.out.println("Loans fully paid by this file: " + ingestor.getLoansSettled());
+            if (stats.getRowsRejected() > 0) {
+                System.out.println("Rejected rows written to " + rejectsFile);
+            }
+        } catch (IOException e) {
+            System.err.println("Error ingesting payments: " + e.getMessage());
         }
     }
 
@@ -1093,7 +1803,13 @@ public class MicrofinanceManagement {
         System.out.println("2. Loan Portfolio");
         System.out.println("3. Collection Report");
         System.out.println("4. Detailed Client-Loan Report");
-        System.out.println("5. Back to Main Menu");
+        System.out.println("5. Reconcile Portfolio Totals");
+        System.out.println("6. Portfolio Analytics");
+        System.out.println("7. Rate Shock Stress Test");
+        System.out.println("8. Credit Loss Simulation");
+        System.out.println("9. Export Report to File");
+        System.out.println("10. Check Loans Against Ledger");
+        System.out.println("11. Back to Main Menu");
 
         int choice = getIntInput("Enter your choice: ");
         switch (choice) {
@@ -1101,164 +1817,500 @@ public class MicrofinanceManagement {
             case 2: generateLoanPortfolio(); break;
             case 3: generateCollectionReport(); break;
             case 4: generateDetailedClientLoanReport(); break;
-            case 5: return;
+            case 5: reconcilePortfolio(); break;
+            case 6: generatePortfolioAnalytics(); break;
+            case 7: runRateShockStressTest(); break;
+            case 8: runCreditLossSimulation(); break;
+            case 9: exportReportToFile(); break;
+            case 10: checkLedger(); break;
+            case 11: return;
             default: System.out.println("Invalid choice!");
         }
     }
 
+    private static void exportReportToFile() {
+        exportReportToFile(false);
+    }
+
+    private static void exportReportToFile(boolean inBackground) {
+        System.out.println("\n--- Export Report ---");
+        for (int i = 0; i < ReportExporter.REPORTS.length; i++) {
+            System.out.println((i + 1) + ". " + ReportExporter.REPORTS[i]);
+        }
+        int choice = getIntInput("Enter report: ");
+        if (choice < 1 || choice > ReportExporter.REPORTS.length) {
+            System.out.println("Invalid choice!");
+            return;
+        }
+        String report = ReportExporter.REPORTS[choice - 1];
+        System.out.println("1. CSV");
+        System.out.println("2. JSON Lines");
+        int formatChoice = getIntInput("Enter format: ");
+        if (formatChoice != 1 && formatChoice != 2) {
+            System.out.println("Invalid choice!");
+            return;
+        }
+        ExportFormat format = formatChoice == 1 ? ExportFormat.CSV : ExportFormat.JSONL;
+        boolean gzip = getStringInput("Compress with gzip? (y/n): ").trim().equalsIgnoreCase("y");
+        String defaultName = report + format.getExtension() + (gzip ? ".gz" : "");
+        String input = getStringInput("Enter output file [" + defaultName + "]: ").trim();
+        Path file = Paths.get(input.isEmpty() ? defaultName : input);
+        if (inBackground) {
+            submitReportJob("export-" + report, out -> {
+                out.println("Exported " + newReportExporter().export(report, file, format, gzip));
+                out.println("File written to " + file.toAbsolutePath());
+            });
+        } else {
+            exportReport(report, file, format, gzip);
+        }
+    }
+
     private static void generateClientReport() {
-        System.out.println("\n--- Client Report ---");
-        viewAllClients();
+        try {
+            writeClientReport(System.out);
+        } catch (SQLException e) {
+            System.err.println("Error retrieving clients: " + e.getMessage());
+        }
+    }
+
+    private static void writeClientReport(PrintStream out) throws SQLException {
+        out.println("\n--- Client Report ---");
+        writeAllClients(out);
     }
 
     private static void generateLoanPortfolio() {
-        System.out.println("\n--- Loan Portfolio ---");
-        try (Connection conn = DriverManager.getConnection(DB_URL, DB_USER, DB_PASSWORD);
-             Statement stmt = conn.createStatement();
-             ResultSet rs = stmt.executeQuery(
-                     "SELECT SUM(amount) as total_approved, SUM(paid_amount) as total_paid, " +
-                             "COUNT(*) as num_loans FROM loans WHERE status IN ('APPROVED', 'PAID')")) {
-            if (rs.next()) {
-                double totalApproved = rs.getDouble("total_approved");
-                double totalPaid = rs.getDouble("total_paid");
-                int numLoans = rs.getInt("num_loans");
-                System.out.println("+-------------------------+----------------+");
-                System.out.println("| Metric                  | Value          |");
-                System.out.println("+-------------------------+----------------+");
-                System.out.printf("| %-23s | %-14d |%n", "Number of Loans", numLoans);
-                System.out.printf("| %-23s | %-14.2f |%n", "Total Approved Amount", totalApproved);
-                System.out.printf("| %-23s | %-14.2f |%n", "Total Paid Amount", totalPaid);
-                System.out.printf("| %-23s | %-14.2f |%n", "Total Outstanding", (totalApproved - totalPaid));
-                System.out.println("+-------------------------+----------------+");
-            } else {
-                System.out.println("No approved or paid loans found.");
-            }
+        try {
+            writeLoanPortfolio(System.out);
         } catch (SQLException e) {
             System.err.println("Error generating loan portfolio: " + e.getMessage());
         }
     }
 
-    private static void generateCollectionReport() {
-        System.out.println("\n--- Collection Report ---");
-        List<Payment> payments = new ArrayList<>();
-        try (Connection conn = DriverManager.getConnection(DB_URL, DB_USER, DB_PASSWORD);
-             Statement stmt = conn.createStatement();
-             ResultSet rs = stmt.executeQuery(
-                     "SELECT p.payment_id, p.loan_id, p.amount, p.payment_date, c.name AS client_name, l.status " +
-                             "FROM payments p JOIN loans l ON p.loan_id = l.loan_id JOIN clients c ON l.client_id = c.id")) {
-            while (rs.next()) {
-                payments.add(new Payment(
-                        rs.getInt("payment_id"),
-                        rs.getInt("loan_id"),
-                        rs.getDouble("amount"),
-                        dateFormat.parse(rs.getString("payment_date"))
-                ));
+    private static void writeLoanPortfolio(PrintStream out) throws SQLException {
+        out.println("\n--- Loan Portfolio ---");
+        long started = loanPortfolioTimer.start();
+        try {
+            // Reads the maintained per-status totals, so the cost does not grow with the loans table
+            PortfolioSnapshot portfolio = portfolioRepository.current();
+            PortfolioTotals totals = portfolio.combined("APPROVED", "PAID");
+            out.println("+-------------------------+----------------+");
+            out.println("| Metric                  | Value          |");
+            out.println("+-------------------------+----------------+");
+            out.printf("| %-23s | %-14d |%n", "Number of Loans", totals.getNumLoans());
+            out.printf("| %-23s | %-14s |%n", "Total Approved Amount", Money.format(totals.getTotalAmountCents()));
+            out.printf("| %-23s | %-14s |%n", "Total Paid Amount", Money.format(totals.getTotalPaidCents()));
+            out.printf("| %-23s | %-14s |%n", "Total Outstanding", Money.format(totals.getTotalOutstandingCents()));
+            out.println("+-------------------------+----------------+");
+            out.println("Total Outstanding includes the interest still due on approved loans.");
+
+            out.println("\nBy Status:");
+            printPortfolioByStatus(out, portfolio);
+        } catch (SQLException e) {
+            loanPortfolioTimer.failed();
+            throw e;
+        } finally {
+            loanPortfolioTimer.stop(started);
+        }
+    }
+
+    private static void printPortfolioByStatus(PrintStream out, PortfolioSnapshot portfolio) {
+        out.println("+--------------+----------+----------------+----------------+----------------+");
+        out.println("| status       | loans    | principal      | paid           | outstanding    |");
+        out.println("+--------------+----------+----------------+----------------+----------------+");
+        for (PortfolioTotals totals : portfolio.getByStatus()) {
+            out.printf("| %-12s | %-8d | %-14s | %-14s | %-14s |%n", totals.getStatus(), totals.getNumLoans(),
+                    Money.format(totals.getTotalAmountCents()), Money.format(totals.getTotalPaidCents()),
+                    Money.format(totals.getTotalOutstandingCents()));
+        }
+        out.println("+--------------+----------+----------------+----------------+----------------+");
+    }
+
+    private static void reconcilePortfolio() {
+        System.out.println("\n--- Reconcile Portfolio Totals ---");
+        try {
+            PortfolioReconciliation result = portfolioRepository.reconcile();
+            if (result.isConsistent()) {
+                System.out.println("Portfolio totals match a full recompute of the loans table.");
+            } else {
+                System.out.println("Drift found in: " + String.join(", ", result.getMismatchedStatuses()));
+                System.out.println("Maintained totals:");
+                printPortfolioByStatus(System.out, result.getMaintained());
+                System.out.println("Recomputed totals (now stored):");
             }
-            printPaymentTable(payments);
-        } catch (SQLException | java.text.ParseException e) {
-            System.err.println("Error generating collection report: " + e.getMessage());
+            printPortfolioByStatus(System.out, result.getRecomputed());
+        } catch (SQLException e) {
+            System.err.println("Error reconciling portfolio totals: " + e.getMessage());
         }
     }
 
-    private static void generateDetailedClientLoanReport() {
-        System.out.println("\n--- Detailed Client-Loan Report ---");
-        try (Connection conn = DriverManager.getConnection(DB_URL, DB_USER, DB_PASSWORD);
-             Statement stmt = conn.createStatement();
-             ResultSet rs = stmt.executeQuery(
-                     "SELECT c.id, c.name, c.phone, c.address, c.credit_score, " +
-                             "l.loan_id, l.amount, l.interest_rate, l.duration_months, l.status, l.issue_date, l.paid_amount " +
-                             "FROM clients c LEFT JOIN loans l ON c.id = l.client_id ORDER BY c.id, l.loan_id")) {
-            if (!rs.isBeforeFirst()) {
-                System.out.println("No clients or loans found.");
+    // Rebuilds every loan from the ledger and compares it with the loans table
+    private static void checkLedger() {
+        System.out.println("\n--- Check Loans Against Ledger ---");
+        try {
+            LedgerCheck check = loanLedger.check(loanRepository);
+            System.out.println("Rebuilt " + check.getRebuild());
+            if (check.getMismatches().isEmpty()) {
+                System.out.println("All " + check.getCompared() + " loans match the ledger.");
                 return;
             }
-            int currentClientId = -1;
-            List<Loan> clientLoans = new ArrayList<>();
-            double totalLoans = 0.0;
-            double totalPaid = 0.0;
-            double totalOutstanding = 0.0;
-            int loanCount = 0;
-
-            while (rs.next()) {
-                int clientId = rs.getInt("id");
-                if (clientId != currentClientId) {
-                    if (currentClientId != -1) {
-                        System.out.println("\nLoans:");
-                        printLoanTable(clientLoans);
-                        printClientLoanSummary(totalLoans, totalPaid, totalOutstanding, loanCount);
-                    }
+            System.out.println(check.getMismatches().size() + " of " + check.getCompared() + " loans differ from the ledger:");
+            int shown = Math.min(check.getMismatches().size(), 20);
+            for (String mismatch : check.getMismatches().subList(0, shown)) {
+                System.out.println("  " + mismatch);
+            }
+            if (shown < check.getMismatches().size()) {
+                System.out.println("  ... and " + (check.getMismatches().size() - shown) + " more");
+            }
+        } catch (SQLException | IllegalStateException e) {
+            System.err.println("Error checking the ledger: " + e.getMessage());
+        }
+    }
 
-                    currentClientId = clientId;
-                    List<Client> clientList = Collections.singletonList(new Client(
-                            clientId,
-                            rs.getString("name"),
-                            rs.getString("phone"),
-                            rs.getString("address"),
-                            rs.getDouble("credit_score")
-                    ));
-                    System.out.println("\nClient Details:");
-                    printClientTable(clientList);
-
-                    clientLoans.clear();
-                    totalLoans = 0.0;
-                    totalPaid = 0.0;
-                    totalOutstanding = 0.0;
-                    loanCount = 0;
+    private static void generatePortfolioAnalytics() {
+        System.out.println("\n--- Portfolio Analytics ---");
+        long started = portfolioAnalyticsTimer.start();
+        try {
+            long start = System.nanoTime();
+            int refreshed = refreshLoanBook();
+            long loaded = System.nanoTime();
+
+            System.out.println("+--------------+----------+----------------+----------------+----------------+----------------+");
+            System.out.println("| status       | loans    | principal      | paid           | balance        | interest       |");
+            System.out.println("+--------------+----------+----------------+----------------+----------------+----------------+");
+            for (byte code = LoanBook.PENDING; code <= LoanBook.OTHER; code++) {
+                int mask = LoanBook.mask(code);
+                long count = loanBook.count(mask);
+                if (count == 0) {
+                    continue;
                 }
+                System.out.printf("| %-12s | %-8d | %-14s | %-14s | %-14s | %-14s |%n", LoanBook.statusName(code), count,
+                        Money.format(loanBook.sumAmount(mask)), Money.format(loanBook.sumPaid(mask)),
+                        Money.format(loanBook.sumOutstanding(mask)), Money.format(loanBook.sumTotalInterest(mask)));
+            }
+            int active = LoanBook.mask(LoanBook.APPROVED);
+            System.out.println("+--------------+----------+----------------+----------------+----------------+----------------+");
+            System.out.println("Monthly collections due on approved loans: " + Money.format(loanBook.sumMonthlyPayment(active)));
+            long scanned = System.nanoTime();
+            System.out.printf("Loan book: %d rows (%d loaded/refreshed in %.1f ms), scanned in %.2f ms%n",
+                    loanBook.size(), refreshed, (loaded - start) / 1e6, (scanned - loaded) / 1e6);
+        } catch (SQLException e) {
+            portfolioAnalyticsTimer.failed();
+            System.err.println("Error loading loan book: " + e.getMessage());
+        } finally {
+            portfolioAnalyticsTimer.stop(started);
+        }
+    }
 
-                int loanId = rs.getInt("loan_id");
-                if (!rs.wasNull()) {
-                    Loan loan = new Loan(
-                            loanId,
-                            clientId,
-                            rs.getDouble("amount"),
-                            rs.getDouble("interest_rate"),
-                            rs.getInt("duration_months"),
-                            rs.getString("status"),
-                            dateFormat.parse(rs.getString("issue_date")),
-                            rs.getDouble("paid_amount"),
-                            rs.getString("name")
-                    );
-                    clientLoans.add(loan);
-                    totalLoans += loan.getAmount();
-                    totalPaid += loan.getPaidAmount();
-                    totalOutstanding += loan.calculateOutstandingBalance();
-                    loanCount++;
-                }
+    // After a bulk load that bypassed the change feed; the next analytics run loads the book afresh
+    private static void discardLoanBook() {
+        if (loanBook != null) {
+            loanChanges.unsubscribe(loanBook);
+            loanBook = null;
+        }
+    }
+
+    // Loads the loan book on first use, afterwards applies only the loans written since; returns rows touched
+    private static int refreshLoanBook() throws SQLException {
+        if (loanBook == null) {
+            LoanBook book = new LoanBook();
+            loanChanges.subscribe(book); // before loading, so writes made during the load are not missed
+            book.load(loanRepository);
+            loanBook = book;
+            return book.size();
+        }
+        return loanBook.refresh(loanRepository);
+    }
+
+    private static void runRateShockStressTest() {
+        System.out.println("\n--- Rate Shock Stress Test ---");
+        String input = getStringInput("Enter shocks as rate[:months], comma separated [" + DEFAULT_RATE_SHOCKS + "]: ");
+        List<RateShock> shocks;
+        try {
+            shocks = RateShock.parseList(input.isEmpty() ? DEFAULT_RATE_SHOCKS : input);
+        } catch (IllegalArgumentException e) {
+            System.out.println("Invalid shocks: " + e.getMessage());
+            return;
+        }
+        try {
+            refreshLoanBook();
+            byte[] bands = StressTestEngine.creditBands(clientRepository);
+            ForkJoinPool pool = ForkJoinPool.commonPool();
+            StressTestResult result = new StressTestEngine(pool).run(loanBook, bands, shocks);
+            System.out.printf("Revalued %d loans under %d shocks in %.1f ms (parallelism %d)%n",
+                    result.getRows(), shocks.size(), result.getElapsedNanos() / 1e6, pool.getParallelism());
+            for (int s = 1; s <= shocks.size(); s++) {
+                printStressScenario(result, s);
+            }
+        } catch (SQLException e) {
+            System.err.println("Error running stress test: " + e.getMessage());
+        }
+    }
+
+    private static void printStressScenario(StressTestResult result, int scenario) {
+        String border = "+--------------+----------+----------------+----------------+----------------+----------------+----------------+";
+        System.out.println("\nShock " + result.getShocks().get(scenario - 1).getLabel() + ":");
+        System.out.println(border);
+        System.out.println("| group        | loans    | balance        | balance chg    | interest       | interest chg   | monthly chg    |");
+        System.out.println(border);
+        for (byte status = LoanBook.PENDING; status <= LoanBook.OTHER; status++) {
+            long count = result.byStatus(scenario, status, StressTestResult.COUNT);
+            if (count > 0) {
+                printStressRow(LoanBook.statusName(status), count,
+                        result.byStatus(0, status, StressTestResult.OUTSTANDING), result.byStatus(scenario, status, StressTestResult.OUTSTANDING),
+                        result.byStatus(0, status, StressTestResult.INTEREST), result.byStatus(scenario, status, StressTestResult.INTEREST),
+                        result.byStatus(0, status, StressTestResult.PAYMENT), result.byStatus(scenario, status, StressTestResult.PAYMENT));
+            }
+        }
+        System.out.println(border);
+        for (int band = 0; band < CreditBand.COUNT; band++) {
+            long count = result.byBand(scenario, band, StressTestResult.COUNT);
+            if (count > 0) {
+                printStressRow("score " + CreditBand.name(band), count,
+                        result.byBand(0, band, StressTestResult.OUTSTANDING), result.byBand(scenario, band, StressTestResult.OUTSTANDING),
+                        result.byBand(0, band, StressTestResult.INTEREST), result.byBand(scenario, band, StressTestResult.INTEREST),
+                        result.byBand(0, band, StressTestResult.PAYMENT), result.byBand(scenario, band, StressTestResult.PAYMENT));
             }
+        }
+        System.out.println(border);
+    }
+
+    private static void printStressRow(String group, long count, long baseBalance, long balance,
+                                       long baseInterest, long interest, long basePayment, long payment) {
+        System.out.printf("| %-12s | %-8d | %-14s | %-14s | %-14s | %-14s | %-14s |%n", group, count,
+                Money.format(balance), formatChange(balance - baseBalance),
+                Money.format(interest), formatChange(interest - baseInterest), formatChange(payment - basePayment));
+    }
+
+    private static void runCreditLossSimulation() {
+        System.out.println("\n--- Credit Loss Simulation ---");
+        int paths;
+        long seed;
+        double correlation;
+        double lgdPercent;
+        try {
+            String input = getStringInput("Enter number of paths [" + DEFAULT_SIMULATION_PATHS + "]: ");
+            paths = input.isEmpty() ? DEFAULT_SIMULATION_PATHS : Integer.parseInt(input);
+            input = getStringInput("Enter random seed [" + DEFAULT_SIMULATION_SEED + "]: ");
+            seed = input.isEmpty() ? DEFAULT_SIMULATION_SEED : Long.parseLong(input);
+            input = getStringInput("Enter default correlation (0-1) [" + DEFAULT_DEFAULT_CORRELATION + "]: ");
+            correlation = input.isEmpty() ? DEFAULT_DEFAULT_CORRELATION : Double.parseDouble(input);
+            input = getStringInput("Enter loss given default (%) [" + DEFAULT_LOSS_GIVEN_DEFAULT_PERCENT + "]: ");
+            lgdPercent = input.isEmpty() ? DEFAULT_LOSS_GIVEN_DEFAULT_PERCENT : Double.parseDouble(input);
+        } catch (NumberFormatException e) {
+            System.out.println("Invalid number format!");
+            return;
+        }
 
-            if (currentClientId != -1) {
-                System.out.println("\nLoans:");
-                printLoanTable(clientLoans);
-                printClientLoanSummary(totalLoans, totalPaid, totalOutstanding, loanCount);
+        try {
+            refreshLoanBook();
+            double[] scores = CreditLossSimulator.creditScores(clientRepository);
+            CreditLossSimulator simulator = new CreditLossSimulator(ForkJoinPool.commonPool(), correlation, lgdPercent / 100);
+            CreditLossResult result = simulator.run(loanBook, scores, paths, seed);
+            if (result.getLoans() == 0) {
+                System.out.println("No approved loans to simulate.");
+                return;
             }
-        } catch (SQLException | java.text.ParseException e) {
+            System.out.println("+-------------------------+----------------+");
+            System.out.println("| Metric                  | Value          |");
+            System.out.println("+-------------------------+----------------+");
+            System.out.printf("| %-23s | %-14d |%n", "Approved Loans", result.getLoans());
+            System.out.printf("| %-23s | %-14s |%n", "Exposure (balance)", Money.format(result.getExposureCents()));
+            System.out.printf("| %-23s | %-14s |%n", "Expected Loss (model)", Money.format(result.getAnalyticalExpectedLossCents()));
+            System.out.printf("| %-23s | %-14s |%n", "Expected Loss (sim)", Money.format(result.getExpectedLossCents()));
+            System.out.printf("| %-23s | %-14s |%n", "Std Deviation", Money.format(result.getStdDevCents()));
+            System.out.printf("| %-23s | %-14s |%n", "VaR 95%", Money.format(result.valueAtRisk(0.95)));
+            System.out.printf("| %-23s | %-14s |%n", "VaR 99%", Money.format(result.valueAtRisk(0.99)));
+            System.out.printf("| %-23s | %-14s |%n", "VaR 99.9%", Money.format(result.valueAtRisk(0.999)));
+            System.out.printf("| %-23s | %-14s |%n", "Expected Shortfall 99%", Money.format(result.expectedShortfall(0.99)));
+            System.out.printf("| %-23s | %-14s |%n", "Worst Path", Money.format(result.getMaxLossCents()));
+            System.out.println("+-------------------------+----------------+");
+
+            System.out.println("\nLoss distribution:");
+            long[] histogram = result.histogram(10);
+            long bucketWidth = Money.divideCeiling(result.getMaxLossCents(), histogram.length);
+            for (int i = 0; i < histogram.length; i++) {
+                double share = histogram[i] / (double) result.getPaths();
+                System.out.printf("%14s - %-14s %6.2f%% %s%n", Money.format(i * bucketWidth), Money.format((i + 1) * bucketWidth),
+                        share * 100, "#".repeat((int) Math.round(share * 50)));
+            }
+            System.out.printf("%d paths, seed %d, in %.1f ms: %.0f paths/sec (parallelism %d)%n", result.getPaths(), result.getSeed(),
+                    result.getElapsedNanos() / 1e6, result.getPathsPerSecond(), result.getParallelism());
+        } catch (IllegalArgumentException e) {
+            System.out.println("Invalid simulation settings: " + e.getMessage());
+        } catch (SQLException e) {
+            System.err.println("Error running credit loss simulation: " + e.getMessage());
+        }
+    }
+
+    private static String formatChange(long cents) {
+        return cents > 0 ? "+" + Money.format(cents) : Money.format(cents);
+    }
+
+    private static void generateCollectionReport() {
+        try {
+            writeCollectionReport(System.out);
+        } catch (SQLException e) {
+            System.err.println("Error generating collection report: " + e.getMessage());
+        }
+    }
+
+    private static void writeCollectionReport(PrintStream out) throws SQLException {
+        out.println("\n--- Collection Report ---");
+        StreamingTable<Payment> table = new StreamingTable<>(PAYMENT_TABLE, tableWriter(out));
+        long started = collectionReportTimer.start();
+        try {
+            paymentRepository.streamAll(table);
+            table.finish("No payments found.");
+        } catch (SQLException e) {
+            table.flush();
+            collectionReportTimer.failed();
+            throw e;
+        } finally {
+            collectionReportTimer.stop(started);
+        }
+    }
+
+    private static void generateDetailedClientLoanReport() {
+        try {
+            writeDetailedClientLoanReport(System.out, reportThreads());
+        } catch (SQLException e) {
             System.err.println("Error generating detailed report: " + e.getMessage());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            System.err.println("Detailed report interrupted.");
+        }
+    }
+
+    private static void writeDetailedClientLoanReport(PrintStream out, int threads) throws SQLException, InterruptedException {
+        out.println("\n--- Detailed Client-Loan Report ---");
+        ClientLoanReportPrinter printer = new ClientLoanReportPrinter(tableWriter(out));
+        long started = detailedReportTimer.start();
+        try {
+            long clients;
+            if (threads == 1) {
+                loanRepository.forEachClientLoan(printer);
+                clients = printer.finish();
+            } else {
+                clients = printDetailedReportInParallel(out, threads);
+            }
+            if (clients == 0) {
+                out.println("No clients or loans found.");
+            }
+        } catch (SQLException e) {
+            printer.flush();
+            detailedReportTimer.failed();
+            throw e;
+        } finally {
+            detailedReportTimer.stop(started);
         }
     }
 
-    private static void printClientLoanSummary(double totalLoans, double totalPaid, double totalOutstanding, int loanCount) {
-        System.out.println("\nClient Loan Summary:");
-        System.out.println("+-------------------------+----------------+");
-        System.out.println("| Metric                  | Value          |");
-        System.out.println("+-------------------------+----------------+");
-        System.out.printf("| %-23s | %-14d |%n", "Total Loans", loanCount);
-        System.out.printf("| %-23s | %-14.2f |%n", "Total Amount", totalLoans);
-        System.out.printf("| %-23s | %-14.2f |%n", "Total Paid", totalPaid);
-        System.out.printf("| %-23s | %-14.2f |%n", "Total Outstanding", totalOutstanding);
-        System.out.println("+-------------------------+----------------+");
+    // Each client id range is read on its own connection and rendered into its own buffer; the
+    // buffers are printed in range order, so the output matches the serial walk exactly.
+    private static long printDetailedReportInParallel(PrintStream out, int threads) throws SQLException, InterruptedException {
+        List<Client> lastClient = clientRepository.findPageBefore(Integer.MAX_VALUE, 1);
+        if (lastClient.isEmpty()) {
+            return 0;
+        }
+        AtomicLong clients = new AtomicLong();
+        new PartitionedScan<StringBuilder>(threads).run(1, lastClient.get(0).getId() + 1, (fromId, toId) -> {
+            StringBuilder text = new StringBuilder();
+            ClientLoanReportPrinter printer = new ClientLoanReportPrinter(new TableWriter(text, TableWriter.DEFAULT_BUFFER_CHARS));
+            loanRepository.forEachClientLoan(fromId, toId, printer);
+            clients.addAndGet(printer.finish());
+            return text;
+        }, out::append);
+        out.flush();
+        return clients.get();
     }
 
-    private static Client findClient(int id) {
-        try (Connection conn = DriverManager.getConnection(DB_URL, DB_USER, DB_PASSWORD);
-             PreparedStatement pstmt = conn.prepareStatement("SELECT * FROM clients WHERE id = ?")) {
-            pstmt.setInt(1, id);
-            ResultSet rs = pstmt.executeQuery();
-            if (rs.next()) {
-                return new Client(rs.getInt("id"), rs.getString("name"),
-                        rs.getString("phone"), rs.getString("address"),
-                        rs.getDouble("credit_score"));
+    // Workers for the partitioned reports: one per core, and never more than the pool has connections
+    private static int reportThreads() {
+        int threads = Integer.getInteger(REPORT_THREADS_PROPERTY, Runtime.getRuntime().availableProcessors());
+        if (!inMemoryStorage) {
+            threads = Math.min(threads, POOL_MAX_SIZE);
+        }
+        return Math.max(1, threads);
+    }
+
+    // Prints one client block (details, loan table, summary) per client as rows stream in.
+    // The blocks collect in the writer's buffer, which is written out as it fills.
+    private static final class ClientLoanReportPrinter implements ClientLoanHandler {
+        private final TableWriter out;
+        private long clients;
+        private Client currentClient;
+        private final List<Loan> clientLoans = new ArrayList<>();
+        private long totalLoans;
+        private long totalPaid;
+        private long totalOutstanding;
+
+        ClientLoanReportPrinter(TableWriter out) {
+            this.out = out;
+        }
+
+        @Override
+        public void accept(Client client, Loan loan) {
+            if (currentClient == null || client.getId() != currentClient.getId()) {
+                flushClient();
+                currentClient = client;
+                clients++;
+                out.line("").line("Client Details:");
+                CLIENT_TABLE.header(out);
+                CLIENT_TABLE.row(out, client);
+                CLIENT_TABLE.footer(out);
+            }
+            if (loan != null) {
+                clientLoans.add(loan);
+                totalLoans += loan.getAmountCents();
+                totalPaid += loan.getPaidCents();
+                totalOutstanding += loan.calculateOutstandingBalanceCents();
             }
+        }
+
+        // Writes out the last block and returns how many clients were printed
+        long finish() {
+            flushClient();
+            out.flush();
+            return clients;
+        }
+
+        // Writes out the blocks buffered so far, e.g. before reporting an error mid-stream
+        void flush() {
+            out.flush();
+        }
+
+        private void flushClient() {
+            if (currentClient == null) {
+                return;
+            }
+            out.line("").line("Loans:");
+            if (clientLoans.isEmpty()) {
+                out.line("No loans found.");
+            } else {
+                LOAN_TABLE.render(out, clientLoans.iterator());
+            }
+            writeClientLoanSummary(out, totalLoans, totalPaid, totalOutstanding, clientLoans.size());
+            out.flushIfFull();
+            clientLoans.clear();
+            totalLoans = 0;
+            totalPaid = 0;
+            totalOutstanding = 0;
+        }
+    }
+
+    private static void writeClientLoanSummary(TableWriter out, long totalLoans, long totalPaid, long totalOutstanding, int loanCount) {
+        out.line("").line("Client Loan Summary:");
+        out.layout(SUMMARY_TABLE).header();
+        out.cell("Total Loans").cell(loanCount).endRow();
+        out.cell("Total Amount").cellMoney(totalLoans).endRow();
+        out.cell("Total Paid").cellMoney(totalPaid).endRow();
+        out.cell("Total Outstanding").cellMoney(totalOutstanding).endRow();
+        out.border();
+    }
+
+    private static Client findClient(int id) {
+        try {
+            return clientRepository.findById(id);
         } catch (SQLException e) {
             System.err.println("Error finding client: " + e.getMessage());
         }
@@ -1270,19 +2322,9 @@ public class MicrofinanceManagement {
     }
 
     private static Loan findLoan(int id) {
-        try (Connection conn = DriverManager.getConnection(DB_URL, DB_USER, DB_PASSWORD);
-             PreparedStatement pstmt = conn.prepareStatement(
-                     "SELECT l.*, c.name AS client_name FROM loans l JOIN clients c ON l.client_id = c.id WHERE l.loan_id = ?")) {
-            pstmt.setInt(1, id);
-            ResultSet rs = pstmt.executeQuery();
-            if (rs.next()) {
-                return new Loan(rs.getInt("loan_id"), rs.getInt("client_id"),
-                        rs.getDouble("amount"), rs.getDouble("interest_rate"),
-                        rs.getInt("duration_months"), rs.getString("status"),
-                        dateFormat.parse(rs.getString("issue_date")), rs.getDouble("paid_amount"),
-                        rs.getString("client_name"));
-            }
-        } catch (SQLException | java.text.ParseException e) {
+        try {
+            return loanRepository.findById(id);
+        } catch (SQLException e) {
             System.err.println("Error finding loan: " + e.getMessage());
         }
         return null;
@@ -1315,6 +2357,18 @@ public class MicrofinanceManagement {
         }
     }
 
+    // Money is read as text straight into centavos, so "0.10" is exactly 10 centavos
+    private static long getMoneyInput(String prompt) {
+        while (true) {
+            try {
+                System.out.print(prompt);
+                return Money.parse(scanner.nextLine());
+            } catch (NumberFormatException e) {
+                System.out.println("Please enter a valid amount!");
+            }
+        }
+    }
+
     private static void viewClientLoans() {
         int clientId = getIntInput("Enter client ID: ");
         Client client = findClient(clientId);
@@ -1326,33 +2380,44 @@ public class MicrofinanceManagement {
         System.out.println("\n--- Loans for Client: " + client.getName() + " (ID: " + clientId + ") ---");
         printClientTable(Collections.singletonList(client));
 
-        List<Loan> loans = new ArrayList<>();
-        try (Connection conn = DriverManager.getConnection(DB_URL, DB_USER, DB_PASSWORD);
-             PreparedStatement pstmt = conn.prepareStatement(
-                     "SELECT l.*, c.name AS client_name FROM loans l JOIN clients c ON l.client_id = c.id WHERE l.client_id = ?")) {
-            pstmt.setInt(1, clientId);
-            ResultSet rs = pstmt.executeQuery();
-            while (rs.next()) {
-                loans.add(new Loan(
-                        rs.getInt("loan_id"),
-                        rs.getInt("client_id"),
-                        rs.getDouble("amount"),
-                        rs.getDouble("interest_rate"),
-                        rs.getInt("duration_months"),
-                        rs.getString("status"),
-                        dateFormat.parse(rs.getString("issue_date")),
-                        rs.getDouble("paid_amount"),
-                        rs.getString("client_name")
-                ));
-            }
+        try {
+            List<Loan> loans = loanRepository.findByClientId(clientId);
             printLoanTable(loans);
-            double totalOutstanding = loans.stream().mapToDouble(Loan::calculateOutstandingBalance).sum();
-            System.out.printf("Total Outstanding for Client: %.2f%n", totalOutstanding);
-        } catch (SQLException | java.text.ParseException e) {
+            long totalOutstanding = loans.stream().mapToLong(Loan::calculateOutstandingBalanceCents).sum();
+            System.out.println("Total Outstanding for Client: " + Money.format(totalOutstanding));
+        } catch (SQLException e) {
             System.err.println("Error retrieving client loans: " + e.getMessage());
         }
     }
 
+    private static void viewAmortizationSchedule() {
+        int loanId = getIntInput("Enter loan ID: ");
+        Loan loan = findLoan(loanId);
+        if (loan == null) {
+            System.out.println("Loan not found!");
+            return;
+        }
+
+        System.out.println("\n--- Amortization Schedule for Loan ID: " + loanId + " (Client: " + loan.getClientName() + ") ---");
+        printLoanTable(Collections.singletonList(loan));
+
+        AmortizationSchedule schedule = AmortizationEngine.schedule(loan);
+        System.out.println("+--------+--------------+--------------+--------------+--------------+--------------+----------+");
+        System.out.println("| period | due_date     | payment      | principal    | interest     | balance      | status   |");
+        System.out.println("+--------+--------------+--------------+--------------+--------------+--------------+----------+");
+        long totalInterest = 0;
+        for (Installment installment : schedule) {
+            System.out.printf("| %-6d | %-12s | %-12s | %-12s | %-12s | %-12s | %-8s |%n",
+                    installment.getPeriod(), installment.getDueDate(), Money.format(installment.getPayment()),
+                    Money.format(installment.getPrincipal()), Money.format(installment.getInterest()),
+                    Money.format(installment.getBalance()), installment.getStatus());
+            totalInterest += installment.getInterest();
+        }
+        System.out.println("+--------+--------------+--------------+--------------+--------------+--------------+----------+");
+        System.out.printf("Periods: %d, Monthly Payment: %s, Total Interest: %s%n",
+                schedule.getPeriods(), Money.format(schedule.getMonthlyPayment()), Money.format(totalInterest));
+    }
+
     private static void viewPaymentHistory() {
         int loanId = getIntInput("Enter loan ID: ");
         Loan loan = findLoan(loanId);
@@ -1364,23 +2429,12 @@ public class MicrofinanceManagement {
         System.out.println("\n--- Payment History for Loan ID: " + loanId + " (Client: " + loan.getClientName() + ") ---");
         printLoanTable(Collections.singletonList(loan));
 
-        List<Payment> payments = new ArrayList<>();
-        try (Connection conn = DriverManager.getConnection(DB_URL, DB_USER, DB_PASSWORD);
-             PreparedStatement pstmt = conn.prepareStatement("SELECT * FROM payments WHERE loan_id = ? ORDER BY payment_date")) {
-            pstmt.setInt(1, loanId);
-            ResultSet rs = pstmt.executeQuery();
-            while (rs.next()) {
-                payments.add(new Payment(
-                        rs.getInt("payment_id"),
-                        rs.getInt("loan_id"),
-                        rs.getDouble("amount"),
-                        dateFormat.parse(rs.getString("payment_date"))
-                ));
-            }
+        try {
+            List<Payment> payments = paymentRepository.findByLoanId(loanId);
             printPaymentTable(payments);
-            double totalPayments = payments.stream().mapToDouble(Payment::getAmount).sum();
-            System.out.printf("Total Payments: %.2f%n", totalPayments);
-        } catch (SQLException | java.text.ParseException e) {
+            long totalPayments = payments.stream().mapToLong(Payment::getAmountCents).sum();
+            System.out.println("Total Payments: " + Money.format(totalPayments));
+        } catch (SQLException e) {
             System.err.println("Error retrieving payment history: " + e.getMessage());
         }
     }
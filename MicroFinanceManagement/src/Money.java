@@ -0,0 +1,119 @@
+// Description: Fixed-point money. Amounts are carried as a long count of centavos
+// everywhere (entities, repositories, calculations), so sums and comparisons are
+// exact and nothing is allocated per operation. Only the interest math goes through
+// double, and every such result is rounded back to centavos with an explicit mode:
+// installments round HALF_UP, interest accruals and balances round HALF_EVEN.
+// The database columns are DECIMAL(15,2); BigDecimal appears only at that boundary.
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+
+final class Money {
+    static final long CENTS_PER_UNIT = 100;
+    // DECIMAL(15,2) holds at most 13 digits before the point
+    private static final int MAX_WHOLE_DIGITS = 13;
+
+    private Money() {
+    }
+
+    static long ofUnits(long units) {
+        return Math.multiplyExact(units, CENTS_PER_UNIT);
+    }
+
+    // Rounds a value already expressed in centavos (e.g. amountCents * factor) to a whole centavo.
+    // Built on the Math intrinsics so the hot loops stay branch-free; the ties are resolved the
+    // same way BigDecimal would (HALF_UP and HALF_DOWN are symmetric around zero).
+    static long round(double cents, RoundingMode mode) {
+        if (!(Math.abs(cents) < 0x1p63)) {
+            throw new ArithmeticException("Amount out of range: " + cents);
+        }
+        switch (mode) {
+            case FLOOR: return (long) Math.floor(cents);
+            case CEILING: return (long) Math.ceil(cents);
+            case HALF_EVEN: return (long) Math.rint(cents);
+            case HALF_UP: return cents >= 0 ? Math.round(cents) : -Math.round(-cents);
+            case HALF_DOWN: return cents >= 0 ? -Math.round(-cents) : Math.round(cents);
+            default:
+                throw new IllegalArgumentException("Unsupported rounding mode: " + mode);
+        }
+    }
+
+    // Exact integer division of a non-negative amount into equal parts, rounding the quotient up.
+    static long divideCeiling(long cents, int parts) {
+        return Math.floorDiv(cents + parts - 1, parts);
+    }
+
+    // Parses user or file input such as "1500", "1,500.5" or "1500.50" without going through double.
+    // More than two decimal places is rejected rather than silently rounded, and so is anything
+    // the DECIMAL(15,2) columns cannot hold, so callers only ever see NumberFormatException.
+    static long parse(String text) {
+        String s = text.trim().replace(",", "");
+        if (s.isEmpty()) {
+            throw new NumberFormatException("empty amount");
+        }
+        boolean negative = s.startsWith("-");
+        if (negative || s.startsWith("+")) {
+            s = s.substring(1);
+        }
+        int dot = s.indexOf('.');
+        String whole = dot < 0 ? s : s.substring(0, dot);
+        String fraction = dot < 0 ? "" : s.substring(dot + 1);
+        if ((whole.isEmpty() && fraction.isEmpty()) || fraction.length() > 2
+                || !digitsOnly(whole) || !digitsOnly(fraction)) {
+            throw new NumberFormatException("invalid amount: " + text);
+        }
+        int leadingZeros = 0;
+        while (leadingZeros < whole.length() && whole.charAt(leadingZeros) == '0') {
+            leadingZeros++;
+        }
+        if (whole.length() - leadingZeros > MAX_WHOLE_DIGITS) {
+            throw new NumberFormatException("amount out of range: " + text);
+        }
+        long cents = whole.isEmpty() ? 0 : Long.parseLong(whole) * CENTS_PER_UNIT;
+        if (!fraction.isEmpty()) {
+            cents += Long.parseLong(fraction.length() == 1 ? fraction + "0" : fraction);
+        }
+        return negative ? -cents : cents;
+    }
+
+    private static boolean digitsOnly(String s) {
+        for (int i = 0; i < s.length(); i++) {
+            char c = s.charAt(i);
+            if (c < '0' || c > '9') {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    // "1234.50" style, the same text printf("%.2f") produced for the old double amounts.
+    static String format(long cents) {
+        return appendTo(new StringBuilder(24), cents).toString();
+    }
+
+    // Same text as format, written straight into the caller's buffer (see TableWriter)
+    static StringBuilder appendTo(StringBuilder sb, long cents) {
+        long abs = Math.abs(cents);
+        if (cents < 0) {
+            sb.append('-');
+        }
+        sb.append(abs / CENTS_PER_UNIT).append('.');
+        long fraction = abs % CENTS_PER_UNIT;
+        if (fraction < 10) {
+            sb.append('0');
+        }
+        return sb.append(fraction);
+    }
+
+    static double toUnits(long cents) {
+        return cents / (double) CENTS_PER_UNIT;
+    }
+
+    static BigDecimal toDecimal(long cents) {
+        return BigDecimal.valueOf(cents, 2);
+    }
+
+    static long fromDecimal(BigDecimal value) {
+        return value == null ? 0 : value.setScale(2, RoundingMode.HALF_EVEN).unscaledValue().longValueExact();
+    }
+}
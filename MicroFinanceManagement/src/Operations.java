@@ -0,0 +1,268 @@
+// Description: The console workflows without the prompts. Each operation applies the same
+// rules as its interactive counterpart (credit score thresholds, one pending loan per client,
+// PaymentRules for payments) and either returns the written row or throws OperationRejected
+// with the message the console would have shown. Used by the command script mode and the
+// load driver, so both exercise exactly what a teller does at the console. Each operation is
+// timed under the same metric name as its console workflow (see Metrics).
+
+import java.sql.SQLException;
+import java.util.Date;
+import java.util.List;
+
+// A business rule refused the operation; nothing was written.
+class OperationRejected extends Exception {
+    private static final long serialVersionUID = 1L;
+
+    OperationRejected(String message) {
+        super(message, null, false, false);
+    }
+}
+
+// The client or loan asked for does not exist
+class EntityNotFound extends OperationRejected {
+    private static final long serialVersionUID = 1L;
+
+    EntityNotFound(String message) {
+        super(message);
+    }
+}
+
+class Operations {
+    static final double MIN_CREDIT_SCORE_FOR_LOAN = 50.0;
+    static final double MIN_CREDIT_SCORE_FOR_APPROVAL = 70.0;
+    static final String PENDING_LOAN_EXISTS = "Client has pending loans. Cannot apply for a new loan until resolved.";
+
+    // Metric names, shared with the console workflows
+    static final String ADD_CLIENT = "workflow.addClient";
+    static final String APPLY_FOR_LOAN = "workflow.applyForLoan";
+    static final String APPROVE_REJECT_LOAN = "workflow.approveRejectLoan";
+    static final String PROCESS_PAYMENT = "workflow.processPayment";
+    static final String LOAN_PORTFOLIO = "report.loanPortfolio";
+    static final String COLLECTION_REPORT = "report.collection";
+    static final String DETAILED_REPORT = "report.detailedClientLoan";
+
+    private interface Call<T> {
+        T run() throws SQLException, OperationRejected;
+    }
+
+    private final OperationTimer addClientTimer = Metrics.timer(ADD_CLIENT);
+    private final OperationTimer applyForLoanTimer = Metrics.timer(APPLY_FOR_LOAN);
+    private final OperationTimer approveRejectLoanTimer = Metrics.timer(APPROVE_REJECT_LOAN);
+    private final OperationTimer processPaymentTimer = Metrics.timer(PROCESS_PAYMENT);
+    private final OperationTimer findClientTimer = Metrics.timer("workflow.findClient");
+    private final OperationTimer findLoanTimer = Metrics.timer("workflow.findLoan");
+    private final OperationTimer clientLoansTimer = Metrics.timer("workflow.clientLoans");
+    private final OperationTimer paymentHistoryTimer = Metrics.timer("workflow.paymentHistory");
+    private final OperationTimer loanHistoryTimer = Metrics.timer("workflow.loanHistory");
+    private final OperationTimer loanPortfolioTimer = Metrics.timer(LOAN_PORTFOLIO);
+    private final OperationTimer collectionReportTimer = Metrics.timer(COLLECTION_REPORT);
+    private final OperationTimer detailedReportTimer = Metrics.timer(DETAILED_REPORT);
+
+    private final ClientRepository clients;
+    private final LoanRepository loans;
+    private final PaymentRepository payments;
+    private final PortfolioRepository portfolio;
+    private final LoanLedger ledger;
+
+    Operations(ClientRepository clients, LoanRepository loans, PaymentRepository payments, PortfolioRepository portfolio,
+               LoanLedger ledger) {
+        this.clients = clients;
+        this.loans = loans;
+        this.payments = payments;
+        this.portfolio = portfolio;
+        this.ledger = ledger;
+    }
+
+    Client addClient(String name, String phone, String address, double creditScore) throws SQLException, OperationRejected {
+        return timed(addClientTimer, () -> createClient(name, phone, address, creditScore));
+    }
+
+    private Client createClient(String name, String phone, String address, double creditScore) throws SQLException, OperationRejected {
+        if (!Client.isValidCreditScore(creditScore)) {
+            throw new OperationRejected("Invalid credit score! Must be between 0 and 100.");
+        }
+        return clients.add(name, phone, address, creditScore);
+    }
+
+    Loan applyForLoan(int clientId, long amountCents, double interestRate, int durationMonths) throws SQLException, OperationRejected {
+        return timed(applyForLoanTimer, () -> submitLoan(clientId, amountCents, interestRate, durationMonths));
+    }
+
+    private Loan submitLoan(int clientId, long amountCents, double interestRate, int durationMonths) throws SQLException, OperationRejected {
+        Client client = client(clientId);
+        if (client.getCreditScore() < MIN_CREDIT_SCORE_FOR_LOAN) {
+            throw new OperationRejected("Client credit score is too low to apply for a loan.");
+        }
+        if (loans.hasPendingLoans(clientId)) {
+            throw new OperationRejected(PENDING_LOAN_EXISTS);
+        }
+        if (amountCents <= 0) {
+            throw new OperationRejected("Invalid loan amount! Must be positive.");
+        }
+        if (interestRate < 0) {
+            throw new OperationRejected("Invalid interest rate! Must be non-negative.");
+        }
+        if (durationMonths <= 0) {
+            throw new OperationRejected("Invalid duration! Must be positive.");
+        }
+        // Checked again by addPending, atomically with the insert, in case another application got in first
+        Loan loan = loans.addPending(clientId, amountCents, interestRate, durationMonths, new Date());
+        if (loan == null) {
+            throw new OperationRejected(PENDING_LOAN_EXISTS);
+        }
+        return loan;
+    }
+
+    // Approving a loan whose client is below the approval threshold rejects it instead, as the console does;
+    // the returned loan carries the status actually written.
+    Loan decideLoan(int loanId, boolean approve) throws SQLException, OperationRejected {
+        return timed(approveRejectLoanTimer, () -> decide(loanId, approve));
+    }
+
+    private Loan decide(int loanId, boolean approve) throws SQLException, OperationRejected {
+        Loan loan = loans.findById(loanId);
+        if (loan == null || !loan.getStatus().equals("PENDING")) {
+            throw new OperationRejected("Loan not found or already processed!");
+        }
+        Client client = clients.findById(loan.getClientId());
+        if (client == null) {
+            throw new OperationRejected("Associated client not found!");
+        }
+        String status = approve && client.getCreditScore() >= MIN_CREDIT_SCORE_FOR_APPROVAL ? "APPROVED" : "REJECT";
+        // Another teller may have decided it since the read above; only one decision is written
+        if (!loans.decide(loanId, status)) {
+            throw new OperationRejected("Loan not found or already processed!");
+        }
+        loan.setStatus(status);
+        return loan;
+    }
+
+    // Records the payment and returns the loan as it stands afterwards (paid amount, PAID status)
+    Loan pay(int loanId, long amountCents, Date paymentDate) throws SQLException, OperationRejected {
+        return timed(processPaymentTimer, () -> recordPayment(loanId, amountCents, paymentDate));
+    }
+
+    private Loan recordPayment(int loanId, long amountCents, Date paymentDate) throws SQLException, OperationRejected {
+        PaymentPosting posting = payments.postPayment(loanId, amountCents, paymentDate);
+        if (!posting.isAccepted()) {
+            throw new OperationRejected("Payment rejected: " + posting.getRejectionReason());
+        }
+        return posting.getLoan();
+    }
+
+    Client findClient(int clientId) throws SQLException, OperationRejected {
+        return timed(findClientTimer, () -> client(clientId));
+    }
+
+    Loan findLoan(int loanId) throws SQLException, OperationRejected {
+        return timed(findLoanTimer, () -> loan(loanId));
+    }
+
+    List<Loan> clientLoans(int clientId) throws SQLException, OperationRejected {
+        return timed(clientLoansTimer, () -> {
+            client(clientId);
+            return loans.findByClientId(clientId);
+        });
+    }
+
+    List<Payment> paymentHistory(int loanId) throws SQLException, OperationRejected {
+        return timed(paymentHistoryTimer, () -> {
+            loan(loanId);
+            return payments.findByLoanId(loanId);
+        });
+    }
+
+    // Read from the ledger, so a deleted loan still has its history
+    LoanHistory loanHistory(int loanId) throws SQLException, OperationRejected {
+        return timed(loanHistoryTimer, () -> {
+            LoanHistory history = ledger.history(loanId);
+            if (history.isEmpty()) {
+                throw new EntityNotFound("Loan not found!");
+            }
+            return history;
+        });
+    }
+
+    PortfolioSnapshot portfolio() throws SQLException {
+        long started = loanPortfolioTimer.start();
+        try {
+            return portfolio.current();
+        } catch (SQLException e) {
+            loanPortfolioTimer.failed();
+            throw e;
+        } finally {
+            loanPortfolioTimer.stop(started);
+        }
+    }
+
+    // The collection report's scan, totalled instead of printed: {payments, amount in centavos}
+    long[] collectionTotals() throws SQLException {
+        long[] totals = new long[2];
+        long started = collectionReportTimer.start();
+        try {
+            payments.streamAll(payment -> {
+                totals[0]++;
+                totals[1] += payment.getAmountCents();
+            });
+        } catch (SQLException e) {
+            collectionReportTimer.failed();
+            throw e;
+        } finally {
+            collectionReportTimer.stop(started);
+        }
+        return totals;
+    }
+
+    // The detailed client-loan report's scan, totalled instead of printed: {clients, loans}
+    long[] clientLoanTotals() throws SQLException {
+        long[] totals = new long[2];
+        int[] lastClient = {-1};
+        long started = detailedReportTimer.start();
+        try {
+            loans.forEachClientLoan((client, loan) -> {
+                if (client.getId() != lastClient[0]) {
+                    lastClient[0] = client.getId();
+                    totals[0]++;
+                }
+                if (loan != null) {
+                    totals[1]++;
+                }
+            });
+        } catch (SQLException e) {
+            detailedReportTimer.failed();
+            throw e;
+        } finally {
+            detailedReportTimer.stop(started);
+        }
+        return totals;
+    }
+
+    private Client client(int clientId) throws SQLException, OperationRejected {
+        Client client = clients.findById(clientId);
+        if (client == null) {
+            throw new EntityNotFound("Client not found!");
+        }
+        return client;
+    }
+
+    private Loan loan(int loanId) throws SQLException, OperationRejected {
+        Loan loan = loans.findById(loanId);
+        if (loan == null) {
+            throw new EntityNotFound("Loan not found!");
+        }
+        return loan;
+    }
+
+    // Business-rule refusals are timed like any other call; only database errors count as failures
+    private static <T> T timed(OperationTimer timer, Call<T> call) throws SQLException, OperationRejected {
+        long started = timer.start();
+        try {
+            return call.run();
+        } catch (SQLException e) {
+            timer.failed();
+            throw e;
+        } finally {
+            timer.stop(started);
+        }
+    }
+}
@@ -0,0 +1,86 @@
+// Description: Runs an id-ordered scan as independent id ranges on a pool of workers and hands
+// the per-range results to the caller strictly in range order, so concatenating them gives
+// exactly what one serial pass over the whole id space would have produced. Each range is
+// read on its own connection. A bounded window of ranges in flight keeps memory flat, and there
+// are several ranges per worker so one dense range does not leave the others idle.
+
+import java.sql.SQLException;
+import java.util.ArrayDeque;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+final class PartitionedScan<T> {
+    private static final int RANGES_PER_WORKER = 8;
+    private static final int MIN_RANGE_IDS = 256;
+    private static final int MAX_RANGE_IDS = 4096;
+
+    interface RangeTask<T> {
+        // Everything for fromId <= id < toId
+        T run(int fromId, int toId) throws SQLException;
+    }
+
+    interface ResultSink<T> {
+        void accept(T result) throws SQLException;
+    }
+
+    private final int threads;
+
+    PartitionedScan(int threads) {
+        if (threads <= 0) {
+            throw new IllegalArgumentException("threads must be positive");
+        }
+        this.threads = threads;
+    }
+
+    // Splits fromId <= id < toId into ranges and returns how many there were
+    int run(int fromId, int toId, RangeTask<T> task, ResultSink<T> sink) throws SQLException, InterruptedException {
+        long span = (long) toId - fromId;
+        if (span <= 0) {
+            return 0;
+        }
+        int rangeIds = (int) Math.max(MIN_RANGE_IDS, Math.min(MAX_RANGE_IDS, span / ((long) threads * RANGES_PER_WORKER)));
+        int ranges = (int) ((span + rangeIds - 1) / rangeIds);
+
+        AtomicInteger workerNumber = new AtomicInteger();
+        ExecutorService workers = Executors.newFixedThreadPool(threads, r -> {
+            Thread thread = new Thread(r, "report-worker-" + workerNumber.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+        ArrayDeque<Future<T>> window = new ArrayDeque<>();
+        try {
+            for (int r = 0; r < ranges; r++) {
+                if (window.size() == threads * 2) {
+                    sink.accept(await(window.poll()));
+                }
+                int from = (int) (fromId + (long) r * rangeIds);
+                int to = (int) Math.min(toId, (long) from + rangeIds);
+                window.add(workers.submit(() -> task.run(from, to)));
+            }
+            while (!window.isEmpty()) {
+                sink.accept(await(window.poll()));
+            }
+        } finally {
+            workers.shutdownNow();
+        }
+        return ranges;
+    }
+
+    private static <T> T await(Future<T> pending) throws SQLException, InterruptedException {
+        try {
+            return pending.get();
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof SQLException) {
+                throw (SQLException) cause;
+            }
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            }
+            throw new IllegalStateException(cause);
+        }
+    }
+}
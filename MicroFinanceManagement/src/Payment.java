@@ -0,0 +1,23 @@
+// Description: One repayment posted against a loan.
+
+import java.util.Date;
+
+class Payment {
+    private int paymentId;
+    private int loanId;
+    private long amountCents;
+    private Date paymentDate;
+
+    Payment(int paymentId, int loanId, long amountCents, Date paymentDate) {
+        this.paymentId = paymentId;
+        this.loanId = loanId;
+        this.amountCents = amountCents;
+        this.paymentDate = paymentDate;
+    }
+
+    // Getters
+    public int getPaymentId() { return paymentId; }
+    public int getLoanId() { return loanId; }
+    public long getAmountCents() { return amountCents; }
+    public Date getPaymentDate() { return paymentDate; }
+}
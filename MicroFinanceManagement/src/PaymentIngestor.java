@@ -0,0 +1,133 @@
+// Description: Streaming ingestion of daily collection files (loan_id,amount[,payment_date]).
+// Records are read in batches, grouped by loan_id, and each batch is posted in a
+// single transaction via PaymentRepository.postBatch, so a loan with many repayments
+// costs one lock and one balance update instead of a full processPayment round trip each.
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.SQLException;
+import java.time.LocalDate;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+class PaymentIngestor {
+    static final int DEFAULT_BATCH_SIZE = 5000;
+
+    private final PaymentRepository repository;
+    private final int batchSize;
+    private long loansSettled;
+
+    PaymentIngestor(PaymentRepository repository, int batchSize) {
+        if (batchSize <= 0) {
+            throw new IllegalArgumentException("Batch size must be positive");
+        }
+        this.repository = repository;
+        this.batchSize = batchSize;
+    }
+
+    public long getLoansSettled() { return loansSettled; }
+
+    BulkLoadStats ingestFile(Path paymentsFile, Path rejectsFile) throws IOException {
+        long start = System.nanoTime();
+        long read = 0;
+        long posted = 0;
+        long rejected = 0;
+        Date today = new Date();
+        Map<Integer, List<PaymentRequest>> batch = new LinkedHashMap<>();
+        int batchCount = 0;
+
+        try (BufferedReader in = Files.newBufferedReader(paymentsFile, StandardCharsets.UTF_8);
+             BufferedWriter rejects = Files.newBufferedWriter(rejectsFile, StandardCharsets.UTF_8)) {
+            Csv.writeRejectHeader(rejects);
+            String line;
+            long lineNumber = 0;
+            while ((line = in.readLine()) != null) {
+                lineNumber++;
+                if (line.isBlank() || (lineNumber == 1 && line.toLowerCase().startsWith("loan_id"))) {
+                    continue; // blank line or header
+                }
+                read++;
+                PaymentRequest request;
+                try {
+                    request = parse(lineNumber, line, today);
+                } catch (IllegalArgumentException e) {
+                    Csv.writeReject(rejects, lineNumber, e.getMessage(), line);
+                    rejected++;
+                    continue;
+                }
+                batch.computeIfAbsent(request.getLoanId(), id -> new ArrayList<>()).add(request);
+                if (++batchCount == batchSize) {
+                    long accepted = post(batch, batchCount, rejects);
+                    posted += accepted;
+                    rejected += batchCount - accepted;
+                    batch.clear();
+                    batchCount = 0;
+                }
+            }
+            if (batchCount > 0) {
+                long accepted = post(batch, batchCount, rejects);
+                posted += accepted;
+                rejected += batchCount - accepted;
+            }
+        }
+        return new BulkLoadStats(read, posted, rejected, System.nanoTime() - start);
+    }
+
+    private static PaymentRequest parse(long lineNumber, String line, Date defaultDate) {
+        List<String> fields = Csv.parseLine(line);
+        if (fields.size() < 2 || fields.size() > 3) {
+            throw new IllegalArgumentException("expected loan_id,amount[,payment_date] but found " + fields.size() + " fields");
+        }
+        int loanId;
+        long amountCents;
+        try {
+            loanId = Integer.parseInt(fields.get(0).trim());
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("invalid loan_id format");
+        }
+        try {
+            amountCents = Money.parse(fields.get(1));
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("invalid amount format");
+        }
+        Date paymentDate = defaultDate;
+        if (fields.size() == 3 && !fields.get(2).isBlank()) {
+            try {
+                paymentDate = java.sql.Date.valueOf(LocalDate.parse(fields.get(2).trim()));
+            } catch (DateTimeParseException e) {
+                throw new IllegalArgumentException("invalid payment_date, expected yyyy-MM-dd");
+            }
+        }
+        return new PaymentRequest(lineNumber, line, loanId, amountCents, paymentDate);
+    }
+
+    // Returns how many payments of the batch were posted; the rest are written to the rejects file.
+    private long post(Map<Integer, List<PaymentRequest>> batch, int batchCount, BufferedWriter rejects) throws IOException {
+        PaymentBatchResult result;
+        try {
+            result = repository.postBatch(batch);
+        } catch (SQLException e) {
+            for (List<PaymentRequest> requests : batch.values()) {
+                for (PaymentRequest request : requests) {
+                    Csv.writeReject(rejects, request.getLineNumber(), "database error: " + e.getMessage(), request.getSource());
+                }
+            }
+            return 0;
+        }
+        List<PaymentRequest> refused = result.getRejected();
+        for (int i = 0; i < refused.size(); i++) {
+            PaymentRequest request = refused.get(i);
+            Csv.writeReject(rejects, request.getLineNumber(), result.getReasons().get(i), request.getSource());
+        }
+        loansSettled += result.getLoansSettled();
+        return batchCount - refused.size();
+    }
+}
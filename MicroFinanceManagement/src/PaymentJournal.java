@@ -0,0 +1,779 @@
+// Description: Write-ahead journal for payments (-Dmfms.journal.dir). A teller's payment is
+// checked against the loan, appended to a memory-mapped segment file as a fixed-size checksummed
+// record and acknowledged once the record is forced to disk. The fsync is shared by group commit:
+// the first waiter forces everything appended so far and every payment behind it is durable with
+// the same call, so one disk flush acknowledges many tellers. A background applier drains the
+// journal into the payments and loans tables with postJournalBatch, thousands of records to a
+// transaction, and stores the applied sequence in the same transaction. On startup any records
+// past that sequence are replayed, so a payment acknowledged before a crash is posted exactly once.
+//
+// Record (36 bytes): magic, sequence, loan id, amount in centavos, payment date (epoch millis),
+// CRC32C of the preceding 32 bytes. Segments are named payments-<first sequence>.wal and are
+// deleted once every record in them has been applied.
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.sql.SQLException;
+import java.sql.SQLTransientException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Date;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.zip.CRC32C;
+
+final class PaymentJournal implements Closeable {
+    static final int RECORD_BYTES = 36;
+    private static final int RECORD_MAGIC = 0x504A5231; // "PJR1"
+    private static final int CHECKSUMMED_BYTES = 32;
+    private static final String SEGMENT_PREFIX = "payments-";
+    private static final String SEGMENT_SUFFIX = ".wal";
+
+    // One mapped file; records are at fixed offsets from its first sequence
+    private static final class Segment {
+        final Path path;
+        final long firstSequence;
+        final FileChannel channel;
+        final MappedByteBuffer map;
+        int size; // bytes of valid records
+
+        // A segment written with a larger segment size keeps its own length
+        Segment(Path path, long firstSequence, int capacity) throws IOException {
+            this.path = path;
+            this.firstSequence = firstSequence;
+            this.channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+            this.map = channel.map(FileChannel.MapMode.READ_WRITE, 0, Math.max(capacity, channel.size()));
+        }
+
+        long lastSequence() {
+            return firstSequence + size / RECORD_BYTES - 1;
+        }
+    }
+
+    private final Path directory;
+    private final int segmentBytes;
+    private final ArrayDeque<Segment> segments = new ArrayDeque<>(); // oldest first, the last one is written
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition flushed = lock.newCondition();
+    private final CRC32C checksum = new CRC32C(); // guarded by lock
+    private final AtomicLong flushes = new AtomicLong();
+    private long appendedSequence;
+    private long durableSequence;
+    private int flushedBytes; // of the current segment
+    private boolean flushing;
+    private boolean closed;
+
+    private PaymentJournal(Path directory, int segmentBytes) {
+        this.directory = directory;
+        this.segmentBytes = segmentBytes;
+    }
+
+    // Opens the journal, checking every record left by the last run. A torn record at the end of
+    // the newest segment (a crash mid-write) is cut off; damage anywhere else is an IOException.
+    static PaymentJournal open(Path directory, int segmentBytes, long appliedSequence) throws IOException {
+        int capacity = Math.max(RECORD_BYTES, segmentBytes / RECORD_BYTES * RECORD_BYTES);
+        PaymentJournal journal = new PaymentJournal(directory, capacity);
+        Files.createDirectories(directory);
+        List<Path> files = new ArrayList<>();
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(directory, SEGMENT_PREFIX + "*" + SEGMENT_SUFFIX)) {
+            stream.forEach(files::add);
+        }
+        files.sort((a, b) -> Long.compare(firstSequenceOf(a), firstSequenceOf(b)));
+        long expected = -1;
+        for (int i = 0; i < files.size(); i++) {
+            Segment segment = new Segment(files.get(i), firstSequenceOf(files.get(i)), capacity);
+            if (expected >= 0 && segment.firstSequence != expected) {
+                throw new IOException("journal segment " + segment.path + " does not follow sequence " + (expected - 1));
+            }
+            journal.recover(segment, i == files.size() - 1);
+            journal.segments.add(segment);
+            expected = segment.lastSequence() + 1;
+        }
+        long last = expected > 0 ? expected - 1 : 0;
+        journal.appendedSequence = Math.max(last, appliedSequence);
+        journal.durableSequence = journal.appendedSequence;
+        // An empty directory, or a journal the database has already gone past: start a new segment
+        if (journal.segments.isEmpty() || appliedSequence > last) {
+            journal.startSegment(journal.appendedSequence + 1);
+        }
+        journal.flushedBytes = journal.current().size;
+        journal.release(appliedSequence);
+        return journal;
+    }
+
+    private void recover(Segment segment, boolean newest) throws IOException {
+        MappedByteBuffer map = segment.map;
+        for (int offset = 0; offset + RECORD_BYTES <= map.capacity(); offset += RECORD_BYTES) {
+            int magic = map.getInt(offset);
+            if (magic == 0) {
+                break;
+            }
+            long sequence = segment.firstSequence + offset / RECORD_BYTES;
+            if (magic != RECORD_MAGIC || map.getLong(offset + 4) != sequence
+                    || map.getInt(offset + CHECKSUMMED_BYTES) != checksum(map, offset)) {
+                if (!newest) {
+                    throw new IOException("journal segment " + segment.path + " is damaged at offset " + offset);
+                }
+                System.err.println("Payment journal: discarding torn record " + sequence + " at the end of " + segment.path);
+                for (int i = offset; i < map.capacity(); i++) {
+                    map.put(i, (byte) 0);
+                }
+                map.force();
+                break;
+            }
+            segment.size = offset + RECORD_BYTES;
+        }
+    }
+
+    // Writes the record and returns its sequence; it is not durable until awaitDurable returns
+    long append(int loanId, long amountCents, Date paymentDate) throws IOException {
+        lock.lock();
+        try {
+            if (closed) {
+                throw new IOException("payment journal is closed");
+            }
+            if (current().size + RECORD_BYTES > segmentBytes) {
+                rollSegment();
+            }
+            Segment segment = current();
+            int offset = segment.size;
+            long sequence = appendedSequence + 1;
+            MappedByteBuffer map = segment.map;
+            map.putInt(offset, RECORD_MAGIC);
+            map.putLong(offset + 4, sequence);
+            map.putInt(offset + 12, loanId);
+            map.putLong(offset + 16, amountCents);
+            map.putLong(offset + 24, paymentDate.getTime());
+            map.putInt(offset + CHECKSUMMED_BYTES, checksum(map, offset));
+            segment.size = offset + RECORD_BYTES;
+            appendedSequence = sequence;
+            return sequence;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    // Group commit: the first caller to find its record not yet durable forces everything appended
+    // so far, outside the lock; the others wait for that flush and usually find themselves covered.
+    void awaitDurable(long sequence) throws IOException, InterruptedException {
+        lock.lock();
+        try {
+            while (durableSequence < sequence) {
+                if (flushing) {
+                    flushed.await();
+                    continue;
+                }
+                flushing = true;
+                Segment segment = current();
+                long target = appendedSequence;
+                int from = flushedBytes;
+                int to = segment.size;
+                lock.unlock();
+                try {
+                    segment.map.force(from, to - from);
+                    flushes.incrementAndGet();
+                } finally {
+                    lock.lock();
+                    flushing = false;
+                    flushed.signalAll();
+                }
+                if (segment == current()) {
+                    flushedBytes = Math.max(flushedBytes, to);
+                }
+                durableSequence = Math.max(durableSequence, target);
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    // Waits until some record after afterSequence is durable, or the timeout passes; returns the durable sequence
+    long awaitRecords(long afterSequence, long timeout, TimeUnit unit) throws InterruptedException {
+        lock.lock();
+        try {
+            long nanos = unit.toNanos(timeout);
+            while (durableSequence <= afterSequence && !closed && nanos > 0) {
+                nanos = flushed.awaitNanos(nanos);
+            }
+            return durableSequence;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    // Durable records from fromSequence on, at most max of them; lineNumber carries the sequence
+    List<PaymentRequest> read(long fromSequence, int max) {
+        List<PaymentRequest> records = new ArrayList<>();
+        lock.lock();
+        try {
+            for (Segment segment : segments) {
+                long sequence = Math.max(fromSequence, segment.firstSequence);
+                for (; sequence <= segment.lastSequence() && sequence <= durableSequence && records.size() < max; sequence++) {
+                    int offset = (int) (sequence - segment.firstSequence) * RECORD_BYTES;
+                    MappedByteBuffer map = segment.map;
+                    records.add(new PaymentRequest(sequence, "journal", map.getInt(offset + 12), map.getLong(offset + 16),
+                            new Date(map.getLong(offset + 24))));
+                }
+            }
+        } finally {
+            lock.unlock();
+        }
+        return records;
+    }
+
+    // Deletes the segments whose records have all been applied, never the one being written
+    void release(long appliedSequence) throws IOException {
+        lock.lock();
+        try {
+            while (segments.size() > 1 && segments.peekFirst().lastSequence() <= appliedSequence) {
+                Segment segment = segments.pollFirst();
+                segment.channel.close();
+                Files.deleteIfExists(segment.path);
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        lock.lock();
+        try {
+            if (closed) {
+                return;
+            }
+            closed = true;
+            flushed.signalAll();
+            current().map.force();
+            for (Segment segment : segments) {
+                segment.channel.close();
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    long getAppendedSequence() {
+        lock.lock();
+        try {
+            return appendedSequence;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    long getDurableSequence() {
+        lock.lock();
+        try {
+            return durableSequence;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    long getFlushes() {
+        return flushes.get();
+    }
+
+    Path getDirectory() {
+        return directory;
+    }
+
+    private Segment current() {
+        return segments.peekLast();
+    }
+
+    // The full segment is forced before the next one starts, so durability never skips a segment
+    private void rollSegment() throws IOException {
+        current().map.force();
+        durableSequence = appendedSequence;
+        flushed.signalAll();
+        startSegment(appendedSequence + 1);
+        flushedBytes = 0;
+    }
+
+    private void startSegment(long firstSequence) throws IOException {
+        Path path = directory.resolve(String.format("%s%020d%s", SEGMENT_PREFIX, firstSequence, SEGMENT_SUFFIX));
+        segments.add(new Segment(path, firstSequence, segmentBytes));
+    }
+
+    private int checksum(MappedByteBuffer map, int offset) {
+        checksum.reset();
+        checksum.update(map.slice(offset, CHECKSUMMED_BYTES));
+        return (int) checksum.getValue();
+    }
+
+    private static long firstSequenceOf(Path file) {
+        String name = file.getFileName().toString();
+        return Long.parseLong(name.substring(SEGMENT_PREFIX.length(), name.length() - SEGMENT_SUFFIX.length()));
+    }
+}
+
+// Takes single payments through the journal and posts them in the background. Each payment is
+// checked against the loan as the journal will leave it: the loan read from the database plus the
+// journaled payments not yet applied to it, kept per loan until the applier has posted them all.
+// Batch imports and loan edits, status changes and deletes change loans behind that view, so they
+// hold the loans they touch (see hold): the loan's journaled payments are applied first and new
+// ones wait until the write is done. Reads go straight to the database; a payment shows in the
+// payment history once it has been applied.
+class JournaledPaymentRepository implements PaymentRepository {
+    private static final int APPLY_BATCH_RECORDS = 5000;
+    private static final long APPLY_RETRY_MILLIS = 1000;
+    private static final long HOLD_WAIT_SECONDS = 30;
+    private static final long HOLD_POLL_MILLIS = 5;
+
+    // A loan with journaled payments the database does not have yet
+    private static final class PendingLoan {
+        final Loan loan; // as it will stand once those payments are applied; null while a write holds the loan
+        int records;
+        boolean draining; // a write waits for these records, so no more are taken
+
+        PendingLoan(Loan loan) {
+            this.loan = loan;
+        }
+    }
+
+    interface LoanWrite<T> {
+        T run() throws SQLException;
+    }
+
+    private final PaymentRepository delegate;
+    private final LoanRepository loans;
+    private final PaymentJournal journal;
+    private final ConcurrentHashMap<Integer, PendingLoan> pending = new ConcurrentHashMap<>();
+    private final OperationTimer applyTimer = Metrics.timer("journal.applyBatch");
+    private final AtomicLong applyRejected = new AtomicLong();
+    private final AtomicLong dropped = new AtomicLong(); // pending entries and holds removed so far
+    private volatile long appliedSequence;
+    private volatile boolean stopping;
+    private Thread applier;
+
+    JournaledPaymentRepository(PaymentRepository delegate, LoanRepository loans, PaymentJournal journal, long appliedSequence) {
+        this.delegate = delegate;
+        this.loans = loans;
+        this.journal = journal;
+        this.appliedSequence = appliedSequence;
+    }
+
+    // Counts the records a previous run left unapplied against their loans, then starts the applier,
+    // which posts them first. Returns how many there were.
+    long start() throws SQLException {
+        long restored = 0;
+        long next = appliedSequence + 1;
+        List<PaymentRequest> records;
+        while (!(records = journal.read(next, APPLY_BATCH_RECORDS)).isEmpty()) {
+            for (PaymentRequest record : records) {
+                PendingLoan entry = pending.get(record.getLoanId());
+                if (entry == null) {
+                    Loan loan = loans.findById(record.getLoanId());
+                    if (loan == null) {
+                        continue; // rejected when applied
+                    }
+                    entry = new PendingLoan(loan);
+                    pending.put(loan.getLoanId(), entry);
+                }
+                reserve(entry, record.getAmountCents());
+            }
+            restored += records.size();
+            next = records.get(records.size() - 1).getLineNumber() + 1;
+        }
+        applier = new Thread(this::applyLoop, "journal-applier");
+        applier.setDaemon(true);
+        applier.start();
+        return restored;
+    }
+
+    @Override
+    public PaymentPosting postPayment(int loanId, long amountCents, Date paymentDate) throws SQLException {
+        Loan[] projected = new Loan[1];
+        String[] reason = new String[1];
+        boolean[] held = new boolean[1];
+        while (projected[0] == null) {
+            if (held[0]) {
+                pause("Interrupted waiting for a change to loan " + loanId);
+                held[0] = false;
+            }
+            // Without pending payments the database row is the whole story
+            long droppedBefore = dropped.get();
+            boolean hasEntry = pending.containsKey(loanId);
+            Loan fresh = hasEntry ? null : loans.findById(loanId);
+            if (fresh == null && !hasEntry) {
+                return PaymentPosting.rejected(null, PaymentRules.rejectionReason(null, amountCents));
+            }
+            // Check and reserve in one step, so no other payment or applied batch moves the loan in between
+            pending.compute(loanId, (id, current) -> {
+                if (current == null && (fresh == null || dropped.get() != droppedBefore)) {
+                    return null; // an entry came and went since the read, so it may be stale: read the loan again
+                }
+                if (current != null && (current.loan == null || current.draining)) {
+                    held[0] = true; // wait for the write and read the loan it leaves
+                    return current;
+                }
+                PendingLoan entry = current != null ? current : new PendingLoan(fresh);
+                reason[0] = PaymentRules.rejectionReason(entry.loan, amountCents);
+                if (reason[0] == null) {
+                    reserve(entry, amountCents);
+                }
+                projected[0] = copy(entry.loan);
+                return reason[0] == null ? entry : current;
+            });
+        }
+        if (reason[0] != null) {
+            return PaymentPosting.rejected(projected[0], reason[0]);
+        }
+        long sequence;
+        try {
+            sequence = journal.append(loanId, amountCents, paymentDate);
+        } catch (IOException e) {
+            release(loanId, amountCents);
+            throw new SQLException("Payment journal write failed: " + e.getMessage(), e);
+        }
+        try {
+            journal.awaitDurable(sequence);
+        } catch (IOException e) {
+            throw new SQLException("Payment journal flush failed, payment " + sequence + " may not be recorded: " + e.getMessage(), e);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new SQLException("Interrupted waiting for payment journal flush of payment " + sequence, e);
+        }
+        return PaymentPosting.journaled(new Payment(0, loanId, amountCents, paymentDate), projected[0], sequence);
+    }
+
+    // Waits for the applier to post what is durable, at most the timeout, and closes the journal.
+    // Returns the number of records left for the next start to replay.
+    long shutdown(long timeout, TimeUnit unit) throws IOException, InterruptedException {
+        stopping = true;
+        if (applier != null) {
+            applier.join(unit.toMillis(timeout));
+            if (applier.isAlive()) {
+                applier.interrupt();
+                applier.join(APPLY_RETRY_MILLIS);
+            }
+        }
+        long left = journal.getDurableSequence() - appliedSequence;
+        journal.close();
+        return left;
+    }
+
+    // Waits until everything durable so far has been applied; false if the timeout ran out first
+    boolean awaitApplied(long timeout, TimeUnit unit) throws InterruptedException {
+        long target = journal.getDurableSequence();
+        long deadline = System.nanoTime() + unit.toNanos(timeout);
+        while (appliedSequence < target) {
+            if (System.nanoTime() - deadline >= 0) {
+                return false;
+            }
+            Thread.sleep(10);
+        }
+        return true;
+    }
+
+    // Runs a write that changes loans behind the journal's back once their journaled payments are
+    // applied, keeping new payments to them waiting until it is done. Loans are held in id order, like
+    // the batch row locks, so two holds never wait on each other. Refused with a retryable
+    // SQLTransientException if the applier cannot catch up within HOLD_WAIT_SECONDS (e.g. the database is down).
+    <T> T hold(Collection<Integer> loanIds, LoanWrite<T> write) throws SQLException {
+        List<Integer> ids = new ArrayList<>(loanIds);
+        Collections.sort(ids);
+        List<Integer> held = new ArrayList<>(ids.size());
+        PendingLoan hold = new PendingLoan(null);
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(HOLD_WAIT_SECONDS);
+        try {
+            for (Integer loanId : ids) {
+                PendingLoan current;
+                while ((current = pending.compute(loanId, (id, entry) -> claim(entry, hold))) != hold) {
+                    long left = deadline - System.nanoTime();
+                    if (left <= 0) {
+                        throw new SQLTransientException("Loan " + loanId + " has journaled payments not posted yet, try again later");
+                    }
+                    if (current.loan == null) {
+                        pause("Interrupted waiting for a change to loan " + loanId);
+                    } else {
+                        try {
+                            awaitApplied(left, TimeUnit.NANOSECONDS);
+                        } catch (InterruptedException e) {
+                            Thread.currentThread().interrupt();
+                            throw new SQLException("Interrupted waiting for the journaled payments to loan " + loanId, e);
+                        }
+                    }
+                }
+                held.add(loanId);
+            }
+            return write.run();
+        } finally {
+            for (Integer loanId : held) {
+                pending.remove(loanId, hold);
+            }
+            dropped.incrementAndGet(); // payments that read a held loan before the write read it again
+        }
+    }
+
+    // Takes a free loan for the hold, or stops more payments joining the entry in the way
+    private static PendingLoan claim(PendingLoan entry, PendingLoan hold) {
+        if (entry == null) {
+            return hold;
+        }
+        if (entry.loan != null) {
+            entry.draining = true;
+        }
+        return entry;
+    }
+
+    private static void pause(String interruptedMessage) throws SQLException {
+        try {
+            Thread.sleep(HOLD_POLL_MILLIS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new SQLException(interruptedMessage, e);
+        }
+    }
+
+    long getAppliedSequence() {
+        return appliedSequence;
+    }
+
+    long getApplyRejected() {
+        return applyRejected.get();
+    }
+
+    private void applyLoop() {
+        while (true) {
+            try {
+                long durable = journal.awaitRecords(appliedSequence, 100, TimeUnit.MILLISECONDS);
+                if (durable <= appliedSequence) {
+                    if (stopping) {
+                        return;
+                    }
+                    continue;
+                }
+                applyNext();
+            } catch (InterruptedException e) {
+                return;
+            } catch (SQLException | IOException e) {
+                System.err.println("Payment journal: error applying payments, retrying: " + e.getMessage());
+                try {
+                    Thread.sleep(APPLY_RETRY_MILLIS);
+                } catch (InterruptedException stop) {
+                    return;
+                }
+            }
+        }
+    }
+
+    private void applyNext() throws SQLException, IOException {
+        List<PaymentRequest> records = journal.read(appliedSequence + 1, APPLY_BATCH_RECORDS);
+        if (records.isEmpty()) {
+            return;
+        }
+        Map<Integer, List<PaymentRequest>> byLoan = new LinkedHashMap<>();
+        for (PaymentRequest record : records) {
+            byLoan.computeIfAbsent(record.getLoanId(), id -> new ArrayList<>()).add(record);
+        }
+        long through = records.get(records.size() - 1).getLineNumber();
+        PaymentBatchResult result;
+        long started = applyTimer.start();
+        try {
+            result = delegate.postJournalBatch(byLoan, through);
+        } catch (SQLException e) {
+            applyTimer.failed();
+            throw e;
+        } finally {
+            applyTimer.stop(started);
+        }
+        appliedSequence = through;
+        // Only checked at submission against the journal's view; a loan changed another way since may refuse it
+        for (int i = 0; i < result.getRejected().size(); i++) {
+            PaymentRequest record = result.getRejected().get(i);
+            applyRejected.incrementAndGet();
+            System.err.println("Payment journal: payment " + record.getLineNumber() + " of " + Money.format(record.getAmountCents())
+                    + " to loan " + record.getLoanId() + " not posted: " + result.getReasons().get(i));
+        }
+        for (PaymentRequest record : records) {
+            // A loan missing at start had no entry, so a hold may have taken its place since
+            pending.computeIfPresent(record.getLoanId(), (id, entry) -> entry.loan == null ? entry : drop(entry));
+        }
+        journal.release(through);
+    }
+
+    private static void reserve(PendingLoan entry, long amountCents) {
+        if (PaymentRules.settles(entry.loan, amountCents)) {
+            entry.loan.setStatus("PAID");
+        }
+        entry.loan.setPaidCents(entry.loan.getPaidCents() + amountCents);
+        entry.records++;
+    }
+
+    // Takes back a reservation whose record never reached the journal
+    private void release(int loanId, long amountCents) {
+        pending.computeIfPresent(loanId, (id, entry) -> {
+            entry.loan.setPaidCents(entry.loan.getPaidCents() - amountCents);
+            if (entry.loan.getStatus().equals("PAID") && entry.loan.getPaidCents() < entry.loan.calculateTotalPayableCents()) {
+                entry.loan.setStatus("APPROVED");
+            }
+            return drop(entry);
+        });
+    }
+
+    // Counts off one record, removing the entry once none are left
+    private PendingLoan drop(PendingLoan entry) {
+        if (--entry.records > 0) {
+            return entry;
+        }
+        dropped.incrementAndGet();
+        return null;
+    }
+
+    private static Loan copy(Loan loan) {
+        return new Loan(loan.getLoanId(), loan.getClientId(), loan.getAmountCents(), loan.getInterestRate(),
+                loan.getDurationMonths(), loan.getStatus(), new Date(loan.getIssueDate().getTime()),
+                loan.getPaidCents(), loan.getClientName());
+    }
+
+    @Override
+    public PaymentBatchResult postBatch(Map<Integer, List<PaymentRequest>> paymentsByLoan) throws SQLException {
+        return hold(paymentsByLoan.keySet(), () -> delegate.postBatch(paymentsByLoan));
+    }
+
+    @Override
+    public PaymentBatchResult postJournalBatch(Map<Integer, List<PaymentRequest>> paymentsByLoan, long throughSequence) throws SQLException {
+        return delegate.postJournalBatch(paymentsByLoan, throughSequence);
+    }
+
+    @Override
+    public long appliedJournalSequence() throws SQLException {
+        return delegate.appliedJournalSequence();
+    }
+
+    @Override
+    public List<Payment> findByLoanId(int loanId) throws SQLException {
+        return delegate.findByLoanId(loanId);
+    }
+
+    @Override
+    public List<Payment> findAll() throws SQLException {
+        return delegate.findAll();
+    }
+
+    @Override
+    public void streamAll(RowHandler<Payment> handler) throws SQLException {
+        delegate.streamAll(handler);
+    }
+
+    @Override
+    public boolean hasPayments(int loanId) throws SQLException {
+        // Acknowledged but not yet applied counts, so the loan is not deleted from under them
+        PendingLoan entry = pending.get(loanId);
+        return entry != null && entry.loan != null || delegate.hasPayments(loanId);
+    }
+}
+
+// Puts loan edits, status changes and deletes behind JournaledPaymentRepository.hold, so they never
+// change a loan the journal still has payments for.
+class JournalHoldingLoanRepository implements LoanRepository {
+    private final LoanRepository delegate;
+    private final JournaledPaymentRepository journal;
+
+    JournalHoldingLoanRepository(LoanRepository delegate, JournaledPaymentRepository journal) {
+        this.delegate = delegate;
+        this.journal = journal;
+    }
+
+    @Override
+    public Loan add(int clientId, long amountCents, double interestRate, int durationMonths, String status, Date issueDate) throws SQLException {
+        return delegate.add(clientId, amountCents, interestRate, durationMonths, status, issueDate);
+    }
+
+    @Override
+    public Loan addPending(int clientId, long amountCents, double interestRate, int durationMonths, Date issueDate) throws SQLException {
+        return delegate.addPending(clientId, amountCents, interestRate, durationMonths, issueDate);
+    }
+
+    @Override
+    public Loan findById(int loanId) throws SQLException {
+        return delegate.findById(loanId);
+    }
+
+    @Override
+    public List<Loan> findAll() throws SQLException {
+        return delegate.findAll();
+    }
+
+    @Override
+    public List<Loan> findPage(int afterLoanId, int limit) throws SQLException {
+        return delegate.findPage(afterLoanId, limit);
+    }
+
+    @Override
+    public List<Loan> findPageBefore(int beforeLoanId, int limit) throws SQLException {
+        return delegate.findPageBefore(beforeLoanId, limit);
+    }
+
+    @Override
+    public void streamAll(RowHandler<Loan> handler) throws SQLException {
+        delegate.streamAll(handler);
+    }
+
+    @Override
+    public List<Loan> findByClientId(int clientId) throws SQLException {
+        return delegate.findByClientId(clientId);
+    }
+
+    @Override
+    public boolean update(int loanId, long amountCents, double interestRate, int durationMonths, String status) throws SQLException {
+        return journal.hold(List.of(loanId), () -> delegate.update(loanId, amountCents, interestRate, durationMonths, status));
+    }
+
+    @Override
+    public boolean updateStatus(int loanId, String status) throws SQLException {
+        return journal.hold(List.of(loanId), () -> delegate.updateStatus(loanId, status));
+    }
+
+    @Override
+    public boolean decide(int loanId, String status) throws SQLException {
+        return journal.hold(List.of(loanId), () -> delegate.decide(loanId, status));
+    }
+
+    @Override
+    public boolean delete(int loanId) throws SQLException {
+        return journal.hold(List.of(loanId), () -> delegate.delete(loanId));
+    }
+
+    @Override
+    public boolean hasLoans(int clientId) throws SQLException {
+        return delegate.hasLoans(clientId);
+    }
+
+    @Override
+    public boolean hasPendingLoans(int clientId) throws SQLException {
+        return delegate.hasPendingLoans(clientId);
+    }
+
+    @Override
+    public LoanTotals totalsByStatus(String... statuses) throws SQLException {
+        return delegate.totalsByStatus(statuses);
+    }
+
+    @Override
+    public void forEachClientLoan(ClientLoanHandler handler) throws SQLException {
+        delegate.forEachClientLoan(handler);
+    }
+
+    @Override
+    public void forEachClientLoan(int fromClientId, int toClientId, ClientLoanHandler handler) throws SQLException {
+        delegate.forEachClientLoan(fromClientId, toClientId, handler);
+    }
+}
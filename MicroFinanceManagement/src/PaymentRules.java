@@ -0,0 +1,52 @@
+// Description: The payment acceptance rules from processPayment, shared by the
+// interactive flow and the bulk ingestion pipeline so both post payments the same way.
+
+import java.util.ArrayList;
+import java.util.List;
+
+final class PaymentRules {
+    private PaymentRules() {
+    }
+
+    // Returns null when the payment may be posted against the loan, otherwise the reason it may not.
+    static String rejectionReason(Loan loan, long amountCents) {
+        if (loan == null) {
+            return "loan not found";
+        }
+        if (!loan.getStatus().equals("APPROVED")) {
+            return "loan is not approved or already paid/rejected";
+        }
+        if (amountCents <= 0) {
+            return "payment amount must be positive";
+        }
+        if (amountCents > loan.calculateOutstandingBalanceCents()) {
+            return "payment amount cannot exceed outstanding balance";
+        }
+        return null;
+    }
+
+    static boolean settles(Loan loan, long amountCents) {
+        return loan.getPaidCents() + amountCents >= loan.calculateTotalPayableCents();
+    }
+
+    // Applies a loan's payments in file order, exactly as if processPayment had been run for each one.
+    // The loan is updated in place (paid amount, PAID status); the accepted requests are returned.
+    static List<PaymentRequest> applyInOrder(Loan loan, List<PaymentRequest> requests, PaymentBatchResult result) {
+        List<PaymentRequest> accepted = new ArrayList<>(requests.size());
+        for (PaymentRequest request : requests) {
+            String reason = rejectionReason(loan, request.getAmountCents());
+            if (reason != null) {
+                result.reject(request, reason);
+                continue;
+            }
+            if (settles(loan, request.getAmountCents())) {
+                loan.setStatus("PAID");
+                result.loanSettled();
+            }
+            loan.setPaidCents(loan.getPaidCents() + request.getAmountCents());
+            accepted.add(request);
+        }
+        result.accepted(accepted.size());
+        return accepted;
+    }
+}
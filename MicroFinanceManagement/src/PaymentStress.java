@@ -0,0 +1,220 @@
+// Description: Concurrency stress check for payment posting (--payment-stress). Many threads post
+// small payments at random to a handful of fresh loans at once, far more than the loans can take,
+// so every loan sees heavy same-row contention and is driven to PAID. Afterwards each loan is
+// checked against what the threads were told: its paid amount equals the sum of its payment rows
+// and of the accepted payments (no lost update), never exceeds the total payable (no overpayment),
+// and the loan is PAID exactly when fully paid. The portfolio totals must still reconcile.
+// The test client and loans are never removed, so against the database it only runs when asked
+// to explicitly (allowDatabase=true).
+
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+class PaymentStressSettings {
+    private int threads = 256;
+    private int loans = 4;
+    private int payments = 200; // attempts per thread
+    private long seed = 42;
+    private boolean allowDatabase = false;
+
+    // Parses key=value arguments: threads, loans, payments, seed, allowDatabase
+    static PaymentStressSettings parse(List<String> args) {
+        PaymentStressSettings settings = new PaymentStressSettings();
+        for (String arg : args) {
+            int eq = arg.indexOf('=');
+            if (eq <= 0) {
+                throw new IllegalArgumentException("expected key=value but found '" + arg + "'");
+            }
+            String key = arg.substring(0, eq).trim();
+            String value = arg.substring(eq + 1).trim();
+            try {
+                switch (key) {
+                    case "threads": settings.threads = Integer.parseInt(value); break;
+                    case "loans": settings.loans = Integer.parseInt(value); break;
+                    case "payments": settings.payments = Integer.parseInt(value); break;
+                    case "seed": settings.seed = Long.parseLong(value); break;
+                    case "allowDatabase": settings.allowDatabase = parseFlag(value); break;
+                    default: throw new IllegalArgumentException("unknown setting '" + key + "'");
+                }
+            } catch (NumberFormatException e) {
+                throw new IllegalArgumentException("invalid number for " + key);
+            }
+        }
+        if (settings.threads <= 0 || settings.loans <= 0 || settings.payments <= 0) {
+            throw new IllegalArgumentException("threads, loans and payments must be positive");
+        }
+        return settings;
+    }
+
+    private static boolean parseFlag(String value) {
+        if (value.equalsIgnoreCase("true")) {
+            return true;
+        }
+        if (value.equalsIgnoreCase("false")) {
+            return false;
+        }
+        throw new IllegalArgumentException("allowDatabase must be true or false");
+    }
+
+    // Getters
+    public int getThreads() { return threads; }
+    public int getLoans() { return loans; }
+    public int getPayments() { return payments; }
+    public long getSeed() { return seed; }
+    public boolean isAllowDatabase() { return allowDatabase; }
+}
+
+class PaymentStressResult {
+    private final long attempted;
+    private final long accepted;
+    private final long rejected;
+    private final long errors;
+    private final long elapsedNanos;
+    private final List<String> violations;
+
+    PaymentStressResult(long attempted, long accepted, long rejected, long errors, long elapsedNanos, List<String> violations) {
+        this.attempted = attempted;
+        this.accepted = accepted;
+        this.rejected = rejected;
+        this.errors = errors;
+        this.elapsedNanos = elapsedNanos;
+        this.violations = violations;
+    }
+
+    boolean passed() {
+        return violations.isEmpty() && errors == 0;
+    }
+
+    // Getters
+    public long getAttempted() { return attempted; }
+    public long getAccepted() { return accepted; }
+    public long getRejected() { return rejected; }
+    public long getErrors() { return errors; }
+    public long getElapsedNanos() { return elapsedNanos; }
+    public List<String> getViolations() { return violations; }
+
+    @Override
+    public String toString() {
+        return String.format("%d payments attempted in %.1f s (%.0f/s): %d accepted, %d rejected, %d errors",
+                attempted, elapsedNanos / 1e9, attempted / Math.max(elapsedNanos / 1e9, 1e-9), accepted, rejected, errors);
+    }
+}
+
+class PaymentStress {
+    private static final int MAX_PAYMENT_CENTS = 7;
+    private static final long JOURNAL_DRAIN_SECONDS = 120;
+
+    private final Operations operations;
+    private final ClientRepository clients;
+    private final LoanRepository loans;
+    private final PaymentRepository payments;
+    private final PortfolioRepository portfolio;
+    private final JournaledPaymentRepository journal; // null when payments are posted directly
+
+    PaymentStress(Operations operations, ClientRepository clients, LoanRepository loans,
+                  PaymentRepository payments, PortfolioRepository portfolio, JournaledPaymentRepository journal) {
+        this.operations = operations;
+        this.clients = clients;
+        this.loans = loans;
+        this.payments = payments;
+        this.portfolio = portfolio;
+        this.journal = journal;
+    }
+
+    PaymentStressResult run(PaymentStressSettings settings) throws SQLException, InterruptedException {
+        int loanCount = settings.getLoans();
+        // Sized so about half the attempts fit: the rest arrive after the loan is settled or too close to it
+        long attempts = (long) settings.getThreads() * settings.getPayments();
+        long amountCents = Math.max(100, attempts * (MAX_PAYMENT_CENTS + 1) / 2 / 2 / loanCount);
+        Client client = clients.add("Payment Stress", "00000000000", "Stress Test", 90.0);
+        int[] loanIds = new int[loanCount];
+        for (int i = 0; i < loanCount; i++) {
+            loanIds[i] = loans.add(client.getId(), amountCents, 0.0, 1, "APPROVED", new Date()).getLoanId();
+        }
+
+        AtomicLongArray acceptedCents = new AtomicLongArray(loanCount);
+        AtomicLong accepted = new AtomicLong();
+        AtomicLong rejected = new AtomicLong();
+        AtomicLong errors = new AtomicLong();
+        CountDownLatch start = new CountDownLatch(1);
+        SplittableRandom seeds = new SplittableRandom(settings.getSeed());
+        long started;
+        try (ExecutorService threads = Executors.newThreadPerTaskExecutor(
+                Thread.ofVirtual().name("payment-stress-", 1).factory())) {
+            for (int t = 0; t < settings.getThreads(); t++) {
+                SplittableRandom random = seeds.split();
+                threads.execute(() -> {
+                    try {
+                        start.await();
+                    } catch (InterruptedException e) {
+                        return;
+                    }
+                    Date today = new Date();
+                    for (int p = 0; p < settings.getPayments(); p++) {
+                        int loan = random.nextInt(loanCount);
+                        long cents = 1 + random.nextInt(MAX_PAYMENT_CENTS);
+                        try {
+                            operations.pay(loanIds[loan], cents, today);
+                            acceptedCents.addAndGet(loan, cents);
+                            accepted.incrementAndGet();
+                        } catch (OperationRejected e) {
+                            rejected.incrementAndGet();
+                        } catch (SQLException e) {
+                            errors.incrementAndGet();
+                        }
+                    }
+                });
+            }
+            started = System.nanoTime();
+            start.countDown();
+        }
+        long elapsed = System.nanoTime() - started;
+        List<String> violations = new ArrayList<>();
+        // Acknowledged is durable, not yet posted: the tables are checked once the applier caught up
+        if (journal != null && !journal.awaitApplied(JOURNAL_DRAIN_SECONDS, TimeUnit.SECONDS)) {
+            violations.add("journal not applied within " + JOURNAL_DRAIN_SECONDS + " s");
+        }
+        for (int i = 0; i < loanCount; i++) {
+            check(loanIds[i], acceptedCents.get(i), violations);
+        }
+        List<String> drift = portfolio.reconcile().getMismatchedStatuses();
+        if (!drift.isEmpty()) {
+            violations.add("portfolio totals drifted for " + String.join(", ", drift));
+        }
+        return new PaymentStressResult(attempts, accepted.get(), rejected.get(), errors.get(), elapsed, violations);
+    }
+
+    private void check(int loanId, long acceptedCents, List<String> violations) throws SQLException {
+        Loan loan = loans.findById(loanId);
+        long recordedCents = 0;
+        for (Payment payment : payments.findByLoanId(loanId)) {
+            recordedCents += payment.getAmountCents();
+        }
+        long payable = loan.calculateTotalPayableCents();
+        String prefix = "loan " + loanId + ": ";
+        if (loan.getPaidCents() != recordedCents) {
+            violations.add(prefix + "paid amount " + Money.format(loan.getPaidCents())
+                    + " but payment rows total " + Money.format(recordedCents));
+        }
+        if (loan.getPaidCents() != acceptedCents) {
+            violations.add(prefix + "paid amount " + Money.format(loan.getPaidCents())
+                    + " but accepted payments total " + Money.format(acceptedCents));
+        }
+        if (loan.getPaidCents() > payable) {
+            violations.add(prefix + "overpaid, " + Money.format(loan.getPaidCents()) + " of " + Money.format(payable));
+        }
+        if (loan.getStatus().equals("PAID") != (loan.getPaidCents() >= payable)) {
+            violations.add(prefix + "status " + loan.getStatus() + " with " + Money.format(loan.getPaidCents())
+                    + " of " + Money.format(payable) + " paid");
+        }
+    }
+}
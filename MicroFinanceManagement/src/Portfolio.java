@@ -0,0 +1,175 @@
+// Description: Running portfolio totals per loan status (count, principal, paid,
+// outstanding). Every loan write adjusts these totals in the same transaction as
+// the loan row, so the Loan Portfolio report reads a handful of rows instead of
+// summing the whole loans table. Outstanding includes interest: for an APPROVED
+// loan it is total payable minus paid, for every other status it is zero.
+// All money totals are centavos, so incremental updates never drift from a recompute.
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+class PortfolioTotals {
+    private final String status;
+    private final long numLoans;
+    private final long totalAmountCents;
+    private final long totalPaidCents;
+    private final long totalOutstandingCents;
+
+    PortfolioTotals(String status, long numLoans, long totalAmountCents, long totalPaidCents, long totalOutstandingCents) {
+        this.status = status;
+        this.numLoans = numLoans;
+        this.totalAmountCents = totalAmountCents;
+        this.totalPaidCents = totalPaidCents;
+        this.totalOutstandingCents = totalOutstandingCents;
+    }
+
+    // Getters
+    public String getStatus() { return status; }
+    public long getNumLoans() { return numLoans; }
+    public long getTotalAmountCents() { return totalAmountCents; }
+    public long getTotalPaidCents() { return totalPaidCents; }
+    public long getTotalOutstandingCents() { return totalOutstandingCents; }
+}
+
+class PortfolioSnapshot {
+    private final Map<String, PortfolioTotals> byStatus;
+
+    PortfolioSnapshot(Map<String, PortfolioTotals> byStatus) {
+        this.byStatus = Collections.unmodifiableMap(new TreeMap<>(byStatus));
+    }
+
+    public Collection<PortfolioTotals> getByStatus() { return byStatus.values(); }
+
+    public PortfolioTotals get(String status) {
+        PortfolioTotals totals = byStatus.get(status);
+        return totals != null ? totals : new PortfolioTotals(status, 0, 0, 0, 0);
+    }
+
+    public boolean isEmpty() {
+        return byStatus.isEmpty();
+    }
+
+    // Sums the given statuses into one row, e.g. combined("APPROVED", "PAID") for the portfolio headline
+    public PortfolioTotals combined(String... statuses) {
+        long count = 0;
+        long amount = 0;
+        long paid = 0;
+        long outstanding = 0;
+        for (String status : statuses) {
+            PortfolioTotals totals = get(status);
+            count += totals.getNumLoans();
+            amount += totals.getTotalAmountCents();
+            paid += totals.getTotalPaidCents();
+            outstanding += totals.getTotalOutstandingCents();
+        }
+        return new PortfolioTotals(String.join("+", statuses), count, amount, paid, outstanding);
+    }
+}
+
+class PortfolioReconciliation {
+    private final PortfolioSnapshot maintained;
+    private final PortfolioSnapshot recomputed;
+
+    PortfolioReconciliation(PortfolioSnapshot maintained, PortfolioSnapshot recomputed) {
+        this.maintained = maintained;
+        this.recomputed = recomputed;
+    }
+
+    // Getters
+    public PortfolioSnapshot getMaintained() { return maintained; }
+    public PortfolioSnapshot getRecomputed() { return recomputed; }
+
+    public List<String> getMismatchedStatuses() {
+        TreeMap<String, Boolean> statuses = new TreeMap<>();
+        for (PortfolioTotals totals : maintained.getByStatus()) {
+            statuses.put(totals.getStatus(), Boolean.TRUE);
+        }
+        for (PortfolioTotals totals : recomputed.getByStatus()) {
+            statuses.put(totals.getStatus(), Boolean.TRUE);
+        }
+        List<String> mismatched = new ArrayList<>();
+        for (String status : statuses.keySet()) {
+            PortfolioTotals a = maintained.get(status);
+            PortfolioTotals b = recomputed.get(status);
+            if (a.getNumLoans() != b.getNumLoans()
+                    || a.getTotalAmountCents() != b.getTotalAmountCents()
+                    || a.getTotalPaidCents() != b.getTotalPaidCents()
+                    || a.getTotalOutstandingCents() != b.getTotalOutstandingCents()) {
+                mismatched.add(status);
+            }
+        }
+        return mismatched;
+    }
+
+    public boolean isConsistent() {
+        return getMismatchedStatuses().isEmpty();
+    }
+}
+
+// Per-status accumulator. Used both as the change a single write makes (remove the loan's old
+// contribution, add the new one) and as the result of a full recompute. Not thread-safe.
+class PortfolioTally {
+    private final TreeMap<String, long[]> byStatus = new TreeMap<>();
+
+    private static final int COUNT = 0;
+    private static final int AMOUNT = 1;
+    private static final int PAID = 2;
+    private static final int OUTSTANDING = 3;
+
+    void add(Loan loan) {
+        adjust(loan, 1);
+    }
+
+    void remove(Loan loan) {
+        adjust(loan, -1);
+    }
+
+    static long outstanding(Loan loan) {
+        if (!loan.getStatus().equals("APPROVED")) {
+            return 0;
+        }
+        return Math.max(0, loan.calculateTotalPayableCents() - loan.getPaidCents());
+    }
+
+    private void adjust(Loan loan, int sign) {
+        long[] totals = byStatus.computeIfAbsent(loan.getStatus(), s -> new long[4]);
+        totals[COUNT] += sign;
+        totals[AMOUNT] += sign * loan.getAmountCents();
+        totals[PAID] += sign * loan.getPaidCents();
+        totals[OUTSTANDING] += sign * outstanding(loan);
+    }
+
+    void addAll(PortfolioTally other) {
+        for (Map.Entry<String, long[]> entry : other.byStatus.entrySet()) {
+            long[] totals = byStatus.computeIfAbsent(entry.getKey(), s -> new long[4]);
+            for (int i = 0; i < totals.length; i++) {
+                totals[i] += entry.getValue()[i];
+            }
+        }
+    }
+
+    void replaceWith(PortfolioTally other) {
+        byStatus.clear();
+        addAll(other);
+    }
+
+    // Statuses in ascending order, so writers always touch the aggregate rows in the same order
+    Map<String, PortfolioTotals> changes() {
+        Map<String, PortfolioTotals> changes = new TreeMap<>();
+        for (Map.Entry<String, long[]> entry : byStatus.entrySet()) {
+            long[] t = entry.getValue();
+            if (t[COUNT] != 0 || t[AMOUNT] != 0 || t[PAID] != 0 || t[OUTSTANDING] != 0) {
+                changes.put(entry.getKey(), new PortfolioTotals(entry.getKey(), t[COUNT], t[AMOUNT], t[PAID], t[OUTSTANDING]));
+            }
+        }
+        return changes;
+    }
+
+    PortfolioSnapshot toSnapshot() {
+        return new PortfolioSnapshot(changes());
+    }
+}
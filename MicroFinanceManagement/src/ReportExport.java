@@ -0,0 +1,506 @@
+// Description: Streams a report's rows straight to a CSV or JSON Lines file for the nightly
+// finance pull. Rows come off the repositories' forward-only cursors one at a time, are encoded
+// as UTF-8 into a direct buffer and go to a FileChannel in large writes, optionally through a
+// raw Deflater that fills the gzip framing itself (no stream wrappers). Memory stays at a few
+// buffers whatever the row count. The file is written as <name>.part and renamed into place
+// only once complete, so a reader never picks up half an export.
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.CharBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.CharsetEncoder;
+import java.nio.charset.CoderResult;
+import java.nio.charset.CodingErrorAction;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.sql.SQLException;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.ZoneId;
+import java.util.Date;
+import java.util.Locale;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+
+enum ExportFormat {
+    CSV(".csv"),
+    JSONL(".jsonl");
+
+    private final String extension;
+
+    ExportFormat(String extension) {
+        this.extension = extension;
+    }
+
+    // Getters
+    public String getExtension() { return extension; }
+
+    static ExportFormat parse(String name) {
+        switch (name.trim().toLowerCase(Locale.ROOT)) {
+            case "csv": return CSV;
+            case "jsonl":
+            case "json": return JSONL;
+            default:
+                throw new IllegalArgumentException("unknown format '" + name + "', expected csv or jsonl");
+        }
+    }
+
+    // payments.csv, loans.jsonl.gz, ...; null when the name says neither
+    static ExportFormat ofFile(Path file) {
+        String name = file.getFileName().toString().toLowerCase(Locale.ROOT);
+        if (name.endsWith(".gz")) {
+            name = name.substring(0, name.length() - 3);
+        }
+        for (ExportFormat format : values()) {
+            if (name.endsWith(format.extension)) {
+                return format;
+            }
+        }
+        return null;
+    }
+}
+
+// Byte sink over a FileChannel: UTF-8 encoding into a direct buffer, optional gzip.
+final class ExportChannel implements Closeable {
+    static final int DEFAULT_BUFFER_BYTES = 1 << 20;
+    private static final byte[] NO_INPUT = new byte[0];
+    private static final byte[] GZIP_HEADER = {0x1f, (byte) 0x8b, Deflater.DEFLATED, 0, 0, 0, 0, 0, 0, (byte) 0xff};
+
+    private final Path target;
+    private final Path partFile;
+    private final FileChannel channel;
+    private final CharsetEncoder encoder = StandardCharsets.UTF_8.newEncoder()
+            .onMalformedInput(CodingErrorAction.REPLACE).onUnmappableCharacter(CodingErrorAction.REPLACE);
+    private final ByteBuffer encoded;
+    private final ByteBuffer compressed;
+    private final Deflater deflater;
+    private final CRC32 crc;
+    private long rawBytes;
+    private boolean committed;
+
+    ExportChannel(Path target, boolean gzip, int bufferBytes) throws IOException {
+        this.target = target;
+        this.partFile = target.resolveSibling(target.getFileName() + ".part");
+        Path directory = target.toAbsolutePath().getParent();
+        if (directory != null) {
+            Files.createDirectories(directory);
+        }
+        this.channel = FileChannel.open(partFile, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING);
+        this.encoded = ByteBuffer.allocateDirect(bufferBytes);
+        if (gzip) {
+            // BEST_SPEED: the export should run at disk speed, not at the compressor's
+            deflater = new Deflater(Deflater.BEST_SPEED, true);
+            crc = new CRC32();
+            compressed = ByteBuffer.allocateDirect(bufferBytes);
+            compressed.put(GZIP_HEADER);
+        } else {
+            deflater = null;
+            crc = null;
+            compressed = null;
+        }
+    }
+
+    // Encodes whole rows; callers never split a surrogate pair across two calls
+    void write(CharSequence text) throws IOException {
+        CharBuffer chars = CharBuffer.wrap(text);
+        while (true) {
+            CoderResult result = encoder.encode(chars, encoded, false);
+            if (result.isOverflow()) {
+                drainEncoded();
+            } else if (result.isUnderflow()) {
+                return;
+            } else {
+                result.throwException();
+            }
+        }
+    }
+
+    // Bytes before compression, i.e. the size of the text itself
+    long getRawBytes() {
+        return rawBytes;
+    }
+
+    // Finishes the gzip stream, forces the data to disk and moves the file into place
+    void commit() throws IOException {
+        drainEncoded();
+        if (deflater != null) {
+            deflater.finish();
+            while (!deflater.finished()) {
+                deflateInto();
+            }
+            if (compressed.remaining() < 8) {
+                writeCompressed();
+            }
+            compressed.order(ByteOrder.LITTLE_ENDIAN);
+            compressed.putInt((int) crc.getValue());
+            compressed.putInt((int) rawBytes); // ISIZE is the length mod 2^32
+            writeCompressed();
+        }
+        channel.force(false);
+        channel.close();
+        try {
+            Files.move(partFile, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (AtomicMoveNotSupportedException e) {
+            Files.move(partFile, target, StandardCopyOption.REPLACE_EXISTING);
+        }
+        committed = true;
+    }
+
+    // Without a commit the partial file is removed
+    @Override
+    public void close() throws IOException {
+        if (deflater != null) {
+            deflater.end();
+        }
+        if (!committed) {
+            try {
+                channel.close();
+            } finally {
+                Files.deleteIfExists(partFile);
+            }
+        }
+    }
+
+    private void drainEncoded() throws IOException {
+        encoded.flip();
+        rawBytes += encoded.remaining();
+        if (deflater == null) {
+            writeFully(encoded);
+        } else {
+            crc.update(encoded.duplicate());
+            deflater.setInput(encoded);
+            while (!deflater.needsInput()) {
+                deflateInto();
+            }
+            // The deflater keeps a reference to its input; clearing the buffer would hand it the old bytes again
+            deflater.setInput(NO_INPUT);
+        }
+        encoded.clear();
+    }
+
+    private void deflateInto() throws IOException {
+        deflater.deflate(compressed);
+        if (!compressed.hasRemaining()) {
+            writeCompressed();
+        }
+    }
+
+    private void writeCompressed() throws IOException {
+        compressed.flip();
+        writeFully(compressed);
+        compressed.clear();
+    }
+
+    private void writeFully(ByteBuffer buffer) throws IOException {
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+    }
+}
+
+// Formats one record at a time in CSV (header line of column names) or JSON Lines (one object
+// per line keyed by column name). Money is written as plain decimal text ("1234.50"), dates as
+// yyyy-MM-dd in the default time zone and a missing value as an empty CSV field or JSON null.
+final class ExportWriter {
+    private static final int FLUSH_CHARS = 32 * 1024;
+
+    private final ExportChannel out;
+    private final ExportFormat format;
+    private final String[] columns;
+    private final StringBuilder text = new StringBuilder(FLUSH_CHARS + 4096);
+    private final ZoneId zone = ZoneId.systemDefault();
+    private int column;
+    private long rows;
+
+    ExportWriter(ExportChannel out, ExportFormat format, String... columns) {
+        this.out = out;
+        this.format = format;
+        this.columns = columns.clone();
+        if (format == ExportFormat.CSV) {
+            for (int c = 0; c < columns.length; c++) {
+                if (c > 0) {
+                    text.append(',');
+                }
+                appendCsv(columns[c]);
+            }
+            text.append('\n');
+        }
+    }
+
+    ExportWriter text(String value) {
+        if (value == null) {
+            return nullValue();
+        }
+        startField();
+        if (format == ExportFormat.CSV) {
+            appendCsv(value);
+        } else {
+            JsonText.appendString(text, value);
+        }
+        return this;
+    }
+
+    ExportWriter number(long value) {
+        startField();
+        text.append(value);
+        return this;
+    }
+
+    // Double.toString text (e.g. 72.5, 12.0); NaN and infinities are not valid JSON and go out as null
+    ExportWriter decimal(double value) {
+        if (Double.isNaN(value) || Double.isInfinite(value)) {
+            return nullValue();
+        }
+        startField();
+        text.append(value);
+        return this;
+    }
+
+    ExportWriter money(long cents) {
+        startField();
+        Money.appendTo(text, cents);
+        return this;
+    }
+
+    ExportWriter date(Date date) {
+        if (date == null) {
+            return nullValue();
+        }
+        // getTime rather than toInstant: java.sql.Date does not support toInstant
+        LocalDate day = LocalDate.ofInstant(Instant.ofEpochMilli(date.getTime()), zone);
+        startField();
+        if (format == ExportFormat.JSONL) {
+            text.append('"');
+        }
+        text.append(day);
+        if (format == ExportFormat.JSONL) {
+            text.append('"');
+        }
+        return this;
+    }
+
+    ExportWriter nullValue() {
+        startField();
+        if (format == ExportFormat.JSONL) {
+            text.append("null");
+        }
+        return this;
+    }
+
+    void endRow() throws IOException {
+        if (column != columns.length) {
+            throw new IllegalStateException("row has " + column + " fields, expected " + columns.length);
+        }
+        text.append(format == ExportFormat.JSONL ? "}\n" : "\n");
+        column = 0;
+        rows++;
+        if (text.length() >= FLUSH_CHARS) {
+            flush();
+        }
+    }
+
+    void flush() throws IOException {
+        out.write(text);
+        text.setLength(0);
+    }
+
+    long getRows() {
+        return rows;
+    }
+
+    private void startField() {
+        if (format == ExportFormat.JSONL) {
+            text.append(column == 0 ? "{\"" : ",\"").append(columns[column]).append("\":");
+        } else if (column > 0) {
+            text.append(',');
+        }
+        column++;
+    }
+
+    // Same quoting as Csv.escape, appended in place
+    private void appendCsv(String value) {
+        boolean quote = false;
+        for (int i = 0; i < value.length() && !quote; i++) {
+            char c = value.charAt(i);
+            quote = c == ',' || c == '"' || c == '\n' || c == '\r';
+        }
+        if (!quote) {
+            text.append(value);
+            return;
+        }
+        text.append('"');
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if (c == '"') {
+                text.append('"');
+            }
+            text.append(c);
+        }
+        text.append('"');
+    }
+}
+
+class ExportStats {
+    private final String report;
+    private final Path file;
+    private final long rows;
+    private final long rawBytes;
+    private final long fileBytes;
+    private final long elapsedNanos;
+
+    ExportStats(String report, Path file, long rows, long rawBytes, long fileBytes, long elapsedNanos) {
+        this.report = report;
+        this.file = file;
+        this.rows = rows;
+        this.rawBytes = rawBytes;
+        this.fileBytes = fileBytes;
+        this.elapsedNanos = elapsedNanos;
+    }
+
+    // Getters
+    public String getReport() { return report; }
+    public Path getFile() { return file; }
+    public long getRows() { return rows; }
+    public long getRawBytes() { return rawBytes; }
+    public long getFileBytes() { return fileBytes; }
+    public long getElapsedNanos() { return elapsedNanos; }
+
+    public double getRowsPerSecond() {
+        return elapsedNanos == 0 ? 0 : rows * 1e9 / elapsedNanos;
+    }
+
+    // Throughput of the text produced, before compression
+    public double getMegabytesPerSecond() {
+        return elapsedNanos == 0 ? 0 : rawBytes * 1e9 / elapsedNanos / (1 << 20);
+    }
+
+    @Override
+    public String toString() {
+        String size = rawBytes == fileBytes
+                ? String.format("%.1f MB", fileBytes / (double) (1 << 20))
+                : String.format("%.1f MB (%.1f MB gzipped)", rawBytes / (double) (1 << 20), fileBytes / (double) (1 << 20));
+        return String.format("%s: %d rows, %s in %.2f s (%.0f rows/s, %.1f MB/s)",
+                report, rows, size, elapsedNanos / 1e9, getRowsPerSecond(), getMegabytesPerSecond());
+    }
+}
+
+// The exportable reports: each one is the rows behind a console report, in the same order.
+class ReportExporter {
+    static final String[] REPORTS = {"clients", "loans", "portfolio", "payments", "client-loans"};
+
+    private final ClientRepository clients;
+    private final LoanRepository loans;
+    private final PaymentRepository payments;
+    private final PortfolioRepository portfolio;
+    private final int bufferBytes;
+
+    ReportExporter(ClientRepository clients, LoanRepository loans, PaymentRepository payments,
+                   PortfolioRepository portfolio, int bufferBytes) {
+        this.clients = clients;
+        this.loans = loans;
+        this.payments = payments;
+        this.portfolio = portfolio;
+        this.bufferBytes = bufferBytes;
+    }
+
+    ExportStats export(String report, Path file, ExportFormat format, boolean gzip) throws SQLException, IOException {
+        OperationTimer timer = Metrics.timer("export." + report);
+        long started = timer.start();
+        try (ExportChannel channel = new ExportChannel(file, gzip, bufferBytes)) {
+            ExportWriter writer = write(report, channel, format);
+            writer.flush();
+            channel.commit();
+            long elapsed = System.nanoTime() - started;
+            return new ExportStats(report, file, writer.getRows(), channel.getRawBytes(), Files.size(file), elapsed);
+        } catch (UncheckedIOException e) {
+            timer.failed();
+            throw e.getCause();
+        } catch (SQLException | IOException | RuntimeException e) {
+            timer.failed();
+            throw e;
+        } finally {
+            timer.stop(started);
+        }
+    }
+
+    private ExportWriter write(String report, ExportChannel channel, ExportFormat format) throws SQLException, IOException {
+        switch (report) {
+            case "clients": {
+                ExportWriter out = new ExportWriter(channel, format, "id", "name", "phone", "address", "credit_score");
+                clients.streamAll(client -> row(out.number(client.getId()).text(client.getName()).text(client.getPhone())
+                        .text(client.getAddress()).decimal(client.getCreditScore())));
+                return out;
+            }
+            case "loans": {
+                ExportWriter out = new ExportWriter(channel, format, "loan_id", "client_id", "client_name", "amount",
+                        "interest_rate", "duration_months", "status", "issue_date", "paid_amount", "monthly_payment",
+                        "outstanding_balance", "total_payable");
+                loans.streamAll(loan -> row(writeLoan(out.number(loan.getLoanId()).number(loan.getClientId())
+                        .text(loan.getClientName()), loan)));
+                return out;
+            }
+            case "portfolio": {
+                ExportWriter out = new ExportWriter(channel, format, "status", "loans", "principal", "paid", "outstanding");
+                for (PortfolioTotals totals : portfolio.current().getByStatus()) {
+                    row(out.text(totals.getStatus()).number(totals.getNumLoans()).money(totals.getTotalAmountCents())
+                            .money(totals.getTotalPaidCents()).money(totals.getTotalOutstandingCents()));
+                }
+                return out;
+            }
+            case "payments": {
+                ExportWriter out = new ExportWriter(channel, format, "payment_id", "loan_id", "amount", "payment_date");
+                payments.streamAll(payment -> row(out.number(payment.getPaymentId()).number(payment.getLoanId())
+                        .money(payment.getAmountCents()).date(payment.getPaymentDate())));
+                return out;
+            }
+            case "client-loans": {
+                // One row per client and loan; a client without loans gets one row with empty loan fields
+                ExportWriter out = new ExportWriter(channel, format, "client_id", "name", "phone", "address",
+                        "credit_score", "loan_id", "amount", "interest_rate", "duration_months", "status", "issue_date",
+                        "paid_amount", "monthly_payment", "outstanding_balance", "total_payable");
+                loans.forEachClientLoan((client, loan) -> {
+                    out.number(client.getId()).text(client.getName()).text(client.getPhone()).text(client.getAddress())
+                            .decimal(client.getCreditScore());
+                    if (loan == null) {
+                        for (int i = 0; i < 10; i++) {
+                            out.nullValue();
+                        }
+                        row(out);
+                    } else {
+                        row(writeLoan(out.number(loan.getLoanId()), loan));
+                    }
+                });
+                return out;
+            }
+            default:
+                throw new IllegalArgumentException("unknown report '" + report + "', expected one of "
+                        + String.join(", ", REPORTS));
+        }
+    }
+
+    // amount through total_payable
+    private static ExportWriter writeLoan(ExportWriter out, Loan loan) {
+        return out.money(loan.getAmountCents()).decimal(loan.getInterestRate()).number(loan.getDurationMonths())
+                .text(loan.getStatus()).date(loan.getIssueDate()).money(loan.getPaidCents())
+                .money(loan.calculateMonthlyPaymentCents()).money(loan.calculateOutstandingBalanceCents())
+                .money(loan.calculateTotalPayableCents());
+    }
+
+    // RowHandler callbacks may only throw SQLException; an IOException is carried out unchecked
+    private static void row(ExportWriter out) {
+        try {
+            out.endRow();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+}
@@ -0,0 +1,204 @@
+// Description: Background report jobs. A submitted report gets its own virtual thread and
+// output file straight away and waits (QUEUED) on a fair semaphore until one of the
+// -Dmfms.reportJobs.maxConcurrent slots is free, so jobs start in submission order and the
+// number of heavy scans against the database stays capped. The console keeps serving clients,
+// loans and payments meanwhile. Progress is the number of bytes the report has written so far.
+
+import java.io.BufferedOutputStream;
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+enum ReportJobStatus {
+    QUEUED, RUNNING, DONE, FAILED
+}
+
+interface ReportJobTask {
+    void run(PrintStream out) throws Exception;
+}
+
+class ReportJob {
+    private final int id;
+    private final String report;
+    private final Path output;
+    private final long submittedNanos = System.nanoTime();
+    private final CountingOutputStream written;
+    private volatile ReportJobStatus status = ReportJobStatus.QUEUED;
+    private volatile long startedNanos;
+    private volatile long finishedNanos;
+    private volatile String error;
+
+    ReportJob(int id, String report, Path output, CountingOutputStream written) {
+        this.id = id;
+        this.report = report;
+        this.output = output;
+        this.written = written;
+    }
+
+    // Getters
+    public int getId() { return id; }
+    public String getReport() { return report; }
+    public Path getOutput() { return output; }
+    public ReportJobStatus getStatus() { return status; }
+    public String getError() { return error; }
+    public long getBytesWritten() { return written.getCount(); }
+
+    // Time spent waiting for a slot, then running; both still growing while the job is in that state
+    public long getQueuedNanos() {
+        long started = startedNanos;
+        return (started == 0 ? System.nanoTime() : started) - submittedNanos;
+    }
+
+    public long getRunNanos() {
+        long started = startedNanos;
+        if (started == 0) {
+            return 0;
+        }
+        long finished = finishedNanos;
+        return (finished == 0 ? System.nanoTime() : finished) - started;
+    }
+
+    void started() {
+        startedNanos = System.nanoTime();
+        status = ReportJobStatus.RUNNING;
+    }
+
+    void finished(String failure) {
+        finishedNanos = System.nanoTime();
+        error = failure;
+        status = failure == null ? ReportJobStatus.DONE : ReportJobStatus.FAILED;
+    }
+}
+
+// Counts the bytes that reach the file; read by the console while the job's thread writes
+final class CountingOutputStream extends FilterOutputStream {
+    private volatile long count;
+
+    CountingOutputStream(OutputStream out) {
+        super(out);
+    }
+
+    @Override
+    public void write(int b) throws IOException {
+        out.write(b);
+        count++;
+    }
+
+    @Override
+    public void write(byte[] b, int off, int len) throws IOException {
+        out.write(b, off, len);
+        count += len;
+    }
+
+    long getCount() {
+        return count;
+    }
+}
+
+final class ReportJobs {
+    private static final DateTimeFormatter FILE_TIME = DateTimeFormatter.ofPattern("yyyyMMdd-HHmmss");
+    private static final int FILE_BUFFER_BYTES = 64 * 1024;
+
+    private final Path directory;
+    private final int maxConcurrent;
+    private final Semaphore slots;
+    private final ExecutorService threads = Executors.newThreadPerTaskExecutor(
+            Thread.ofVirtual().name("report-job-", 1).factory());
+    private final AtomicInteger nextId = new AtomicInteger(1);
+    private final List<ReportJob> jobs = new CopyOnWriteArrayList<>();
+    private final ConcurrentLinkedQueue<ReportJob> finished = new ConcurrentLinkedQueue<>();
+
+    ReportJobs(Path directory, int maxConcurrent) {
+        if (maxConcurrent <= 0) {
+            throw new IllegalArgumentException("maxConcurrent must be positive");
+        }
+        this.directory = directory;
+        this.maxConcurrent = maxConcurrent;
+        this.slots = new Semaphore(maxConcurrent, true);
+    }
+
+    // Creates the output file now, so a bad directory is reported at submission rather than later
+    ReportJob submit(String report, ReportJobTask task) throws IOException {
+        int id = nextId.getAndIncrement();
+        Files.createDirectories(directory);
+        Path output = directory.resolve(String.format("job%d-%s-%s.txt", id, report, LocalDateTime.now().format(FILE_TIME)));
+        CountingOutputStream written = new CountingOutputStream(Files.newOutputStream(output));
+        PrintStream out = new PrintStream(new BufferedOutputStream(written, FILE_BUFFER_BYTES), false, StandardCharsets.UTF_8);
+        ReportJob job = new ReportJob(id, report, output, written);
+        jobs.add(job);
+        threads.execute(() -> run(job, task, out));
+        return job;
+    }
+
+    private void run(ReportJob job, ReportJobTask task, PrintStream out) {
+        String failure = null;
+        try {
+            slots.acquire();
+            try {
+                job.started();
+                task.run(out);
+                out.flush();
+                if (out.checkError()) {
+                    failure = "error writing " + job.getOutput();
+                }
+            } finally {
+                slots.release();
+            }
+        } catch (InterruptedException e) {
+            failure = "interrupted";
+        } catch (Exception e) {
+            failure = e.getMessage() != null ? e.getMessage() : e.toString();
+        } finally {
+            out.close();
+            job.finished(failure);
+            finished.add(job);
+        }
+    }
+
+    List<ReportJob> list() {
+        return new ArrayList<>(jobs);
+    }
+
+    // Jobs that finished since the last call, for a notice on the console
+    List<ReportJob> takeFinished() {
+        List<ReportJob> done = new ArrayList<>();
+        ReportJob job;
+        while ((job = finished.poll()) != null) {
+            done.add(job);
+        }
+        return done;
+    }
+
+    long count(ReportJobStatus status) {
+        return jobs.stream().filter(job -> job.getStatus() == status).count();
+    }
+
+    int getMaxConcurrent() {
+        return maxConcurrent;
+    }
+
+    Path getDirectory() {
+        return directory;
+    }
+
+    // Lets queued and running jobs finish, up to the timeout; returns false if some are still going
+    boolean shutdown(long timeout, TimeUnit unit) throws InterruptedException {
+        threads.shutdown();
+        return threads.awaitTermination(timeout, unit);
+    }
+}
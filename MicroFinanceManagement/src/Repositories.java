@@ -0,0 +1,204 @@
+// Description: Storage contracts for clients, loans and payments.
+// MicrofinanceManagement only talks to these interfaces, so the MariaDB tables
+// (JdbcRepositories.java) and the in-memory engine (InMemoryRepositories.java)
+// are interchangeable. Constraint violations surface as SQLException in both.
+
+import java.sql.SQLException;
+import java.util.Date;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+interface ClientRepository {
+    Client add(String name, String phone, String address, double creditScore) throws SQLException;
+    void addAll(List<Client> clients) throws SQLException; // ids are assigned by the store, all or nothing
+    Client findById(int id) throws SQLException;
+    List<Client> findAll() throws SQLException;
+    // Keyset pages ordered by id: the next limit clients after afterId, or the limit clients just before beforeId.
+    List<Client> findPage(int afterId, int limit) throws SQLException;
+    List<Client> findPageBefore(int beforeId, int limit) throws SQLException;
+    // Hands every client to the handler in id order without materialising the whole table.
+    void streamAll(RowHandler<Client> handler) throws SQLException;
+    boolean update(Client client) throws SQLException;
+    boolean delete(int id) throws SQLException; // fails while loans reference the client
+    boolean isEmpty() throws SQLException;
+}
+
+interface LoanRepository {
+    Loan add(int clientId, long amountCents, double interestRate, int durationMonths, String status, Date issueDate) throws SQLException;
+    // Adds a PENDING loan unless the client already has one, in which case nothing is written and null is
+    // returned. Applications are serialized per client, so two at once cannot both pass the check.
+    Loan addPending(int clientId, long amountCents, double interestRate, int durationMonths, Date issueDate) throws SQLException;
+    Loan findById(int loanId) throws SQLException;
+    List<Loan> findAll() throws SQLException;
+    List<Loan> findPage(int afterLoanId, int limit) throws SQLException;
+    List<Loan> findPageBefore(int beforeLoanId, int limit) throws SQLException;
+    void streamAll(RowHandler<Loan> handler) throws SQLException;
+    List<Loan> findByClientId(int clientId) throws SQLException;
+    boolean update(int loanId, long amountCents, double interestRate, int durationMonths, String status) throws SQLException;
+    boolean updateStatus(int loanId, String status) throws SQLException;
+    // Moves a PENDING loan to status; false when the loan is missing or no longer PENDING. The check is
+    // made under the loan's write lock, so of two concurrent decisions only one takes effect.
+    boolean decide(int loanId, String status) throws SQLException;
+    boolean delete(int loanId) throws SQLException; // fails while payments reference the loan
+    boolean hasLoans(int clientId) throws SQLException;
+    boolean hasPendingLoans(int clientId) throws SQLException;
+    LoanTotals totalsByStatus(String... statuses) throws SQLException;
+
+    // Walks every client ordered by id, each followed by its loans ordered by loan id.
+    // Clients without loans are reported once with a null loan (LEFT JOIN semantics).
+    void forEachClientLoan(ClientLoanHandler handler) throws SQLException;
+    // The same walk restricted to clients with fromClientId <= id < toClientId, so disjoint ranges
+    // can be read on separate connections and their output concatenated in range order.
+    void forEachClientLoan(int fromClientId, int toClientId, ClientLoanHandler handler) throws SQLException;
+}
+
+interface PaymentRepository {
+    // Locks the loan, checks the payment against it with PaymentRules and, when accepted, inserts
+    // the payment, adds it to the paid amount and flips the loan to PAID if it settles it, all in one
+    // transaction. The check and the write see the same balance, so concurrent payments to one loan
+    // cannot overpay it or miss the PAID transition. A refusal is returned, not thrown.
+    PaymentPosting postPayment(int loanId, long amountCents, Date paymentDate) throws SQLException;
+    // Posts a batch of payments grouped by loan. Each loan is locked, its payments are checked in
+    // order with PaymentRules, and the accepted payments, new balances and PAID transitions are
+    // written together; rejected entries are returned in the result instead of failing the batch.
+    PaymentBatchResult postBatch(Map<Integer, List<PaymentRequest>> paymentsByLoan) throws SQLException;
+    // postBatch for the payment journal (see PaymentJournal): also records, in the same transaction,
+    // that journal records up to throughSequence are applied, so a replay never posts one twice.
+    PaymentBatchResult postJournalBatch(Map<Integer, List<PaymentRequest>> paymentsByLoan, long throughSequence) throws SQLException;
+    // Highest journal sequence applied so far, 0 before the first journal batch
+    long appliedJournalSequence() throws SQLException;
+    List<Payment> findByLoanId(int loanId) throws SQLException;
+    List<Payment> findAll() throws SQLException;
+    void streamAll(RowHandler<Payment> handler) throws SQLException;
+    boolean hasPayments(int loanId) throws SQLException;
+}
+
+// Running per-status totals kept up to date by every loan and payment write (see Portfolio.java).
+interface PortfolioRepository {
+    PortfolioSnapshot current() throws SQLException;
+    // Recomputes the totals from the loans themselves, reports any drift and replaces the
+    // maintained totals with the recomputed ones.
+    PortfolioReconciliation reconcile() throws SQLException;
+}
+
+// Append-only loan history (see LoanLedger.java). The loan and payment repositories append the
+// events in the same transaction as the change they record; this reads them back and keeps the
+// one snapshot per loan that bounds a rebuild.
+interface LoanEventRepository {
+    List<LoanEvent> findEvents(int loanId, long afterEventId) throws SQLException; // in event order
+    LoanSnapshot findSnapshot(int loanId) throws SQLException; // null when the loan has none yet
+    void saveSnapshots(List<LoanSnapshot> snapshots) throws SQLException; // replaces each loan's snapshot
+    void streamSnapshots(RowHandler<LoanSnapshot> handler) throws SQLException; // in loan id order
+    // Every event after its loan's snapshot (all of them for a loan without one), by loan id then event
+    void streamTails(RowHandler<LoanEvent> handler) throws SQLException;
+    // Loans with at least minEvents events after their snapshot
+    List<Integer> findLongTails(int minEvents) throws SQLException;
+}
+
+interface RowHandler<T> {
+    void accept(T row) throws SQLException;
+}
+
+interface ClientLoanHandler {
+    void accept(Client client, Loan loan) throws SQLException;
+}
+
+class PaymentRequest {
+    private final long lineNumber;
+    private final String source;
+    private final int loanId;
+    private final long amountCents;
+    private final Date paymentDate;
+
+    PaymentRequest(long lineNumber, String source, int loanId, long amountCents, Date paymentDate) {
+        this.lineNumber = lineNumber;
+        this.source = source;
+        this.loanId = loanId;
+        this.amountCents = amountCents;
+        this.paymentDate = paymentDate;
+    }
+
+    // Getters
+    public long getLineNumber() { return lineNumber; }
+    public String getSource() { return source; }
+    public int getLoanId() { return loanId; }
+    public long getAmountCents() { return amountCents; }
+    public Date getPaymentDate() { return paymentDate; }
+}
+
+// Outcome of one postPayment: the payment and the loan as it stands afterwards, or the reason the
+// payment was refused together with the loan as it was found (null when there is no such loan).
+// A payment taken by the journal has a journal sequence and no payment id until it is posted.
+class PaymentPosting {
+    private final Payment payment;
+    private final Loan loan;
+    private final String rejectionReason;
+    private final long journalSequence;
+
+    private PaymentPosting(Payment payment, Loan loan, String rejectionReason, long journalSequence) {
+        this.payment = payment;
+        this.loan = loan;
+        this.rejectionReason = rejectionReason;
+        this.journalSequence = journalSequence;
+    }
+
+    static PaymentPosting accepted(Payment payment, Loan loan) {
+        return new PaymentPosting(payment, loan, null, 0);
+    }
+
+    static PaymentPosting journaled(Payment payment, Loan loan, long journalSequence) {
+        return new PaymentPosting(payment, loan, null, journalSequence);
+    }
+
+    static PaymentPosting rejected(Loan loan, String reason) {
+        return new PaymentPosting(null, loan, reason, 0);
+    }
+
+    boolean isAccepted() { return payment != null; }
+    boolean isJournaled() { return journalSequence > 0; }
+
+    // Getters
+    public Payment getPayment() { return payment; }
+    public Loan getLoan() { return loan; }
+    public String getRejectionReason() { return rejectionReason; }
+    public long getJournalSequence() { return journalSequence; }
+}
+
+class PaymentBatchResult {
+    private int accepted;
+    private int loansSettled;
+    private final List<PaymentRequest> rejected = new ArrayList<>();
+    private final List<String> reasons = new ArrayList<>();
+
+    void accepted(int count) { accepted += count; }
+    void loanSettled() { loansSettled++; }
+
+    void reject(PaymentRequest request, String reason) {
+        rejected.add(request);
+        reasons.add(reason);
+    }
+
+    // Getters
+    public int getAccepted() { return accepted; }
+    public int getLoansSettled() { return loansSettled; }
+    public List<PaymentRequest> getRejected() { return rejected; }
+    public List<String> getReasons() { return reasons; }
+}
+
+class LoanTotals {
+    private final int numLoans;
+    private final long totalAmountCents;
+    private final long totalPaidCents;
+
+    LoanTotals(int numLoans, long totalAmountCents, long totalPaidCents) {
+        this.numLoans = numLoans;
+        this.totalAmountCents = totalAmountCents;
+        this.totalPaidCents = totalPaidCents;
+    }
+
+    // Getters
+    public int getNumLoans() { return numLoans; }
+    public long getTotalAmountCents() { return totalAmountCents; }
+    public long getTotalPaidCents() { return totalPaidCents; }
+}
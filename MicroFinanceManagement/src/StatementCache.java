@@ -0,0 +1,207 @@
+// Description: LRU cache of prepared statements for one pooled connection.
+// The hot lookups (findClient, findLoan, hasLoans, ...) prepare the same SQL text
+// on every call; with this cache the second and later calls on a connection reuse
+// the already-parsed statement and skip the prepare round trip to the server.
+// Each cached statement also times its execute calls under its SQL text.
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.concurrent.atomic.AtomicLong;
+
+// Hit/miss/eviction counters shared by every connection's cache in one pool.
+class StatementCacheCounters {
+    final AtomicLong hits = new AtomicLong();
+    final AtomicLong misses = new AtomicLong();
+    final AtomicLong evictions = new AtomicLong();
+}
+
+// Not thread-safe: a connection (and therefore its cache) is only used by the thread that borrowed it.
+class StatementCache {
+    interface StatementFactory {
+        PreparedStatement prepare() throws SQLException;
+    }
+
+    private final int maxSize;
+    private final StatementCacheCounters counters;
+    private final LinkedHashMap<String, CachedStatement> statements;
+
+    StatementCache(int maxSize, StatementCacheCounters counters) {
+        this.maxSize = maxSize;
+        this.counters = counters;
+        this.statements = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, CachedStatement> eldest) {
+                if (size() <= StatementCache.this.maxSize) {
+                    return false;
+                }
+                counters.evictions.incrementAndGet();
+                eldest.getValue().evict();
+                return true;
+            }
+        };
+    }
+
+    // Turns on server-side prepare (COM_STMT_PREPARE) for drivers that default to client-side emulation.
+    static void addServerPrepareProperties(String url, Properties props) {
+        if ((url.startsWith("jdbc:mariadb:") || url.startsWith("jdbc:mysql:")) && !url.contains("useServerPrepStmts")) {
+            props.setProperty("useServerPrepStmts", "true");
+        }
+    }
+
+    PreparedStatement prepare(Connection logical, String key, StatementFactory factory) throws SQLException {
+        if (maxSize <= 0) {
+            return factory.prepare();
+        }
+        CachedStatement cached = statements.get(key);
+        if (cached != null && !cached.inUse) {
+            counters.hits.incrementAndGet();
+            return cached.lease(logical);
+        }
+        counters.misses.incrementAndGet();
+        PreparedStatement physical = factory.prepare();
+        if (cached != null) {
+            // Same SQL is already open on this connection (nested use); hand out a one-off statement
+            return physical;
+        }
+        cached = new CachedStatement(key, physical);
+        statements.put(key, cached);
+        return cached.lease(logical);
+    }
+
+    // Called when the connection goes back to the pool: statements the caller forgot to close are reclaimed.
+    void releaseAll() {
+        List<CachedStatement> broken = new ArrayList<>();
+        for (CachedStatement cached : statements.values()) {
+            if (cached.inUse && !cached.giveBack()) {
+                broken.add(cached);
+            }
+        }
+        for (CachedStatement cached : broken) {
+            statements.remove(cached.key);
+        }
+    }
+
+    private final class CachedStatement {
+        private final String key;
+        private final PreparedStatement physical;
+        private final OperationTimer timer; // execute* calls on this SQL text, see Metrics
+        private boolean inUse;
+        private boolean evicted;
+        private LeaseHandler current;
+
+        CachedStatement(String key, PreparedStatement physical) {
+            this.key = key;
+            this.physical = physical;
+            int keysSuffix = key.lastIndexOf("#keys=");
+            this.timer = Metrics.sqlTimer(keysSuffix < 0 ? key : key.substring(0, keysSuffix));
+        }
+
+        PreparedStatement lease(Connection logical) {
+            inUse = true;
+            current = new LeaseHandler(this, logical);
+            return (PreparedStatement) Proxy.newProxyInstance(PreparedStatement.class.getClassLoader(),
+                    new Class<?>[]{PreparedStatement.class}, current);
+        }
+
+        // Returns false if the statement could not be reset and has been closed instead.
+        boolean giveBack() {
+            if (current != null) {
+                current.closed = true;
+                current = null;
+            }
+            inUse = false;
+            if (evicted) {
+                closeQuietly();
+                return true;
+            }
+            try {
+                // A batch left by a failed executeBatch would otherwise run with the next lease's rows
+                physical.clearParameters();
+                physical.clearBatch();
+                return true;
+            } catch (SQLException e) {
+                closeQuietly();
+                return false;
+            }
+        }
+
+        void evict() {
+            evicted = true;
+            if (!inUse) {
+                closeQuietly();
+            }
+        }
+
+        private void closeQuietly() {
+            try {
+                physical.close();
+            } catch (SQLException ignored) {
+                // statement is being discarded anyway
+            }
+        }
+    }
+
+    private final class LeaseHandler implements InvocationHandler {
+        private final CachedStatement cached;
+        private final Connection logical;
+        private boolean closed;
+
+        LeaseHandler(CachedStatement cached, Connection logical) {
+            this.cached = cached;
+            this.logical = logical;
+        }
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            switch (method.getName()) {
+                case "close":
+                    if (!closed && !cached.giveBack()) {
+                        statements.remove(cached.key);
+                    }
+                    return null;
+                case "isClosed":
+                    return closed;
+                case "getConnection":
+                    return logical;
+                case "equals":
+                    return proxy == args[0];
+                case "hashCode":
+                    return System.identityHashCode(proxy);
+                case "toString":
+                    return "Cached[" + cached.physical + "]";
+                default:
+                    break;
+            }
+            if (closed) {
+                throw new SQLException("Statement has already been closed");
+            }
+            if (!method.getName().startsWith("execute")) {
+                try {
+                    return method.invoke(cached.physical, args);
+                } catch (InvocationTargetException e) {
+                    throw e.getCause();
+                }
+            }
+            // Times the round trip; for executeQuery the rows read afterwards are not included
+            long start = cached.timer.start();
+            try {
+                return method.invoke(cached.physical, args);
+            } catch (InvocationTargetException e) {
+                cached.timer.failed();
+                throw e.getCause();
+            } finally {
+                cached.timer.stop(start);
+            }
+        }
+    }
+}
@@ -0,0 +1,244 @@
+// Description: Rate-shock stress testing over the columnar LoanBook.
+// A shock moves every loan's annual rate and/or term. The whole book is revalued under
+// every shock in one parallel pass on a ForkJoinPool: each task walks a contiguous range
+// of rows and, per row, looks the shocked terms up by the row's (rate, term) id instead of
+// recomputing the compound factors. Outstanding balance, interest income and monthly
+// payment are totalled per loan status and per credit-score band, next to the baseline.
+
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+
+class RateShock {
+    private final double rateDeltaPercent; // added to the annual rate, in percentage points
+    private final int termDeltaMonths;
+
+    RateShock(double rateDeltaPercent, int termDeltaMonths) {
+        this.rateDeltaPercent = rateDeltaPercent;
+        this.termDeltaMonths = termDeltaMonths;
+    }
+
+    // Getters
+    public double getRateDeltaPercent() { return rateDeltaPercent; }
+    public int getTermDeltaMonths() { return termDeltaMonths; }
+
+    public String getLabel() {
+        String label = String.format("%+.2f%% rate", rateDeltaPercent);
+        return termDeltaMonths == 0 ? label : label + String.format(", %+d months", termDeltaMonths);
+    }
+
+    // Rates are floored at 0% and terms at one month, so a large negative shock still yields valid terms
+    AmortizationTerms apply(AmortizationTerms terms) {
+        return AmortizationEngine.terms(Math.max(0.0, terms.getInterestRate() + rateDeltaPercent),
+                Math.max(1, terms.getDurationMonths() + termDeltaMonths));
+    }
+
+    // "2, -1.5, 2:12" -> +2% rate; -1.5% rate; +2% rate with the term extended by 12 months
+    static List<RateShock> parseList(String text) {
+        List<RateShock> shocks = new ArrayList<>();
+        for (String part : text.split(",")) {
+            String shock = part.trim();
+            if (shock.isEmpty()) {
+                continue;
+            }
+            int colon = shock.indexOf(':');
+            try {
+                double rate = Double.parseDouble(colon < 0 ? shock : shock.substring(0, colon).trim());
+                int months = colon < 0 ? 0 : Integer.parseInt(shock.substring(colon + 1).trim());
+                shocks.add(new RateShock(rate, months));
+            } catch (NumberFormatException e) {
+                throw new IllegalArgumentException("invalid shock '" + shock + "', expected rate[:months]");
+            }
+        }
+        if (shocks.isEmpty()) {
+            throw new IllegalArgumentException("no shocks given");
+        }
+        return shocks;
+    }
+}
+
+final class CreditBand {
+    // Cut at the minimum scores for applying (50) and for approval (70)
+    private static final String[] NAMES = {"<50", "50-69", "70-84", "85+"};
+    static final int COUNT = NAMES.length;
+
+    private CreditBand() {
+    }
+
+    static byte of(double creditScore) {
+        if (creditScore < 50) {
+            return 0;
+        }
+        if (creditScore < 70) {
+            return 1;
+        }
+        return creditScore < 85 ? (byte) 2 : (byte) 3;
+    }
+
+    static String name(int band) {
+        return NAMES[band];
+    }
+}
+
+class StressTestResult {
+    static final int COUNT = 0;
+    static final int OUTSTANDING = 1;
+    static final int INTEREST = 2;
+    static final int PAYMENT = 3;
+    static final int METRICS = 4;
+    static final int STATUSES = LoanBook.OTHER + 1; // every live status; deleted rows are skipped
+
+    // Scenario 0 is the baseline, scenario i the i-th shock
+    private final List<RateShock> shocks;
+    private final long[] totals;
+    private final int rows;
+    private final long elapsedNanos;
+
+    StressTestResult(List<RateShock> shocks, long[] totals, int rows, long elapsedNanos) {
+        this.shocks = Collections.unmodifiableList(new ArrayList<>(shocks));
+        this.totals = totals;
+        this.rows = rows;
+        this.elapsedNanos = elapsedNanos;
+    }
+
+    static int cells(int scenarios) {
+        return scenarios * STATUSES * CreditBand.COUNT * METRICS;
+    }
+
+    static int index(int scenario, int status, int band, int metric) {
+        return ((scenario * STATUSES + status) * CreditBand.COUNT + band) * METRICS + metric;
+    }
+
+    // Getters
+    public List<RateShock> getShocks() { return shocks; }
+    public int getRows() { return rows; }
+    public long getElapsedNanos() { return elapsedNanos; }
+
+    public long get(int scenario, int status, int band, int metric) {
+        return totals[index(scenario, status, band, metric)];
+    }
+
+    public long byStatus(int scenario, int status, int metric) {
+        long sum = 0;
+        for (int band = 0; band < CreditBand.COUNT; band++) {
+            sum += get(scenario, status, band, metric);
+        }
+        return sum;
+    }
+
+    public long byBand(int scenario, int band, int metric) {
+        long sum = 0;
+        for (int status = 0; status < STATUSES; status++) {
+            sum += get(scenario, status, band, metric);
+        }
+        return sum;
+    }
+}
+
+class StressTestEngine {
+    // Rows per leaf task: large enough that the per-task totals array is noise, small enough to balance
+    private static final int LEAF_ROWS = 16_384;
+
+    private final ForkJoinPool pool;
+
+    StressTestEngine(ForkJoinPool pool) {
+        this.pool = pool;
+    }
+
+    // Credit band of every client, indexed by client id
+    static byte[] creditBands(ClientRepository clients) throws SQLException {
+        byte[][] bands = {new byte[1024]};
+        clients.streamAll(client -> {
+            if (client.getId() >= bands[0].length) {
+                bands[0] = Arrays.copyOf(bands[0], Math.max(bands[0].length * 2, client.getId() + 1));
+            }
+            bands[0][client.getId()] = CreditBand.of(client.getCreditScore());
+        });
+        return bands[0];
+    }
+
+    StressTestResult run(LoanBook book, byte[] bandByClient, List<RateShock> shocks) {
+        long start = System.nanoTime();
+        // Shocked terms per scenario, indexed like the book's terms ids; scenario 0 is the baseline
+        AmortizationTerms[][] terms = new AmortizationTerms[shocks.size() + 1][book.distinctTermsCount()];
+        for (int id = 0; id < book.distinctTermsCount(); id++) {
+            terms[0][id] = book.termsAt(id);
+            for (int s = 0; s < shocks.size(); s++) {
+                terms[s + 1][id] = shocks.get(s).apply(terms[0][id]);
+            }
+        }
+        long[] totals = pool.invoke(new RevalueTask(book, bandByClient, terms, 0, book.size()));
+        return new StressTestResult(shocks, totals, book.size(), System.nanoTime() - start);
+    }
+
+    // ForkJoinTask is Serializable, but these tasks never leave the pool, so the shared inputs are transient
+    private static final class RevalueTask extends RecursiveTask<long[]> {
+        private static final long serialVersionUID = 1L;
+
+        private final transient LoanBook book;
+        private final byte[] bandByClient;
+        private final transient AmortizationTerms[][] terms;
+        private final int from;
+        private final int to;
+
+        RevalueTask(LoanBook book, byte[] bandByClient, AmortizationTerms[][] terms, int from, int to) {
+            this.book = book;
+            this.bandByClient = bandByClient;
+            this.terms = terms;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected long[] compute() {
+            if (to - from <= LEAF_ROWS) {
+                return revalue();
+            }
+            int mid = (from + to) >>> 1;
+            RevalueTask left = new RevalueTask(book, bandByClient, terms, from, mid);
+            left.fork();
+            long[] right = new RevalueTask(book, bandByClient, terms, mid, to).compute();
+            long[] totals = left.join();
+            for (int i = 0; i < totals.length; i++) {
+                totals[i] += right[i];
+            }
+            return totals;
+        }
+
+        private long[] revalue() {
+            long[] totals = new long[StressTestResult.cells(terms.length)];
+            int scenarioStride = StressTestResult.index(1, 0, 0, 0);
+            for (int row = from; row < to; row++) {
+                byte status = book.statusAt(row);
+                if (status == LoanBook.DELETED) {
+                    continue;
+                }
+                int clientId = book.clientIdAt(row);
+                int band = clientId < bandByClient.length ? bandByClient[clientId] : 0;
+                int cell = StressTestResult.index(0, status, band, 0);
+                long amount = book.amountAt(row);
+                long paid = book.paidAt(row);
+                int termsId = book.termsIdAt(row);
+
+                // Baseline straight from the book's derived columns
+                totals[cell + StressTestResult.COUNT]++;
+                totals[cell + StressTestResult.OUTSTANDING] += book.outstandingAt(row);
+                totals[cell + StressTestResult.INTEREST] += book.totalInterestAt(row);
+                totals[cell + StressTestResult.PAYMENT] += book.monthlyPaymentAt(row);
+                for (int s = 1; s < terms.length; s++) {
+                    AmortizationTerms shocked = terms[s][termsId];
+                    int at = cell + s * scenarioStride;
+                    totals[at + StressTestResult.COUNT]++;
+                    totals[at + StressTestResult.OUTSTANDING] += shocked.outstandingBalance(amount, paid);
+                    totals[at + StressTestResult.INTEREST] += shocked.totalInterest(amount);
+                    totals[at + StressTestResult.PAYMENT] += shocked.monthlyPayment(amount);
+                }
+            }
+            return totals;
+        }
+    }
+}
@@ -0,0 +1,395 @@
+// Description: Seeded synthetic data for exercising reports and lookups at production scale.
+// Clients, loans and their payment histories are generated in chunks of CLIENTS_PER_CHUNK
+// clients on a worker pool. Every chunk draws from its own SplittableRandom, split from the
+// seed in chunk order, and owns a fixed range of client and loan ids, so the same seed, volumes
+// and as-of date always produce the same rows whatever the thread count. Payments follow each
+// loan's installment plan: one monthly installment per month elapsed since issue (fewer for
+// loans in arrears), and PAID loans carry the full plan with the last installment settling the
+// total payable. Chunks are handed to a SyntheticDataSink: the MariaDB tables, the in-memory
+// engine or a set of CSV files.
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.SQLException;
+import java.time.LocalDate;
+import java.time.ZoneId;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+// Destination of generated rows. Generated ids continue after the last ids already in the store.
+interface SyntheticDataSink {
+    // Called once before the first chunk of every run with the volumes it will write; reserves
+    // that many client and loan ids after the store's current highest ones.
+    void begin(int clientCount, int loanCount) throws SQLException;
+    int lastClientId();
+    int lastLoanId();
+    // When true, chunks arrive one at a time in chunk order; otherwise write is called
+    // concurrently from the generator's workers, one chunk per call.
+    boolean ordered();
+    void write(SyntheticChunk chunk) throws IOException, SQLException;
+}
+
+class SyntheticChunk {
+    private final List<Client> clients;
+    private final List<Loan> loans;
+    private final List<Payment> payments; // grouped by loan, oldest first; ids are assigned by the sink
+
+    SyntheticChunk(List<Client> clients, List<Loan> loans, List<Payment> payments) {
+        this.clients = clients;
+        this.loans = loans;
+        this.payments = payments;
+    }
+
+    // Getters
+    public List<Client> getClients() { return clients; }
+    public List<Loan> getLoans() { return loans; }
+    public List<Payment> getPayments() { return payments; }
+}
+
+class SyntheticDataStats {
+    private final long clients;
+    private final long loans;
+    private final long payments;
+    private final long elapsedNanos;
+
+    SyntheticDataStats(long clients, long loans, long payments, long elapsedNanos) {
+        this.clients = clients;
+        this.loans = loans;
+        this.payments = payments;
+        this.elapsedNanos = elapsedNanos;
+    }
+
+    // Getters
+    public long getClients() { return clients; }
+    public long getLoans() { return loans; }
+    public long getPayments() { return payments; }
+    public long getElapsedNanos() { return elapsedNanos; }
+
+    public double getRowsPerSecond() {
+        return elapsedNanos == 0 ? 0.0 : (clients + loans + payments) * 1_000_000_000.0 / elapsedNanos;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("clients=%d, loans=%d, payments=%d, elapsed=%.2fs, throughput=%.0f rows/sec",
+                clients, loans, payments, elapsedNanos / 1_000_000_000.0, getRowsPerSecond());
+    }
+}
+
+class SyntheticDataGenerator {
+    static final int CLIENTS_PER_CHUNK = 1000;
+    private static final int CLIENT_PICK_ATTEMPTS = 16;
+    private static final double ARREARS_SHARE = 0.15; // approved loans one to three installments behind
+
+    private static final String[] STATUSES = {"APPROVED", "PAID", "PENDING", "REJECT"};
+    private static final int[] STATUS_WEIGHTS = {55, 25, 8, 12};
+    private static final double[] RATES = {12, 15, 18, 20, 24, 30, 36};
+    private static final int[] RATE_WEIGHTS = {10, 15, 25, 15, 20, 10, 5};
+    private static final int[] TERMS = {3, 6, 9, 12, 18, 24, 36};
+    private static final int[] TERM_WEIGHTS = {5, 15, 10, 35, 15, 15, 5};
+
+    private static final String[] FIRST_NAMES = {"Juan", "Maria", "Jose", "Ana", "Pedro", "Rosa", "Antonio", "Carmen",
+            "Ramon", "Luz", "Eduardo", "Teresa", "Roberto", "Elena", "Fernando", "Lourdes", "Manuel", "Cristina",
+            "Ricardo", "Gloria", "Miguel", "Josefina", "Rafael", "Angelica", "Carlos", "Marites", "Danilo", "Rowena",
+            "Rogelio", "Jocelyn", "Noel", "Marilou"};
+    private static final String[] LAST_NAMES = {"Dela Cruz", "Santos", "Reyes", "Garcia", "Mendoza", "Torres", "Flores",
+            "Gonzales", "Bautista", "Villanueva", "Ramos", "Aquino", "Castillo", "Rivera", "Navarro", "Fernandez",
+            "Lopez", "Morales", "Domingo", "Mercado", "Pascual", "Aguilar", "Salazar", "Manalo", "Panganiban",
+            "Soriano", "Tolentino", "Cruz", "Valdez", "Del Rosario", "Marquez", "Hernandez"};
+    private static final String[] STREETS = {"Rizal", "Mabini", "Bonifacio", "Luna", "Burgos", "Quezon", "Magsaysay",
+            "Del Pilar", "Aguinaldo", "Roxas", "Osmena", "Jacinto"};
+    private static final String[] CITIES = {"Quezon City", "Manila", "Caloocan", "Pasig", "Taguig", "Makati", "Marikina",
+            "Muntinlupa", "Las Pinas", "Paranaque", "Valenzuela", "Antipolo", "Bacoor", "Dasmarinas", "Calamba",
+            "San Pedro", "Malolos", "Meycauayan", "Angeles", "San Fernando", "Batangas City", "Lipa", "Lucena",
+            "Naga", "Legazpi", "Iloilo City", "Bacolod", "Cebu City", "Tacloban", "Cagayan de Oro", "Davao City",
+            "General Santos"};
+
+    private final int clientCount;
+    private final int loanCount;
+    private final long seed;
+    private final LocalDate asOf;
+    private final int threads;
+
+    SyntheticDataGenerator(int clientCount, int loanCount, long seed, LocalDate asOf, int threads) {
+        if (clientCount < 0 || loanCount < 0) {
+            throw new IllegalArgumentException("Volumes cannot be negative");
+        }
+        if (loanCount > 0 && clientCount == 0) {
+            throw new IllegalArgumentException("Loans need at least one client");
+        }
+        if (threads <= 0) {
+            throw new IllegalArgumentException("Thread count must be positive");
+        }
+        this.clientCount = clientCount;
+        this.loanCount = loanCount;
+        this.seed = seed;
+        this.asOf = asOf;
+        this.threads = threads;
+    }
+
+    SyntheticDataStats generate(SyntheticDataSink sink) throws IOException, SQLException {
+        long start = System.nanoTime();
+        sink.begin(clientCount, loanCount);
+        int clientBase = sink.lastClientId();
+        int loanBase = sink.lastLoanId();
+        int chunks = (clientCount + CLIENTS_PER_CHUNK - 1) / CLIENTS_PER_CHUNK;
+        SplittableRandom root = new SplittableRandom(seed);
+        long[] totals = new long[3];
+
+        ExecutorService workers = Executors.newFixedThreadPool(threads);
+        // Bounded window of chunks in flight keeps memory flat however large the volumes
+        ArrayDeque<Future<SyntheticChunk>> window = new ArrayDeque<>();
+        try {
+            for (int c = 0; c < chunks; c++) {
+                if (window.size() == threads * 2) {
+                    drain(window.poll(), sink, totals);
+                }
+                int chunk = c;
+                SplittableRandom random = root.split();
+                window.add(workers.submit(() -> {
+                    SyntheticChunk generated = generateChunk(chunk, chunks, clientBase, loanBase, random);
+                    if (!sink.ordered()) {
+                        sink.write(generated);
+                    }
+                    return generated;
+                }));
+            }
+            while (!window.isEmpty()) {
+                drain(window.poll(), sink, totals);
+            }
+        } finally {
+            workers.shutdownNow();
+        }
+        return new SyntheticDataStats(totals[0], totals[1], totals[2], System.nanoTime() - start);
+    }
+
+    private static void drain(Future<SyntheticChunk> pending, SyntheticDataSink sink, long[] totals) throws IOException, SQLException {
+        SyntheticChunk chunk;
+        try {
+            chunk = pending.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while generating data", e);
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof IOException) {
+                throw (IOException) cause;
+            }
+            if (cause instanceof SQLException) {
+                throw (SQLException) cause;
+            }
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            }
+            throw new IllegalStateException(cause);
+        }
+        if (sink.ordered()) {
+            sink.write(chunk);
+        }
+        totals[0] += chunk.getClients().size();
+        totals[1] += chunk.getLoans().size();
+        totals[2] += chunk.getPayments().size();
+    }
+
+    private SyntheticChunk generateChunk(int chunk, int chunks, int clientBase, int loanBase, SplittableRandom random) {
+        int firstClient = chunk * CLIENTS_PER_CHUNK;
+        int clientsInChunk = Math.min(CLIENTS_PER_CHUNK, clientCount - firstClient);
+        // Loans are spread over the chunks in proportion, so each chunk's loan id range is known up front
+        int firstLoan = (int) ((long) loanCount * chunk / chunks);
+        int loansInChunk = (int) ((long) loanCount * (chunk + 1) / chunks) - firstLoan;
+
+        List<Client> clients = new ArrayList<>(clientsInChunk);
+        for (int i = 0; i < clientsInChunk; i++) {
+            clients.add(client(clientBase + firstClient + i + 1, random));
+        }
+        List<Loan> loans = new ArrayList<>(loansInChunk);
+        List<Payment> payments = new ArrayList<>(loansInChunk * 8);
+        for (int i = 0; i < loansInChunk; i++) {
+            loans.add(loan(loanBase + firstLoan + i + 1, clients, payments, random));
+        }
+        return new SyntheticChunk(clients, loans, payments);
+    }
+
+    private static Client client(int id, SplittableRandom random) {
+        String name = pick(FIRST_NAMES, random) + " " + pick(LAST_NAMES, random);
+        String phone = "09" + (100_000_000 + random.nextInt(900_000_000));
+        String address = (1 + random.nextInt(999)) + " " + pick(STREETS, random) + " St., " + pick(CITIES, random);
+        double creditScore = Math.round(Math.max(0, Math.min(100, 72 + 12 * random.nextGaussian())) * 10) / 10.0;
+        return new Client(id, name, phone, address, creditScore);
+    }
+
+    private Loan loan(int loanId, List<Client> clients, List<Payment> payments, SplittableRandom random) {
+        String status = STATUSES[weighted(STATUS_WEIGHTS, random)];
+        Client client = borrower(clients, status, random);
+        if (client.getCreditScore() < Operations.MIN_CREDIT_SCORE_FOR_APPROVAL && (status.equals("APPROVED") || status.equals("PAID"))) {
+            status = "REJECT"; // no client in the chunk could have been approved
+        }
+        // Log-normal amounts around 20,000, in steps of 500
+        double units = Math.exp(Math.log(20_000) + 0.7 * random.nextGaussian());
+        long amountCents = Money.ofUnits(500 * Math.round(Math.max(5_000, Math.min(500_000, units)) / 500));
+        double rate = RATES[weighted(RATE_WEIGHTS, random)];
+        int term = TERMS[weighted(TERM_WEIGHTS, random)];
+        AmortizationTerms terms = AmortizationEngine.terms(rate, term);
+
+        LocalDate issued;
+        int installments;
+        switch (status) {
+            case "APPROVED": {
+                int elapsed = random.nextInt(term);
+                issued = asOf.minusMonths(elapsed).minusDays(random.nextInt(28));
+                installments = random.nextDouble() < ARREARS_SHARE ? Math.max(0, elapsed - 1 - random.nextInt(3)) : elapsed;
+                break;
+            }
+            case "PAID":
+                issued = asOf.minusMonths(term + random.nextInt(24)).minusDays(random.nextInt(28));
+                installments = term;
+                break;
+            case "PENDING":
+                issued = asOf.minusDays(random.nextInt(30));
+                installments = 0;
+                break;
+            default:
+                issued = asOf.minusDays(random.nextInt(365));
+                installments = 0;
+        }
+
+        // Whole installments in due-date order; the last one of a settled loan clears the total payable
+        long installment = terms.monthlyPayment(amountCents);
+        long totalPayable = terms.totalPayable(amountCents);
+        long paidCents = 0;
+        for (int period = 1; period <= installments && paidCents < totalPayable; period++) {
+            long due = period == term ? totalPayable - paidCents : Math.min(installment, totalPayable - paidCents);
+            LocalDate paidOn = issued.plusMonths(period).plusDays(random.nextInt(9) - 3);
+            payments.add(new Payment(0, loanId, due, toDate(paidOn.isAfter(asOf) ? asOf : paidOn)));
+            paidCents += due;
+        }
+        return new Loan(loanId, client.getId(), amountCents, rate, term, status, toDate(issued), paidCents, client.getName());
+    }
+
+    // A random client of the chunk whose credit score the status requires, or the last one tried
+    private static Client borrower(List<Client> clients, String status, SplittableRandom random) {
+        double minScore = status.equals("APPROVED") || status.equals("PAID")
+                ? Operations.MIN_CREDIT_SCORE_FOR_APPROVAL : Operations.MIN_CREDIT_SCORE_FOR_LOAN;
+        Client client = null;
+        for (int attempt = 0; attempt < CLIENT_PICK_ATTEMPTS; attempt++) {
+            client = clients.get(random.nextInt(clients.size()));
+            if (client.getCreditScore() >= minScore) {
+                break;
+            }
+        }
+        return client;
+    }
+
+    private static int weighted(int[] weights, SplittableRandom random) {
+        int total = 0;
+        for (int weight : weights) {
+            total += weight;
+        }
+        int draw = random.nextInt(total);
+        for (int i = 0; i < weights.length; i++) {
+            draw -= weights[i];
+            if (draw < 0) {
+                return i;
+            }
+        }
+        return weights.length - 1;
+    }
+
+    private static String pick(String[] values, SplittableRandom random) {
+        return values[random.nextInt(values.length)];
+    }
+
+    private static Date toDate(LocalDate date) {
+        return Date.from(date.atStartOfDay(ZoneId.systemDefault()).toInstant());
+    }
+}
+
+// clients.csv, loans.csv and payments.csv in the given directory, with the table column names as
+// headers so they can be bulk loaded (LOAD DATA ... IGNORE 1 LINES). payments.csv has the
+// loan_id,amount,payment_date layout of the payment import, without payment ids.
+class CsvDataSink implements SyntheticDataSink, AutoCloseable {
+    private final BufferedWriter clients;
+    private final BufferedWriter loans;
+    private final BufferedWriter payments;
+
+    CsvDataSink(Path directory) throws IOException {
+        Files.createDirectories(directory);
+        clients = open(directory.resolve("clients.csv"), "id,name,phone,address,credit_score");
+        loans = open(directory.resolve("loans.csv"),
+                "loan_id,client_id,amount,interest_rate,duration_months,status,issue_date,paid_amount");
+        payments = open(directory.resolve("payments.csv"), "loan_id,amount,payment_date");
+    }
+
+    private static BufferedWriter open(Path file, String header) throws IOException {
+        BufferedWriter out = Files.newBufferedWriter(file, StandardCharsets.UTF_8);
+        out.write(header);
+        out.newLine();
+        return out;
+    }
+
+    @Override
+    public void begin(int clientCount, int loanCount) {
+    }
+
+    @Override
+    public int lastClientId() {
+        return 0;
+    }
+
+    @Override
+    public int lastLoanId() {
+        return 0;
+    }
+
+    @Override
+    public boolean ordered() {
+        return true;
+    }
+
+    @Override
+    public void write(SyntheticChunk chunk) throws IOException {
+        for (Client client : chunk.getClients()) {
+            clients.write(client.getId() + "," + Csv.escape(client.getName()) + "," + Csv.escape(client.getPhone()) + ","
+                    + Csv.escape(client.getAddress()) + "," + client.getCreditScore());
+            clients.newLine();
+        }
+        for (Loan loan : chunk.getLoans()) {
+            loans.write(loan.getLoanId() + "," + loan.getClientId() + "," + Money.format(loan.getAmountCents()) + ","
+                    + loan.getInterestRate() + "," + loan.getDurationMonths() + "," + loan.getStatus() + ","
+                    + isoDate(loan.getIssueDate()) + "," + Money.format(loan.getPaidCents()));
+            loans.newLine();
+        }
+        for (Payment payment : chunk.getPayments()) {
+            payments.write(payment.getLoanId() + "," + Money.format(payment.getAmountCents()) + ","
+                    + isoDate(payment.getPaymentDate()));
+            payments.newLine();
+        }
+    }
+
+    private static String isoDate(Date date) {
+        return date.toInstant().atZone(ZoneId.systemDefault()).toLocalDate().toString();
+    }
+
+    @Override
+    public void close() throws IOException {
+        try {
+            clients.close();
+        } finally {
+            try {
+                loans.close();
+            } finally {
+                payments.close();
+            }
+        }
+    }
+}
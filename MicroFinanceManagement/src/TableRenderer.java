@@ -0,0 +1,264 @@
+// Description: Buffered renderer for the MySQL-style console tables. A TableLayout computes the
+// border line once from the column widths. A TableWriter appends borders, headers and cells into
+// one reusable character buffer, which goes to the sink (System.out, a BufferedWriter, ...) in
+// large writes rather than one print call per cell. Numbers, money and dates are written digit
+// by digit instead of through String.format. The text is byte for byte what the
+// printf("| %-Ns | ...") calls it replaces produced. When the default locale would make printf
+// localize digits, the writer falls back to the formatter.
+
+import java.io.Flushable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.text.DecimalFormatSymbols;
+import java.text.SimpleDateFormat;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.ZoneId;
+import java.util.Date;
+import java.util.GregorianCalendar;
+import java.util.Iterator;
+import java.util.Locale;
+
+final class TableLayout {
+    private final String[] titles;
+    private final int[] widths;
+    private final String border;
+
+    TableLayout(String[] titles, int[] widths) {
+        if (titles.length != widths.length || titles.length == 0) {
+            throw new IllegalArgumentException("Every column needs a title and a width");
+        }
+        this.titles = titles.clone();
+        this.widths = widths.clone();
+        StringBuilder line = new StringBuilder("+");
+        for (int width : widths) {
+            line.append("-".repeat(width + 2)).append('+');
+        }
+        this.border = line.toString();
+    }
+
+    // Getters
+    public int getColumns() { return widths.length; }
+    public int getWidth(int column) { return widths[column]; }
+    public String getTitle(int column) { return titles[column]; }
+    public String getBorder() { return border; }
+}
+
+// Not thread-safe: one writer per thread, or the console's single writer on the menu thread.
+final class TableWriter implements Flushable {
+    static final int DEFAULT_BUFFER_CHARS = 64 * 1024;
+    private static final String NEW_LINE = System.lineSeparator();
+    private static final String SPACES = " ".repeat(64);
+    private static final int DECIMAL_SLOTS = 1024;
+
+    private final Appendable sink;
+    private final StringBuilder buffer;
+    private final int flushThreshold;
+    private final Locale locale = Locale.getDefault(Locale.Category.FORMAT);
+    private final boolean asciiDigits = DecimalFormatSymbols.getInstance(locale).getZeroDigit() == '0';
+    private final SimpleDateFormat dateFormat = new SimpleDateFormat("yyyy-MM-dd");
+    // Locales with their own calendar (Buddhist, Japanese imperial) keep going through SimpleDateFormat
+    private final boolean gregorianDates = asciiDigits && dateFormat.getCalendar().getClass() == GregorianCalendar.class;
+    private final ZoneId zone = dateFormat.getTimeZone().toZoneId();
+    // printf("%.1f") text by double bits, direct-mapped so a lookup allocates nothing
+    private final long[] decimalKeys = new long[DECIMAL_SLOTS];
+    private final String[] decimalTexts = new String[DECIMAL_SLOTS];
+    private TableLayout layout;
+    private int column;
+
+    TableWriter(Appendable sink, int bufferChars) {
+        this.sink = sink;
+        this.buffer = new StringBuilder(bufferChars);
+        this.flushThreshold = Math.max(1024, bufferChars - 4096);
+    }
+
+    Appendable getSink() {
+        return sink;
+    }
+
+    TableWriter layout(TableLayout layout) {
+        this.layout = layout;
+        this.column = 0;
+        return this;
+    }
+
+    // Plain text line, like println
+    TableWriter line(String text) {
+        buffer.append(text).append(NEW_LINE);
+        return this;
+    }
+
+    TableWriter border() {
+        buffer.append(layout.getBorder()).append(NEW_LINE);
+        return this;
+    }
+
+    // Border, column titles, border
+    TableWriter header() {
+        border();
+        for (int c = 0; c < layout.getColumns(); c++) {
+            cell(layout.getTitle(c));
+        }
+        endRow();
+        return border();
+    }
+
+    TableWriter cell(String value) {
+        int start = startCell();
+        buffer.append(value);
+        return endCell(start);
+    }
+
+    TableWriter cell(long value) {
+        if (!asciiDigits) {
+            return cell(String.format(locale, "%d", value));
+        }
+        int start = startCell();
+        buffer.append(value);
+        return endCell(start);
+    }
+
+    // printf("%.1f") text; the few distinct values in a table (scores, rates) are formatted once
+    TableWriter cellOneDecimal(double value) {
+        long bits = Double.doubleToRawLongBits(value);
+        int slot = (int) (bits ^ (bits >>> 32)) * 0x9E3779B9 >>> 22;
+        String text = decimalTexts[slot];
+        if (text == null || decimalKeys[slot] != bits) {
+            text = String.format(locale, "%.1f", value);
+            decimalKeys[slot] = bits;
+            decimalTexts[slot] = text;
+        }
+        return cell(text);
+    }
+
+    TableWriter cellMoney(long cents) {
+        int start = startCell();
+        Money.appendTo(buffer, cents);
+        return endCell(start);
+    }
+
+    // yyyy-MM-dd in the default time zone, as SimpleDateFormat writes it
+    TableWriter cellDate(Date date) {
+        LocalDate day = LocalDate.ofInstant(Instant.ofEpochMilli(date.getTime()), zone);
+        // Before the Gregorian cutover SimpleDateFormat uses the Julian calendar
+        if (!gregorianDates || day.getYear() < 1600) {
+            return cell(dateFormat.format(date));
+        }
+        int start = startCell();
+        appendPadded(day.getYear(), 4);
+        buffer.append('-');
+        appendPadded(day.getMonthValue(), 2);
+        buffer.append('-');
+        appendPadded(day.getDayOfMonth(), 2);
+        return endCell(start);
+    }
+
+    TableWriter endRow() {
+        buffer.append('|').append(NEW_LINE);
+        column = 0;
+        return this;
+    }
+
+    // Writes the buffer out once it is nearly full; call between rows when streaming
+    void flushIfFull() {
+        if (buffer.length() >= flushThreshold) {
+            writeBuffer();
+        }
+    }
+
+    @Override
+    public void flush() {
+        writeBuffer();
+        if (sink instanceof Flushable) {
+            try {
+                ((Flushable) sink).flush();
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+    }
+
+    private void writeBuffer() {
+        if (buffer.length() == 0) {
+            return;
+        }
+        try {
+            sink.append(buffer);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        } finally {
+            buffer.setLength(0);
+        }
+    }
+
+    private int startCell() {
+        buffer.append("| ");
+        return buffer.length();
+    }
+
+    // Left-justifies the cell like %-Ns: pads to the width, never truncates
+    private TableWriter endCell(int start) {
+        int pad = layout.getWidth(column++) - (buffer.length() - start);
+        while (pad > 0) {
+            int n = Math.min(pad, SPACES.length());
+            buffer.append(SPACES, 0, n);
+            pad -= n;
+        }
+        buffer.append(' ');
+        return this;
+    }
+
+    private void appendPadded(int value, int digits) {
+        for (int limit = 10, i = 1; i < digits; i++, limit *= 10) {
+            if (value < limit) {
+                buffer.append('0');
+            }
+        }
+        buffer.append(value);
+    }
+}
+
+interface TableRow<T> {
+    void write(TableWriter out, T row);
+}
+
+// A layout plus the code that writes one row of it
+final class TableRenderer<T> {
+    private final TableLayout layout;
+    private final TableRow<T> row;
+
+    TableRenderer(TableLayout layout, TableRow<T> row) {
+        this.layout = layout;
+        this.row = row;
+    }
+
+    void header(TableWriter out) {
+        out.layout(layout).header();
+    }
+
+    void row(TableWriter out, T item) {
+        out.layout(layout);
+        row.write(out, item);
+        out.endRow();
+        out.flushIfFull();
+    }
+
+    void footer(TableWriter out) {
+        out.layout(layout).border();
+    }
+
+    // Header, one row per element, closing border; writes nothing for an empty iterator
+    long render(TableWriter out, Iterator<T> rows) {
+        long count = 0;
+        while (rows.hasNext()) {
+            if (count++ == 0) {
+                header(out);
+            }
+            row(out, rows.next());
+        }
+        if (count > 0) {
+            footer(out);
+        }
+        return count;
+    }
+}